@@ -0,0 +1,105 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools;
+
+import fr.pilato.elasticsearch.tools.SettingsFinder.Defaults;
+import fr.pilato.elasticsearch.tools.index.IndexFinder;
+import fr.pilato.elasticsearch.tools.template.TemplateFinder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of finding indices and templates in the classpath and of reading their settings
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.xml")
+public class DiscoveryBenchmark {
+
+	@Param({ "DIRECTORY", "JAR", "LARGE_JAR" })
+	public SyntheticClasspath.Layout layout;
+
+	@Param({ "10", "1000", "10000" })
+	public int indices;
+
+	private SyntheticClasspath classpath;
+	private ClassLoader classLoader;
+	private String settingsFile;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		classpath = SyntheticClasspath.create(layout, indices);
+		classLoader = classpath.getClassLoader();
+		settingsFile = SyntheticClasspath.ROOT + "/" + SyntheticClasspath.indexName(indices / 2) + "/" + Defaults.IndexSettingsFileName;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		classpath.close();
+	}
+
+	@Benchmark
+	public String[] getResources() throws IOException, URISyntaxException {
+		return ResourceList.getResources(classLoader, SyntheticClasspath.ROOT + "/");
+	}
+
+	/**
+	 * Finders with an empty {@link ResourceIndex}: the classpath is scanned each time
+	 */
+	@Benchmark
+	public List<String> findIndexNamesColdIndex() throws IOException, URISyntaxException {
+		ResourceIndex.getInstance(classLoader).invalidate();
+		return IndexFinder.findIndexNames(classLoader, SyntheticClasspath.ROOT);
+	}
+
+	@Benchmark
+	public List<String> findIndexNames() throws IOException, URISyntaxException {
+		return IndexFinder.findIndexNames(classLoader, SyntheticClasspath.ROOT);
+	}
+
+	@Benchmark
+	public List<String> findTemplates() throws IOException, URISyntaxException {
+		return TemplateFinder.findTemplates(classLoader, SyntheticClasspath.ROOT);
+	}
+
+	@Benchmark
+	public String readFileFromClasspath() {
+		return SettingsReader.readFileFromClasspath(classLoader, settingsFile);
+	}
+}
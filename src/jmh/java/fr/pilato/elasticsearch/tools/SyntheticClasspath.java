@@ -0,0 +1,147 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools;
+
+import fr.pilato.elasticsearch.tools.SettingsFinder.Defaults;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * A generated classpath holding many index and template definitions, exposed through its own class loader
+ */
+public class SyntheticClasspath implements Closeable {
+
+	public enum Layout {
+		/**
+		 * Exploded directory
+		 */
+		DIRECTORY,
+		/**
+		 * Jar containing only the definitions
+		 */
+		JAR,
+		/**
+		 * Jar containing the definitions and 100k unrelated entries, like a big shared jar
+		 */
+		LARGE_JAR
+	}
+
+	public static final String ROOT = "beyonder-benchmark";
+
+	private static final int UNRELATED_ENTRIES = 100_000;
+	private static final String SETTINGS = "{\n  \"settings\" : { \"number_of_shards\" : 1, \"number_of_replicas\" : \"${REPLICAS:-0}\" },\n" +
+			"  \"mappings\" : { \"properties\" : { \"message\" : { \"type\" : \"text\" } } }\n}\n";
+	private static final String TEMPLATE = "{\n  \"index_patterns\" : [ \"%s-*\" ],\n" +
+			"  \"settings\" : { \"number_of_shards\" : 1 }\n}\n";
+
+	private final Path dir;
+	private final URLClassLoader classLoader;
+
+	private SyntheticClasspath(Path dir, URL url) {
+		this.dir = dir;
+		// No parent: only the generated resources are visible
+		this.classLoader = new URLClassLoader(new URL[]{ url }, null);
+	}
+
+	/**
+	 * Generate a classpath
+	 * @param layout how resources are packaged
+	 * @param indices number of index folders. One template is generated for every 10 indices.
+	 * @return the classpath
+	 * @throws IOException if the files can not be written
+	 */
+	public static SyntheticClasspath create(Layout layout, int indices) throws IOException {
+		Path dir = Files.createTempDirectory("beyonder-benchmark");
+		int templates = indices / 10 + 1;
+
+		if (layout == Layout.DIRECTORY) {
+			Path root = dir.resolve(ROOT);
+			Files.createDirectories(root.resolve(Defaults.TemplateDir));
+			for (int i = 0; i < templates; i++) {
+				Files.write(root.resolve(Defaults.TemplateDir).resolve(templateName(i) + Defaults.JsonFileExtension),
+						String.format(TEMPLATE, indexName(i)).getBytes(StandardCharsets.UTF_8));
+			}
+			for (int i = 0; i < indices; i++) {
+				Path index = Files.createDirectories(root.resolve(indexName(i)));
+				Files.write(index.resolve(Defaults.IndexSettingsFileName), SETTINGS.getBytes(StandardCharsets.UTF_8));
+			}
+			return new SyntheticClasspath(dir, dir.toUri().toURL());
+		}
+
+		Path jar = dir.resolve("resources.jar");
+		try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+			if (layout == Layout.LARGE_JAR) {
+				for (int i = 0; i < UNRELATED_ENTRIES; i++) {
+					if (i % 1_000 == 0) {
+						out.putNextEntry(new JarEntry("com/example/generated/p" + i / 1_000 + "/"));
+					}
+					out.putNextEntry(new JarEntry("com/example/generated/p" + i / 1_000 + "/Class" + i + ".class"));
+					out.write(new byte[]{ (byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE });
+				}
+			}
+			out.putNextEntry(new JarEntry(ROOT + "/"));
+			out.putNextEntry(new JarEntry(ROOT + "/" + Defaults.TemplateDir + "/"));
+			for (int i = 0; i < templates; i++) {
+				write(out, ROOT + "/" + Defaults.TemplateDir + "/" + templateName(i) + Defaults.JsonFileExtension,
+						String.format(TEMPLATE, indexName(i)));
+			}
+			for (int i = 0; i < indices; i++) {
+				out.putNextEntry(new JarEntry(ROOT + "/" + indexName(i) + "/"));
+				write(out, ROOT + "/" + indexName(i) + "/" + Defaults.IndexSettingsFileName, SETTINGS);
+			}
+		}
+		return new SyntheticClasspath(dir, jar.toUri().toURL());
+	}
+
+	private static void write(JarOutputStream out, String name, String content) throws IOException {
+		out.putNextEntry(new JarEntry(name));
+		out.write(content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public static String indexName(int i) {
+		return String.format("index-%05d", i);
+	}
+
+	public static String templateName(int i) {
+		return String.format("template-%05d", i);
+	}
+
+	public ClassLoader getClassLoader() {
+		return classLoader;
+	}
+
+	@Override
+	public void close() throws IOException {
+		classLoader.close();
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package fr.pilato.elasticsearch.tools.rest;
+
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of compressing request bodies and bytes saved, for mappings of growing size.
+ * The {@code sentBytes} and {@code savedBytes} secondary results give the bytes of a single request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.xml")
+public class CompressionBenchmark {
+
+	@Param({ "100", "1000", "20000" })
+	public int fields;
+
+	private String mapping;
+	private byte[] bytes;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Bytes {
+		public long sentBytes;
+		public long savedBytes;
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+		StringBuilder json = new StringBuilder("{\"mappings\":{\"properties\":{");
+		for (int i = 0; i < fields; i++) {
+			json.append("\"field_").append(i).append("\":{\"type\":\"").append(i % 3 == 0 ? "text" : "keyword")
+					.append("\",\"ignore_above\":256},");
+		}
+		json.append("\"message\":{\"type\":\"text\"}}}}");
+		mapping = json.toString();
+		bytes = mapping.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Compression of a new body every time
+	 */
+	@Benchmark
+	public byte[] gzip(Bytes counters) {
+		byte[] gzipped = CompressingRequestExecutor.gzip(bytes);
+		counters.sentBytes = gzipped.length;
+		counters.savedBytes = bytes.length - gzipped.length;
+		return gzipped;
+	}
+
+	/**
+	 * Same resource sent again: the compressed body comes from the cache
+	 */
+	@Benchmark
+	public long cached(Bytes counters) throws IOException {
+		RequestExecutor executor = new CompressingRequestExecutor(request -> {
+			long length = request.getEntity().getContentLength();
+			counters.sentBytes = length;
+			counters.savedBytes = bytes.length - length;
+			return CompletableFuture.completedFuture((Response) null);
+		}, 0);
+		Request request = new Request("PUT", "/twitter");
+		request.setJsonEntity(mapping);
+		executor.performRequest(request);
+		return counters.sentBytes;
+	}
+}
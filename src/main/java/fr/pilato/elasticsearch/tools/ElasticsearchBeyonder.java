@@ -21,14 +21,35 @@ package fr.pilato.elasticsearch.tools;
 
 import fr.pilato.elasticsearch.tools.SettingsFinder.Defaults;
 import fr.pilato.elasticsearch.tools.index.IndexFinder;
+import fr.pilato.elasticsearch.tools.provisioning.MultiClusterProvisioner;
+import fr.pilato.elasticsearch.tools.provisioning.MultiClusterResult;
+import fr.pilato.elasticsearch.tools.provisioning.ProgressStore;
+import fr.pilato.elasticsearch.tools.provisioning.ProvisioningEngine;
+import fr.pilato.elasticsearch.tools.provisioning.ProvisioningException;
+import fr.pilato.elasticsearch.tools.provisioning.ProvisioningOptions;
+import fr.pilato.elasticsearch.tools.provisioning.ProvisioningPlan;
+import fr.pilato.elasticsearch.tools.provisioning.ProvisioningResult;
+import fr.pilato.elasticsearch.tools.provisioning.ResourceSet;
+import fr.pilato.elasticsearch.tools.provisioning.TenantProvisioner;
+import fr.pilato.elasticsearch.tools.provisioning.TenantProvisioningResult;
+import fr.pilato.elasticsearch.tools.rest.RequestExecutor;
 import fr.pilato.elasticsearch.tools.template.TemplateFinder;
+import fr.pilato.elasticsearch.tools.util.Futures;
+import fr.pilato.elasticsearch.tools.watch.ResourceWatcher;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.RestClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
 
 import static fr.pilato.elasticsearch.tools.index.IndexElasticsearchUpdater.createIndex;
 import static fr.pilato.elasticsearch.tools.index.IndexElasticsearchUpdater.updateSettings;
@@ -101,21 +122,226 @@ public class ElasticsearchBeyonder {
 	 * @since 6.1
 	 */
 	public static void start(RestClient client, String root, boolean merge, boolean force) throws Exception {
+		start(client, root, new ProvisioningOptions().setMerge(merge).setForce(force));
+	}
+
+	/**
+	 * Automatically scan classpath and create indices, mappings, templates, and other settings.
+	 * Templates are created before the indices they match and indices before their update settings.
+	 * Independent resources are provisioned concurrently. Resources which did not change are left untouched
+	 * and, with {@link ProvisioningOptions#setDryRun(boolean)}, nothing is changed at all: the plan is only logged.
+	 * @param client elasticsearch client
+	 * @param root dir within the classpath
+	 * @param options provisioning options
+	 * @return the provisioning result for each resource
+	 * @throws ProvisioningException when at least one resource could not be provisioned
+	 * @throws Exception when beyonder can not start
+	 * @since 7.6
+	 */
+	public static ProvisioningResult start(RestClient client, String root, ProvisioningOptions options) throws Exception {
 		logger.info("starting automatic settings/mappings discovery");
 
-		// create templates
-		List<String> templateNames = TemplateFinder.findTemplates(root);
-		for (String templateName : templateNames) {
-			createTemplate(client, root, templateName, force);
+		ResourceSet resources = ResourceSet.load(root, options.getListener(), options.getVariableSource());
+		ProvisioningResult result = new ProvisioningEngine(client, options).provision(resources);
+		if (!result.isSuccessful()) {
+			throw new ProvisioningException(result);
 		}
 
-		// create indices
-		Collection<String> indexNames = IndexFinder.findIndexNames(root);
-		for (String indexName : indexNames) {
-			createIndex(client, root, indexName, force);
-			updateSettings(client, root, indexName);
-		}
 		logger.info("start done. Rock & roll!");
+		return result;
+	}
+
+	/**
+	 * Compare the resources found in the classpath with the cluster without changing anything.
+	 * @param client elasticsearch client
+	 * @param root dir within the classpath
+	 * @param options provisioning options
+	 * @return the action which would be applied to each resource
+	 * @throws Exception when the classpath or the cluster can not be read
+	 * @since 7.6
+	 */
+	public static ProvisioningPlan plan(RestClient client, String root, ProvisioningOptions options) throws Exception {
+		ResourceSet resources = ResourceSet.load(root, options.getListener(), options.getVariableSource());
+		return new ProvisioningEngine(client, options).plan(resources);
+	}
+
+	/**
+	 * Watch a directory laid out like the classpath dir and apply the templates and index settings changed in it,
+	 * without a restart. Files already in the directory are not applied.
+	 * @param client elasticsearch client
+	 * @param dir directory holding the templates and index folders
+	 * @param options provisioning options. Only the debounce time, the variable source, the compression, the adaptive
+	 *                concurrency and the listeners are used.
+	 * @return the started watcher. Close it to stop watching.
+	 * @throws IOException if the directory can not be watched
+	 * @since 7.6
+	 */
+	public static ResourceWatcher watch(RestClient client, Path dir, ProvisioningOptions options) throws IOException {
+		RequestExecutor executor = ProvisioningEngine.decorate(RequestExecutor.of(client), options);
+		ResourceWatcher watcher = new ResourceWatcher(executor, dir, options.getWatchDebounceMillis(), options.getListener(),
+				options.getVariableSource());
+		watcher.start();
+		return watcher;
+	}
+
+	/**
+	 * Automatically scan classpath and creates indices, types, templates... in default dir without blocking.
+	 * @param client elasticsearch client
+	 * @return a future which completes when all resources have been provisioned
+	 * @since 7.6
+	 */
+	public static CompletableFuture<ProvisioningResult> startAsync(RestClient client) {
+		return startAsync(client, Defaults.ConfigDir);
+	}
+
+	/**
+	 * Automatically scan classpath and creates indices, types, templates... without blocking.
+	 * @param client elasticsearch client
+	 * @param root dir within the classpath
+	 * @return a future which completes when all resources have been provisioned
+	 * @since 7.6
+	 */
+	public static CompletableFuture<ProvisioningResult> startAsync(RestClient client, String root) {
+		return startAsync(client, root, new ProvisioningOptions());
+	}
+
+	/**
+	 * Automatically scan classpath and create indices, mappings, templates, and other settings without blocking.
+	 * Resources are read from the classpath by the calling thread, then all requests are sent
+	 * with the RestClient asynchronous API: no thread is blocked while waiting for elasticsearch.
+	 * @param client elasticsearch client
+	 * @param root dir within the classpath
+	 * @param options provisioning options
+	 * @return a future which completes with the provisioning result for each resource, or exceptionally
+	 * with a {@link ProvisioningException} when at least one resource could not be provisioned
+	 * @since 7.6
+	 */
+	public static CompletableFuture<ProvisioningResult> startAsync(RestClient client, String root, ProvisioningOptions options) {
+		logger.info("starting automatic settings/mappings discovery");
+
+		ResourceSet resources;
+		try {
+			resources = ResourceSet.load(root, options.getListener(), options.getVariableSource());
+		} catch (Exception e) {
+			return Futures.failedFuture(e);
+		}
+
+		return new ProvisioningEngine(RequestExecutor.of(client), options).provisionAsync(resources).thenCompose(result -> {
+			if (!result.isSuccessful()) {
+				return Futures.failedFuture(new ProvisioningException(result));
+			}
+			logger.info("start done. Rock & roll!");
+			return CompletableFuture.completedFuture(result);
+		});
+	}
+
+	/**
+	 * Provision the same resources on many clusters at the same time. Resources are read and resolved once,
+	 * then all the clusters are provisioned concurrently: a slow or unreachable cluster does not delay the others.
+	 * Clusters are named after the host of their first node.
+	 * @param clients elasticsearch client of each cluster
+	 * @param root dir within the classpath
+	 * @param options provisioning options, used for all the clusters
+	 * @return the provisioning result and timing of each cluster. Check {@link MultiClusterResult#isSuccessful()}:
+	 * a cluster which failed does not make this method throw.
+	 * @throws Exception when the resources can not be read
+	 * @since 7.6
+	 */
+	public static MultiClusterResult start(Collection<RestClient> clients, String root, ProvisioningOptions options) throws Exception {
+		Map<String, RestClient> clusters = new LinkedHashMap<>();
+		for (RestClient client : clients) {
+			String name = client.getNodes().isEmpty() ? "cluster" : client.getNodes().get(0).getHost().toHostString();
+			String unique = name;
+			for (int i = 2; clusters.containsKey(unique); i++) {
+				unique = name + "#" + i;
+			}
+			clusters.put(unique, client);
+		}
+		return start(clusters, root, options);
+	}
+
+	/**
+	 * Provision the same resources on many clusters at the same time.
+	 * @param clusters elasticsearch client of each cluster, by cluster name
+	 * @param root dir within the classpath
+	 * @param options provisioning options, used for all the clusters
+	 * @return the provisioning result and timing of each cluster. Check {@link MultiClusterResult#isSuccessful()}:
+	 * a cluster which failed does not make this method throw.
+	 * @throws Exception when the resources can not be read
+	 * @see #start(Collection, String, ProvisioningOptions)
+	 * @since 7.6
+	 */
+	public static MultiClusterResult start(Map<String, RestClient> clusters, String root, ProvisioningOptions options) throws Exception {
+		try {
+			return startAsync(clusters, root, options).get();
+		} catch (ExecutionException e) {
+			Throwable cause = Futures.unwrap(e);
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Provision the same resources on many clusters at the same time without blocking.
+	 * @param clusters elasticsearch client of each cluster, by cluster name
+	 * @param root dir within the classpath
+	 * @param options provisioning options, used for all the clusters
+	 * @return a future which completes with the result of each cluster once they are all done,
+	 * or exceptionally if the resources can not be read
+	 * @since 7.6
+	 */
+	public static CompletableFuture<MultiClusterResult> startAsync(Map<String, RestClient> clusters, String root,
+																   ProvisioningOptions options) {
+		logger.info("starting automatic settings/mappings discovery for [{}] clusters", clusters.size());
+
+		ResourceSet resources;
+		try {
+			resources = ResourceSet.load(root, options.getListener(), options.getVariableSource());
+		} catch (Exception e) {
+			return Futures.failedFuture(e);
+		}
+
+		Map<String, RequestExecutor> executors = new LinkedHashMap<>();
+		clusters.forEach((name, client) -> executors.put(name, RequestExecutor.of(client)));
+		return new MultiClusterProvisioner(executors, options).provisionAsync(resources).whenComplete((result, e) -> {
+			if (result != null) {
+				logger.info("start done on [{}] clusters with [{}] failures.", result.getResults().size(),
+						result.getFailures().size());
+			}
+		});
+	}
+
+	/**
+	 * Create a copy of the indices found in the classpath for each tenant, like tenant42-orders.
+	 * @param client elasticsearch client
+	 * @param root dir within the classpath
+	 * @param tenants tenant ids
+	 * @param progress where to record the tenants done. Tenants already recorded are skipped.
+	 * @param options provisioning options. See {@link ProvisioningOptions#setTenantIndexName(String)}
+	 *                and {@link ProvisioningOptions#setPipelineDepth(int)}.
+	 * @return the number of tenants provisioned and the failures. Check {@link TenantProvisioningResult#isSuccessful()}:
+	 * a tenant which failed does not make this method throw.
+	 * @throws Exception when the resources or the tenants can not be read
+	 * @see TenantProvisioner
+	 * @since 7.6
+	 */
+	public static TenantProvisioningResult startTenants(RestClient client, String root, Stream<String> tenants,
+														ProgressStore progress, ProvisioningOptions options) throws Exception {
+		logger.info("starting provisioning of tenants under [{}]", root);
+		try {
+			TenantProvisioningResult result = new TenantProvisioner(RequestExecutor.of(client), root, options, progress)
+					.provisionAsync(tenants).get();
+			logger.info("tenants done: {}", result);
+			return result;
+		} catch (ExecutionException e) {
+			Throwable cause = Futures.unwrap(e);
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw e;
+		}
 	}
 
 	/**
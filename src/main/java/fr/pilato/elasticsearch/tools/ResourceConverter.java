@@ -0,0 +1,108 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package fr.pilato.elasticsearch.tools;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Converts json resources to another {@link ResourceFormat} at build time. Files are converted in place:
+ * the json file is replaced by the converted one. Files with ${VARIABLE} placeholders are left as json,
+ * as only json files are resolved.
+ * @since 7.6
+ */
+public class ResourceConverter {
+	private static final Logger logger = LoggerFactory.getLogger(ResourceConverter.class);
+
+	/**
+	 * Convert all the json files of a directory
+	 * @param dir directory holding the templates and index folders
+	 * @param format target format
+	 * @param minSize size from which files are converted, in bytes
+	 * @return the converted files
+	 * @throws IOException if a file can not be read, converted or written
+	 */
+	public static List<Path> convert(Path dir, ResourceFormat format, long minSize) throws IOException {
+		List<Path> converted = new ArrayList<>();
+		if (format == ResourceFormat.JSON) {
+			return converted;
+		}
+		List<Path> files;
+		try (Stream<Path> paths = Files.walk(dir)) {
+			files = paths.filter(Files::isRegularFile)
+					.filter(file -> ResourceFormat.of(file.getFileName().toString()) == ResourceFormat.JSON)
+					.collect(Collectors.toList());
+		}
+		for (Path file : files) {
+			byte[] content = Files.readAllBytes(file);
+			if (content.length < minSize) {
+				continue;
+			}
+			if (SettingsReader.hasPlaceholder(content)) {
+				logger.warn("[{}] has placeholders. Keeping it as json.", file);
+				continue;
+			}
+			Path target = file.resolveSibling(format.rename(file.getFileName().toString()));
+			byte[] bytes;
+			try {
+				bytes = format.fromJson(new String(content, StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				throw new IOException("Could not convert [" + file + "] to " + format, e);
+			}
+			Files.write(target, bytes);
+			Files.delete(file);
+			logger.debug("Converted [{}] from [{}] to [{}] bytes.", target, content.length, bytes.length);
+			converted.add(target);
+		}
+		return converted;
+	}
+
+	/**
+	 * Convert the resources.
+	 * Usage: {@code ResourceConverter <json_gz|smile|cbor> <min size in bytes> <dir> [<dir>...]}
+	 * @param args target format, minimum size and the directories to convert
+	 * @throws IOException if a directory does not exist or a file can not be converted
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			throw new IllegalArgumentException("Usage: ResourceConverter <json_gz|smile|cbor> <min size in bytes> <dir> [<dir>...]");
+		}
+		ResourceFormat format = ResourceFormat.valueOf(args[0].toUpperCase(Locale.ROOT));
+		long minSize = Long.parseLong(args[1]);
+		for (int i = 2; i < args.length; i++) {
+			Path dir = Paths.get(args[i]);
+			if (!Files.isDirectory(dir)) {
+				throw new IOException("Could not find resources dir [" + dir + "]");
+			}
+			List<Path> converted = convert(dir, format, minSize);
+			logger.info("Converted [{}] files to {} in [{}].", converted.size(), format, dir);
+		}
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package fr.pilato.elasticsearch.tools;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import fr.pilato.elasticsearch.tools.SettingsFinder.Defaults;
+import fr.pilato.elasticsearch.tools.rest.JsonEntities;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Formats of the resource files beyonder can read. Only {@link #JSON} files can hold ${VARIABLE} placeholders:
+ * the other formats are sent as they are, with their own content type.
+ * @since 7.6
+ */
+public enum ResourceFormat {
+	JSON(Defaults.JsonFileExtension, null),
+	/**
+	 * Gzip compressed json, sent with a {@code Content-Encoding: gzip} header
+	 */
+	JSON_GZ(Defaults.JsonFileExtension + ".gz", null),
+	SMILE(".smile", new SmileFactory()),
+	CBOR(".cbor", new CBORFactory());
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	private final String extension;
+	private final JsonFactory factory;
+	private final ContentType contentType;
+
+	ResourceFormat(String extension, JsonFactory factory) {
+		this.extension = extension;
+		this.factory = factory;
+		this.contentType = factory == null ? ContentType.APPLICATION_JSON :
+				ContentType.create("application/" + factory.getFormatName().toLowerCase());
+	}
+
+	public String getExtension() {
+		return extension;
+	}
+
+	public ContentType getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * @param name file name or path
+	 * @return the format of the file, null if beyonder can not read it
+	 */
+	public static ResourceFormat of(String name) {
+		for (ResourceFormat format : values()) {
+			if (name.endsWith(format.extension)) {
+				return format;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param name file name or path
+	 * @return the name without its format extension
+	 */
+	public static String strip(String name) {
+		ResourceFormat format = of(name);
+		return format == null ? name : name.substring(0, name.length() - format.extension.length());
+	}
+
+	/**
+	 * @param file path of a json file
+	 * @return the path of the same file in this format
+	 */
+	public String rename(String file) {
+		return strip(file) + extension;
+	}
+
+	/**
+	 * @param content file content in this format
+	 * @return a request body sending the content as is
+	 */
+	public HttpEntity entity(byte[] content) {
+		if (this == JSON) {
+			return JsonEntities.of(content);
+		}
+		NByteArrayEntity entity = new NByteArrayEntity(content, contentType);
+		if (this == JSON_GZ) {
+			entity.setContentEncoding("gzip");
+		}
+		return entity;
+	}
+
+	/**
+	 * @param content file content in this format
+	 * @return the content as json text
+	 * @throws IOException if the content is not valid
+	 */
+	public String toJson(byte[] content) throws IOException {
+		switch (this) {
+			case JSON:
+				return new String(content, StandardCharsets.UTF_8);
+			case JSON_GZ:
+				try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(content))) {
+					return IOUtils.toString(in, StandardCharsets.UTF_8);
+				}
+			default:
+				StringWriter writer = new StringWriter(content.length * 2);
+				try (JsonParser parser = factory.createParser(content);
+					 JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+					while (parser.nextToken() != null) {
+						generator.copyCurrentStructure(parser);
+					}
+				}
+				return writer.toString();
+		}
+	}
+
+	/**
+	 * @param json json text
+	 * @return the content in this format
+	 * @throws IOException if the json is not valid
+	 */
+	public byte[] fromJson(String json) throws IOException {
+		byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+		switch (this) {
+			case JSON:
+				return bytes;
+			case JSON_GZ:
+				ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+				try (OutputStream out = new GZIPOutputStream(compressed)) {
+					out.write(bytes);
+				}
+				return compressed.toByteArray();
+			default:
+				ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+				try (JsonParser parser = JSON_FACTORY.createParser(bytes);
+					 JsonGenerator generator = factory.createGenerator(out)) {
+					while (parser.nextToken() != null) {
+						generator.copyCurrentStructure(parser);
+					}
+				}
+				return out.toByteArray();
+		}
+	}
+}
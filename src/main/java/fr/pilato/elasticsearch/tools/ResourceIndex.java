@@ -0,0 +1,618 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools;
+
+import fr.pilato.elasticsearch.tools.SettingsFinder.Defaults;
+import fr.pilato.elasticsearch.tools.rest.JsonEntities;
+import fr.pilato.elasticsearch.tools.source.ResourceSource;
+import fr.pilato.elasticsearch.tools.util.LruCache;
+import fr.pilato.elasticsearch.tools.variable.PlaceholderTemplate;
+import fr.pilato.elasticsearch.tools.variable.VariableSource;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NFileEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * In memory index of the resources beyonder can read from a class loader.
+ * <p>
+ * Unlike {@link ResourceList}, each jar is scanned only once and each directory subtree is walked only once.
+ * Listing files is delegated to the first {@link ResourceSource} supporting the URL of the directory.
+ * Only the paths of the directories and of the files beyonder can read are kept, in a prefix tree, and all the later
+ * lookups are answered from memory until {@link #invalidate()} is called. When a {@link ResourceManifest} was generated
+ * at build time, the finders use it and nothing is scanned.
+ * @since 7.6
+ */
+public class ResourceIndex {
+	private static final Logger logger = LoggerFactory.getLogger(ResourceIndex.class);
+	private static final String[] NO_RESOURCE = {};
+	private static final String JAR_SEPARATOR = "!/";
+	private static final Map<ClassLoader, ResourceIndex> instances = new WeakHashMap<>();
+
+	private final WeakReference<ClassLoader> classLoader;
+	private final List<ResourceSource> sources;
+	/**
+	 * One prefix tree per scanned archive or directory URL
+	 */
+	private final Map<String, Node> locations = new HashMap<>();
+	/**
+	 * Manifest of each root, empty if none was generated
+	 */
+	private final Map<String, Optional<ResourceManifest>> manifests = new HashMap<>();
+	/**
+	 * Parsed content of the files read the most recently, empty if the file does not exist
+	 */
+	private final LruCache<String, Optional<PlaceholderTemplate>> templates = new LruCache<>(Defaults.TemplateCacheSize);
+	/**
+	 * Path of the file found for each json file asked, in whatever format it exists. Empty if none.
+	 */
+	private final Map<String, Optional<String>> located = new ConcurrentHashMap<>();
+	/**
+	 * Whether the content of each located file depends on the variable values
+	 */
+	private final Map<String, Boolean> dynamic = new ConcurrentHashMap<>();
+	/**
+	 * Body of the files read the most recently. Files with placeholders are kept per variable source version,
+	 * the other ones once whatever the source.
+	 */
+	private final LruCache<ResolvedKey, Body> resolved = new LruCache<>(Defaults.ResolvedCacheSize);
+
+	/**
+	 * @param classLoader class loader to read resources from
+	 */
+	public ResourceIndex(ClassLoader classLoader) {
+		this(classLoader, ResourceSource.defaults());
+	}
+
+	/**
+	 * @param classLoader class loader to read resources from
+	 * @param sources sources used to list the resources, the first one supporting a URL is used
+	 */
+	public ResourceIndex(ClassLoader classLoader, List<ResourceSource> sources) {
+		this.classLoader = new WeakReference<>(classLoader);
+		this.sources = sources;
+	}
+
+	/**
+	 * @param classLoader class loader to read resources from
+	 * @return the index shared by all the callers using this class loader
+	 */
+	public static ResourceIndex getInstance(ClassLoader classLoader) {
+		synchronized (instances) {
+			return instances.computeIfAbsent(classLoader, ResourceIndex::new);
+		}
+	}
+
+	/**
+	 * Forget what was scanned in all the shared indices
+	 */
+	public static void invalidateAll() {
+		synchronized (instances) {
+			instances.values().forEach(ResourceIndex::invalidate);
+		}
+	}
+
+	/**
+	 * Forget what was scanned. Next lookups scan the classpath again.
+	 */
+	public synchronized void invalidate() {
+		logger.trace("invalidate()");
+		locations.clear();
+		manifests.clear();
+		templates.clear();
+		located.clear();
+		dynamic.clear();
+		resolved.clear();
+	}
+
+	/**
+	 * @param root dir within the classpath
+	 * @return the manifest generated at build time for this root, null if none
+	 * @throws IOException if the manifest can not be read
+	 * @see ResourceManifest
+	 */
+	public synchronized ResourceManifest getManifest(String root) throws IOException {
+		Optional<ResourceManifest> manifest = manifests.get(root);
+		if (manifest == null) {
+			ClassLoader loader = classLoader.get();
+			if (loader == null) {
+				throw new IllegalStateException("class loader has been garbage collected");
+			}
+			manifest = Optional.ofNullable(ResourceManifest.read(loader, root));
+			manifests.put(root, manifest);
+		}
+		return manifest.orElse(null);
+	}
+
+	/**
+	 * @param file file within the classpath
+	 * @return the file content parsed once while it stays in the cache, null if the file does not exist
+	 * @see SettingsReader#readFileFromClasspath(ClassLoader, String, VariableSource)
+	 * @since 7.6
+	 */
+	public PlaceholderTemplate getPlaceholderTemplate(String file) {
+		return templates.get(file, f -> {
+			String path = locate(f);
+			if (path == null) {
+				return Optional.empty();
+			}
+			ResourceFormat format = ResourceFormat.of(path);
+			if (format == null || format == ResourceFormat.JSON) {
+				return Optional.ofNullable(PlaceholderTemplate.compile(SettingsReader.readRawFileFromClasspath(loader(), path)));
+			}
+			byte[] content = SettingsReader.readRawBytesFromClasspath(loader(), path);
+			try {
+				return Optional.ofNullable(content == null ? null : PlaceholderTemplate.literal(format.toJson(content)));
+			} catch (IOException e) {
+				logger.warn("Can not read [{}] as {}.", path, format);
+				return Optional.empty();
+			}
+		}).orElse(null);
+	}
+
+	/**
+	 * Find a file in any of the {@link ResourceFormat}s. When it exists in more than one format,
+	 * json comes first, then compressed json, smile and cbor.
+	 * @param file path of a json file within the classpath
+	 * @return the path of the file found, null if it does not exist in any format
+	 * @since 7.6
+	 */
+	public String locate(String file) {
+		return located.computeIfAbsent(file, f -> {
+			ClassLoader loader = loader();
+			if (ResourceFormat.of(f) != ResourceFormat.JSON) {
+				return Optional.ofNullable(loader.getResource(f) == null ? null : f);
+			}
+			for (ResourceFormat format : ResourceFormat.values()) {
+				String path = format.rename(f);
+				if (loader.getResource(path) != null) {
+					return Optional.of(path);
+				}
+			}
+			return Optional.empty();
+		}).orElse(null);
+	}
+
+	private ClassLoader loader() {
+		ClassLoader loader = classLoader.get();
+		if (loader == null) {
+			throw new IllegalStateException("class loader has been garbage collected");
+		}
+		return loader;
+	}
+
+	/**
+	 * @param file file within the classpath
+	 * @param variables where to read the variable values from
+	 * @return the file content with variables replaced, null if the file does not exist. Contents are cached
+	 * unless the file has placeholders and the version of the source is {@link VariableSource#UNVERSIONED}.
+	 * @since 7.6
+	 */
+	public String getResolved(String file, VariableSource variables) {
+		Body body = getBody(file, variables);
+		if (body == null) {
+			return null;
+		}
+		try {
+			return body.json();
+		} catch (IOException e) {
+			logger.warn("Can not read [{}].", file);
+			return null;
+		}
+	}
+
+	/**
+	 * Read a file as a request body, from the same cache as {@link #getResolved(String, VariableSource)}.
+	 * Files in other {@link ResourceFormat}s are sent as they are, and files from a directory bigger than
+	 * {@link Defaults#MappedFileThreshold} without placeholders are sent from disk.
+	 * @param file file within the classpath
+	 * @param variables where to read the variable values from
+	 * @return the body, null if the file does not exist
+	 * @since 7.6
+	 */
+	public HttpEntity getEntity(String file, VariableSource variables) {
+		Body body = getBody(file, variables);
+		return body == null ? null : body.entity();
+	}
+
+	private Body getBody(String file, VariableSource variables) {
+		String path = locate(file);
+		if (path == null) {
+			return null;
+		}
+		if (!isDynamic(path)) {
+			return resolved.get(new ResolvedKey(path, null), key -> load(path, variables));
+		}
+		if (variables.getVersion() == VariableSource.UNVERSIONED) {
+			return load(path, variables);
+		}
+		return resolved.get(new ResolvedKey(path, variables), key -> load(path, variables));
+	}
+
+	private boolean isDynamic(String path) {
+		return dynamic.computeIfAbsent(path, p -> {
+			ResourceFormat format = ResourceFormat.of(p);
+			if (format != null && format != ResourceFormat.JSON) {
+				return false;
+			}
+			Path large = largeFile(p);
+			if (large != null) {
+				try {
+					return SettingsReader.hasPlaceholder(large);
+				} catch (IOException e) {
+					logger.debug("Can not read [{}] from disk: {}", p, e.getMessage());
+				}
+			}
+			PlaceholderTemplate template = getPlaceholderTemplate(p);
+			return template != null && template.hasVariables();
+		});
+	}
+
+	private Body load(String path, VariableSource variables) {
+		ResourceFormat format = ResourceFormat.of(path);
+		if (format != null && format != ResourceFormat.JSON) {
+			byte[] content = SettingsReader.readRawBytesFromClasspath(loader(), path);
+			return content == null ? null : new Body(format, content, null);
+		}
+		if (!isDynamic(path)) {
+			Path large = largeFile(path);
+			if (large != null) {
+				logger.trace("Sending [{}] from disk.", path);
+				return new Body(ResourceFormat.JSON, null, large);
+			}
+		}
+		PlaceholderTemplate template = getPlaceholderTemplate(path);
+		return template == null ? null :
+				new Body(ResourceFormat.JSON, template.render(variables).getBytes(StandardCharsets.UTF_8), null);
+	}
+
+	/**
+	 * @param path file within the classpath
+	 * @return the file if it is in a directory and bigger than {@link Defaults#MappedFileThreshold}, null otherwise
+	 */
+	private Path largeFile(String path) {
+		URL url = loader().getResource(path);
+		if (url == null || !url.getProtocol().equals("file")) {
+			return null;
+		}
+		try {
+			Path file = Paths.get(url.toURI());
+			return Files.size(file) >= Defaults.MappedFileThreshold ? file : null;
+		} catch (IOException | URISyntaxException e) {
+			logger.debug("Can not read [{}] from disk: {}", path, e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @return the cache of resolved contents, with its hit, miss and eviction counters
+	 * @since 7.6
+	 */
+	public LruCache<?, ?> getResolvedCache() {
+		return resolved;
+	}
+
+	/**
+	 * @return the cache of parsed files, with its hit, miss and eviction counters
+	 * @since 7.6
+	 */
+	public LruCache<String, ?> getTemplateCache() {
+		return templates;
+	}
+
+	/**
+	 * List directory contents for a resource folder. Not recursive.
+	 * The contents of all the jars and directories of the classpath holding this folder are merged.
+	 * @param root Should end with "/", but not start with one.
+	 * @return Just the name of each member item, not the full paths, sorted.
+	 * @throws URISyntaxException When a file:// resource can not be converted to URL
+	 * @throws IOException When a jar or a directory can not be read
+	 * @see ResourceList#getResources(ClassLoader, String)
+	 */
+	public synchronized String[] list(final String root) throws URISyntaxException, IOException {
+		Set<String> children = new TreeSet<>();
+		for (Node node : nodes(root).values()) {
+			if (node.children != null) {
+				children.addAll(node.children.keySet());
+			}
+		}
+		return children.toArray(NO_RESOURCE);
+	}
+
+	/**
+	 * Find the files defined more than once under a resource folder, for example the same index in two jars.
+	 * Like for any classpath resource, the first location in the classpath order wins.
+	 * @param root Should end with "/", but not start with one.
+	 * @return the path of each file relative to the root and the locations defining it, in classpath order
+	 * @throws URISyntaxException When a file:// resource can not be converted to URL
+	 * @throws IOException When a jar or a directory can not be read
+	 */
+	public synchronized Map<String, List<String>> getConflicts(final String root) throws URISyntaxException, IOException {
+		Map<String, List<String>> locationsByFile = new TreeMap<>();
+		for (Map.Entry<String, Node> location : nodes(root).entrySet()) {
+			location.getValue().files("", file ->
+					locationsByFile.computeIfAbsent(file, k -> new ArrayList<>()).add(location.getKey()));
+		}
+		locationsByFile.values().removeIf(urls -> urls.size() < 2);
+		return locationsByFile;
+	}
+
+	/**
+	 * @param root resource folder
+	 * @return the node of this folder in each location holding it, by directory URL in classpath order
+	 */
+	private Map<String, Node> nodes(String root) throws URISyntaxException, IOException {
+		ClassLoader loader = classLoader.get();
+		if (loader == null) {
+			throw new IllegalStateException("class loader has been garbage collected");
+		}
+
+		List<URL> dirURLs = Collections.list(loader.getResources(root));
+		if (dirURLs.isEmpty()) {
+			// Jars without directory entries: assume the same jar as this class, like ResourceList does
+			URL me = loader.getResource(ResourceIndex.class.getName().replace(".", "/") + ".class");
+			if (me == null || !me.toExternalForm().contains(JAR_SEPARATOR)) {
+				logger.trace("did not find any resource for [{}]", root);
+				return Collections.emptyMap();
+			}
+			String jar = me.toExternalForm();
+			dirURLs.add(new URL(jar.substring(0, jar.lastIndexOf(JAR_SEPARATOR) + JAR_SEPARATOR.length()) + root));
+		}
+
+		// Scan the locations we don't know yet at the same time
+		List<URL> unknown = new ArrayList<>();
+		for (URL dirURL : dirURLs) {
+			if (covering(url(dirURL)) == null) {
+				unknown.add(dirURL);
+			}
+		}
+		try {
+			unknown.parallelStream().map(dirURL -> {
+				try {
+					return scan(dirURL);
+				} catch (IOException | URISyntaxException e) {
+					throw new CompletionException(e);
+				}
+			}).collect(Collectors.toList()).forEach(scan -> locations.putIfAbsent(scan.base, scan.tree));
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw (URISyntaxException) e.getCause();
+		}
+
+		Map<String, Node> nodes = new LinkedHashMap<>();
+		for (URL dirURL : dirURLs) {
+			String url = url(dirURL);
+			String base = covering(url);
+			String path = URLDecoder.decode(url.substring(base.length()).replace("+", "%2B"), "UTF-8");
+			Node node = locations.get(base).find(split(path));
+			if (node != null) {
+				nodes.putIfAbsent(url, node);
+			}
+		}
+		return nodes;
+	}
+
+	private static String url(URL dirURL) {
+		String url = dirURL.toExternalForm();
+		return url.endsWith("/") ? url : url + "/";
+	}
+
+	/**
+	 * @param url directory URL
+	 * @return the URL of an already scanned directory or archive holding this URL, null if none
+	 */
+	private String covering(String url) {
+		String covering = null;
+		for (String base : locations.keySet()) {
+			if (url.startsWith(base) && (covering == null || base.length() > covering.length())) {
+				covering = base;
+			}
+		}
+		return covering;
+	}
+
+	private Scan scan(URL dirURL) throws URISyntaxException, IOException {
+		String url = url(dirURL);
+		for (ResourceSource source : sources) {
+			if (source.supports(dirURL)) {
+				logger.trace("scanning [{}] with [{}]", url, source.getClass().getSimpleName());
+				Node tree = new Node();
+				String base = source.scan(dirURL, path -> {
+					String[] names = split(path);
+					boolean directory = path.endsWith("/");
+					boolean file = !directory && isRelevant(path);
+					// Other files are not kept, but the directories holding them are
+					int depth = file || directory ? names.length : names.length - 1;
+					Node current = tree;
+					for (int i = 0; i < depth; i++) {
+						current = current.child(names[i]);
+					}
+					if (file) {
+						current.file = true;
+					}
+				});
+				if (!base.endsWith("/")) {
+					base += "/";
+				}
+				if (!url.startsWith(base)) {
+					throw new IOException("Could not use [" + base + "] returned by [" + source.getClass().getName() +
+							"] as base of [" + url + "]");
+				}
+				return new Scan(base, tree);
+			}
+		}
+		throw new IOException("Could not find any resource source for [" + url + "]");
+	}
+
+	/**
+	 * Content of a file, ready to be sent
+	 */
+	private static final class Body {
+		private final ResourceFormat format;
+		private final byte[] content;
+		/**
+		 * File sent from disk, null if the content is in memory
+		 */
+		private final Path file;
+
+		private Body(ResourceFormat format, byte[] content, Path file) {
+			this.format = format;
+			this.content = content;
+			this.file = file;
+		}
+
+		private HttpEntity entity() {
+			if (file != null) {
+				return new NFileEntity(file.toFile(), ContentType.APPLICATION_JSON);
+			}
+			return format == ResourceFormat.JSON ? JsonEntities.of(content) : format.entity(content);
+		}
+
+		private String json() throws IOException {
+			if (file != null) {
+				return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+			}
+			return format == ResourceFormat.JSON ? new String(content, StandardCharsets.UTF_8) : format.toJson(content);
+		}
+	}
+
+	private static final class ResolvedKey {
+		private final String file;
+		/**
+		 * Id of the source, or the source itself when it has none
+		 */
+		private final Object source;
+		private final long version;
+
+		/**
+		 * @param file located file
+		 * @param variables source the content was resolved with, null if the file has no placeholder
+		 */
+		private ResolvedKey(String file, VariableSource variables) {
+			this.file = file;
+			this.source = variables == null || variables.getId() == null ? variables : variables.getId();
+			this.version = variables == null ? 0 : variables.getVersion();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof ResolvedKey)) {
+				return false;
+			}
+			ResolvedKey that = (ResolvedKey) o;
+			// Sources without id are compared by identity: two maps with the same version hold different values
+			return version == that.version && Objects.equals(source, that.source) && file.equals(that.file);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * file.hashCode() + Objects.hashCode(source)) + Long.hashCode(version);
+		}
+	}
+
+	private static class Scan {
+		private final String base;
+		private final Node tree;
+
+		private Scan(String base, Node tree) {
+			this.base = base;
+			this.tree = tree;
+		}
+	}
+
+	/**
+	 * @param name file name
+	 * @return true if beyonder can read this file
+	 */
+	public static boolean isRelevant(String name) {
+		return ResourceFormat.of(name) != null;
+	}
+
+	private static String[] split(String path) {
+		return Stream.of(path.split("/")).filter(name -> !name.isEmpty()).toArray(String[]::new);
+	}
+
+	private static class Node {
+		private Map<String, Node> children;
+		private boolean file;
+
+		private Node child(String name) {
+			if (children == null) {
+				children = new TreeMap<>();
+			}
+			return children.computeIfAbsent(name.intern(), k -> new Node());
+		}
+
+		private Node find(String[] path) {
+			Node current = this;
+			for (String name : path) {
+				if (current.children == null || (current = current.children.get(name)) == null) {
+					return null;
+				}
+			}
+			return current;
+		}
+
+		private void files(String path, Consumer<String> visitor) {
+			if (file) {
+				visitor.accept(path);
+			}
+			if (children == null) {
+				return;
+			}
+			for (Map.Entry<String, Node> child : children.entrySet()) {
+				child.getValue().files(path.isEmpty() ? child.getKey() : path + "/" + child.getKey(), visitor);
+			}
+		}
+	}
+}
@@ -55,8 +55,22 @@ public class ResourceList {
      * @throws IOException When a URL can not be decoded
      */
     public static String[] getResources(final String root) throws URISyntaxException, IOException {
+        return getResources(ResourceList.class.getClassLoader(), root);
+    }
+
+    /**
+     * List directory contents for a resource folder of a given class loader. Not recursive.
+     *
+     * @param classLoader class loader to read resources from
+     * @param root Should end with "/", but not start with one.
+     * @return Just the name of each member item, not the full paths.
+     * @throws URISyntaxException When a file:// resource can not be converted to URL
+     * @throws IOException When a URL can not be decoded
+     * @since 7.6
+     */
+    public static String[] getResources(final ClassLoader classLoader, final String root) throws URISyntaxException, IOException {
         logger.trace("Reading classpath resources from {}", root);
-        URL dirURL = ResourceList.class.getClassLoader().getResource(root);
+        URL dirURL = classLoader.getResource(root);
         if (dirURL != null && dirURL.getProtocol().equals("file")) {
             /* A file path: easy enough */
             logger.trace("found a file resource: {}", dirURL);
@@ -71,7 +85,7 @@ public class ResourceList {
              * Have to assume the same jar as clazz.
              */
             String me = ResourceList.class.getName().replace(".", "/")+".class";
-            dirURL = ResourceList.class.getClassLoader().getResource(me);
+            dirURL = classLoader.getResource(me);
         }
 
         if (dirURL == null) {
@@ -0,0 +1,265 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools;
+
+import fr.pilato.elasticsearch.tools.SettingsFinder.Defaults;
+import fr.pilato.elasticsearch.tools.util.Digests;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * List of the resources available under a classpath dir, generated when building the application.
+ * <p>
+ * When a manifest exists in {@code META-INF/beyonder/<root>.idx}, the finders read it instead of scanning
+ * the classpath. Each line holds the path of a file relative to the root and the SHA-256 of its content.
+ * Directories holding none of these files, like an index folder without settings, are listed with a trailing "/"
+ * and {@value #DIRECTORY} instead of a hash.
+ * <p>
+ * Generate it by running this class after the resources are copied, for example with the exec-maven-plugin:
+ * {@code java fr.pilato.elasticsearch.tools.ResourceManifest target/classes target/classes elasticsearch}
+ * @since 7.6
+ */
+public class ResourceManifest {
+	private static final Logger logger = LoggerFactory.getLogger(ResourceManifest.class);
+
+	public static final String DIR = "META-INF/beyonder/";
+	public static final String EXTENSION = ".idx";
+	private static final String HEADER = "# beyonder resource manifest v1";
+	private static final String DIRECTORY = "-";
+
+	/**
+	 * Path relative to the root and SHA-256 of each file, sorted by path
+	 */
+	private final Map<String, String> files;
+
+	private ResourceManifest(Map<String, String> files) {
+		this.files = Collections.unmodifiableMap(files);
+	}
+
+	/**
+	 * @param root dir within the classpath
+	 * @return where the manifest of this root is in the classpath
+	 */
+	public static String location(String root) {
+		return DIR + root + EXTENSION;
+	}
+
+	/**
+	 * Read the manifest of a root from a class loader. When the root is in several jars or directories,
+	 * their manifests are merged and the first one in the classpath order wins.
+	 * @param classLoader class loader to read the manifest from
+	 * @param root dir within the classpath
+	 * @return the manifest or null if none was generated or if some locations of the root have no manifest
+	 * @throws IOException if the manifest can not be read
+	 */
+	public static ResourceManifest read(ClassLoader classLoader, String root) throws IOException {
+		List<URL> urls = Collections.list(classLoader.getResources(location(root)));
+		if (urls.isEmpty()) {
+			logger.trace("no manifest found for [{}]", root);
+			return null;
+		}
+		int locations = Collections.list(classLoader.getResources(root + "/")).size();
+		if (urls.size() < locations) {
+			logger.debug("Found [{}] manifests for [{}] locations of [{}]. Ignoring them.", urls.size(), locations, root);
+			return null;
+		}
+
+		Map<String, String> files = new TreeMap<>();
+		for (URL url : urls) {
+			logger.debug("Reading manifest [{}].", url);
+			try (InputStream stream = url.openStream()) {
+				read(stream).files.forEach(files::putIfAbsent);
+			}
+		}
+		return new ResourceManifest(files);
+	}
+
+	/**
+	 * @param stream manifest content
+	 * @return the manifest
+	 * @throws IOException if the manifest can not be read or is not valid
+	 */
+	public static ResourceManifest read(InputStream stream) throws IOException {
+		Map<String, String> files = new TreeMap<>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			int separator = line.lastIndexOf(' ');
+			if (separator <= 0) {
+				throw new IOException("Could not read manifest line [" + line + "]");
+			}
+			files.put(line.substring(0, separator), line.substring(separator + 1));
+		}
+		return new ResourceManifest(files);
+	}
+
+	/**
+	 * Build the manifest of a directory
+	 * @param dir directory holding the templates and index folders
+	 * @return the manifest
+	 * @throws IOException if the directory can not be read
+	 */
+	public static ResourceManifest build(Path dir) throws IOException {
+		TreeMap<String, String> files = new TreeMap<>();
+		List<String> directories = new ArrayList<>();
+		try (Stream<Path> paths = Files.walk(dir)) {
+			for (Path file : paths.filter(path -> !path.equals(dir)).collect(Collectors.toList())) {
+				if (Files.isDirectory(file)) {
+					directories.add(join(dir.relativize(file)) + "/");
+				} else if (ResourceIndex.isRelevant(file.getFileName().toString())) {
+					String path = join(dir.relativize(file));
+					files.put(path, Digests.hex(Digests.sha256().digest(Files.readAllBytes(file))));
+				}
+			}
+		}
+		for (String directory : directories) {
+			String next = files.ceilingKey(directory);
+			if (next == null || !next.startsWith(directory)) {
+				files.put(directory, DIRECTORY);
+			}
+		}
+		return new ResourceManifest(files);
+	}
+
+	private static String join(Path path) {
+		List<String> names = new ArrayList<>();
+		path.forEach(name -> names.add(name.toString()));
+		return String.join("/", names);
+	}
+
+	/**
+	 * @param writer where to write the manifest
+	 * @throws IOException if the manifest can not be written
+	 */
+	public void write(Writer writer) throws IOException {
+		writer.write(HEADER);
+		writer.write('\n');
+		for (Map.Entry<String, String> file : files.entrySet()) {
+			writer.write(file.getKey());
+			writer.write(' ');
+			writer.write(file.getValue());
+			writer.write('\n');
+		}
+	}
+
+	/**
+	 * @return the template names
+	 */
+	public List<String> getTemplates() {
+		List<String> templates = new ArrayList<>();
+		String prefix = Defaults.TemplateDir + "/";
+		for (String file : files.keySet()) {
+			if (file.startsWith(prefix) && file.indexOf('/', prefix.length()) < 0 && ResourceFormat.of(file) != null) {
+				String template = ResourceFormat.strip(file.substring(prefix.length()));
+				if (!templates.contains(template)) {
+					templates.add(template);
+				}
+			}
+		}
+		return templates;
+	}
+
+	/**
+	 * @return the index names
+	 */
+	public List<String> getIndexNames() {
+		List<String> indices = new ArrayList<>();
+		for (String file : files.keySet()) {
+			int separator = file.indexOf('/');
+			if (separator > 0) {
+				String index = file.substring(0, separator);
+				if (!index.equals(Defaults.TemplateDir) && !indices.contains(index)) {
+					indices.add(index);
+				}
+			}
+		}
+		return indices;
+	}
+
+	/**
+	 * @param index index name
+	 * @return the files of this index, relative to the index folder
+	 */
+	public List<String> getFiles(String index) {
+		List<String> indexFiles = new ArrayList<>();
+		String prefix = index + "/";
+		for (String file : files.keySet()) {
+			if (file.startsWith(prefix) && !file.endsWith("/")) {
+				indexFiles.add(file.substring(prefix.length()));
+			}
+		}
+		return indexFiles;
+	}
+
+	/**
+	 * @param file path relative to the root
+	 * @return the SHA-256 of the file content or null if the file is not in the manifest. Directories have none.
+	 */
+	public String getHash(String file) {
+		return file.endsWith("/") ? null : files.get(file);
+	}
+
+	/**
+	 * Generate the manifests.
+	 * Usage: {@code ResourceManifest <resources dir> <output dir> <root> [<root>...]}
+	 * @param args resources dir, output dir and the roots to generate a manifest for
+	 * @throws IOException if a root does not exist or a manifest can not be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			throw new IllegalArgumentException("Usage: ResourceManifest <resources dir> <output dir> <root> [<root>...]");
+		}
+		Path resources = Paths.get(args[0]);
+		Path output = Paths.get(args[1]);
+		for (int i = 2; i < args.length; i++) {
+			Path dir = resources.resolve(args[i]);
+			if (!Files.isDirectory(dir)) {
+				throw new IOException("Could not find resources dir [" + dir + "]");
+			}
+			Path manifest = output.resolve(location(args[i]));
+			Files.createDirectories(manifest.getParent());
+			try (Writer writer = Files.newBufferedWriter(manifest, StandardCharsets.UTF_8)) {
+				build(dir).write(writer);
+			}
+			logger.info("Generated manifest [{}].", manifest);
+		}
+	}
+}
@@ -56,6 +56,112 @@ public class SettingsFinder {
 		 * Default setting of whether or not to force creation of indices and templates on start.
 		 */
 		public static boolean ForceCreation = false;
+
+		/**
+		 * Default number of resources which can be provisioned concurrently on start.
+		 */
+		public static int Parallelism = 4;
+
+		/**
+		 * Default index used by beyonder to coordinate instances and record its state. It does not start with a dot:
+		 * elasticsearch warns about, or rejects with strict settings, new dot-prefixed indices.
+		 */
+		public static String SystemIndex = "beyonder-system";
+
+		/**
+		 * Default time after which the provisioning lock is considered as abandoned if not renewed, in milliseconds.
+		 */
+		public static long LockTtlMillis = 30_000;
+
+		/**
+		 * Default maximum time to wait for another instance to finish provisioning, in milliseconds.
+		 */
+		public static long LockTimeoutMillis = 300_000;
+
+		/**
+		 * Size from which files without placeholders in a classpath directory are sent from disk instead of being read, in bytes.
+		 */
+		public static long MappedFileThreshold = 1024 * 1024;
+
+		/**
+		 * Default time without any change to wait for before applying the files changed in a watched directory, in milliseconds.
+		 */
+		public static long WatchDebounceMillis = 500;
+
+		/**
+		 * Maximum number of resolved file contents kept in memory for each class loader.
+		 */
+		public static int ResolvedCacheSize = 1024;
+
+		/**
+		 * Maximum number of parsed files kept in memory for each class loader.
+		 */
+		public static int TemplateCacheSize = 256;
+
+		/**
+		 * Size from which request bodies are gzip compressed when compression is enabled, in bytes.
+		 */
+		public static long CompressionThreshold = 64 * 1024;
+
+		/**
+		 * Maximum number of compressed request bodies kept in memory.
+		 */
+		public static int CompressedCacheSize = 64;
+
+		/**
+		 * Maximum number of tenant index creations sent at the same time.
+		 */
+		public static int PipelineDepth = 32;
+
+		/**
+		 * Name given to the indices created for each tenant. ${TENANT} is the tenant id and ${INDEX} the index dir name.
+		 */
+		public static String TenantIndexName = "${TENANT}-${INDEX}";
+
+		/**
+		 * Maximum number of requests sent at the same time when the concurrency is adaptive.
+		 */
+		public static int MaxConcurrency = 32;
+
+		/**
+		 * Number of master pending tasks from which the adaptive concurrency is reduced.
+		 */
+		public static int PendingTasksThreshold = 50;
+
+		/**
+		 * Minimum time between two reads of the master pending tasks, in milliseconds.
+		 */
+		public static long PendingTasksSampleMillis = 1000;
+
+		/**
+		 * Maximum number of times a request failing with a transient error is sent again.
+		 */
+		public static int MaxRetries = 5;
+
+		/**
+		 * Wait before the first retry of a request, in milliseconds. It doubles with each retry.
+		 */
+		public static long RetryInitialBackoffMillis = 100;
+
+		/**
+		 * Maximum wait between two retries of a request, in milliseconds.
+		 */
+		public static long RetryMaxBackoffMillis = 5_000;
+
+		/**
+		 * Time after which the requests of a resource are not retried anymore, in milliseconds.
+		 */
+		public static long RetryResourceTimeoutMillis = 60_000;
+
+		/**
+		 * Time after which the requests of a provisioning run are not retried anymore, in milliseconds.
+		 */
+		public static long RetryTimeoutMillis = 300_000;
+
+		/**
+		 * Maximum time elasticsearch waits for the cluster status before provisioning, in milliseconds.
+		 */
+		public static long HealthTimeoutMillis = 30_000;
 	}
 
 	/**
@@ -19,17 +19,26 @@
 
 package fr.pilato.elasticsearch.tools;
 
+import fr.pilato.elasticsearch.tools.SettingsFinder.Defaults;
+import fr.pilato.elasticsearch.tools.variable.PlaceholderTemplate;
+import fr.pilato.elasticsearch.tools.variable.VariableSource;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.text.StringSubstitutor;
+import org.apache.http.HttpEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 public class SettingsReader {
 
 	private static final Logger logger = LoggerFactory.getLogger(SettingsReader.class);
+	private static final int SCAN_BUFFER_SIZE = 64 * 1024;
 
 	/**
 	 * Read a file content from the classpath
@@ -37,10 +46,57 @@ public class SettingsReader {
 	 * @return The file content
 	 */
 	public static String readFileFromClasspath(String file) {
+		return readFileFromClasspath(SettingsReader.class.getClassLoader(), file);
+	}
+
+	/**
+	 * Read a file content from a class loader
+	 * @param classLoader class loader to read the file from
+	 * @param file filename
+	 * @return The file content
+	 * @since 7.6
+	 */
+	public static String readFileFromClasspath(ClassLoader classLoader, String file) {
+		return readFileFromClasspath(classLoader, file, VariableSource.environment());
+	}
+
+	/**
+	 * Read a file content from a class loader. The file is parsed once: next calls only render the
+	 * cached template with the current variable values. The rendered content is also kept in a bounded cache
+	 * while the version of the variable source does not change.
+	 * @param classLoader class loader to read the file from
+	 * @param file filename
+	 * @param variables where to read the variable values from
+	 * @return The file content or null if the file does not exist
+	 * @see ResourceIndex#getResolved(String, VariableSource)
+	 * @since 7.6
+	 */
+	public static String readFileFromClasspath(ClassLoader classLoader, String file, VariableSource variables) {
+		return ResourceIndex.getInstance(classLoader).getResolved(file, variables);
+	}
+
+	/**
+	 * Read a file content from the classpath without replacing variables
+	 * @param file filename
+	 * @return The file content or null if the file does not exist
+	 * @since 7.6
+	 */
+	public static String readRawFileFromClasspath(String file) {
+		return readRawFileFromClasspath(SettingsReader.class.getClassLoader(), file);
+	}
+
+	/**
+	 * Read a file content from a class loader without replacing variables
+	 * @param classLoader class loader to read the file from
+	 * @param file filename
+	 * @return The file content or null if the file does not exist
+	 * @since 7.6
+	 */
+	public static String readRawFileFromClasspath(ClassLoader classLoader, String file) {
 		logger.trace("Reading file [{}]...", file);
 		String content = null;
 
-		try (InputStream asStream = SettingsReader.class.getClassLoader().getResourceAsStream(file)) {
+		try (InputStream asStream = classLoader.getResourceAsStream(file)) {
 			if (asStream == null) {
 				logger.trace("Can not find [{}] in class loader.", file);
 				return null;
@@ -50,7 +106,144 @@ public class SettingsReader {
 			logger.warn("Can not read [{}].", file);
 		}
 
-		return StringSubstitutor.replace(content, System.getenv());
+		return content;
+	}
+
+	/**
+	 * Read a file content from a class loader without replacing variables and without decoding it
+	 * @param classLoader class loader to read the file from
+	 * @param file filename
+	 * @return The file content or null if the file does not exist
+	 * @since 7.6
+	 */
+	public static byte[] readRawBytesFromClasspath(ClassLoader classLoader, String file) {
+		logger.trace("Reading file [{}]...", file);
+		try (InputStream asStream = classLoader.getResourceAsStream(file)) {
+			if (asStream == null) {
+				logger.trace("Can not find [{}] in class loader.", file);
+				return null;
+			}
+			return IOUtils.toByteArray(asStream);
+		} catch (IOException e) {
+			logger.warn("Can not read [{}].", file);
+			return null;
+		}
+	}
+
+	/**
+	 * Read a file from the classpath as a request body
+	 * @param file filename
+	 * @return The body or null if the file does not exist
+	 * @since 7.6
+	 */
+	public static HttpEntity readEntityFromClasspath(String file) {
+		return readEntityFromClasspath(SettingsReader.class.getClassLoader(), file);
+	}
+
+	/**
+	 * Read a file from a class loader as a request body, without decoding it. Variables are replaced only if the
+	 * file has placeholders. Files from a directory bigger than {@link Defaults#MappedFileThreshold} without
+	 * placeholders are not read at all: they are sent from disk. If there is no json file but the same file exists
+	 * in another {@link ResourceFormat}, it is sent as is with the content type of its format. Bodies are cached
+	 * by the {@link ResourceIndex} of the class loader.
+	 * @param classLoader class loader to read the file from
+	 * @param file filename
+	 * @return The body or null if the file does not exist
+	 * @since 7.6
+	 */
+	public static HttpEntity readEntityFromClasspath(ClassLoader classLoader, String file) {
+		HttpEntity entity = ResourceIndex.getInstance(classLoader).getEntity(file, VariableSource.environment());
+		if (entity == null) {
+			logger.trace("Can not find [{}] in class loader.", file);
+		}
+		return entity;
+	}
+
+	/**
+	 * Replace ${VARIABLE} placeholders with environment variables
+	 * @param content UTF-8 file content. Can be null.
+	 * @return The same content if it has no placeholder, or the content with variables replaced
+	 * @since 7.6
+	 */
+	public static byte[] substitute(byte[] content) {
+		return substitute(content, VariableSource.environment());
+	}
+
+	/**
+	 * Replace ${VARIABLE} placeholders
+	 * @param content UTF-8 file content. Can be null.
+	 * @param variables where to read the variable values from
+	 * @return The same content if it has no placeholder, or the content with variables replaced
+	 * @since 7.6
+	 */
+	public static byte[] substitute(byte[] content, VariableSource variables) {
+		if (content == null || !hasPlaceholder(content)) {
+			return content;
+		}
+		return substitute(new String(content, StandardCharsets.UTF_8), variables).getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param content UTF-8 file content
+	 * @return true if the content has at least one ${ sequence
+	 * @since 7.6
+	 */
+	public static boolean hasPlaceholder(byte[] content) {
+		for (int i = 0; i < content.length - 1; i++) {
+			if (content[i] == '$' && content[i + 1] == '{') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Look for placeholders in a file read by chunks, so the file is not copied on the heap. The result is cached
+	 * per file by {@link ResourceIndex}.
+	 * @param file file to read
+	 * @return true if the file has at least one ${ sequence
+	 * @throws IOException if the file can not be read
+	 */
+	static boolean hasPlaceholder(Path file) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(SCAN_BUFFER_SIZE);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			byte previous = 0;
+			while (channel.read(buffer) >= 0) {
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					byte current = buffer.get();
+					if (previous == '$' && current == '{') {
+						return true;
+					}
+					previous = current;
+				}
+				buffer.clear();
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Replace ${VARIABLE} placeholders with environment variables
+	 * @param content file content. Can be null.
+	 * @return The content with variables replaced
+	 * @since 7.6
+	 */
+	public static String substitute(String content) {
+		return substitute(content, VariableSource.environment());
+	}
+
+	/**
+	 * Replace ${VARIABLE} placeholders
+	 * @param content file content. Can be null.
+	 * @param variables where to read the variable values from
+	 * @return The content with variables replaced
+	 * @see PlaceholderTemplate
+	 * @since 7.6
+	 */
+	public static String substitute(String content, VariableSource variables) {
+		PlaceholderTemplate template = PlaceholderTemplate.compile(content);
+		return template == null ? null : template.render(variables);
 	}
 
 }
@@ -19,6 +19,8 @@
 
 package fr.pilato.elasticsearch.tools.alias;
 
+import fr.pilato.elasticsearch.tools.rest.RequestExecutor;
+import fr.pilato.elasticsearch.tools.util.Futures;
 import org.elasticsearch.action.support.master.AcknowledgedResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.Request;
@@ -27,6 +29,8 @@ import org.elasticsearch.client.RestClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CompletableFuture;
+
 public class AliasElasticsearchUpdater {
 
     private static final Logger logger = LoggerFactory.getLogger(AliasElasticsearchUpdater.class);
@@ -54,15 +58,24 @@ public class AliasElasticsearchUpdater {
      * @throws Exception When alias can not be set
      */
     public static void createAlias(RestClient client, String alias, String index) throws Exception {
+        createAlias(RequestExecutor.of(client), alias, index);
+    }
+
+    /**
+     * Create an alias if needed
+     * @param client Request executor to use
+     * @param alias Alias name
+     * @param index Index name
+     * @throws Exception When alias can not be set
+     */
+    public static void createAlias(RequestExecutor client, String alias, String index) throws Exception {
         logger.trace("createAlias({},{})", alias, index);
 
         assert client != null;
         assert alias != null;
         assert index != null;
 
-        Request request = new Request("POST", "/_aliases/");
-        request.setJsonEntity("{\"actions\":[{\"add\":{\"index\":\"" + index +"\",\"alias\":\"" + alias +"\"}}]}");
-        Response response = client.performRequest(request);
+        Response response = client.performRequest(createAliasRequest(alias, index));
 
         if (response.getStatusLine().getStatusCode() != 200) {
             logger.warn("Could not create alias [{}] on index [{}]", alias, index);
@@ -70,4 +83,40 @@ public class AliasElasticsearchUpdater {
         }
         logger.trace("/createAlias({},{})", alias, index);
     }
+
+    /**
+     * Create an alias without blocking
+     * @param client Client to use
+     * @param alias Alias name
+     * @param index Index name
+     * @return a future which completes when the alias has been set
+     */
+    public static CompletableFuture<Void> createAliasAsync(RestClient client, String alias, String index) {
+        return createAliasAsync(RequestExecutor.of(client), alias, index);
+    }
+
+    /**
+     * Create an alias without blocking
+     * @param client Request executor to use
+     * @param alias Alias name
+     * @param index Index name
+     * @return a future which completes when the alias has been set
+     */
+    public static CompletableFuture<Void> createAliasAsync(RequestExecutor client, String alias, String index) {
+        logger.trace("createAliasAsync({},{})", alias, index);
+        return client.performRequestAsync(createAliasRequest(alias, index)).thenCompose(response -> {
+            if (response.getStatusLine().getStatusCode() != 200) {
+                logger.warn("Could not create alias [{}] on index [{}]", alias, index);
+                return Futures.failedFuture(new Exception("Could not create alias ["+alias+"] on index ["+index+"]."));
+            }
+            logger.trace("/createAliasAsync({},{})", alias, index);
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    private static Request createAliasRequest(String alias, String index) {
+        Request request = new Request("POST", "/_aliases/");
+        request.setJsonEntity("{\"actions\":[{\"add\":{\"index\":\"" + index +"\",\"alias\":\"" + alias +"\"}}]}");
+        return request;
+    }
 }
@@ -0,0 +1,208 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.cluster;
+
+import fr.pilato.elasticsearch.tools.rest.RequestExecutor;
+import fr.pilato.elasticsearch.tools.rest.ResponseErrors;
+import fr.pilato.elasticsearch.tools.util.Futures;
+import fr.pilato.elasticsearch.tools.util.JsonUtil;
+import org.apache.http.client.config.RequestConfig;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClientBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Health of the cluster, read with {@code GET _cluster/health?wait_for_status}: elasticsearch answers as soon as
+ * the cluster reaches the expected status, or once the timeout is reached. Nothing is polled by the client.
+ * @since 7.6
+ */
+public class ClusterHealth {
+
+	private static final Logger logger = LoggerFactory.getLogger(ClusterHealth.class);
+
+	static final String ENDPOINT = "/_cluster/health";
+	private static final List<String> STATUSES = Arrays.asList("red", "yellow", "green");
+	// Time given to elasticsearch to answer once its own timeout is reached
+	private static final int SOCKET_TIMEOUT_MARGIN_MILLIS = 10_000;
+
+	private final String status;
+	private final boolean timedOut;
+	private final int numberOfNodes;
+	private final int activeShards;
+	private final int initializingShards;
+	private final int unassignedShards;
+
+	ClusterHealth(String status, boolean timedOut, int numberOfNodes, int activeShards, int initializingShards,
+				  int unassignedShards) {
+		this.status = status;
+		this.timedOut = timedOut;
+		this.numberOfNodes = numberOfNodes;
+		this.activeShards = activeShards;
+		this.initializingShards = initializingShards;
+		this.unassignedShards = unassignedShards;
+	}
+
+	/**
+	 * Wait for the cluster to reach a status
+	 * @param client Elasticsearch request executor
+	 * @param status green, yellow or red
+	 * @param timeoutMillis maximum time elasticsearch waits for the status
+	 * @return the health of the cluster once it reached the status
+	 * @throws IOException if the status was not reached in time, with the current health as the reason,
+	 * or if the elasticsearch API call is failing
+	 */
+	public static ClusterHealth waitFor(RequestExecutor client, String status, long timeoutMillis) throws IOException {
+		logger.info("Waiting up to [{}ms] for the cluster to be [{}].", timeoutMillis, status);
+		Response response;
+		try {
+			response = client.performRequest(request(status, timeoutMillis));
+		} catch (ResponseException e) {
+			if (e.getResponse().getStatusLine().getStatusCode() != 408) {
+				throw e;
+			}
+			response = e.getResponse();
+		}
+		return check(parse(response), status, timeoutMillis);
+	}
+
+	/**
+	 * Wait for the cluster to reach a status without blocking
+	 * @param client Elasticsearch request executor
+	 * @param status green, yellow or red
+	 * @param timeoutMillis maximum time elasticsearch waits for the status
+	 * @return a future which completes with the health of the cluster once it reached the status, or exceptionally
+	 * with an IOException giving the current health if the status was not reached in time
+	 */
+	public static CompletableFuture<ClusterHealth> waitForAsync(RequestExecutor client, String status, long timeoutMillis) {
+		logger.info("Waiting up to [{}ms] for the cluster to be [{}].", timeoutMillis, status);
+		Request request;
+		try {
+			request = request(status, timeoutMillis);
+		} catch (IllegalArgumentException e) {
+			return Futures.failedFuture(e);
+		}
+		return client.performRequestAsync(request).handle((response, e) -> {
+			if (e != null) {
+				if (ResponseErrors.status(e) != 408) {
+					return Futures.<ClusterHealth>failedFuture(Futures.unwrap(e));
+				}
+				response = ((ResponseException) Futures.unwrap(e)).getResponse();
+			}
+			try {
+				return CompletableFuture.completedFuture(check(parse(response), status, timeoutMillis));
+			} catch (IOException ioe) {
+				return Futures.<ClusterHealth>failedFuture(ioe);
+			}
+		}).thenCompose(f -> f);
+	}
+
+	private static Request request(String status, long timeoutMillis) {
+		if (!STATUSES.contains(status)) {
+			throw new IllegalArgumentException("status must be one of " + STATUSES + " but was [" + status + "]");
+		}
+		Request request = new Request("GET", ENDPOINT);
+		request.addParameter("wait_for_status", status);
+		request.addParameter("timeout", timeoutMillis + "ms");
+		if (timeoutMillis + SOCKET_TIMEOUT_MARGIN_MILLIS > RestClientBuilder.DEFAULT_SOCKET_TIMEOUT_MILLIS) {
+			// The client must wait longer than elasticsearch
+			request.setOptions(RequestOptions.DEFAULT.toBuilder().setRequestConfig(RequestConfig.custom()
+					.setConnectTimeout(RestClientBuilder.DEFAULT_CONNECT_TIMEOUT_MILLIS)
+					.setSocketTimeout((int) Math.min(Integer.MAX_VALUE, timeoutMillis + SOCKET_TIMEOUT_MARGIN_MILLIS))
+					.build()));
+		}
+		return request;
+	}
+
+	private static ClusterHealth parse(Response response) throws IOException {
+		if (response.getEntity() == null) {
+			throw new IOException("Could not read the cluster health: empty response");
+		}
+		try (InputStream content = response.getEntity().getContent()) {
+			return parse(JsonUtil.asMap(content));
+		}
+	}
+
+	static ClusterHealth parse(Map<String, Object> health) {
+		return new ClusterHealth(String.valueOf(health.get("status")), Boolean.TRUE.equals(health.get("timed_out")),
+				count(health, "number_of_nodes"), count(health, "active_shards"),
+				count(health, "initializing_shards"), count(health, "unassigned_shards"));
+	}
+
+	private static int count(Map<String, Object> health, String field) {
+		Object value = health.get(field);
+		return value instanceof Number ? ((Number) value).intValue() : -1;
+	}
+
+	private static ClusterHealth check(ClusterHealth health, String status, long timeoutMillis) throws IOException {
+		if (health.isTimedOut() || STATUSES.indexOf(health.getStatus()) < STATUSES.indexOf(status)) {
+			throw new IOException("Could not provision: the cluster did not reach [" + status + "] status within [" +
+					timeoutMillis + "ms]. " + health);
+		}
+		logger.info("Cluster is [{}].", health.getStatus());
+		return health;
+	}
+
+	/**
+	 * @return green, yellow or red
+	 */
+	public String getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return true if the expected status was not reached before the timeout
+	 */
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+
+	public int getNumberOfNodes() {
+		return numberOfNodes;
+	}
+
+	public int getActiveShards() {
+		return activeShards;
+	}
+
+	public int getInitializingShards() {
+		return initializingShards;
+	}
+
+	public int getUnassignedShards() {
+		return unassignedShards;
+	}
+
+	@Override
+	public String toString() {
+		return "Cluster is [" + status + "] with [" + numberOfNodes + "] nodes, [" + activeShards + "] active, [" +
+				initializingShards + "] initializing and [" + unassignedShards + "] unassigned shards.";
+	}
+}
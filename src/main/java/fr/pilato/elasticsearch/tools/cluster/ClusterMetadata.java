@@ -0,0 +1,164 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.cluster;
+
+import fr.pilato.elasticsearch.tools.rest.RequestExecutor;
+import fr.pilato.elasticsearch.tools.util.JsonUtil;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Snapshot of the index, alias and template names existing in the cluster, fetched with a single
+ * filtered cluster state request. It answers the existence checks in memory and is kept up to date
+ * with the changes made by Beyonder itself.
+ */
+public class ClusterMetadata {
+
+	private static final Logger logger = LoggerFactory.getLogger(ClusterMetadata.class);
+
+	static final String ENDPOINT = "/_cluster/state/metadata";
+	static final String FILTER_PATH = "metadata.indices.*.state,metadata.indices.*.aliases,metadata.templates.*.index_patterns";
+
+	private final Set<String> indices = ConcurrentHashMap.newKeySet();
+	private final Set<String> aliases = ConcurrentHashMap.newKeySet();
+	private final Set<String> templates = ConcurrentHashMap.newKeySet();
+
+	ClusterMetadata() {
+	}
+
+	/**
+	 * Read the metadata from the cluster
+	 * @param client Elasticsearch request executor
+	 * @return the metadata snapshot
+	 * @throws IOException if the elasticsearch API call is failing
+	 */
+	public static ClusterMetadata fetch(RequestExecutor client) throws IOException {
+		logger.trace("fetchClusterMetadata()");
+		Response response = client.performRequest(request());
+		try (InputStream content = response.getEntity().getContent()) {
+			return parse(JsonUtil.asMap(content));
+		}
+	}
+
+	/**
+	 * Read the metadata from the cluster without blocking
+	 * @param client Elasticsearch request executor
+	 * @return a future which completes with the metadata snapshot
+	 */
+	public static CompletableFuture<ClusterMetadata> fetchAsync(RequestExecutor client) {
+		logger.trace("fetchClusterMetadataAsync()");
+		return client.performRequestAsync(request()).thenApply(response -> {
+			try (InputStream content = response.getEntity().getContent()) {
+				return parse(JsonUtil.asMap(content));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	private static Request request() {
+		Request request = new Request("GET", ENDPOINT);
+		request.addParameter("filter_path", FILTER_PATH);
+		return request;
+	}
+
+	@SuppressWarnings("unchecked")
+	static ClusterMetadata parse(Map<String, Object> state) {
+		ClusterMetadata metadata = new ClusterMetadata();
+		Map<String, Object> content = (Map<String, Object>) state.get("metadata");
+		if (content != null) {
+			Map<String, Object> indices = (Map<String, Object>) content.get("indices");
+			if (indices != null) {
+				for (Map.Entry<String, Object> index : indices.entrySet()) {
+					metadata.indices.add(index.getKey());
+					Object aliases = ((Map<String, Object>) index.getValue()).get("aliases");
+					if (aliases instanceof List) {
+						for (Object alias : (Collection<Object>) aliases) {
+							metadata.aliases.add(String.valueOf(alias));
+						}
+					}
+				}
+			}
+			Map<String, Object> templates = (Map<String, Object>) content.get("templates");
+			if (templates != null) {
+				metadata.templates.addAll(templates.keySet());
+			}
+		}
+		logger.debug("cluster has [{}] indices, [{}] aliases and [{}] templates", metadata.indices.size(),
+				metadata.aliases.size(), metadata.templates.size());
+		return metadata;
+	}
+
+	/**
+	 * @param index index or alias name
+	 * @return true if an index or an alias with this name exists
+	 */
+	public boolean isIndexExist(String index) {
+		return indices.contains(index) || aliases.contains(index);
+	}
+
+	/**
+	 * @param alias alias name
+	 * @return true if the alias exists
+	 */
+	public boolean isAliasExist(String alias) {
+		return aliases.contains(alias);
+	}
+
+	/**
+	 * @param template template name
+	 * @return true if the template exists
+	 */
+	public boolean isTemplateExist(String template) {
+		return templates.contains(template);
+	}
+
+	public void indexCreated(String index) {
+		indices.add(index);
+	}
+
+	public void indexRemoved(String index) {
+		indices.remove(index);
+	}
+
+	public void aliasCreated(String alias) {
+		aliases.add(alias);
+	}
+
+	public void templateCreated(String template) {
+		templates.add(template);
+	}
+
+	public void templateRemoved(String template) {
+		templates.remove(template);
+	}
+}
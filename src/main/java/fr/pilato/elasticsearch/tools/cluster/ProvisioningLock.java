@@ -0,0 +1,473 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.cluster;
+
+import fr.pilato.elasticsearch.tools.rest.RequestExecutor;
+import fr.pilato.elasticsearch.tools.rest.ResponseErrors;
+import fr.pilato.elasticsearch.tools.util.Futures;
+import fr.pilato.elasticsearch.tools.util.JsonUtil;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cluster wide lock so only one instance provisions the cluster when many instances start together.
+ * The lock is a lease stored as a single document in a system index:
+ * <ul>
+ *     <li>the lease is taken by creating the document with op_type=create</li>
+ *     <li>the holder renews it regularly. A lease which was not renewed within its ttl is taken over
+ *     by another instance, using if_seq_no and if_primary_term so only one instance wins</li>
+ *     <li>when done, the holder publishes the digest of the resources it applied for one more ttl. Instances
+ *     waiting for the same digest return without doing anything. Once it expired, the next instance provisions
+ *     again: skipping unchanged resources across restarts is the job of {@link ProvisioningState}</li>
+ * </ul>
+ * Expiration relies on the clocks of the instances being roughly in sync.
+ */
+public class ProvisioningLock {
+
+	private static final Logger logger = LoggerFactory.getLogger(ProvisioningLock.class);
+
+	static final String LOCK_ID = "lock";
+	static final String RUNNING = "running";
+	static final String DONE = "done";
+
+	private static final long MIN_BACKOFF_MILLIS = 100;
+	private static final long MAX_BACKOFF_MILLIS = 5_000;
+	// Only schedules: requests are sent asynchronously, so it never waits for a response
+	private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "beyonder-lock");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final RequestExecutor client;
+	private final String index;
+	private final long ttlMillis;
+	private final long timeoutMillis;
+	private final String owner;
+
+	/**
+	 * @param client Elasticsearch request executor
+	 * @param index system index holding the lock document
+	 * @param ttlMillis time after which a lease which was not renewed can be taken over
+	 * @param timeoutMillis maximum time to wait for another instance
+	 */
+	public ProvisioningLock(RequestExecutor client, String index, long ttlMillis, long timeoutMillis) {
+		this(client, index, ttlMillis, timeoutMillis,
+				ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString());
+	}
+
+	ProvisioningLock(RequestExecutor client, String index, long ttlMillis, long timeoutMillis, String owner) {
+		this.client = client;
+		this.index = index;
+		this.ttlMillis = ttlMillis;
+		this.timeoutMillis = timeoutMillis;
+		this.owner = owner;
+	}
+
+	public String getOwner() {
+		return owner;
+	}
+
+	/**
+	 * Acquire the lease, waiting for the current holder if any
+	 * @param digest digest of the resources this instance wants to provision
+	 * @return the lease, or null if another instance already provisioned the same resources
+	 * @throws IOException if the lock can not be read or written, or if it was not acquired in time
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public Lease acquire(String digest) throws IOException, InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		long backoff = MIN_BACKOFF_MILLIS;
+
+		while (true) {
+			Version version = write(digest, RUNNING, System.currentTimeMillis() + ttlMillis, null);
+			if (version != null) {
+				logger.debug("Provisioning lock acquired by [{}]", owner);
+				return new Lease(digest, version);
+			}
+
+			LockDocument current = read();
+			if (current != null) {
+				if (current.isDone(digest)) {
+					logger.debug("Resources [{}] were just provisioned by [{}]", digest, current.owner);
+					return null;
+				}
+				if (DONE.equals(current.status) || current.expiresAt < System.currentTimeMillis()) {
+					logger.debug("Taking over provisioning lock from [{}]", current.owner);
+					version = write(digest, RUNNING, System.currentTimeMillis() + ttlMillis, current.version);
+					if (version != null) {
+						logger.debug("Provisioning lock acquired by [{}]", owner);
+						return new Lease(digest, version);
+					}
+					// Another instance was faster
+					continue;
+				}
+			}
+
+			if (System.nanoTime() - deadline > 0) {
+				throw new IOException("Could not acquire the provisioning lock in [" + index + "] within [" +
+						timeoutMillis + "ms]. It is held by [" + holder(current) + "].");
+			}
+			// When released in the meantime, the lock is created again after the backoff
+			logger.debug("Provisioning lock is held by [{}]. Waiting.", holder(current));
+			Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+			backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+		}
+	}
+
+	/**
+	 * Acquire the lease without blocking. No thread waits for the current holder: the lock is read
+	 * again after a backoff scheduled on a shared timer.
+	 * @param digest digest of the resources this instance wants to provision
+	 * @return a future which completes with the lease, or with null if another instance already provisioned
+	 * the same resources
+	 */
+	public CompletableFuture<Lease> acquireAsync(String digest) {
+		CompletableFuture<Lease> future = new CompletableFuture<>();
+		attempt(digest, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis), MIN_BACKOFF_MILLIS, future);
+		return future;
+	}
+
+	private void attempt(String digest, long deadline, long backoff, CompletableFuture<Lease> future) {
+		writeAsync(digest, RUNNING, System.currentTimeMillis() + ttlMillis, null).thenCompose(version -> {
+			if (version != null) {
+				logger.debug("Provisioning lock acquired by [{}]", owner);
+				future.complete(new Lease(digest, version));
+				return CompletableFuture.completedFuture(null);
+			}
+			return readAsync().thenCompose(current -> {
+				if (current != null && current.isDone(digest)) {
+					logger.debug("Resources [{}] were just provisioned by [{}]", digest, current.owner);
+					future.complete(null);
+					return CompletableFuture.completedFuture(null);
+				}
+				if (current != null && (DONE.equals(current.status) || current.expiresAt < System.currentTimeMillis())) {
+					logger.debug("Taking over provisioning lock from [{}]", current.owner);
+					return writeAsync(digest, RUNNING, System.currentTimeMillis() + ttlMillis, current.version).thenAccept(taken -> {
+						if (taken != null) {
+							logger.debug("Provisioning lock acquired by [{}]", owner);
+							future.complete(new Lease(digest, taken));
+						} else {
+							// Another instance was faster
+							attempt(digest, deadline, backoff, future);
+						}
+					});
+				}
+
+				if (System.nanoTime() - deadline > 0) {
+					future.completeExceptionally(new IOException("Could not acquire the provisioning lock in [" + index +
+							"] within [" + timeoutMillis + "ms]. It is held by [" + holder(current) + "]."));
+					return CompletableFuture.completedFuture(null);
+				}
+				// When released in the meantime, the lock is created again after the backoff
+				logger.debug("Provisioning lock is held by [{}]. Waiting.", holder(current));
+				scheduler.schedule(() -> attempt(digest, deadline, Math.min(backoff * 2, MAX_BACKOFF_MILLIS), future),
+						backoff + ThreadLocalRandom.current().nextLong(backoff / 2 + 1), TimeUnit.MILLISECONDS);
+				return CompletableFuture.completedFuture(null);
+			});
+		}).whenComplete((v, e) -> {
+			if (e != null) {
+				future.completeExceptionally(Futures.unwrap(e));
+			}
+		});
+	}
+
+	/**
+	 * Write the lock document
+	 * @param version expected version of the document, null to create it
+	 * @return the new version or null if the document was modified or created by another instance
+	 */
+	private Version write(String digest, String status, long expiresAt, Version version) throws IOException {
+		try {
+			return Version.of(parse(client.performRequest(writeRequest(digest, status, expiresAt, version))));
+		} catch (IOException e) {
+			if (ResponseErrors.status(e) == 409) {
+				return written(read(), digest, status);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Write the lock document without blocking
+	 * @param version expected version of the document, null to create it
+	 * @return a future which completes with the new version or with null if the document was modified
+	 * or created by another instance
+	 */
+	private CompletableFuture<Version> writeAsync(String digest, String status, long expiresAt, Version version) {
+		Request request;
+		try {
+			request = writeRequest(digest, status, expiresAt, version);
+		} catch (IOException e) {
+			return Futures.failedFuture(e);
+		}
+		return client.performRequestAsync(request).handle((response, e) -> {
+			if (e != null) {
+				if (ResponseErrors.status(e) == 409) {
+					return readAsync().thenApply(current -> written(current, digest, status));
+				}
+				return Futures.<Version>failedFuture(Futures.unwrap(e));
+			}
+			try {
+				return CompletableFuture.completedFuture(Version.of(parse(response)));
+			} catch (IOException ioe) {
+				return Futures.<Version>failedFuture(ioe);
+			}
+		}).thenCompose(f -> f);
+	}
+
+	/**
+	 * When the executor retries requests, a write which was applied but whose response was lost is sent again
+	 * and conflicts with itself. The document then holds what this instance wrote.
+	 * @param current lock document read after the conflict
+	 * @return the version of the document if this instance wrote it, null if another instance did
+	 */
+	private Version written(LockDocument current, String digest, String status) {
+		if (current != null && owner.equals(current.owner) && status.equals(current.status) && digest.equals(current.digest)) {
+			logger.debug("Provisioning lock was already written by [{}] before a retry", owner);
+			return current.version;
+		}
+		return null;
+	}
+
+	private Request writeRequest(String digest, String status, long expiresAt, Version version) throws IOException {
+		Request request = new Request("PUT", "/" + index + "/_doc/" + LOCK_ID);
+		if (version == null) {
+			request.addParameter("op_type", "create");
+		} else {
+			request.addParameter("if_seq_no", Long.toString(version.seqNo));
+			request.addParameter("if_primary_term", Long.toString(version.primaryTerm));
+		}
+		Map<String, Object> source = new LinkedHashMap<>();
+		source.put("owner", owner);
+		source.put("status", status);
+		source.put("digest", digest);
+		source.put("expires_at", expiresAt);
+		request.setJsonEntity(JsonUtil.asJson(source));
+		return request;
+	}
+
+	/**
+	 * @return the lock document or null if it does not exist
+	 */
+	private LockDocument read() throws IOException {
+		try {
+			return LockDocument.of(parse(client.performRequest(new Request("GET", "/" + index + "/_doc/" + LOCK_ID))));
+		} catch (IOException e) {
+			if (ResponseErrors.status(e) == 404) {
+				return null;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * @return a future which completes with the lock document or with null if it does not exist
+	 */
+	private CompletableFuture<LockDocument> readAsync() {
+		return client.performRequestAsync(new Request("GET", "/" + index + "/_doc/" + LOCK_ID)).handle((response, e) -> {
+			if (e != null) {
+				if (ResponseErrors.status(e) == 404) {
+					return CompletableFuture.<LockDocument>completedFuture(null);
+				}
+				return Futures.<LockDocument>failedFuture(Futures.unwrap(e));
+			}
+			try {
+				return CompletableFuture.completedFuture(LockDocument.of(parse(response)));
+			} catch (IOException ioe) {
+				return Futures.<LockDocument>failedFuture(ioe);
+			}
+		}).thenCompose(f -> f);
+	}
+
+	private static String holder(LockDocument current) {
+		return current == null ? "nobody" : current.owner;
+	}
+
+	private static Map<String, Object> parse(Response response) throws IOException {
+		try (InputStream content = response.getEntity().getContent()) {
+			return JsonUtil.asMap(content);
+		}
+	}
+
+	/**
+	 * The lease held by this instance. It is renewed in the background until it is released.
+	 */
+	public class Lease {
+		private final String digest;
+		private final ScheduledFuture<?> heartbeat;
+		private Version version;
+		private CompletableFuture<Void> renewal = CompletableFuture.completedFuture(null);
+		private boolean lost;
+		private boolean released;
+
+		private Lease(String digest, Version version) {
+			this.digest = digest;
+			this.version = version;
+			long period = Math.max(1, ttlMillis / 3);
+			this.heartbeat = scheduler.scheduleWithFixedDelay(this::renew, period, period, TimeUnit.MILLISECONDS);
+		}
+
+		private synchronized void renew() {
+			if (lost || released || !renewal.isDone()) {
+				return;
+			}
+			renewal = writeAsync(digest, RUNNING, System.currentTimeMillis() + ttlMillis, version).handle((renewed, e) -> {
+				synchronized (this) {
+					if (e != null) {
+						logger.warn("Could not renew the provisioning lock: {}", Futures.unwrap(e).getMessage());
+					} else if (renewed == null) {
+						logger.warn("Provisioning lock was taken over by another instance while [{}] was holding it", owner);
+						lost = true;
+						heartbeat.cancel(false);
+					} else {
+						version = renewed;
+					}
+				}
+				return null;
+			});
+		}
+
+		/**
+		 * @return false if another instance took the lease over because it was not renewed in time
+		 */
+		public synchronized boolean isHeld() {
+			return !lost && !released;
+		}
+
+		/**
+		 * Release the lease. On success, the digest is published for one ttl so instances waiting with the same
+		 * resources return. On failure, the lock is removed so another instance can try.
+		 * @param success whether or not the resources were successfully provisioned
+		 */
+		public void release(boolean success) {
+			releaseAsync(success).join();
+		}
+
+		/**
+		 * Release the lease without blocking
+		 * @param success whether or not the resources were successfully provisioned
+		 * @return a future which completes once the lease is released. It never completes exceptionally:
+		 * if the lock can not be written, other instances take it over once it expires.
+		 * @since 7.6
+		 */
+		public CompletableFuture<Void> releaseAsync(boolean success) {
+			CompletableFuture<Void> pending;
+			synchronized (this) {
+				if (released) {
+					return CompletableFuture.completedFuture(null);
+				}
+				released = true;
+				heartbeat.cancel(false);
+				pending = renewal;
+			}
+			// A renewal in flight changes the version the release must use
+			return pending.thenCompose(v -> {
+				Version current;
+				synchronized (this) {
+					if (lost) {
+						return CompletableFuture.completedFuture(null);
+					}
+					current = version;
+				}
+				CompletableFuture<Void> request;
+				if (success) {
+					request = writeAsync(digest, DONE, System.currentTimeMillis() + ttlMillis, current).thenAccept(written -> {
+						if (written == null) {
+							logger.warn("Provisioning lock was taken over by another instance before [{}] released it", owner);
+						}
+					});
+				} else {
+					Request delete = new Request("DELETE", "/" + index + "/_doc/" + LOCK_ID);
+					delete.addParameter("if_seq_no", Long.toString(current.seqNo));
+					delete.addParameter("if_primary_term", Long.toString(current.primaryTerm));
+					request = client.performRequestAsync(delete).thenAccept(response -> { });
+				}
+				return request.handle((r, e) -> {
+					if (e != null) {
+						// Other instances will take the lease over once it expires
+						logger.warn("Could not release the provisioning lock: {}", Futures.unwrap(e).getMessage());
+					} else {
+						logger.debug("Provisioning lock released by [{}]", owner);
+					}
+					return null;
+				});
+			});
+		}
+	}
+
+	private static class Version {
+		private final long seqNo;
+		private final long primaryTerm;
+
+		private Version(long seqNo, long primaryTerm) {
+			this.seqNo = seqNo;
+			this.primaryTerm = primaryTerm;
+		}
+
+		private static Version of(Map<String, Object> response) {
+			return new Version(((Number) response.get("_seq_no")).longValue(), ((Number) response.get("_primary_term")).longValue());
+		}
+	}
+
+	private static class LockDocument {
+		private Version version;
+		private String owner;
+		private String status;
+		private String digest;
+		private long expiresAt;
+
+		@SuppressWarnings("unchecked")
+		private static LockDocument of(Map<String, Object> response) {
+			LockDocument document = new LockDocument();
+			document.version = Version.of(response);
+			Map<String, Object> source = (Map<String, Object>) response.get("_source");
+			document.owner = (String) source.get("owner");
+			document.status = (String) source.get("status");
+			document.digest = (String) source.get("digest");
+			Object expiresAt = source.get("expires_at");
+			document.expiresAt = expiresAt instanceof Number ? ((Number) expiresAt).longValue() : 0;
+			return document;
+		}
+
+		/**
+		 * @return true if the same resources were provisioned recently enough for this instance to be part
+		 * of the same rollout
+		 */
+		private boolean isDone(String digest) {
+			return DONE.equals(status) && digest.equals(this.digest) && expiresAt >= System.currentTimeMillis();
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.cluster;
+
+import fr.pilato.elasticsearch.tools.ElasticsearchBeyonder;
+import fr.pilato.elasticsearch.tools.rest.RequestExecutor;
+import fr.pilato.elasticsearch.tools.rest.ResponseErrors;
+import fr.pilato.elasticsearch.tools.util.Futures;
+import fr.pilato.elasticsearch.tools.util.JsonUtil;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Marker document recording the last resources successfully provisioned. When it matches the resources
+ * found in the classpath and the library version, there is nothing to do: a start only costs one request.
+ */
+public class ProvisioningState {
+
+	static final String STATE_ID = "state";
+
+	private final RequestExecutor client;
+	private final String index;
+
+	/**
+	 * @param client Elasticsearch request executor
+	 * @param index system index holding the state document
+	 */
+	public ProvisioningState(RequestExecutor client, String index) {
+		this.client = client;
+		this.index = index;
+	}
+
+	/**
+	 * @return the version of beyonder, as found in the jar manifest. "unknown" when not running from the jar.
+	 */
+	public static String libraryVersion() {
+		String version = ElasticsearchBeyonder.class.getPackage().getImplementationVersion();
+		return version == null ? "unknown" : version;
+	}
+
+	/**
+	 * Check if the resources were already provisioned by this version of beyonder
+	 * @param digest digest of the resources
+	 * @return true if the recorded state matches
+	 * @throws IOException if the state can not be read
+	 */
+	public boolean isApplied(String digest) throws IOException {
+		try {
+			return matches(parse(client.performRequest(getRequest())), digest);
+		} catch (IOException e) {
+			if (ResponseErrors.status(e) == 404) {
+				return false;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Check if the resources were already provisioned by this version of beyonder without blocking
+	 * @param digest digest of the resources
+	 * @return a future which completes with true if the recorded state matches
+	 */
+	public CompletableFuture<Boolean> isAppliedAsync(String digest) {
+		return client.performRequestAsync(getRequest()).handle((response, e) -> {
+			if (e != null) {
+				if (ResponseErrors.status(e) == 404) {
+					return CompletableFuture.completedFuture(false);
+				}
+				return Futures.<Boolean>failedFuture(Futures.unwrap(e));
+			}
+			try {
+				return CompletableFuture.completedFuture(matches(parse(response), digest));
+			} catch (IOException ioe) {
+				return Futures.<Boolean>failedFuture(ioe);
+			}
+		}).thenCompose(f -> f);
+	}
+
+	/**
+	 * Record that the resources were successfully provisioned
+	 * @param digest digest of the resources
+	 * @throws IOException if the state can not be written
+	 */
+	public void record(String digest) throws IOException {
+		client.performRequest(putRequest(digest));
+	}
+
+	/**
+	 * Record that the resources were successfully provisioned without blocking
+	 * @param digest digest of the resources
+	 * @return a future which completes when the state is written
+	 */
+	public CompletableFuture<Void> recordAsync(String digest) {
+		Request request;
+		try {
+			request = putRequest(digest);
+		} catch (IOException e) {
+			return Futures.failedFuture(e);
+		}
+		return client.performRequestAsync(request).thenApply(response -> null);
+	}
+
+	private Request getRequest() {
+		Request request = new Request("GET", "/" + index + "/_doc/" + STATE_ID);
+		request.addParameter("filter_path", "_source");
+		return request;
+	}
+
+	private Request putRequest(String digest) throws IOException {
+		Map<String, Object> source = new LinkedHashMap<>();
+		source.put("digest", digest);
+		source.put("version", libraryVersion());
+		source.put("applied_at", System.currentTimeMillis());
+		Request request = new Request("PUT", "/" + index + "/_doc/" + STATE_ID);
+		request.setJsonEntity(JsonUtil.asJson(source));
+		return request;
+	}
+
+	private static boolean matches(Map<String, Object> response, String digest) {
+		Object source = response.get("_source");
+		if (!(source instanceof Map)) {
+			return false;
+		}
+		Map<?, ?> state = (Map<?, ?>) source;
+		return digest.equals(state.get("digest")) && libraryVersion().equals(state.get("version"));
+	}
+
+	private static Map<String, Object> parse(Response response) throws IOException {
+		try (InputStream content = response.getEntity().getContent()) {
+			return JsonUtil.asMap(content);
+		}
+	}
+}
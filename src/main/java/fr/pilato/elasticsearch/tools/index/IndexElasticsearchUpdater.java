@@ -19,17 +19,29 @@
 
 package fr.pilato.elasticsearch.tools.index;
 
+import fr.pilato.elasticsearch.tools.SettingsFinder.Defaults;
+import fr.pilato.elasticsearch.tools.cluster.ClusterMetadata;
+import fr.pilato.elasticsearch.tools.rest.JsonEntities;
+import fr.pilato.elasticsearch.tools.rest.RequestExecutor;
+import fr.pilato.elasticsearch.tools.rest.ResponseErrors;
+import fr.pilato.elasticsearch.tools.rest.RetryingRequestExecutor;
+import fr.pilato.elasticsearch.tools.util.Futures;
+import org.apache.http.HttpEntity;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequestBuilder;
 import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
 import org.elasticsearch.action.support.master.AcknowledgedResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.Request;
 import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Manage elasticsearch index settings
  * @author David Pilato
@@ -208,8 +220,8 @@ public class IndexElasticsearchUpdater {
 	 * @throws Exception if the elasticsearch API call is failing
 	 */
 	public static void createIndex(RestClient client, String root, String index, boolean force) throws Exception {
-		String settings = IndexSettingsReader.readSettings(root, index);
-		createIndexWithSettings(client, index, settings, force);
+		HttpEntity settings = IndexSettingsReader.readSettingsEntity(root, index, Defaults.IndexSettingsFileName);
+		createIndexWithEntity(RequestExecutor.of(client), null, index, settings, force);
 	}
 
 	/**
@@ -220,8 +232,7 @@ public class IndexElasticsearchUpdater {
 	 * @throws Exception if the elasticsearch API call is failing
 	 */
 	public static void createIndex(RestClient client, String index, boolean force) throws Exception {
-		String settings = IndexSettingsReader.readSettings(index);
-		createIndexWithSettings(client, index, settings, force);
+		createIndex(client, Defaults.ConfigDir, index, force);
 	}
 
 	/**
@@ -233,34 +244,134 @@ public class IndexElasticsearchUpdater {
 	 * @throws Exception if the elasticsearch API call is failing
 	 */
 	public static void createIndexWithSettings(RestClient client, String index, String settings, boolean force) throws Exception {
-		if (force && isIndexExist(client, index)) {
+		createIndexWithSettings(RequestExecutor.of(client), index, settings, force);
+	}
+
+	/**
+	 * Create a new index in Elasticsearch
+	 * @param client Elasticsearch request executor
+	 * @param index Index name
+	 * @param settings Settings if any, null if no specific settings
+	 * @param force Remove index if exists (Warning: remove all data)
+	 * @throws Exception if the elasticsearch API call is failing
+	 */
+	public static void createIndexWithSettings(RequestExecutor client, String index, String settings, boolean force) throws Exception {
+		createIndexWithSettings(client, null, index, settings, force);
+	}
+
+	/**
+	 * Create a new index in Elasticsearch
+	 * @param client Elasticsearch request executor
+	 * @param metadata Cluster metadata used to check if the index exists. If null, elasticsearch is asked.
+	 * @param index Index name
+	 * @param settings Settings if any, null if no specific settings
+	 * @param force Remove index if exists (Warning: remove all data)
+	 * @throws Exception if the elasticsearch API call is failing
+	 */
+	public static void createIndexWithSettings(RequestExecutor client, ClusterMetadata metadata, String index, String settings, boolean force) throws Exception {
+		createIndexWithEntity(client, metadata, index, JsonEntities.of(settings), force);
+	}
+
+	/**
+	 * Create a new index in Elasticsearch. The settings are sent as they are, so they can be smile, cbor or compressed json.
+	 * @param client Elasticsearch request executor
+	 * @param metadata Cluster metadata used to check if the index exists. If null, elasticsearch is asked.
+	 * @param index Index name
+	 * @param settings Settings if any, null if no specific settings
+	 * @param force Remove index if exists (Warning: remove all data)
+	 * @throws Exception if the elasticsearch API call is failing
+	 * @since 7.6
+	 */
+	public static void createIndexWithEntity(RequestExecutor client, ClusterMetadata metadata, String index, HttpEntity settings, boolean force) throws Exception {
+		boolean exists = isIndexExist(client, metadata, index);
+		if (force && exists) {
 			logger.debug("Index [{}] already exists but force set to true. Removing all data!", index);
 			removeIndexInElasticsearch(client, index);
+			if (metadata != null) {
+				metadata.indexRemoved(index);
+			}
+			exists = false;
 		}
-		if (force || !isIndexExist(client, index)) {
+		if (!exists) {
 			logger.debug("Index [{}] doesn't exist. Creating it.", index);
-			createIndexWithSettingsInElasticsearch(client, index, settings);
+			int retries = RetryingRequestExecutor.retriesOf(client);
+			try {
+				createIndexWithSettingsInElasticsearch(client, index, settings);
+			} catch (ResponseException e) {
+				if (!ResponseErrors.isCreatedByRetry(client, retries, e)) {
+					throw e;
+				}
+				logger.debug("Index [{}] has been created by a request which was retried.", index);
+			}
+			if (metadata != null) {
+				metadata.indexCreated(index);
+			}
 		} else {
 			logger.debug("Index [{}] already exists.", index);
 		}
 	}
 
+	/**
+	 * Create a new index in Elasticsearch without checking first if it exists. If the index
+	 * already exists, it is left untouched.
+	 * @param client Elasticsearch request executor
+	 * @param index Index name
+	 * @param settings Settings if any, null if no specific settings
+	 * @return true if the index has been created, false if it already existed
+	 * @throws Exception if the elasticsearch API call is failing
+	 * @since 7.6
+	 */
+	public static boolean createIndexIfAbsent(RequestExecutor client, String index, String settings) throws Exception {
+		return createIndexIfAbsent(client, index, JsonEntities.of(settings));
+	}
+
+	/**
+	 * Create a new index in Elasticsearch without checking first if it exists. If the index
+	 * already exists, it is left untouched.
+	 * @param client Elasticsearch request executor
+	 * @param index Index name
+	 * @param settings Settings if any, null if no specific settings
+	 * @return true if the index has been created, false if it already existed
+	 * @throws Exception if the elasticsearch API call is failing
+	 * @since 7.6
+	 */
+	public static boolean createIndexIfAbsent(RequestExecutor client, String index, HttpEntity settings) throws Exception {
+		try {
+			createIndexWithSettingsInElasticsearch(client, index, settings);
+			return true;
+		} catch (ResponseException e) {
+			if (ResponseErrors.isAlreadyExists(e)) {
+				logger.debug("Index [{}] already exists.", index);
+				return false;
+			}
+			throw e;
+		}
+	}
+
 	/**
 	 * Remove a new index in Elasticsearch
 	 * @param client Elasticsearch client
 	 * @param index Index name
 	 * @throws Exception if the elasticsearch API call is failing
 	 */
-	private static void removeIndexInElasticsearch(RestClient client, String index) throws Exception {
+	private static void removeIndexInElasticsearch(RequestExecutor client, String index) throws Exception {
 		logger.trace("removeIndex([{}])", index);
 
 		assert client != null;
 		assert index != null;
 
-		Response response = client.performRequest(new Request("DELETE", "/" + index));
-		if (response.getStatusLine().getStatusCode() != 200) {
-			logger.warn("Could not delete index [{}]", index);
-			throw new Exception("Could not delete index ["+index+"].");
+		int retries = RetryingRequestExecutor.retriesOf(client);
+		try {
+			Response response = client.performRequest(new Request("DELETE", "/" + index));
+			if (response.getStatusLine().getStatusCode() != 200) {
+				logger.warn("Could not delete index [{}]", index);
+				throw new Exception("Could not delete index ["+index+"].");
+			}
+		} catch (ResponseException e) {
+			if (!ResponseErrors.isRemovedByRetry(client, retries, e)) {
+				throw e;
+			}
+			logger.debug("Index [{}] has been removed by a request which was retried.", index);
 		}
 
 		logger.trace("/removeIndex([{}])", index);
@@ -273,21 +384,13 @@ public class IndexElasticsearchUpdater {
 	 * @param settings Settings if any, null if no specific settings
 	 * @throws Exception if the elasticsearch API call is failing
 	 */
-	private static void createIndexWithSettingsInElasticsearch(RestClient client, String index, String settings) throws Exception {
+	private static void createIndexWithSettingsInElasticsearch(RequestExecutor client, String index, HttpEntity settings) throws Exception {
 		logger.trace("createIndex([{}])", index);
 
 		assert client != null;
 		assert index != null;
 
-        Request request = new Request("PUT", "/" + index);
-
-		// If there are settings for this index, we use it. If not, using Elasticsearch defaults.
-		if (settings != null) {
-			logger.trace("Found settings for index [{}]: [{}]", index, settings);
-			request.setJsonEntity(settings);
-		}
-
-        Response response = client.performRequest(request);
+		Response response = client.performRequest(createIndexRequest(index, settings));
 		if (response.getStatusLine().getStatusCode() != 200) {
 			logger.warn("Could not create index [{}]", index);
 			throw new Exception("Could not create index ["+index+"].");
@@ -296,6 +399,17 @@ public class IndexElasticsearchUpdater {
 		logger.trace("/createIndex([{}])", index);
 	}
 
+	private static Request createIndexRequest(String index, HttpEntity settings) {
+		Request request = new Request("PUT", "/" + index);
+
+		// If there are settings for this index, we use it. If not, using Elasticsearch defaults.
+		if (settings != null) {
+			logger.trace("Found settings for index [{}]", index);
+			request.setEntity(settings);
+		}
+		return request;
+	}
+
 	/**
 	 * Update settings in Elasticsearch
 	 * @param client Elasticsearch client
@@ -303,24 +417,27 @@ public class IndexElasticsearchUpdater {
 	 * @param settings Settings if any, null if no update settings
 	 * @throws Exception if the elasticsearch API call is failing
 	 */
-	private static void updateIndexWithSettingsInElasticsearch(RestClient client, String index, String settings) throws Exception {
+	private static void updateIndexWithSettingsInElasticsearch(RequestExecutor client, String index, HttpEntity settings) throws Exception {
 		logger.trace("updateIndex([{}])", index);
 
 		assert client != null;
 		assert index != null;
 
-
 		if (settings != null) {
-			logger.trace("Found update settings for index [{}]: [{}]", index, settings);
+			logger.trace("Found update settings for index [{}]", index);
 			logger.debug("updating settings for index [{}]", index);
-            Request request = new Request("PUT", "/" + index + "/_settings");
-            request.setJsonEntity(settings);
-			client.performRequest(request);
+			client.performRequest(updateSettingsRequest(index, settings));
 		}
 
 		logger.trace("/updateIndex([{}])", index);
 	}
 
+	private static Request updateSettingsRequest(String index, HttpEntity settings) {
+		Request request = new Request("PUT", "/" + index + "/_settings");
+		request.setEntity(settings);
+		return request;
+	}
+
 	/**
 	 * Check if an index already exists
 	 * @param client Elasticsearch client
@@ -329,10 +446,28 @@ public class IndexElasticsearchUpdater {
 	 * @throws Exception if the elasticsearch API call is failing
 	 */
 	public static boolean isIndexExist(RestClient client, String index) throws Exception {
+		return isIndexExist(RequestExecutor.of(client), index);
+	}
+
+	/**
+	 * Check if an index already exists
+	 * @param client Elasticsearch request executor
+	 * @param index Index name
+	 * @return true if index already exists
+	 * @throws IOException if the elasticsearch API call is failing
+	 */
+	public static boolean isIndexExist(RequestExecutor client, String index) throws IOException {
 		Response response = client.performRequest(new Request("HEAD", "/" + index));
 		return response.getStatusLine().getStatusCode() == 200;
 	}
 
+	private static boolean isIndexExist(RequestExecutor client, ClusterMetadata metadata, String index) throws IOException {
+		if (metadata != null) {
+			return metadata.isIndexExist(index);
+		}
+		return isIndexExist(client, index);
+	}
+
 	/**
 	 * Update index settings in Elasticsearch. Read also _update_settings.json if exists.
 	 * @param client Elasticsearch client
@@ -341,8 +476,8 @@ public class IndexElasticsearchUpdater {
 	 * @throws Exception if the elasticsearch API call is failing
 	 */
 	public static void updateSettings(RestClient client, String root, String index) throws Exception {
-		String settings = IndexSettingsReader.readUpdateSettings(root, index);
-		updateIndexWithSettingsInElasticsearch(client, index, settings);
+		HttpEntity settings = IndexSettingsReader.readSettingsEntity(root, index, Defaults.UpdateIndexSettingsFileName);
+		updateIndexWithSettingsInElasticsearch(RequestExecutor.of(client), index, settings);
 	}
 
 	/**
@@ -352,7 +487,263 @@ public class IndexElasticsearchUpdater {
 	 * @throws Exception if the elasticsearch API call is failing
 	 */
 	public static void updateSettings(RestClient client, String index) throws Exception {
-		String settings = IndexSettingsReader.readUpdateSettings(index);
+		updateSettings(client, Defaults.ConfigDir, index);
+	}
+
+	/**
+	 * Update index settings in Elasticsearch
+	 * @param client Elasticsearch client
+	 * @param index Index name
+	 * @param settings Settings if any, null if no update settings
+	 * @throws Exception if the elasticsearch API call is failing
+	 */
+	public static void updateIndexWithSettings(RestClient client, String index, String settings) throws Exception {
+		updateIndexWithSettings(RequestExecutor.of(client), index, settings);
+	}
+
+	/**
+	 * Update index settings in Elasticsearch
+	 * @param client Elasticsearch request executor
+	 * @param index Index name
+	 * @param settings Settings if any, null if no update settings
+	 * @throws Exception if the elasticsearch API call is failing
+	 */
+	public static void updateIndexWithSettings(RequestExecutor client, String index, String settings) throws Exception {
+		updateIndexWithEntity(client, index, JsonEntities.of(settings));
+	}
+
+	/**
+	 * Update index settings in Elasticsearch. The settings are sent as they are, so they can be smile, cbor or compressed json.
+	 * @param client Elasticsearch request executor
+	 * @param index Index name
+	 * @param settings Settings if any, null if no update settings
+	 * @throws Exception if the elasticsearch API call is failing
+	 * @since 7.6
+	 */
+	public static void updateIndexWithEntity(RequestExecutor client, String index, HttpEntity settings) throws Exception {
 		updateIndexWithSettingsInElasticsearch(client, index, settings);
 	}
+
+	/**
+	 * Create a new index in Elasticsearch without blocking. Read also _settings.json if exists.
+	 * @param client Elasticsearch client
+	 * @param root dir within the classpath
+	 * @param index Index name
+	 * @param force Remove index if exists (Warning: remove all data)
+	 * @return a future which completes when the index has been created or already exists
+	 */
+	public static CompletableFuture<Void> createIndexAsync(RestClient client, String root, String index, boolean force) {
+		HttpEntity settings = IndexSettingsReader.readSettingsEntity(root, index, Defaults.IndexSettingsFileName);
+		return createIndexWithEntityAsync(RequestExecutor.of(client), null, index, settings, force);
+	}
+
+	/**
+	 * Create a new index in Elasticsearch without blocking
+	 * @param client Elasticsearch request executor
+	 * @param index Index name
+	 * @param settings Settings if any, null if no specific settings
+	 * @param force Remove index if exists (Warning: remove all data)
+	 * @return a future which completes when the index has been created or already exists
+	 */
+	public static CompletableFuture<Void> createIndexWithSettingsAsync(RequestExecutor client, String index, String settings, boolean force) {
+		return createIndexWithSettingsAsync(client, null, index, settings, force);
+	}
+
+	/**
+	 * Create a new index in Elasticsearch without blocking
+	 * @param client Elasticsearch request executor
+	 * @param metadata Cluster metadata used to check if the index exists. If null, elasticsearch is asked.
+	 * @param index Index name
+	 * @param settings Settings if any, null if no specific settings
+	 * @param force Remove index if exists (Warning: remove all data)
+	 * @return a future which completes when the index has been created or already exists
+	 */
+	public static CompletableFuture<Void> createIndexWithSettingsAsync(RequestExecutor client, ClusterMetadata metadata,
+																	  String index, String settings, boolean force) {
+		return createIndexWithEntityAsync(client, metadata, index, JsonEntities.of(settings), force);
+	}
+
+	/**
+	 * Create a new index in Elasticsearch without blocking. The settings are sent as they are, so they can be smile, cbor or compressed json.
+	 * @param client Elasticsearch request executor
+	 * @param metadata Cluster metadata used to check if the index exists. If null, elasticsearch is asked.
+	 * @param index Index name
+	 * @param settings Settings if any, null if no specific settings
+	 * @param force Remove index if exists (Warning: remove all data)
+	 * @return a future which completes when the index has been created or already exists
+	 * @since 7.6
+	 */
+	public static CompletableFuture<Void> createIndexWithEntityAsync(RequestExecutor client, ClusterMetadata metadata,
+																	  String index, HttpEntity settings, boolean force) {
+		CompletableFuture<Boolean> exists = metadata != null ?
+				CompletableFuture.completedFuture(metadata.isIndexExist(index)) : isIndexExistAsync(client, index);
+		return exists.thenCompose(indexExists -> {
+			CompletableFuture<Void> ready = CompletableFuture.completedFuture(null);
+			if (indexExists) {
+				if (!force) {
+					logger.debug("Index [{}] already exists.", index);
+					return ready;
+				}
+				logger.debug("Index [{}] already exists but force set to true. Removing all data!", index);
+				ready = removeIndexInElasticsearchAsync(client, index).thenRun(() -> {
+					if (metadata != null) {
+						metadata.indexRemoved(index);
+					}
+				});
+			} else {
+				logger.debug("Index [{}] doesn't exist. Creating it.", index);
+			}
+			return ready
+					.thenCompose(removed -> createIndexWithSettingsInElasticsearchAsync(client, index, settings, RetryingRequestExecutor.retriesOf(client)))
+					.thenRun(() -> {
+						if (metadata != null) {
+							metadata.indexCreated(index);
+						}
+					});
+		});
+	}
+
+	/**
+	 * Create a new index in Elasticsearch without checking first if it exists and without blocking.
+	 * If the index already exists, it is left untouched.
+	 * @param client Elasticsearch request executor
+	 * @param index Index name
+	 * @param settings Settings if any, null if no specific settings
+	 * @return a future which completes with true if the index has been created, false if it already existed
+	 * @since 7.6
+	 */
+	public static CompletableFuture<Boolean> createIndexIfAbsentAsync(RequestExecutor client, String index, String settings) {
+		return createIndexIfAbsentAsync(client, index, JsonEntities.of(settings));
+	}
+
+	/**
+	 * Create a new index in Elasticsearch without checking first if it exists and without blocking.
+	 * If the index already exists, it is left untouched.
+	 * @param client Elasticsearch request executor
+	 * @param index Index name
+	 * @param settings Settings if any, null if no specific settings
+	 * @return a future which completes with true if the index has been created, false if it already existed
+	 * @since 7.6
+	 */
+	public static CompletableFuture<Boolean> createIndexIfAbsentAsync(RequestExecutor client, String index, HttpEntity settings) {
+		return createIndexWithSettingsInElasticsearchAsync(client, index, settings).handle((r, e) -> {
+			if (e == null) {
+				return CompletableFuture.completedFuture(true);
+			}
+			if (ResponseErrors.isAlreadyExists(e)) {
+				logger.debug("Index [{}] already exists.", index);
+				return CompletableFuture.completedFuture(false);
+			}
+			return Futures.<Boolean>failedFuture(Futures.unwrap(e));
+		}).thenCompose(f -> f);
+	}
+
+	/**
+	 * Create an index. A failure because one of the earlier tries created the index is a success.
+	 */
+	private static CompletableFuture<Void> createIndexWithSettingsInElasticsearchAsync(RequestExecutor client, String index,
+																					   HttpEntity settings, int retries) {
+		return createIndexWithSettingsInElasticsearchAsync(client, index, settings).handle((r, e) -> {
+			if (e == null) {
+				return CompletableFuture.<Void>completedFuture(null);
+			}
+			if (ResponseErrors.isCreatedByRetry(client, retries, e)) {
+				logger.debug("Index [{}] has been created by a request which was retried.", index);
+				return CompletableFuture.<Void>completedFuture(null);
+			}
+			return Futures.<Void>failedFuture(Futures.unwrap(e));
+		}).thenCompose(f -> f);
+	}
+
+	private static CompletableFuture<Void> removeIndexInElasticsearchAsync(RequestExecutor client, String index) {
+		logger.trace("removeIndexAsync([{}])", index);
+		int retries = RetryingRequestExecutor.retriesOf(client);
+		return client.performRequestAsync(new Request("DELETE", "/" + index)).handle((response, e) -> {
+			if (e != null) {
+				if (ResponseErrors.isRemovedByRetry(client, retries, e)) {
+					logger.debug("Index [{}] has been removed by a request which was retried.", index);
+					return CompletableFuture.<Void>completedFuture(null);
+				}
+				return Futures.<Void>failedFuture(Futures.unwrap(e));
+			}
+			if (response.getStatusLine().getStatusCode() != 200) {
+				logger.warn("Could not delete index [{}]", index);
+				return Futures.<Void>failedFuture(new Exception("Could not delete index ["+index+"]."));
+			}
+			logger.trace("/removeIndexAsync([{}])", index);
+			return CompletableFuture.<Void>completedFuture(null);
+		}).thenCompose(f -> f);
+	}
+
+	private static CompletableFuture<Void> createIndexWithSettingsInElasticsearchAsync(RequestExecutor client, String index, HttpEntity settings) {
+		logger.trace("createIndexAsync([{}])", index);
+		return client.performRequestAsync(createIndexRequest(index, settings)).thenCompose(response -> {
+			if (response.getStatusLine().getStatusCode() != 200) {
+				logger.warn("Could not create index [{}]", index);
+				return Futures.failedFuture(new Exception("Could not create index ["+index+"]."));
+			}
+			logger.trace("/createIndexAsync([{}])", index);
+			return CompletableFuture.completedFuture(null);
+		});
+	}
+
+	/**
+	 * Check if an index already exists without blocking
+	 * @param client Elasticsearch client
+	 * @param index Index name
+	 * @return a future which completes with true if index already exists
+	 */
+	public static CompletableFuture<Boolean> isIndexExistAsync(RestClient client, String index) {
+		return isIndexExistAsync(RequestExecutor.of(client), index);
+	}
+
+	/**
+	 * Check if an index already exists without blocking
+	 * @param client Elasticsearch request executor
+	 * @param index Index name
+	 * @return a future which completes with true if index already exists
+	 */
+	public static CompletableFuture<Boolean> isIndexExistAsync(RequestExecutor client, String index) {
+		return client.performRequestAsync(new Request("HEAD", "/" + index))
+				.thenApply(response -> response.getStatusLine().getStatusCode() == 200);
+	}
+
+	/**
+	 * Update index settings in Elasticsearch without blocking. Read also _update_settings.json if exists.
+	 * @param client Elasticsearch client
+	 * @param root dir within the classpath
+	 * @param index Index name
+	 * @return a future which completes when the settings have been updated
+	 */
+	public static CompletableFuture<Void> updateSettingsAsync(RestClient client, String root, String index) {
+		HttpEntity settings = IndexSettingsReader.readSettingsEntity(root, index, Defaults.UpdateIndexSettingsFileName);
+		return updateIndexWithEntityAsync(RequestExecutor.of(client), index, settings);
+	}
+
+	/**
+	 * Update index settings in Elasticsearch without blocking
+	 * @param client Elasticsearch request executor
+	 * @param index Index name
+	 * @param settings Settings if any, null if no update settings
+	 * @return a future which completes when the settings have been updated
+	 */
+	public static CompletableFuture<Void> updateIndexWithSettingsAsync(RequestExecutor client, String index, String settings) {
+		return updateIndexWithEntityAsync(client, index, JsonEntities.of(settings));
+	}
+
+	/**
+	 * Update index settings in Elasticsearch without blocking. The settings are sent as they are, so they can be smile, cbor or compressed json.
+	 * @param client Elasticsearch request executor
+	 * @param index Index name
+	 * @param settings Settings if any, null if no update settings
+	 * @return a future which completes when the settings have been updated
+	 * @since 7.6
+	 */
+	public static CompletableFuture<Void> updateIndexWithEntityAsync(RequestExecutor client, String index, HttpEntity settings) {
+		if (settings == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		logger.debug("updating settings for index [{}]", index);
+		return client.performRequestAsync(updateSettingsRequest(index, settings)).thenApply(response -> null);
+	}
 }
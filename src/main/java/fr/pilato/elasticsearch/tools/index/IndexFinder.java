@@ -19,7 +19,8 @@
 
 package fr.pilato.elasticsearch.tools.index;
 
-import fr.pilato.elasticsearch.tools.ResourceList;
+import fr.pilato.elasticsearch.tools.ResourceIndex;
+import fr.pilato.elasticsearch.tools.ResourceManifest;
 import fr.pilato.elasticsearch.tools.SettingsFinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,12 +56,30 @@ public class IndexFinder extends SettingsFinder {
         if (root == null) {
             return findIndexNames();
         }
+        return findIndexNames(IndexFinder.class.getClassLoader(), root);
+    }
 
+    /**
+     * Find all indices existing in a given classpath dir of a class loader
+     * @param classLoader class loader to read resources from
+     * @param root dir within the classpath
+     * @return a list of indices
+     * @throws IOException if connection with elasticsearch is failing
+     * @throws URISyntaxException this should not happen
+     * @since 7.6
+     */
+    public static List<String> findIndexNames(final ClassLoader classLoader, final String root) throws IOException, URISyntaxException {
         logger.debug("Looking for indices in classpath under [{}].", root);
 
+        ResourceManifest manifest = ResourceIndex.getInstance(classLoader).getManifest(root);
+        if (manifest != null) {
+            logger.debug("Using manifest for [{}].", root);
+            return manifest.getIndexNames();
+        }
+
         final List<String> indexNames = new ArrayList<>();
         final Set<String> keys = new HashSet<>();
-        String[] resources = ResourceList.getResources(root + "/"); // "es/" or "a/b/c/"
+        String[] resources = ResourceIndex.getInstance(classLoader).list(root + "/"); // "es/" or "a/b/c/"
         for (String resource : resources) {
             if (!resource.isEmpty()) {
                 logger.trace(" - resource [{}].", resource);
@@ -21,6 +21,7 @@ package fr.pilato.elasticsearch.tools.index;
 
 import fr.pilato.elasticsearch.tools.SettingsFinder.Defaults;
 import fr.pilato.elasticsearch.tools.SettingsReader;
+import org.apache.http.HttpEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,8 +44,31 @@ public class IndexSettingsReader extends SettingsReader {
 	 */
 	public static String readSettings(String root, String index, String jsonFile) {
 		logger.trace("Reading [{}] for [{}] in [{}]...", jsonFile, index, root);
-		String settingsFile = root + "/" + index + "/" + jsonFile;
-		return readFileFromClasspath(settingsFile);
+		return readFileFromClasspath(getSettingsFile(root, index, jsonFile));
+	}
+
+	/**
+	 * Read index settings as a request body, without decoding them when there is no variable to replace
+	 * @param root dir within the classpath. If null, default classpath dir is used.
+	 * @param index index name
+	 * @param jsonFile json file to read
+	 * @return Settings or null if the file does not exist
+	 * @since 7.6
+	 */
+	public static HttpEntity readSettingsEntity(String root, String index, String jsonFile) {
+		return readEntityFromClasspath(getSettingsFile(root == null ? Defaults.ConfigDir : root, index, jsonFile));
+	}
+
+	/**
+	 * Path of an index settings file in the classpath
+	 * @param root dir within the classpath
+	 * @param index index name
+	 * @param jsonFile json file name
+	 * @return the path of the file
+	 * @since 7.6
+	 */
+	public static String getSettingsFile(String root, String index, String jsonFile) {
+		return root + "/" + index + "/" + jsonFile;
 	}
 
 	/**
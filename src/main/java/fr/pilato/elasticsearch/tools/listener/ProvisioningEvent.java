@@ -0,0 +1,115 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.listener;
+
+/**
+ * Something which happened while provisioning, with its timing
+ */
+public class ProvisioningEvent {
+
+	public enum Phase {
+		/**
+		 * Scan of the classpath to find templates or indices
+		 */
+		SCAN,
+		/**
+		 * Read of a file from the classpath
+		 */
+		READ,
+		/**
+		 * Variable substitution in a file content
+		 */
+		SUBSTITUTION,
+		/**
+		 * A single request sent to elasticsearch
+		 */
+		HTTP,
+		/**
+		 * Provisioning of a single resource, all its requests included
+		 */
+		RESOURCE,
+		/**
+		 * The whole run
+		 */
+		RUN
+	}
+
+	private final Phase phase;
+	private final String name;
+	private final String action;
+	private final long size;
+	private final int status;
+	private final long tookNanos;
+	private final Throwable failure;
+
+	/**
+	 * @param phase phase of the provisioning
+	 * @param name resource name, file name or request endpoint
+	 * @param action action taken (planned action, http method...), null if none
+	 * @param size payload size: bytes sent for http calls and files read, characters for substituted contents. -1 if unknown.
+	 * @param status http status code, -1 if none
+	 * @param tookNanos duration in nanoseconds
+	 * @param failure failure if any
+	 */
+	public ProvisioningEvent(Phase phase, String name, String action, long size, int status, long tookNanos, Throwable failure) {
+		this.phase = phase;
+		this.name = name;
+		this.action = action;
+		this.size = size;
+		this.status = status;
+		this.tookNanos = tookNanos;
+		this.failure = failure;
+	}
+
+	public Phase getPhase() {
+		return phase;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getAction() {
+		return action;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public long getTookNanos() {
+		return tookNanos;
+	}
+
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	@Override
+	public String toString() {
+		return phase + " [" + name + "]" + (action == null ? "" : " " + action) +
+				(status == -1 ? "" : " status " + status) + (size == -1 ? "" : " size " + size) +
+				" took " + tookNanos / 1_000 + "us" + (failure == null ? "" : " (" + failure.getMessage() + ")");
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.listener;
+
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Receives the events of a provisioning run. Events can be sent concurrently from many threads,
+ * including the elasticsearch client I/O threads, so implementations must be thread safe and fast.
+ */
+@FunctionalInterface
+public interface ProvisioningListener {
+
+	/**
+	 * Called for each event
+	 * @param event the event
+	 */
+	void onEvent(ProvisioningEvent event);
+
+	/**
+	 * A listener which does nothing
+	 */
+	ProvisioningListener NOOP = event -> { };
+
+	/**
+	 * Dispatch events to many listeners. A listener which fails does not prevent the others from being called.
+	 * @param listeners listeners to call
+	 * @return a single listener
+	 */
+	static ProvisioningListener of(List<ProvisioningListener> listeners) {
+		if (listeners.isEmpty()) {
+			return NOOP;
+		}
+		List<ProvisioningListener> copy = new ArrayList<>(listeners);
+		return event -> {
+			for (ProvisioningListener listener : copy) {
+				try {
+					listener.onEvent(event);
+				} catch (RuntimeException e) {
+					LoggerFactory.getLogger(ProvisioningListener.class).warn("Listener failed on {}: {}", event, e.getMessage());
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.listener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects timings per phase and logs a summary when the run is done:
+ * <pre>
+ * Provisioning report: 12 resources in 154ms
+ *   SCAN          2 calls,   total   12ms, max    8ms
+ *   ...
+ *   http status: 200=14, 404=3
+ *   slowest resources:
+ *     INDEX [twitter] CREATE: 35ms
+ * </pre>
+ */
+public class SummaryReportListener implements ProvisioningListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(SummaryReportListener.class);
+
+	private final int slowest;
+	private final Map<ProvisioningEvent.Phase, PhaseStats> phases = new EnumMap<>(ProvisioningEvent.Phase.class);
+	private final Map<Integer, LongAdder> statuses = new ConcurrentSkipListMap<>();
+	private final Queue<ProvisioningEvent> resources = new ConcurrentLinkedQueue<>();
+	private volatile ProvisioningEvent run;
+
+	public SummaryReportListener() {
+		this(10);
+	}
+
+	/**
+	 * @param slowest number of slowest resources to report
+	 */
+	public SummaryReportListener(int slowest) {
+		this.slowest = slowest;
+		for (ProvisioningEvent.Phase phase : ProvisioningEvent.Phase.values()) {
+			phases.put(phase, new PhaseStats());
+		}
+	}
+
+	@Override
+	public void onEvent(ProvisioningEvent event) {
+		phases.get(event.getPhase()).add(event.getTookNanos());
+		if (event.getStatus() != -1) {
+			statuses.computeIfAbsent(event.getStatus(), s -> new LongAdder()).increment();
+		}
+		if (event.getPhase() == ProvisioningEvent.Phase.RESOURCE) {
+			resources.add(event);
+		}
+		if (event.getPhase() == ProvisioningEvent.Phase.RUN) {
+			run = event;
+			logger.info("{}", getReport());
+		}
+	}
+
+	/**
+	 * @return the summary of all the events received so far
+	 */
+	public String getReport() {
+		StringBuilder sb = new StringBuilder("Provisioning report: ").append(resources.size()).append(" resources");
+		if (run != null) {
+			sb.append(" in ").append(millis(run.getTookNanos()));
+		}
+		for (Map.Entry<ProvisioningEvent.Phase, PhaseStats> phase : phases.entrySet()) {
+			PhaseStats stats = phase.getValue();
+			if (stats.count.sum() > 0 && phase.getKey() != ProvisioningEvent.Phase.RUN) {
+				sb.append(System.lineSeparator()).append(String.format("  %-13s %5d calls, total %7s, max %7s",
+						phase.getKey(), stats.count.sum(), millis(stats.total.sum()), millis(stats.max.get())));
+			}
+		}
+		if (!statuses.isEmpty()) {
+			sb.append(System.lineSeparator()).append("  http status:");
+			String separator = " ";
+			for (Map.Entry<Integer, LongAdder> status : statuses.entrySet()) {
+				sb.append(separator).append(status.getKey()).append("=").append(status.getValue().sum());
+				separator = ", ";
+			}
+		}
+		List<ProvisioningEvent> sorted = new ArrayList<>(resources);
+		if (!sorted.isEmpty()) {
+			sorted.sort(Comparator.comparingLong(ProvisioningEvent::getTookNanos).reversed());
+			sb.append(System.lineSeparator()).append("  slowest resources:");
+			for (ProvisioningEvent event : sorted.subList(0, Math.min(slowest, sorted.size()))) {
+				sb.append(System.lineSeparator()).append("    ").append(event.getName())
+						.append(event.getAction() == null ? "" : " " + event.getAction())
+						.append(": ").append(millis(event.getTookNanos()));
+			}
+		}
+		return sb.toString();
+	}
+
+	private static String millis(long nanos) {
+		return nanos / 1_000_000 + "ms";
+	}
+
+	private static class PhaseStats {
+		private final LongAdder count = new LongAdder();
+		private final LongAdder total = new LongAdder();
+		private final AtomicLong max = new AtomicLong();
+
+		private void add(long nanos) {
+			count.increment();
+			total.add(nanos);
+			max.accumulateAndGet(nanos, Math::max);
+		}
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.provisioning;
+
+/**
+ * How the planner decides if an existing resource changed
+ */
+public enum ChangeDetection {
+	/**
+	 * Read the full live definition and compare it with the classpath definition
+	 */
+	DIFF,
+	/**
+	 * Store a hash of the classpath definition in the mappings _meta when the resource is created
+	 * and only read this hash back. The cost does not depend on the size of the mappings.
+	 * Resources created without a fingerprint are considered as changed.
+	 * _update_settings.json are still compared with the live settings.
+	 */
+	FINGERPRINT
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package fr.pilato.elasticsearch.tools.provisioning;
+
+/**
+ * Outcome of the provisioning of a single cluster when provisioning many clusters
+ * @since 7.6
+ */
+public class ClusterResult {
+
+	private final String cluster;
+	private final ProvisioningResult result;
+	private final Throwable failure;
+	private final long tookNanos;
+
+	ClusterResult(String cluster, ProvisioningResult result, Throwable failure, long tookNanos) {
+		this.cluster = cluster;
+		this.result = result;
+		this.failure = failure;
+		this.tookNanos = tookNanos;
+	}
+
+	/**
+	 * @return the name the cluster was given
+	 */
+	public String getCluster() {
+		return cluster;
+	}
+
+	/**
+	 * @return the result for each resource, null if the provisioning could not run at all
+	 */
+	public ProvisioningResult getResult() {
+		return result;
+	}
+
+	/**
+	 * @return why the provisioning could not run, for example an unreachable cluster or a lock which could not
+	 * be acquired. Null if it ran, even if some resources failed.
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	public long getTookNanos() {
+		return tookNanos;
+	}
+
+	public boolean isSuccessful() {
+		return failure == null && result.isSuccessful();
+	}
+
+	@Override
+	public String toString() {
+		return "[" + cluster + "]: " + (failure != null ? "FAILED (" + failure.getMessage() + ")" : result) +
+				" in " + tookNanos / 1_000_000 + "ms";
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.provisioning;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Canonical forms of index, settings and template definitions, so a classpath definition
+ * can be compared with what elasticsearch returns for the same resource.
+ * <ul>
+ *     <li>settings are flattened and the "index." prefix is removed</li>
+ *     <li>all scalar values are compared as strings as elasticsearch returns settings as strings</li>
+ *     <li>old style "template" pattern is converted to "index_patterns"</li>
+ * </ul>
+ */
+class Definitions {
+
+	/**
+	 * Canonical form of an _update_settings.json content or of the settings of an index
+	 */
+	@SuppressWarnings("unchecked")
+	static Map<String, Object> settings(Map<String, Object> settings) {
+		Map<String, Object> content = settings;
+		if (content.size() == 1 && content.get("settings") instanceof Map) {
+			content = (Map<String, Object>) content.get("settings");
+		}
+		Map<String, Object> flat = new TreeMap<>();
+		flatten("", content, flat);
+		return flat;
+	}
+
+	/**
+	 * Canonical form of a _settings.json content or of an index definition.
+	 * Like when it is stamped with its fingerprint, a content holding only settings is moved under "settings".
+	 */
+	static Map<String, Object> index(Map<String, Object> index) {
+		if (!index.isEmpty() && !Fingerprints.isStructured(index)) {
+			return definition(Collections.singletonMap("settings", index));
+		}
+		return definition(index);
+	}
+
+	/**
+	 * Canonical form of a template
+	 */
+	static Map<String, Object> template(Map<String, Object> template) {
+		Map<String, Object> canonical = definition(template);
+		Object patterns = canonical.remove("template");
+		if (patterns != null && !canonical.containsKey("index_patterns")) {
+			canonical.put("index_patterns", patterns);
+		}
+		if (canonical.get("index_patterns") instanceof String) {
+			canonical.put("index_patterns", Collections.singletonList(canonical.get("index_patterns")));
+		}
+		return canonical;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> definition(Map<String, Object> definition) {
+		Map<String, Object> canonical = new TreeMap<>();
+		for (Map.Entry<String, Object> entry : definition.entrySet()) {
+			if ("settings".equals(entry.getKey()) && entry.getValue() instanceof Map) {
+				canonical.put("settings", settings((Map<String, Object>) entry.getValue()));
+			} else {
+				canonical.put(entry.getKey(), canonical(entry.getValue()));
+			}
+		}
+		return canonical;
+	}
+
+	/**
+	 * Check that everything defined in the desired definition exists with the same value in the live one.
+	 * Keys which only exist in the live definition (defaults, generated values...) are ignored.
+	 * @param live canonical live definition
+	 * @param desired canonical desired definition
+	 * @return true if the live definition is up to date
+	 */
+	static boolean contains(Object live, Object desired) {
+		if (desired instanceof Map) {
+			if (!(live instanceof Map)) {
+				return false;
+			}
+			Map<?, ?> liveMap = (Map<?, ?>) live;
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) desired).entrySet()) {
+				if (!liveMap.containsKey(entry.getKey()) || !contains(liveMap.get(entry.getKey()), entry.getValue())) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (desired instanceof List) {
+			if (!(live instanceof List) || ((List<?>) live).size() != ((List<?>) desired).size()) {
+				return false;
+			}
+			for (int i = 0; i < ((List<?>) desired).size(); i++) {
+				if (!contains(((List<?>) live).get(i), ((List<?>) desired).get(i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (desired == null) {
+			return live == null;
+		}
+		return live != null && !(live instanceof Map) && !(live instanceof List) && desired.equals(live);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void flatten(String prefix, Map<String, Object> source, Map<String, Object> target) {
+		for (Map.Entry<String, Object> entry : source.entrySet()) {
+			String key = prefix + entry.getKey();
+			if (entry.getValue() instanceof Map) {
+				flatten(key + ".", (Map<String, Object>) entry.getValue(), target);
+			} else {
+				if (key.startsWith("index.")) {
+					key = key.substring("index.".length());
+				}
+				target.put(key, canonical(entry.getValue()));
+			}
+		}
+	}
+
+	private static Object canonical(Object value) {
+		if (value instanceof Map) {
+			Map<String, Object> canonical = new TreeMap<>();
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				canonical.put(String.valueOf(entry.getKey()), canonical(entry.getValue()));
+			}
+			return canonical;
+		}
+		if (value instanceof List) {
+			List<Object> canonical = new ArrayList<>();
+			for (Object item : (List<?>) value) {
+				canonical.add(canonical(item));
+			}
+			return canonical;
+		}
+		return value == null ? null : String.valueOf(value);
+	}
+}
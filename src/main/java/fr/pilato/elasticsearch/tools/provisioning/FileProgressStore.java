@@ -0,0 +1,145 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.provisioning;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tenants done, appended to a file one per line. Tenants are written in batches by a background thread,
+ * so the threads completing the requests never wait for the disk. The file stays open until {@link #flush()}.
+ */
+class FileProgressStore implements ProgressStore {
+
+	private static final Logger logger = LoggerFactory.getLogger(FileProgressStore.class);
+	private static final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "beyonder-progress");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final Path file;
+	private final Set<String> done = new HashSet<>();
+	private List<String> unwritten = new ArrayList<>();
+	private boolean writing;
+	// Only used by the writer thread
+	private BufferedWriter out;
+
+	FileProgressStore(Path file) throws IOException {
+		this.file = file;
+		if (Files.exists(file)) {
+			for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+				if (!line.isEmpty()) {
+					done.add(line);
+				}
+			}
+		}
+	}
+
+	@Override
+	public synchronized boolean isDone(String tenant) {
+		return done.contains(tenant);
+	}
+
+	@Override
+	public synchronized void markDone(String tenant) {
+		if (!done.add(tenant)) {
+			return;
+		}
+		unwritten.add(tenant);
+		if (!writing) {
+			writing = true;
+			writer.execute(this::writeBatches);
+		}
+	}
+
+	@Override
+	public CompletableFuture<Void> flush() {
+		return CompletableFuture.runAsync(() -> {
+			try {
+				write(take());
+				if (out != null) {
+					out.close();
+					out = null;
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, writer);
+	}
+
+	/**
+	 * Write the tenants marked done until there is none left. Tenants marked done in the meantime are written by the
+	 * next batch.
+	 */
+	private void writeBatches() {
+		while (true) {
+			List<String> batch;
+			synchronized (this) {
+				batch = take();
+				if (batch.isEmpty()) {
+					writing = false;
+					return;
+				}
+			}
+			try {
+				write(batch);
+			} catch (IOException e) {
+				// The indices exist: the next run will only find them again
+				logger.warn("Could not record that tenants {} are done: {}", batch, e.getMessage());
+			}
+		}
+	}
+
+	private synchronized List<String> take() {
+		List<String> batch = unwritten;
+		unwritten = new ArrayList<>();
+		return batch;
+	}
+
+	private void write(List<String> batch) throws IOException {
+		if (batch.isEmpty()) {
+			return;
+		}
+		if (out == null) {
+			out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		}
+		for (String tenant : batch) {
+			out.write(tenant);
+			out.newLine();
+		}
+		out.flush();
+	}
+}
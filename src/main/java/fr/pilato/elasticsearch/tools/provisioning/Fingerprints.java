@@ -0,0 +1,120 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.provisioning;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import fr.pilato.elasticsearch.tools.util.Digests;
+import fr.pilato.elasticsearch.tools.util.JsonUtil;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Content hash of a resolved resource. The hash is stored in the mappings {@code _meta} of the index
+ * or template when it is created, so a later start only has to read it back to know if the resource changed.
+ */
+public class Fingerprints {
+
+	/**
+	 * Name of the field holding the fingerprint in the mappings _meta
+	 */
+	public static final String META_KEY = "beyonder_fingerprint";
+
+	private static final ObjectMapper canonicalMapper = new ObjectMapper()
+			.configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+	private static final Set<String> KNOWN_KEYS = new HashSet<>(Arrays.asList("settings", "mappings", "aliases",
+			"index_patterns", "template", "order", "version"));
+
+	/**
+	 * Compute the fingerprint of a resource. Formatting and key order do not change the fingerprint.
+	 * @param json resolved content of the resource. Can be null.
+	 * @return the SHA-256 of the canonical JSON content, as an hex string
+	 * @throws IOException if the content is not a valid JSON object
+	 */
+	public static String of(String json) throws IOException {
+		byte[] canonical = canonicalMapper.writeValueAsBytes(JsonUtil.asMap(json));
+		return Digests.hex(Digests.sha256().digest(canonical));
+	}
+
+	/**
+	 * Add the fingerprint to the mappings _meta of an index or template content
+	 * @param json resolved content of the resource. Can be null.
+	 * @param fingerprint fingerprint to store
+	 * @return the content to send to elasticsearch
+	 * @throws IOException if the content is not a valid JSON object
+	 */
+	@SuppressWarnings("unchecked")
+	public static String stamp(String json, String fingerprint) throws IOException {
+		Map<String, Object> content = JsonUtil.asMap(json);
+		if (!content.isEmpty() && !isStructured(content)) {
+			// Only settings were provided
+			Map<String, Object> wrapped = new LinkedHashMap<>();
+			wrapped.put("settings", content);
+			content = wrapped;
+		}
+
+		Object mappings = content.get("mappings");
+		if (!(mappings instanceof Map)) {
+			mappings = new LinkedHashMap<String, Object>();
+			content.put("mappings", mappings);
+		}
+		Object meta = ((Map<String, Object>) mappings).get("_meta");
+		if (!(meta instanceof Map)) {
+			meta = new LinkedHashMap<String, Object>();
+			((Map<String, Object>) mappings).put("_meta", meta);
+		}
+		((Map<String, Object>) meta).put(META_KEY, fingerprint);
+		return JsonUtil.asJson(content);
+	}
+
+	/**
+	 * Read the fingerprint from the mappings of an index or template as returned by elasticsearch
+	 * @param definition live definition
+	 * @return the fingerprint or null if none
+	 */
+	static String read(Object definition) {
+		Object value = definition;
+		for (String key : new String[]{ "mappings", "_meta", META_KEY }) {
+			if (!(value instanceof Map)) {
+				return null;
+			}
+			value = ((Map<?, ?>) value).get(key);
+		}
+		return value == null ? null : value.toString();
+	}
+
+	/**
+	 * Templates are always structured. Indices can be defined with their settings only.
+	 */
+	static boolean isStructured(Map<String, Object> content) {
+		for (String key : content.keySet()) {
+			if (!KNOWN_KEYS.contains(key)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package fr.pilato.elasticsearch.tools.provisioning;
+
+import fr.pilato.elasticsearch.tools.rest.RequestExecutor;
+import fr.pilato.elasticsearch.tools.util.Futures;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Provisions the same resources on many clusters at the same time
+ * @since 7.6
+ */
+public class MultiClusterProvisioner {
+	private static final Logger logger = LoggerFactory.getLogger(MultiClusterProvisioner.class);
+
+	private final Map<String, RequestExecutor> clusters;
+	private final ProvisioningOptions options;
+
+	/**
+	 * @param clusters request executor of each cluster, by cluster name
+	 * @param options provisioning options, used for all the clusters
+	 */
+	public MultiClusterProvisioner(Map<String, RequestExecutor> clusters, ProvisioningOptions options) {
+		this.clusters = new LinkedHashMap<>(clusters);
+		this.options = options;
+	}
+
+	/**
+	 * Provision the same resources on many clusters at the same time. Resources are read once by the caller.
+	 * Each cluster is provisioned with the asynchronous API, so a slow or unreachable cluster does not delay the others.
+	 * @param resources resources to provision
+	 * @return a future which completes once all the clusters are done. It never completes exceptionally:
+	 * failures are reported in the result of each cluster.
+	 */
+	public CompletableFuture<MultiClusterResult> provisionAsync(ResourceSet resources) {
+		long start = System.nanoTime();
+		List<CompletableFuture<ClusterResult>> futures = new ArrayList<>(clusters.size());
+		for (Map.Entry<String, RequestExecutor> cluster : clusters.entrySet()) {
+			futures.add(provisionAsync(cluster.getKey(), cluster.getValue(), resources));
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(done -> {
+			List<ClusterResult> results = new ArrayList<>(futures.size());
+			for (CompletableFuture<ClusterResult> future : futures) {
+				results.add(future.join());
+			}
+			MultiClusterResult result = new MultiClusterResult(results, System.nanoTime() - start);
+			logger.debug("provisioning of all clusters done: {}", result);
+			return result;
+		});
+	}
+
+	private CompletableFuture<ClusterResult> provisionAsync(String cluster, RequestExecutor client, ResourceSet resources) {
+		long start = System.nanoTime();
+		CompletableFuture<ProvisioningResult> result;
+		try {
+			result = new ProvisioningEngine(client, options).provisionAsync(resources);
+		} catch (RuntimeException e) {
+			result = Futures.failedFuture(e);
+		}
+		return result.handle((r, e) -> {
+			Throwable failure = e == null ? null : Futures.unwrap(e);
+			ClusterResult clusterResult = new ClusterResult(cluster, r, failure, System.nanoTime() - start);
+			if (clusterResult.isSuccessful()) {
+				logger.debug("Cluster {}", clusterResult);
+			} else {
+				logger.warn("Cluster {}", clusterResult);
+			}
+			return clusterResult;
+		});
+	}
+}
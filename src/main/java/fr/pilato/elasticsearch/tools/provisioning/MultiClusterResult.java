@@ -0,0 +1,72 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package fr.pilato.elasticsearch.tools.provisioning;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of the provisioning of many clusters: one entry per cluster, in the order the clusters were given
+ * @since 7.6
+ */
+public class MultiClusterResult {
+
+	private final List<ClusterResult> results;
+	private final long tookNanos;
+
+	MultiClusterResult(List<ClusterResult> results, long tookNanos) {
+		this.results = Collections.unmodifiableList(results);
+		this.tookNanos = tookNanos;
+	}
+
+	public List<ClusterResult> getResults() {
+		return results;
+	}
+
+	/**
+	 * @return the clusters which could not be provisioned or where at least one resource failed
+	 */
+	public List<ClusterResult> getFailures() {
+		List<ClusterResult> failures = new ArrayList<>();
+		for (ClusterResult result : results) {
+			if (!result.isSuccessful()) {
+				failures.add(result);
+			}
+		}
+		return failures;
+	}
+
+	public boolean isSuccessful() {
+		return getFailures().isEmpty();
+	}
+
+	/**
+	 * @return time until the slowest cluster was done
+	 */
+	public long getTookNanos() {
+		return tookNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "MultiClusterResult{" + results.size() + " clusters, " + getFailures().size() + " failures, took " +
+				tookNanos / 1_000_000 + "ms}";
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.provisioning;
+
+/**
+ * What the planning phase decided to do with a resource
+ */
+public class PlannedAction {
+
+	public enum Action {
+		/**
+		 * The resource does not exist yet
+		 */
+		CREATE,
+		/**
+		 * The resource exists but differs from its classpath definition
+		 */
+		UPDATE,
+		/**
+		 * Nothing to do
+		 */
+		NOOP
+	}
+
+	private final ResourceResult.Type type;
+	private final String name;
+	private final Action action;
+	private final String reason;
+
+	PlannedAction(ResourceResult.Type type, String name, Action action, String reason) {
+		this.type = type;
+		this.name = name;
+		this.action = action;
+		this.reason = reason;
+	}
+
+	public ResourceResult.Type getType() {
+		return type;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Action getAction() {
+		return action;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+
+	@Override
+	public String toString() {
+		return action + " " + type + " [" + name + "]: " + reason;
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.provisioning;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the tenants which were fully provisioned, so an interrupted {@link TenantProvisioner} run
+ * can be started again and only provision the remaining tenants.
+ * @since 7.6
+ */
+public interface ProgressStore {
+
+	/**
+	 * @param tenant tenant id
+	 * @return true if all the indices of the tenant were provisioned by a previous run
+	 */
+	boolean isDone(String tenant);
+
+	/**
+	 * Called once all the indices of a tenant exist, by the thread which completed the last request.
+	 * It should not block: the progress can be recorded later, until {@link #flush()} completes.
+	 * @param tenant tenant id
+	 * @throws IOException if the progress can not be recorded
+	 */
+	void markDone(String tenant) throws IOException;
+
+	/**
+	 * Record the tenants marked done which are not recorded yet and release the resources held meanwhile.
+	 * Called once a run is done. The store can still be used afterwards.
+	 * @return a future which completes once the tenants marked done are recorded
+	 */
+	default CompletableFuture<Void> flush() {
+		return CompletableFuture.completedFuture(null);
+	}
+
+	/**
+	 * @return a store which only remembers the tenants done by this instance
+	 */
+	static ProgressStore inMemory() {
+		Set<String> done = ConcurrentHashMap.newKeySet();
+		return new ProgressStore() {
+			@Override
+			public boolean isDone(String tenant) {
+				return done.contains(tenant);
+			}
+
+			@Override
+			public void markDone(String tenant) {
+				done.add(tenant);
+			}
+		};
+	}
+
+	/**
+	 * @param file file to record the tenants in, one per line. It is created if it does not exist.
+	 *             Tenants are written by a background thread and the file is closed by {@link #flush()}.
+	 * @return a store which survives restarts
+	 * @throws IOException if the file can not be read
+	 */
+	static ProgressStore file(Path file) throws IOException {
+		return new FileProgressStore(file);
+	}
+}
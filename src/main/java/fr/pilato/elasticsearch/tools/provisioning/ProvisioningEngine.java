@@ -0,0 +1,865 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.provisioning;
+
+import fr.pilato.elasticsearch.tools.ResourceFormat;
+import fr.pilato.elasticsearch.tools.SettingsFinder.Defaults;
+import fr.pilato.elasticsearch.tools.cluster.ClusterHealth;
+import fr.pilato.elasticsearch.tools.cluster.ClusterMetadata;
+import fr.pilato.elasticsearch.tools.cluster.ProvisioningLock;
+import fr.pilato.elasticsearch.tools.cluster.ProvisioningState;
+import fr.pilato.elasticsearch.tools.index.IndexElasticsearchUpdater;
+import fr.pilato.elasticsearch.tools.listener.ProvisioningEvent;
+import fr.pilato.elasticsearch.tools.listener.ProvisioningListener;
+import fr.pilato.elasticsearch.tools.rest.ActiveShardsRequestExecutor;
+import fr.pilato.elasticsearch.tools.rest.AdaptiveRequestExecutor;
+import fr.pilato.elasticsearch.tools.rest.CompressingRequestExecutor;
+import fr.pilato.elasticsearch.tools.rest.ListeningRequestExecutor;
+import fr.pilato.elasticsearch.tools.rest.RequestExecutor;
+import fr.pilato.elasticsearch.tools.rest.RetryingRequestExecutor;
+import fr.pilato.elasticsearch.tools.template.TemplateElasticsearchUpdater;
+import fr.pilato.elasticsearch.tools.util.Digests;
+import fr.pilato.elasticsearch.tools.util.Futures;
+import fr.pilato.elasticsearch.tools.util.JsonUtil;
+import org.apache.http.HttpEntity;
+import org.elasticsearch.client.RestClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Provision templates and indices as a dependency graph:
+ * <ul>
+ *     <li>a template is created before any index it matches</li>
+ *     <li>an index is created before its _update_settings.json is applied</li>
+ * </ul>
+ * Independent resources are provisioned concurrently on a bounded executor. A failure
+ * does not abort the run: it is recorded for the resource and only the resources which
+ * depend on it are skipped.
+ * <p>
+ * When the cluster metadata is available, resources are first compared with their live definition
+ * (see {@link ProvisioningPlanner}) and only the ones which changed are applied.
+ * <p>
+ * With {@link ProvisioningOptions#setLock(boolean)}, only the instance holding the {@link ProvisioningLock}
+ * provisions the cluster. With {@link ProvisioningOptions#setStateMarker(boolean)}, nothing is done when
+ * the {@link ProvisioningState} recorded by the last successful run matches the resources.
+ * With {@link ProvisioningOptions#setWaitForStatus(String)}, nothing is done before the {@link ClusterHealth}
+ * reaches the expected status.
+ */
+public class ProvisioningEngine {
+
+	private static final Logger logger = LoggerFactory.getLogger(ProvisioningEngine.class);
+
+	private static final ProvisioningNode.Action NOTHING = () -> { };
+	private static final ProvisioningNode.AsyncAction NOTHING_ASYNC = () -> CompletableFuture.completedFuture(null);
+
+	private final RequestExecutor client;
+	private final ProvisioningOptions options;
+	private final ProvisioningListener listener;
+
+	public ProvisioningEngine(RestClient client, ProvisioningOptions options) {
+		this(RequestExecutor.of(client), options);
+	}
+
+	public ProvisioningEngine(RequestExecutor client, ProvisioningOptions options) {
+		this.listener = options.getListener();
+		// The run deadline of the retries starts now
+		this.client = client == null ? null : RetryingRequestExecutor.runScope(decorate(client, options));
+		this.options = options;
+	}
+
+	/**
+	 * Add the behaviors enabled in the options to every request sent to the cluster
+	 * @param client executor sending the requests
+	 * @param options provisioning options. The wait_for_active_shards values, the listeners, the compression, the adaptive
+	 *                concurrency and the retry policy are used.
+	 * @return the decorated executor
+	 * @since 7.6
+	 */
+	public static RequestExecutor decorate(RequestExecutor client, ProvisioningOptions options) {
+		if (options.hasWaitForActiveShards()) {
+			// Innermost, so the listeners see the parameter and the failure when the shards did not start
+			client = new ActiveShardsRequestExecutor(client, options::getWaitForActiveShards);
+		}
+		if (!options.getListeners().isEmpty()) {
+			client = new ListeningRequestExecutor(client, options.getListener());
+		}
+		if (options.isCompression()) {
+			// Compressed before the listeners see the request, so they get the size actually sent
+			client = new CompressingRequestExecutor(client, options.getCompressionThreshold());
+		}
+		if (options.isAdaptiveConcurrency()) {
+			// Outermost, so requests waiting for room are not timed by the listeners
+			client = new AdaptiveRequestExecutor(client, Math.min(options.getParallelism(), options.getMaxConcurrency()),
+					options.getMaxConcurrency(), options.getPendingTasksThreshold(), Defaults.PendingTasksSampleMillis);
+		}
+		if (options.getRetryPolicy() != null) {
+			// A request sent again waits for room under the adaptive limit like any other
+			client = new RetryingRequestExecutor(client, options.getRetryPolicy());
+		}
+		return client;
+	}
+
+	/**
+	 * Provision all the resources
+	 * @param resources resources to provision
+	 * @return the result for each resource. In dry run mode, the plan without any result.
+	 * @throws InterruptedException if interrupted while waiting for the provisioning to finish
+	 * @throws IOException in dry run mode, if the plan can not be computed. With a lock, if it can not be acquired.
+	 * When waiting for a cluster status, if it was not reached in time.
+	 */
+	public ProvisioningResult provision(ResourceSet resources) throws InterruptedException, IOException {
+		long start = System.nanoTime();
+		ProvisioningResult result = null;
+		Throwable failure = null;
+		try {
+			result = run(resources, start);
+			return result;
+		} catch (InterruptedException | IOException | RuntimeException e) {
+			failure = e;
+			throw e;
+		} finally {
+			done(resources, result, failure, start);
+		}
+	}
+
+	private ProvisioningResult run(ResourceSet resources, long start) throws InterruptedException, IOException {
+		if (options.isDryRun()) {
+			return dryRun(plan(resources), start);
+		}
+		if (options.getWaitForStatus() != null) {
+			ClusterHealth.waitFor(client, options.getWaitForStatus(), options.getHealthTimeoutMillis());
+		}
+		if (options.isStateMarker() && !options.isForce() && isApplied(resources)) {
+			return skipped(start, "Resources did not change since the last run. Nothing to do.");
+		}
+		if (!options.isLock()) {
+			return record(resources, apply(resources, start));
+		}
+
+		ProvisioningLock.Lease lease = lock().acquire(digest(resources));
+		if (lease == null) {
+			return skipped(start, "Resources were already provisioned by another instance. Nothing to do.");
+		}
+		boolean success = false;
+		try {
+			ProvisioningResult result = record(resources, apply(resources, start));
+			success = result.isSuccessful();
+			return result;
+		} finally {
+			lease.release(success);
+		}
+	}
+
+	private ProvisioningResult apply(ResourceSet resources, long start) throws InterruptedException {
+		ClusterMetadata metadata = null;
+		if (options.isClusterMetadata()) {
+			try {
+				metadata = ClusterMetadata.fetch(client);
+			} catch (IOException e) {
+				logger.debug("Can not read cluster metadata. Falling back to one check per resource: {}", e.getMessage());
+			}
+		}
+		ProvisioningPlan plan = null;
+		if (metadata != null && options.isPlan()) {
+			try {
+				plan = new ProvisioningPlanner(client, options).plan(resources, metadata);
+				logger.debug("{}", plan);
+			} catch (IOException e) {
+				logger.debug("Can not compute the provisioning plan. Applying all resources: {}", e.getMessage());
+			}
+		}
+		List<ProvisioningNode> nodes = buildGraph(resources, metadata, plan);
+		Map<ProvisioningNode, ResourceResult> results = execute(nodes);
+
+		List<ResourceResult> ordered = new ArrayList<>(nodes.size());
+		for (ProvisioningNode node : nodes) {
+			ordered.add(results.get(node));
+		}
+		ProvisioningResult result = new ProvisioningResult(ordered, plan, System.nanoTime() - start);
+		logger.debug("provisioning done: {}", result);
+		return result;
+	}
+
+	/**
+	 * Provision all the resources without blocking. Requests are chained on the futures returned
+	 * by the request executor so no thread waits for a response.
+	 * @param resources resources to provision
+	 * @return a future which completes with the result for each resource once all resources are done
+	 */
+	public CompletableFuture<ProvisioningResult> provisionAsync(ResourceSet resources) {
+		long start = System.nanoTime();
+		return runAsync(resources, start)
+				.whenComplete((result, e) -> done(resources, result, e == null ? null : Futures.unwrap(e), start));
+	}
+
+	private CompletableFuture<ProvisioningResult> runAsync(ResourceSet resources, long start) {
+		if (options.isDryRun()) {
+			return planAsync(resources).thenApply(plan -> dryRun(plan, start));
+		}
+		CompletableFuture<?> health = CompletableFuture.completedFuture(null);
+		if (options.getWaitForStatus() != null) {
+			health = ClusterHealth.waitForAsync(client, options.getWaitForStatus(), options.getHealthTimeoutMillis());
+		}
+		CompletableFuture<Boolean> applied = health.thenApply(h -> false);
+		if (options.isStateMarker() && !options.isForce()) {
+			applied = health.thenCompose(h -> state().isAppliedAsync(digest(resources)).exceptionally(e -> {
+				logger.debug("Can not read the provisioning state: {}", Futures.unwrap(e).getMessage());
+				return false;
+			}));
+		}
+
+		return applied.thenCompose(upToDate -> {
+			if (upToDate) {
+				return CompletableFuture.completedFuture(
+						skipped(start, "Resources did not change since the last run. Nothing to do."));
+			}
+			if (!options.isLock()) {
+				return applyAsync(resources, start).thenCompose(result -> recordAsync(resources, result));
+			}
+			return lock().acquireAsync(digest(resources)).thenCompose(lease -> {
+				if (lease == null) {
+					return CompletableFuture.completedFuture(
+							skipped(start, "Resources were already provisioned by another instance. Nothing to do."));
+				}
+				return applyAsync(resources, start)
+						.thenCompose(result -> recordAsync(resources, result))
+						.handle((result, e) -> lease.releaseAsync(e == null && result.isSuccessful())
+								.thenCompose(v -> e == null ? CompletableFuture.completedFuture(result)
+										: Futures.<ProvisioningResult>failedFuture(Futures.unwrap(e))))
+						.thenCompose(f -> f);
+			});
+		});
+	}
+
+	private CompletableFuture<ProvisioningResult> applyAsync(ResourceSet resources, long start) {
+		CompletableFuture<ClusterMetadata> metadata = CompletableFuture.completedFuture(null);
+		if (options.isClusterMetadata()) {
+			metadata = ClusterMetadata.fetchAsync(client).exceptionally(e -> {
+				logger.debug("Can not read cluster metadata. Falling back to one check per resource: {}",
+						Futures.unwrap(e).getMessage());
+				return null;
+			});
+		}
+		return metadata.thenCompose(m -> {
+			if (m == null || !options.isPlan()) {
+				return provisionAsync(buildGraph(resources, m, null), null, start);
+			}
+			return new ProvisioningPlanner(client, options).planAsync(resources, m)
+					.exceptionally(e -> {
+						logger.debug("Can not compute the provisioning plan. Applying all resources: {}",
+								Futures.unwrap(e).getMessage());
+						return null;
+					})
+					.thenCompose(plan -> provisionAsync(buildGraph(resources, m, plan), plan, start));
+		});
+	}
+
+	/**
+	 * Compare the resources with the cluster without changing anything
+	 * @param resources resources to compare
+	 * @return the plan
+	 * @throws IOException if the cluster can not be read
+	 * @since 7.6
+	 */
+	public ProvisioningPlan plan(ResourceSet resources) throws IOException {
+		ClusterMetadata metadata = ClusterMetadata.fetch(client);
+		return new ProvisioningPlanner(client, options).plan(resources, metadata);
+	}
+
+	/**
+	 * Compare the resources with the cluster without changing anything and without blocking
+	 * @param resources resources to compare
+	 * @return a future which completes with the plan
+	 * @since 7.6
+	 */
+	public CompletableFuture<ProvisioningPlan> planAsync(ResourceSet resources) {
+		return ClusterMetadata.fetchAsync(client)
+				.thenCompose(metadata -> new ProvisioningPlanner(client, options).planAsync(resources, metadata));
+	}
+
+	private void done(ResourceSet resources, ProvisioningResult result, Throwable failure, long start) {
+		listener.onEvent(new ProvisioningEvent(ProvisioningEvent.Phase.RUN, resources.getRoot(), null,
+				result == null ? -1 : result.getResults().size(), -1, System.nanoTime() - start, failure));
+	}
+
+	private ResourceResult done(ResourceResult result) {
+		listener.onEvent(new ProvisioningEvent(ProvisioningEvent.Phase.RESOURCE, result.getType() + " [" + result.getName() + "]",
+				result.getAction() == null ? null : result.getAction().name(), -1, -1, result.getTookNanos(), result.getFailure()));
+		return result;
+	}
+
+	/**
+	 * Digest recorded by the state marker and published by the lock: the resources, and the options
+	 * which change what a run does with them
+	 */
+	private String digest(ResourceSet resources) {
+		MessageDigest sha = Digests.sha256();
+		Digests.update(sha, resources.getDigest());
+		Digests.update(sha, "merge=" + options.isMerge());
+		Digests.update(sha, "force=" + options.isForce());
+		Digests.update(sha, "changeDetection=" + options.getChangeDetection());
+		Digests.update(sha, "optimistic=" + options.isOptimistic());
+		return Digests.hex(sha.digest());
+	}
+
+	private ProvisioningLock lock() {
+		return new ProvisioningLock(client, options.getSystemIndex(), options.getLockTtlMillis(), options.getLockTimeoutMillis());
+	}
+
+	private ProvisioningState state() {
+		return new ProvisioningState(client, options.getSystemIndex());
+	}
+
+	private boolean isApplied(ResourceSet resources) {
+		try {
+			return state().isApplied(digest(resources));
+		} catch (IOException e) {
+			logger.debug("Can not read the provisioning state: {}", e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Record the state after a successful run
+	 */
+	private ProvisioningResult record(ResourceSet resources, ProvisioningResult result) {
+		if (options.isStateMarker() && result.isSuccessful()) {
+			try {
+				state().record(digest(resources));
+			} catch (IOException e) {
+				logger.warn("Could not record the provisioning state: {}", e.getMessage());
+			}
+		}
+		return result;
+	}
+
+	private CompletableFuture<ProvisioningResult> recordAsync(ResourceSet resources, ProvisioningResult result) {
+		if (!options.isStateMarker() || !result.isSuccessful()) {
+			return CompletableFuture.completedFuture(result);
+		}
+		return state().recordAsync(digest(resources)).handle((v, e) -> {
+			if (e != null) {
+				logger.warn("Could not record the provisioning state: {}", Futures.unwrap(e).getMessage());
+			}
+			return result;
+		});
+	}
+
+	private ProvisioningResult skipped(long start, String reason) {
+		logger.info(reason);
+		return new ProvisioningResult(Collections.emptyList(), null, System.nanoTime() - start);
+	}
+
+	private ProvisioningResult dryRun(ProvisioningPlan plan, long start) {
+		logger.info("Dry run. Nothing is changed. {}", plan);
+		return new ProvisioningResult(Collections.emptyList(), plan, System.nanoTime() - start);
+	}
+
+	private CompletableFuture<ProvisioningResult> provisionAsync(List<ProvisioningNode> nodes, ProvisioningPlan plan, long start) {
+		// No thread bounds the run, so the number of resources in flight is bounded here
+		Permits permits = new Permits(concurrency());
+
+		// Nodes are built in order, so the dependencies of a node always come before it
+		Map<ProvisioningNode, CompletableFuture<ResourceResult>> futures = new LinkedHashMap<>();
+		for (ProvisioningNode node : nodes) {
+			List<CompletableFuture<ResourceResult>> dependencies = new ArrayList<>();
+			for (ProvisioningNode dependency : node.getDependencies()) {
+				dependencies.add(futures.get(dependency));
+			}
+			futures.put(node, executeAsync(node, dependencies, permits));
+		}
+
+		return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).thenApply(v -> {
+			List<ResourceResult> ordered = new ArrayList<>(nodes.size());
+			for (CompletableFuture<ResourceResult> future : futures.values()) {
+				ordered.add(future.join());
+			}
+			ProvisioningResult result = new ProvisioningResult(ordered, plan, System.nanoTime() - start);
+			logger.debug("provisioning done: {}", result);
+			return result;
+		});
+	}
+
+	private CompletableFuture<ResourceResult> executeAsync(ProvisioningNode node, List<CompletableFuture<ResourceResult>> dependencies,
+														   Permits permits) {
+		return CompletableFuture.allOf(dependencies.toArray(new CompletableFuture[0])).thenCompose(v -> {
+			for (CompletableFuture<ResourceResult> dependency : dependencies) {
+				ResourceResult dependencyResult = dependency.join();
+				if (dependencyResult.getStatus() != ResourceResult.Status.SUCCESS) {
+					logger.debug("skipping {} as {} [{}] failed", node, dependencyResult.getType(), dependencyResult.getName());
+					return CompletableFuture.completedFuture(done(node.result(ResourceResult.Status.SKIPPED,
+							dependencyResult.getFailure(), 0)));
+				}
+			}
+
+			return permits.submit(() -> {
+				logger.trace("provisioning {}", node);
+				long start = System.nanoTime();
+				CompletableFuture<Void> action;
+				try {
+					action = node.getAsyncAction().execute();
+				} catch (Throwable e) {
+					action = Futures.failedFuture(e);
+				}
+				return action.handle((r, e) -> {
+					if (e != null) {
+						Throwable failure = Futures.unwrap(e);
+						logger.warn("Could not provision {}: {}", node, failure.getMessage());
+						return done(node.result(ResourceResult.Status.FAILED, failure, System.nanoTime() - start));
+					}
+					return done(node.result(ResourceResult.Status.SUCCESS, null, System.nanoTime() - start));
+				});
+			});
+		});
+	}
+
+	/**
+	 * Build the graph of actions
+	 * @param resources resources to provision
+	 * @param metadata existing resources, null if unknown
+	 * @param plan actions to apply, null to apply all the resources
+	 * @return the nodes, each node coming after the nodes it depends on
+	 */
+	List<ProvisioningNode> buildGraph(ResourceSet resources, ClusterMetadata metadata, ProvisioningPlan plan) {
+		final boolean force = options.isForce();
+		// Send creations straight away. With force, resources must be removed first so we need to know if they exist.
+		final boolean optimistic = options.isOptimistic() && !force;
+		List<ProvisioningNode> nodes = new ArrayList<>();
+
+		Map<ProvisioningNode, List<String>> templatePatterns = new LinkedHashMap<>();
+		for (String template : resources.getTemplateNames()) {
+			ResourceSet.Source source = resources.getTemplateSource(template);
+			Supplier<HttpEntity> json = body(template, source);
+			PlannedAction.Action action = plannedAction(plan, ResourceResult.Type.TEMPLATE, template);
+			RequestExecutor templateClient = RetryingRequestExecutor.resourceScope(client);
+			ProvisioningNode node;
+			if (action == PlannedAction.Action.NOOP) {
+				node = new ProvisioningNode(ResourceResult.Type.TEMPLATE, template, NOTHING, NOTHING_ASYNC);
+			} else if (action == PlannedAction.Action.UPDATE) {
+				node = new ProvisioningNode(ResourceResult.Type.TEMPLATE, template,
+						() -> TemplateElasticsearchUpdater.updateTemplateWithEntity(templateClient, template, json.get()),
+						() -> TemplateElasticsearchUpdater.updateTemplateWithEntityAsync(templateClient, template, json.get()));
+			} else if (optimistic) {
+				node = new ProvisioningNode(ResourceResult.Type.TEMPLATE, template,
+						() -> created(metadata, ResourceResult.Type.TEMPLATE, template,
+								TemplateElasticsearchUpdater.createTemplateIfAbsent(templateClient, template, json.get())),
+						() -> TemplateElasticsearchUpdater.createTemplateIfAbsentAsync(templateClient, template, json.get())
+								.thenAccept(created -> created(metadata, ResourceResult.Type.TEMPLATE, template, created)));
+			} else {
+				node = new ProvisioningNode(ResourceResult.Type.TEMPLATE, template,
+						() -> TemplateElasticsearchUpdater.createTemplateWithEntity(templateClient, metadata, template, json.get(), force),
+						() -> TemplateElasticsearchUpdater.createTemplateWithEntityAsync(templateClient, metadata, template, json.get(), force));
+			}
+			node.setPlannedAction(action);
+			node.setRetries(() -> RetryingRequestExecutor.retriesOf(templateClient));
+			templatePatterns.put(node, indexPatterns(template, source));
+			nodes.add(node);
+		}
+
+		for (String index : resources.getIndexNames()) {
+			Supplier<HttpEntity> settings = body(index, resources.getSettingsSource(index));
+			PlannedAction.Action action = plannedAction(plan, ResourceResult.Type.INDEX, index);
+			RequestExecutor indexClient = RetryingRequestExecutor.resourceScope(client);
+			ProvisioningNode indexNode;
+			if (action == PlannedAction.Action.NOOP) {
+				indexNode = new ProvisioningNode(ResourceResult.Type.INDEX, index, NOTHING, NOTHING_ASYNC);
+			} else if (optimistic) {
+				indexNode = new ProvisioningNode(ResourceResult.Type.INDEX, index,
+						() -> created(metadata, ResourceResult.Type.INDEX, index,
+								IndexElasticsearchUpdater.createIndexIfAbsent(indexClient, index, settings.get())),
+						() -> IndexElasticsearchUpdater.createIndexIfAbsentAsync(indexClient, index, settings.get())
+								.thenAccept(created -> created(metadata, ResourceResult.Type.INDEX, index, created)));
+			} else {
+				indexNode = new ProvisioningNode(ResourceResult.Type.INDEX, index,
+						() -> IndexElasticsearchUpdater.createIndexWithEntity(indexClient, metadata, index, settings.get(), force),
+						() -> IndexElasticsearchUpdater.createIndexWithEntityAsync(indexClient, metadata, index, settings.get(), force));
+			}
+			indexNode.setPlannedAction(action);
+			indexNode.setRetries(() -> RetryingRequestExecutor.retriesOf(indexClient));
+			for (Map.Entry<ProvisioningNode, List<String>> template : templatePatterns.entrySet()) {
+				if (matchesAny(template.getValue(), index)) {
+					logger.trace("index [{}] depends on template [{}]", index, template.getKey().getName());
+					indexNode.dependsOn(template.getKey());
+				}
+			}
+			nodes.add(indexNode);
+
+			ResourceSet.Source updateSettings = resources.getUpdateSettingsSource(index);
+			if (updateSettings != null) {
+				PlannedAction.Action settingsAction = plannedAction(plan, ResourceResult.Type.INDEX_SETTINGS, index);
+				RequestExecutor settingsClient = RetryingRequestExecutor.resourceScope(client);
+				ProvisioningNode settingsNode;
+				if (settingsAction == PlannedAction.Action.NOOP) {
+					settingsNode = new ProvisioningNode(ResourceResult.Type.INDEX_SETTINGS, index, NOTHING, NOTHING_ASYNC);
+				} else {
+					settingsNode = new ProvisioningNode(ResourceResult.Type.INDEX_SETTINGS, index,
+							() -> IndexElasticsearchUpdater.updateIndexWithEntity(settingsClient, index, updateSettings.entity()),
+							() -> IndexElasticsearchUpdater.updateIndexWithEntityAsync(settingsClient, index, updateSettings.entity()));
+				}
+				settingsNode.setPlannedAction(settingsAction);
+				settingsNode.setRetries(() -> RetryingRequestExecutor.retriesOf(settingsClient));
+				settingsNode.dependsOn(indexNode);
+				nodes.add(settingsNode);
+			}
+		}
+
+		return nodes;
+	}
+
+	/**
+	 * @return the content to send for a template or an index, with its fingerprint if needed. Binary and
+	 * compressed files keep their format. Each call of the supplier gives a new entity.
+	 */
+	private Supplier<HttpEntity> body(String name, ResourceSet.Source source) {
+		Supplier<HttpEntity> asIs = () -> source == null ? null : source.entity();
+		if (options.getChangeDetection() != ChangeDetection.FINGERPRINT) {
+			return asIs;
+		}
+		try {
+			String json = source == null ? null : source.getJson();
+			String stamped = Fingerprints.stamp(json, Fingerprints.of(json));
+			ResourceFormat format = source == null ? ResourceFormat.JSON : source.getFormat();
+			byte[] content = format.fromJson(stamped);
+			return () -> format.entity(content);
+		} catch (IOException e) {
+			// Let elasticsearch report the error
+			logger.debug("Can not add a fingerprint to [{}]: {}", name, e.getMessage());
+			return asIs;
+		}
+	}
+
+	private static void created(ClusterMetadata metadata, ResourceResult.Type type, String name, boolean created) {
+		if (metadata == null || !created) {
+			return;
+		}
+		if (type == ResourceResult.Type.TEMPLATE) {
+			metadata.templateCreated(name);
+		} else {
+			metadata.indexCreated(name);
+		}
+	}
+
+	private static PlannedAction.Action plannedAction(ProvisioningPlan plan, ResourceResult.Type type, String name) {
+		if (plan == null) {
+			return null;
+		}
+		PlannedAction action = plan.get(type, name);
+		return action == null ? null : action.getAction();
+	}
+
+	/**
+	 * @return the number of resources provisioned at the same time. With adaptive concurrency, the limit of
+	 * the {@link AdaptiveRequestExecutor} bounds the requests in flight, so there must be room for it to grow.
+	 */
+	private int concurrency() {
+		return options.isAdaptiveConcurrency() ? Math.max(options.getParallelism(), options.getMaxConcurrency()) :
+				options.getParallelism();
+	}
+
+	private Map<ProvisioningNode, ResourceResult> execute(Collection<ProvisioningNode> nodes) throws InterruptedException {
+		Map<ProvisioningNode, ResourceResult> results = new ConcurrentHashMap<>();
+		if (nodes.isEmpty()) {
+			return results;
+		}
+
+		ExecutorService executor = options.getExecutor();
+		boolean ownExecutor = executor == null;
+		if (ownExecutor) {
+			executor = Executors.newFixedThreadPool(Math.min(concurrency(), nodes.size()), new ProvisioningThreadFactory());
+		}
+
+		try {
+			Run run = new Run(executor, results, nodes.size());
+			for (ProvisioningNode node : nodes) {
+				if (node.isReady()) {
+					run.schedule(node);
+				}
+			}
+			run.await();
+		} finally {
+			if (ownExecutor) {
+				executor.shutdownNow();
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Extract the index patterns a template applies to
+	 * @param template template name
+	 * @param json template content
+	 * @return the patterns, empty if none can be found
+	 */
+	private static List<String> indexPatterns(String template, ResourceSet.Source source) {
+		try {
+			return indexPatterns(template, source.getJson());
+		} catch (IOException e) {
+			logger.debug("Can not read index patterns of template [{}]: {}", template, e.getMessage());
+			return Collections.emptyList();
+		}
+	}
+
+	static List<String> indexPatterns(String template, String json) {
+		try {
+			Map<String, Object> source = JsonUtil.asMap(json);
+			Object patterns = source.get("index_patterns");
+			if (patterns == null) {
+				// Old style templates
+				patterns = source.get("template");
+			}
+			if (patterns instanceof String) {
+				return Collections.singletonList((String) patterns);
+			}
+			if (patterns instanceof List) {
+				List<String> list = new ArrayList<>();
+				for (Object pattern : (List<?>) patterns) {
+					list.add(String.valueOf(pattern));
+				}
+				return list;
+			}
+		} catch (IOException e) {
+			logger.debug("Can not read index patterns of template [{}]: {}", template, e.getMessage());
+		}
+		return Collections.emptyList();
+	}
+
+	static boolean matchesAny(List<String> patterns, String index) {
+		for (String pattern : patterns) {
+			if (simpleMatch(pattern, index)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Match a string against a pattern supporting the '*' wildcard, like elasticsearch does for index patterns
+	 */
+	static boolean simpleMatch(String pattern, String str) {
+		int firstIndex = pattern.indexOf('*');
+		if (firstIndex == -1) {
+			return pattern.equals(str);
+		}
+		if (firstIndex == 0) {
+			if (pattern.length() == 1) {
+				return true;
+			}
+			int nextIndex = pattern.indexOf('*', firstIndex + 1);
+			if (nextIndex == -1) {
+				return str.endsWith(pattern.substring(1));
+			}
+			String part = pattern.substring(1, nextIndex);
+			int partIndex = str.indexOf(part);
+			while (partIndex != -1) {
+				if (simpleMatch(pattern.substring(nextIndex), str.substring(partIndex + part.length()))) {
+					return true;
+				}
+				partIndex = str.indexOf(part, partIndex + 1);
+			}
+			return false;
+		}
+		return str.length() >= firstIndex &&
+				pattern.substring(0, firstIndex).equals(str.substring(0, firstIndex)) &&
+				simpleMatch(pattern.substring(firstIndex), str.substring(firstIndex));
+	}
+
+	/**
+	 * State of a single execution of the graph
+	 */
+	private class Run {
+		private final ExecutorService executor;
+		private final Map<ProvisioningNode, ResourceResult> results;
+		private final CountDownLatch remaining;
+
+		private Run(ExecutorService executor, Map<ProvisioningNode, ResourceResult> results, int nodes) {
+			this.executor = executor;
+			this.results = results;
+			this.remaining = new CountDownLatch(nodes);
+		}
+
+		private void schedule(ProvisioningNode node) {
+			if (!node.transition(ProvisioningNode.State.PENDING, ProvisioningNode.State.RUNNING)) {
+				return;
+			}
+			try {
+				executor.execute(() -> run(node));
+			} catch (RejectedExecutionException e) {
+				fail(node, e, 0);
+			}
+		}
+
+		private void run(ProvisioningNode node) {
+			logger.trace("provisioning {}", node);
+			long start = System.nanoTime();
+			try {
+				node.getAction().execute();
+			} catch (Throwable e) {
+				// Errors too, or the node would never be done and the run would wait forever
+				logger.warn("Could not provision {}: {}", node, e.getMessage());
+				fail(node, e, System.nanoTime() - start);
+				return;
+			}
+			complete(node, node.result(ResourceResult.Status.SUCCESS, null, System.nanoTime() - start));
+			for (ProvisioningNode dependent : node.getDependents()) {
+				if (dependent.dependencySatisfied()) {
+					schedule(dependent);
+				}
+			}
+		}
+
+		private void fail(ProvisioningNode node, Throwable failure, long took) {
+			complete(node, node.result(ResourceResult.Status.FAILED, failure, took));
+			skipDependents(node, failure);
+		}
+
+		private void skipDependents(ProvisioningNode node, Throwable failure) {
+			for (ProvisioningNode dependent : node.getDependents()) {
+				if (dependent.transition(ProvisioningNode.State.PENDING, ProvisioningNode.State.DONE)) {
+					logger.debug("skipping {} as {} failed", dependent, node);
+					record(dependent, dependent.result(ResourceResult.Status.SKIPPED, failure, 0));
+					skipDependents(dependent, failure);
+				}
+			}
+		}
+
+		private void complete(ProvisioningNode node, ResourceResult result) {
+			node.transition(ProvisioningNode.State.RUNNING, ProvisioningNode.State.DONE);
+			record(node, result);
+		}
+
+		private void record(ProvisioningNode node, ResourceResult result) {
+			results.put(node, done(result));
+			remaining.countDown();
+		}
+
+		private void await() throws InterruptedException {
+			remaining.await();
+		}
+	}
+
+	/**
+	 * Bounds the number of actions running at the same time in an async run. An action completing while
+	 * others are being started does not start the next ones itself, so the stack does not grow.
+	 */
+	static final class Permits {
+		private final int max;
+		private final Deque<Runnable> waiting = new ArrayDeque<>();
+		private int running;
+		private boolean draining;
+		private boolean redrain;
+
+		Permits(int max) {
+			this.max = max;
+		}
+
+		/**
+		 * @param action started once fewer than max actions are running
+		 * @return a future which completes like the one returned by the action
+		 */
+		<T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> action) {
+			CompletableFuture<T> result = new CompletableFuture<>();
+			synchronized (this) {
+				waiting.add(() -> {
+					CompletableFuture<T> future;
+					try {
+						future = action.get();
+					} catch (Throwable e) {
+						future = Futures.failedFuture(e);
+					}
+					future.whenComplete((r, e) -> {
+						release();
+						if (e != null) {
+							result.completeExceptionally(Futures.unwrap(e));
+						} else {
+							result.complete(r);
+						}
+					});
+				});
+			}
+			drain();
+			return result;
+		}
+
+		private void release() {
+			synchronized (this) {
+				running--;
+			}
+			drain();
+		}
+
+		private void drain() {
+			synchronized (this) {
+				if (draining) {
+					redrain = true;
+					return;
+				}
+				draining = true;
+			}
+			while (true) {
+				Runnable next;
+				synchronized (this) {
+					if (running < max && !waiting.isEmpty()) {
+						running++;
+						next = waiting.poll();
+					} else if (redrain) {
+						redrain = false;
+						continue;
+					} else {
+						draining = false;
+						return;
+					}
+				}
+				next.run();
+			}
+		}
+	}
+
+	private static class ProvisioningThreadFactory implements ThreadFactory {
+		private final AtomicInteger counter = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "beyonder-provisioning-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
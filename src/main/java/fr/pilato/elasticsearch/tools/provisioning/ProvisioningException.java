@@ -0,0 +1,69 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.provisioning;
+
+import java.util.List;
+
+/**
+ * Thrown when one or more resources could not be provisioned.
+ * The first failure is the cause, the other ones are added as suppressed exceptions.
+ */
+public class ProvisioningException extends Exception {
+
+	private final ProvisioningResult result;
+
+	public ProvisioningException(ProvisioningResult result) {
+		super(buildMessage(result), firstFailure(result));
+		this.result = result;
+		for (ResourceResult failure : result.getFailures()) {
+			if (failure.getFailure() != null && failure.getFailure() != getCause()) {
+				addSuppressed(failure.getFailure());
+			}
+		}
+	}
+
+	/**
+	 * @return the full provisioning result, including the resources which succeeded
+	 */
+	public ProvisioningResult getResult() {
+		return result;
+	}
+
+	private static String buildMessage(ProvisioningResult result) {
+		List<ResourceResult> failures = result.getFailures();
+		StringBuilder sb = new StringBuilder("Could not provision ").append(failures.size()).append(" resource(s): ");
+		for (int i = 0; i < failures.size(); i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(failures.get(i));
+		}
+		return sb.toString();
+	}
+
+	private static Throwable firstFailure(ProvisioningResult result) {
+		for (ResourceResult failure : result.getFailures()) {
+			if (failure.getFailure() != null) {
+				return failure.getFailure();
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.provisioning;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntSupplier;
+
+/**
+ * A node of the provisioning graph: one action on one resource, which can only run
+ * once all the nodes it depends on have succeeded.
+ */
+class ProvisioningNode {
+
+	interface Action {
+		void execute() throws Exception;
+	}
+
+	interface AsyncAction {
+		CompletableFuture<Void> execute();
+	}
+
+	enum State {
+		PENDING,
+		RUNNING,
+		DONE
+	}
+
+	private final ResourceResult.Type type;
+	private final String name;
+	private final Action action;
+	private final AsyncAction asyncAction;
+	private final List<ProvisioningNode> dependencies = new ArrayList<>();
+	private final List<ProvisioningNode> dependents = new ArrayList<>();
+	private final AtomicInteger remainingDependencies = new AtomicInteger();
+	private final AtomicReference<State> state = new AtomicReference<>(State.PENDING);
+	private PlannedAction.Action plannedAction;
+	private IntSupplier retries = () -> 0;
+
+	ProvisioningNode(ResourceResult.Type type, String name, Action action, AsyncAction asyncAction) {
+		this.type = type;
+		this.name = name;
+		this.action = action;
+		this.asyncAction = asyncAction;
+	}
+
+	/**
+	 * Declare that this node can only run after another one
+	 * @param dependency the node to wait for
+	 */
+	void dependsOn(ProvisioningNode dependency) {
+		dependencies.add(dependency);
+		dependency.dependents.add(this);
+		remainingDependencies.incrementAndGet();
+	}
+
+	ResourceResult.Type getType() {
+		return type;
+	}
+
+	String getName() {
+		return name;
+	}
+
+	Action getAction() {
+		return action;
+	}
+
+	AsyncAction getAsyncAction() {
+		return asyncAction;
+	}
+
+	PlannedAction.Action getPlannedAction() {
+		return plannedAction;
+	}
+
+	void setPlannedAction(PlannedAction.Action plannedAction) {
+		this.plannedAction = plannedAction;
+	}
+
+	/**
+	 * @param retries number of requests of this node sent again so far
+	 */
+	void setRetries(IntSupplier retries) {
+		this.retries = retries;
+	}
+
+	List<ProvisioningNode> getDependencies() {
+		return dependencies;
+	}
+
+	List<ProvisioningNode> getDependents() {
+		return dependents;
+	}
+
+	boolean isReady() {
+		return remainingDependencies.get() == 0;
+	}
+
+	/**
+	 * Called when one of the dependencies succeeded
+	 * @return true if all dependencies are now satisfied
+	 */
+	boolean dependencySatisfied() {
+		return remainingDependencies.decrementAndGet() == 0;
+	}
+
+	/**
+	 * @return the result of this node
+	 */
+	ResourceResult result(ResourceResult.Status status, Throwable failure, long tookNanos) {
+		return new ResourceResult(type, name, status, failure, tookNanos, plannedAction, retries.getAsInt());
+	}
+
+	boolean transition(State from, State to) {
+		return state.compareAndSet(from, to);
+	}
+
+	@Override
+	public String toString() {
+		return type + " [" + name + "]";
+	}
+}
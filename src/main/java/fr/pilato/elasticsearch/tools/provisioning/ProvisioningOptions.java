@@ -0,0 +1,541 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.provisioning;
+
+import fr.pilato.elasticsearch.tools.SettingsFinder.Defaults;
+import fr.pilato.elasticsearch.tools.listener.ProvisioningListener;
+import fr.pilato.elasticsearch.tools.rest.RetryPolicy;
+import fr.pilato.elasticsearch.tools.variable.VariableSource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Options used when provisioning the resources found in the classpath
+ */
+public class ProvisioningOptions {
+
+	private boolean merge = Defaults.MergeMappings;
+	private boolean force = Defaults.ForceCreation;
+	private int parallelism = Defaults.Parallelism;
+	private ExecutorService executor;
+	private boolean clusterMetadata = true;
+	private Boolean plan;
+	private boolean dryRun = false;
+	private ChangeDetection changeDetection = ChangeDetection.DIFF;
+	private boolean optimistic = false;
+	private boolean lock = false;
+	private boolean stateMarker = false;
+	private final List<ProvisioningListener> listeners = new ArrayList<>();
+	private String systemIndex = Defaults.SystemIndex;
+	private long lockTtlMillis = Defaults.LockTtlMillis;
+	private long lockTimeoutMillis = Defaults.LockTimeoutMillis;
+	private long watchDebounceMillis = Defaults.WatchDebounceMillis;
+	private VariableSource variableSource = VariableSource.environment();
+	private boolean compression = false;
+	private long compressionThreshold = Defaults.CompressionThreshold;
+	private int pipelineDepth = Defaults.PipelineDepth;
+	private String tenantIndexName = Defaults.TenantIndexName;
+	private boolean adaptiveConcurrency = false;
+	private int maxConcurrency = Defaults.MaxConcurrency;
+	private int pendingTasksThreshold = Defaults.PendingTasksThreshold;
+	private RetryPolicy retryPolicy;
+	private String waitForStatus;
+	private long healthTimeoutMillis = Defaults.HealthTimeoutMillis;
+	private String waitForActiveShards;
+	private final Map<String, String> indexWaitForActiveShards = new HashMap<>();
+
+	public boolean isMerge() {
+		return merge;
+	}
+
+	/**
+	 * @param merge whether or not to merge mappings
+	 * @return this
+	 */
+	public ProvisioningOptions setMerge(boolean merge) {
+		this.merge = merge;
+		return this;
+	}
+
+	public boolean isForce() {
+		return force;
+	}
+
+	/**
+	 * @param force whether or not to force creation of indices and templates. Existing indices are removed
+	 *              and created again, unless {@link #setPlan(boolean)} is set to true.
+	 * @return this
+	 */
+	public ProvisioningOptions setForce(boolean force) {
+		this.force = force;
+		return this;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * @param parallelism maximum number of resources provisioned at the same time, by a sync or an async run.
+	 *                    A sync run on an executor set with {@link #setExecutor(ExecutorService)} is bounded by it instead.
+	 *                    With adaptive concurrency, it is the initial limit and runs are bounded by the max concurrency.
+	 * @return this
+	 */
+	public ProvisioningOptions setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1 but was [" + parallelism + "]");
+		}
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * @param executor executor to run provisioning tasks on. It is not shut down when provisioning is done.
+	 *                 If null, a pool of {@link #getParallelism()} threads, or {@link #getMaxConcurrency()} threads
+	 *                 with adaptive concurrency, is created for each run.
+	 * @return this
+	 */
+	public ProvisioningOptions setExecutor(ExecutorService executor) {
+		this.executor = executor;
+		return this;
+	}
+
+	public boolean isClusterMetadata() {
+		return clusterMetadata;
+	}
+
+	/**
+	 * @param clusterMetadata whether or not to read the existing indices and templates with a single
+	 *                        cluster state request instead of checking each resource one by one
+	 * @return this
+	 */
+	public ProvisioningOptions setClusterMetadata(boolean clusterMetadata) {
+		this.clusterMetadata = clusterMetadata;
+		return this;
+	}
+
+	/**
+	 * @return whether or not to compare the resources with their live definition first. Unless set,
+	 * true without force and false with force, so force still removes and creates again all the existing indices.
+	 */
+	public boolean isPlan() {
+		return plan == null ? !force : plan;
+	}
+
+	/**
+	 * @param plan whether or not to compare the resources with their live definition first and only
+	 *             apply the ones which changed. Requires the cluster metadata. Set it to true with force
+	 *             to only remove and create again the indices which differ from the classpath definition.
+	 * @return this
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setPlan(boolean plan) {
+		this.plan = plan;
+		return this;
+	}
+
+	public boolean isDryRun() {
+		return dryRun;
+	}
+
+	/**
+	 * @param dryRun if true, only compute and log the plan. Nothing is changed in the cluster.
+	 * @return this
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setDryRun(boolean dryRun) {
+		this.dryRun = dryRun;
+		return this;
+	}
+
+	public ChangeDetection getChangeDetection() {
+		return changeDetection;
+	}
+
+	/**
+	 * @param changeDetection how to detect that an existing resource changed. With {@link ChangeDetection#FINGERPRINT},
+	 *                        a fingerprint is added to the mappings _meta of the indices and templates created.
+	 * @return this
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setChangeDetection(ChangeDetection changeDetection) {
+		this.changeDetection = changeDetection;
+		return this;
+	}
+
+	public boolean isOptimistic() {
+		return optimistic;
+	}
+
+	/**
+	 * @param optimistic if true, indices and templates are created without checking first if they exist.
+	 *                   A resource which already exists is left untouched. This saves a round-trip per resource
+	 *                   and is safe when many instances start at the same time. Ignored when force is set.
+	 * @return this
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setOptimistic(boolean optimistic) {
+		this.optimistic = optimistic;
+		return this;
+	}
+
+	public boolean isLock() {
+		return lock;
+	}
+
+	/**
+	 * @param lock if true, instances compete for a lock stored in the system index and only the holder
+	 *             provisions the cluster. The others wait until it is done and return.
+	 * @return this
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setLock(boolean lock) {
+		this.lock = lock;
+		return this;
+	}
+
+	public boolean isStateMarker() {
+		return stateMarker;
+	}
+
+	/**
+	 * @param stateMarker if true, a digest of the resources is recorded in the system index after each successful run.
+	 *                    When it did not change since, the start only costs one request. Note that resources
+	 *                    removed manually from the cluster are then not created again until the resources change.
+	 *                    The digest also covers the options changing what a run does, like the change detection.
+	 *                    With force, the recorded digest is not checked and everything is provisioned.
+	 * @return this
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setStateMarker(boolean stateMarker) {
+		this.stateMarker = stateMarker;
+		return this;
+	}
+
+	public String getSystemIndex() {
+		return systemIndex;
+	}
+
+	/**
+	 * @param systemIndex index used by beyonder to coordinate instances and record its state.
+	 *                    Avoid dot-prefixed names, which elasticsearch reserves to its own system indices.
+	 * @return this
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setSystemIndex(String systemIndex) {
+		this.systemIndex = systemIndex;
+		return this;
+	}
+
+	public long getLockTtlMillis() {
+		return lockTtlMillis;
+	}
+
+	/**
+	 * @param lockTtlMillis time after which a lock which was not renewed is considered as abandoned.
+	 *                      The holder renews it every third of this time.
+	 * @return this
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setLockTtlMillis(long lockTtlMillis) {
+		if (lockTtlMillis < 1) {
+			throw new IllegalArgumentException("lock ttl must be positive but was [" + lockTtlMillis + "]");
+		}
+		this.lockTtlMillis = lockTtlMillis;
+		return this;
+	}
+
+	public long getLockTimeoutMillis() {
+		return lockTimeoutMillis;
+	}
+
+	/**
+	 * @param lockTimeoutMillis maximum time to wait for another instance to finish provisioning
+	 * @return this
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setLockTimeoutMillis(long lockTimeoutMillis) {
+		this.lockTimeoutMillis = lockTimeoutMillis;
+		return this;
+	}
+
+	public long getWatchDebounceMillis() {
+		return watchDebounceMillis;
+	}
+
+	/**
+	 * @param watchDebounceMillis time without any change to wait for before applying the files changed in a watched directory
+	 * @return this
+	 * @see fr.pilato.elasticsearch.tools.watch.ResourceWatcher
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setWatchDebounceMillis(long watchDebounceMillis) {
+		this.watchDebounceMillis = watchDebounceMillis;
+		return this;
+	}
+
+	public VariableSource getVariableSource() {
+		return variableSource;
+	}
+
+	/**
+	 * @param variableSource where to read the values of the ${VARIABLE} placeholders found in the resources.
+	 *                       Environment variables by default.
+	 * @return this
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setVariableSource(VariableSource variableSource) {
+		this.variableSource = variableSource;
+		return this;
+	}
+
+	public boolean isCompression() {
+		return compression;
+	}
+
+	/**
+	 * @param compression whether or not to gzip the request bodies bigger than the compression threshold
+	 * @return this
+	 * @see fr.pilato.elasticsearch.tools.rest.CompressingRequestExecutor
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setCompression(boolean compression) {
+		this.compression = compression;
+		return this;
+	}
+
+	public long getCompressionThreshold() {
+		return compressionThreshold;
+	}
+
+	/**
+	 * @param compressionThreshold size from which request bodies are compressed, in bytes
+	 * @return this
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setCompressionThreshold(long compressionThreshold) {
+		this.compressionThreshold = compressionThreshold;
+		return this;
+	}
+
+	public int getPipelineDepth() {
+		return pipelineDepth;
+	}
+
+	/**
+	 * @param pipelineDepth maximum number of tenant index creations sent at the same time
+	 * @return this
+	 * @see TenantProvisioner
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setPipelineDepth(int pipelineDepth) {
+		if (pipelineDepth < 1) {
+			throw new IllegalArgumentException("pipeline depth must be at least 1 but was [" + pipelineDepth + "]");
+		}
+		this.pipelineDepth = pipelineDepth;
+		return this;
+	}
+
+	public String getTenantIndexName() {
+		return tenantIndexName;
+	}
+
+	/**
+	 * @param tenantIndexName name of the indices created for each tenant, like ${TENANT}-${INDEX}.
+	 *                        Any other variable is read from the variable source.
+	 * @return this
+	 * @see TenantProvisioner
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setTenantIndexName(String tenantIndexName) {
+		this.tenantIndexName = tenantIndexName;
+		return this;
+	}
+
+	public boolean isAdaptiveConcurrency() {
+		return adaptiveConcurrency;
+	}
+
+	/**
+	 * @param adaptiveConcurrency whether or not to adapt the number of requests sent at the same time to the load
+	 *                            of the cluster. It starts at the parallelism and goes up to the max concurrency.
+	 * @return this
+	 * @see fr.pilato.elasticsearch.tools.rest.AdaptiveRequestExecutor
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setAdaptiveConcurrency(boolean adaptiveConcurrency) {
+		this.adaptiveConcurrency = adaptiveConcurrency;
+		return this;
+	}
+
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	/**
+	 * @param maxConcurrency maximum number of requests sent at the same time when the concurrency is adaptive
+	 * @return this
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setMaxConcurrency(int maxConcurrency) {
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("max concurrency must be at least 1 but was [" + maxConcurrency + "]");
+		}
+		this.maxConcurrency = maxConcurrency;
+		return this;
+	}
+
+	public int getPendingTasksThreshold() {
+		return pendingTasksThreshold;
+	}
+
+	/**
+	 * @param pendingTasksThreshold number of master pending tasks from which the adaptive concurrency is reduced.
+	 *                              0 to never read the pending tasks.
+	 * @return this
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setPendingTasksThreshold(int pendingTasksThreshold) {
+		this.pendingTasksThreshold = pendingTasksThreshold;
+		return this;
+	}
+
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	/**
+	 * @param retryPolicy how to retry the requests failing with a transient error. Null, the default, to never retry.
+	 * @return this
+	 * @see fr.pilato.elasticsearch.tools.rest.RetryingRequestExecutor
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+		return this;
+	}
+
+	public String getWaitForStatus() {
+		return waitForStatus;
+	}
+
+	/**
+	 * @param waitForStatus green, yellow or red: the status the cluster must reach before anything is provisioned.
+	 *                      Null, the default, to not check the cluster health.
+	 * @return this
+	 * @see fr.pilato.elasticsearch.tools.cluster.ClusterHealth
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setWaitForStatus(String waitForStatus) {
+		this.waitForStatus = waitForStatus;
+		return this;
+	}
+
+	public long getHealthTimeoutMillis() {
+		return healthTimeoutMillis;
+	}
+
+	/**
+	 * @param healthTimeoutMillis maximum time elasticsearch waits for the cluster status, in milliseconds
+	 * @return this
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setHealthTimeoutMillis(long healthTimeoutMillis) {
+		if (healthTimeoutMillis < 0) {
+			throw new IllegalArgumentException("healthTimeoutMillis must be positive but was [" + healthTimeoutMillis + "]");
+		}
+		this.healthTimeoutMillis = healthTimeoutMillis;
+		return this;
+	}
+
+	/**
+	 * @param index index name
+	 * @return the wait_for_active_shards value used when creating this index, null to use the elasticsearch default
+	 */
+	public String getWaitForActiveShards(String index) {
+		String value = indexWaitForActiveShards.get(index);
+		return value == null ? waitForActiveShards : value;
+	}
+
+	/**
+	 * @return true if a wait_for_active_shards value is set for at least one index
+	 */
+	public boolean hasWaitForActiveShards() {
+		return waitForActiveShards != null || !indexWaitForActiveShards.isEmpty();
+	}
+
+	/**
+	 * @param waitForActiveShards number of shard copies which must be active before an index creation returns,
+	 *                            like "1", "2" or "all". Null, the default, to use the elasticsearch default.
+	 * @return this
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setWaitForActiveShards(String waitForActiveShards) {
+		this.waitForActiveShards = waitForActiveShards;
+		return this;
+	}
+
+	/**
+	 * @param index index name
+	 * @param waitForActiveShards number of shard copies which must be active before the creation of this index
+	 *                            returns. Null to use the value set for all indices.
+	 * @return this
+	 * @since 7.6
+	 */
+	public ProvisioningOptions setWaitForActiveShards(String index, String waitForActiveShards) {
+		if (waitForActiveShards == null) {
+			this.indexWaitForActiveShards.remove(index);
+		} else {
+			this.indexWaitForActiveShards.put(index, waitForActiveShards);
+		}
+		return this;
+	}
+
+	public List<ProvisioningListener> getListeners() {
+		return listeners;
+	}
+
+	/**
+	 * @param listener listener receiving the timing of each phase of the provisioning
+	 * @return this
+	 * @see fr.pilato.elasticsearch.tools.listener.SummaryReportListener
+	 * @since 7.6
+	 */
+	public ProvisioningOptions addListener(ProvisioningListener listener) {
+		this.listeners.add(listener);
+		return this;
+	}
+
+	/**
+	 * @return a single listener dispatching events to all the listeners
+	 * @since 7.6
+	 */
+	public ProvisioningListener getListener() {
+		return ProvisioningListener.of(listeners);
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.provisioning;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The list of actions needed to bring the cluster to the state defined in the classpath
+ */
+public class ProvisioningPlan {
+
+	private final List<PlannedAction> actions;
+	private final Map<String, PlannedAction> byResource = new HashMap<>();
+
+	ProvisioningPlan(List<PlannedAction> actions) {
+		this.actions = Collections.unmodifiableList(actions);
+		for (PlannedAction action : actions) {
+			byResource.put(action.getType() + "/" + action.getName(), action);
+		}
+	}
+
+	public List<PlannedAction> getActions() {
+		return actions;
+	}
+
+	/**
+	 * @param type resource type
+	 * @param name resource name
+	 * @return the action planned for this resource or null if the resource is not part of the plan
+	 */
+	public PlannedAction get(ResourceResult.Type type, String name) {
+		return byResource.get(type + "/" + name);
+	}
+
+	/**
+	 * @return the actions which will modify the cluster
+	 */
+	public List<PlannedAction> getChanges() {
+		List<PlannedAction> changes = new ArrayList<>();
+		for (PlannedAction action : actions) {
+			if (action.getAction() != PlannedAction.Action.NOOP) {
+				changes.add(action);
+			}
+		}
+		return changes;
+	}
+
+	public boolean hasChanges() {
+		return !getChanges().isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("Provisioning plan: ").append(getChanges().size()).append(" change(s)");
+		for (PlannedAction action : actions) {
+			sb.append(System.lineSeparator()).append("  ").append(action);
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,307 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.provisioning;
+
+import fr.pilato.elasticsearch.tools.cluster.ClusterMetadata;
+import fr.pilato.elasticsearch.tools.rest.RequestExecutor;
+import fr.pilato.elasticsearch.tools.util.Futures;
+import fr.pilato.elasticsearch.tools.util.JsonUtil;
+import org.elasticsearch.client.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import static fr.pilato.elasticsearch.tools.provisioning.PlannedAction.Action.CREATE;
+import static fr.pilato.elasticsearch.tools.provisioning.PlannedAction.Action.NOOP;
+import static fr.pilato.elasticsearch.tools.provisioning.PlannedAction.Action.UPDATE;
+
+/**
+ * Compare the classpath resources with their live definition in the cluster and decide what needs
+ * to be created, updated or left untouched. Live definitions, or only their fingerprint
+ * (see {@link ChangeDetection}), are read with a few batched requests.
+ */
+public class ProvisioningPlanner {
+
+	private static final Logger logger = LoggerFactory.getLogger(ProvisioningPlanner.class);
+
+	/**
+	 * Maximum length of the list of names sent in a single url
+	 */
+	private static final int MAX_NAMES_LENGTH = 2000;
+
+	private final RequestExecutor client;
+	private final boolean force;
+	// With force, existing resources are only compared when planning was asked for
+	private final boolean recreate;
+	private final boolean fingerprint;
+
+	public ProvisioningPlanner(RequestExecutor client, ProvisioningOptions options) {
+		this.client = client;
+		this.force = options.isForce();
+		this.recreate = options.isForce() && !options.isPlan();
+		this.fingerprint = options.getChangeDetection() == ChangeDetection.FINGERPRINT;
+	}
+
+	/**
+	 * Build the plan
+	 * @param resources classpath resources
+	 * @param metadata existing indices and templates
+	 * @return the plan
+	 * @throws IOException if the plan can not be computed
+	 */
+	public ProvisioningPlan plan(ResourceSet resources, ClusterMetadata metadata) throws IOException {
+		try {
+			return planAsync(resources, metadata).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while planning", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Can not build the provisioning plan", Futures.unwrap(e));
+		}
+	}
+
+	/**
+	 * Build the plan without blocking
+	 * @param resources classpath resources
+	 * @param metadata existing indices and templates
+	 * @return a future which completes with the plan
+	 */
+	public CompletableFuture<ProvisioningPlan> planAsync(ResourceSet resources, ClusterMetadata metadata) {
+		List<String> templates = new ArrayList<>();
+		for (String template : resources.getTemplateNames()) {
+			if (metadata.isTemplateExist(template) && !recreate) {
+				templates.add(template);
+			}
+		}
+		List<String> indices = new ArrayList<>();
+		List<String> settings = new ArrayList<>();
+		for (String index : resources.getIndexNames()) {
+			if (metadata.isIndexExist(index)) {
+				if (force && !recreate) {
+					indices.add(index);
+				}
+				if (resources.getUpdateSettings(index) != null && !recreate) {
+					settings.add(index);
+				}
+			}
+		}
+
+		CompletableFuture<Map<String, Object>> liveTemplates;
+		CompletableFuture<Map<String, Object>> liveIndices;
+		if (fingerprint) {
+			// Only read the fingerprints back
+			String filter = "*.mappings._meta." + Fingerprints.META_KEY;
+			liveTemplates = fetch("/_template/", templates, "", params("filter_path", filter));
+			liveIndices = fetch("/", indices, "/_mapping", params("filter_path", filter, "ignore_unavailable", "true"));
+		} else {
+			liveTemplates = fetch("/_template/", templates, "", params());
+			liveIndices = fetch("/", indices, "", params("ignore_unavailable", "true"));
+		}
+		CompletableFuture<Map<String, Object>> liveSettings = fetch("/", settings, "/_settings",
+				params("ignore_unavailable", "true", "include_defaults", "true"));
+
+		return CompletableFuture.allOf(liveTemplates, liveIndices, liveSettings).thenApply(v ->
+				buildPlan(resources, metadata, liveTemplates.join(), liveIndices.join(), liveSettings.join()));
+	}
+
+	@SuppressWarnings("unchecked")
+	private ProvisioningPlan buildPlan(ResourceSet resources, ClusterMetadata metadata, Map<String, Object> liveTemplates,
+									   Map<String, Object> liveIndices, Map<String, Object> liveSettings) {
+		List<PlannedAction> actions = new ArrayList<>();
+
+		for (String template : resources.getTemplateNames()) {
+			PlannedAction.Action action;
+			String reason;
+			if (!metadata.isTemplateExist(template)) {
+				action = CREATE;
+				reason = "does not exist";
+			} else if (recreate) {
+				action = UPDATE;
+				reason = "force is set";
+			} else if (isUpToDate(liveTemplates.get(template), resources.getTemplate(template), ResourceResult.Type.TEMPLATE, fingerprint)) {
+				action = NOOP;
+				reason = "up to date";
+			} else if (force) {
+				action = UPDATE;
+				reason = "differs from the classpath definition";
+			} else {
+				action = NOOP;
+				reason = "differs from the classpath definition but force is not set";
+			}
+			actions.add(new PlannedAction(ResourceResult.Type.TEMPLATE, template, action, reason));
+		}
+
+		for (String index : resources.getIndexNames()) {
+			PlannedAction.Action action;
+			String reason;
+			if (!metadata.isIndexExist(index)) {
+				action = CREATE;
+				reason = "does not exist";
+			} else if (!force) {
+				action = NOOP;
+				reason = "already exists";
+			} else if (recreate) {
+				action = UPDATE;
+				reason = "force is set. It will be removed and created again";
+			} else if (isUpToDate(liveIndices.get(index), resources.getSettings(index), ResourceResult.Type.INDEX, fingerprint)) {
+				action = NOOP;
+				reason = "up to date";
+			} else {
+				action = UPDATE;
+				reason = "differs from the classpath definition. It will be removed and created again";
+			}
+			actions.add(new PlannedAction(ResourceResult.Type.INDEX, index, action, reason));
+
+			String updateSettings = resources.getUpdateSettings(index);
+			if (updateSettings != null) {
+				PlannedAction.Action settingsAction;
+				String settingsReason;
+				if (action != NOOP) {
+					settingsAction = UPDATE;
+					settingsReason = "index is created";
+				} else if (isUpToDate(liveSettings.get(index), updateSettings, ResourceResult.Type.INDEX_SETTINGS, false)) {
+					settingsAction = NOOP;
+					settingsReason = "up to date";
+				} else {
+					settingsAction = UPDATE;
+					settingsReason = "differs from the live settings";
+				}
+				actions.add(new PlannedAction(ResourceResult.Type.INDEX_SETTINGS, index, settingsAction, settingsReason));
+			}
+		}
+
+		return new ProvisioningPlan(actions);
+	}
+
+	@SuppressWarnings("unchecked")
+	static boolean isUpToDate(Object live, String json, ResourceResult.Type type, boolean fingerprint) {
+		if (!(live instanceof Map)) {
+			return false;
+		}
+		if (fingerprint) {
+			String liveFingerprint = Fingerprints.read(live);
+			try {
+				return liveFingerprint != null && liveFingerprint.equals(Fingerprints.of(json));
+			} catch (IOException e) {
+				// Let elasticsearch report the error
+				return false;
+			}
+		}
+		Map<String, Object> liveDefinition = (Map<String, Object>) live;
+		Map<String, Object> desired;
+		try {
+			desired = JsonUtil.asMap(json);
+		} catch (IOException e) {
+			// Let elasticsearch report the error
+			return false;
+		}
+
+		switch (type) {
+			case TEMPLATE:
+				return Definitions.contains(Definitions.template(liveDefinition), Definitions.template(desired));
+			case INDEX:
+				return Definitions.contains(Definitions.index(liveDefinition), Definitions.index(desired));
+			case INDEX_SETTINGS:
+				Map<String, Object> liveSettings = new TreeMap<>();
+				if (liveDefinition.get("defaults") instanceof Map) {
+					liveSettings.putAll(Definitions.settings((Map<String, Object>) liveDefinition.get("defaults")));
+				}
+				if (liveDefinition.get("settings") instanceof Map) {
+					liveSettings.putAll(Definitions.settings((Map<String, Object>) liveDefinition.get("settings")));
+				}
+				return Definitions.contains(liveSettings, Definitions.settings(desired));
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Read the definition of many resources with as few requests as possible
+	 * @return the definitions by name. Empty if they can not be read, so all resources are considered as changed.
+	 */
+	private CompletableFuture<Map<String, Object>> fetch(String prefix, List<String> names, String suffix, Map<String, String> params) {
+		if (names.isEmpty()) {
+			return CompletableFuture.completedFuture(Collections.emptyMap());
+		}
+
+		Map<String, Object> definitions = new ConcurrentHashMap<>();
+		List<CompletableFuture<Void>> requests = new ArrayList<>();
+		for (String chunk : chunks(names)) {
+			Request request = new Request("GET", prefix + chunk + suffix);
+			for (Map.Entry<String, String> param : params.entrySet()) {
+				request.addParameter(param.getKey(), param.getValue());
+			}
+			requests.add(client.performRequestAsync(request).thenAccept(response -> {
+				try (InputStream content = response.getEntity().getContent()) {
+					definitions.putAll(JsonUtil.asMap(content));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}));
+		}
+
+		return CompletableFuture.allOf(requests.toArray(new CompletableFuture[0])).handle((v, e) -> {
+			if (e != null) {
+				logger.debug("Can not read live definitions from [{}...{}]: {}", prefix, suffix, Futures.unwrap(e).getMessage());
+				return Collections.emptyMap();
+			}
+			return definitions;
+		});
+	}
+
+	private static Map<String, String> params(String... keyValues) {
+		Map<String, String> params = new LinkedHashMap<>();
+		for (int i = 0; i < keyValues.length; i += 2) {
+			params.put(keyValues[i], keyValues[i + 1]);
+		}
+		return params;
+	}
+
+	static List<String> chunks(List<String> names) {
+		List<String> chunks = new ArrayList<>();
+		StringBuilder current = new StringBuilder();
+		for (String name : names) {
+			if (current.length() > 0 && current.length() + name.length() + 1 > MAX_NAMES_LENGTH) {
+				chunks.add(current.toString());
+				current.setLength(0);
+			}
+			if (current.length() > 0) {
+				current.append(',');
+			}
+			current.append(name);
+		}
+		if (current.length() > 0) {
+			chunks.add(current.toString());
+		}
+		return chunks;
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.provisioning;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a provisioning run: one entry per resource
+ */
+public class ProvisioningResult {
+
+	private final List<ResourceResult> results;
+	private final ProvisioningPlan plan;
+	private final long tookNanos;
+
+	ProvisioningResult(List<ResourceResult> results, ProvisioningPlan plan, long tookNanos) {
+		this.results = Collections.unmodifiableList(results);
+		this.plan = plan;
+		this.tookNanos = tookNanos;
+	}
+
+	public List<ResourceResult> getResults() {
+		return results;
+	}
+
+	/**
+	 * @return the resources which failed or were skipped because of a failure
+	 */
+	public List<ResourceResult> getFailures() {
+		List<ResourceResult> failures = new ArrayList<>();
+		for (ResourceResult result : results) {
+			if (result.getStatus() != ResourceResult.Status.SUCCESS) {
+				failures.add(result);
+			}
+		}
+		return failures;
+	}
+
+	/**
+	 * @return the number of requests sent again after a transient failure, all resources included
+	 * @since 7.6
+	 */
+	public int getRetries() {
+		int retries = 0;
+		for (ResourceResult result : results) {
+			retries += result.getRetries();
+		}
+		return retries;
+	}
+
+	public boolean isSuccessful() {
+		return getFailures().isEmpty();
+	}
+
+	/**
+	 * @return the plan the run was based on, null if no plan was computed
+	 */
+	public ProvisioningPlan getPlan() {
+		return plan;
+	}
+
+	public long getTookNanos() {
+		return tookNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "ProvisioningResult{" + results.size() + " resources, " + getFailures().size() + " failures, took " +
+				tookNanos / 1_000_000 + "ms}";
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.provisioning;
+
+/**
+ * Outcome of the provisioning of a single resource
+ */
+public class ResourceResult {
+
+	public enum Type {
+		TEMPLATE,
+		INDEX,
+		INDEX_SETTINGS
+	}
+
+	public enum Status {
+		SUCCESS,
+		FAILED,
+		/**
+		 * Not executed because one of the resources it depends on failed
+		 */
+		SKIPPED
+	}
+
+	private final Type type;
+	private final String name;
+	private final Status status;
+	private final Throwable failure;
+	private final long tookNanos;
+	private final PlannedAction.Action action;
+	private final int retries;
+
+	ResourceResult(Type type, String name, Status status, Throwable failure, long tookNanos, PlannedAction.Action action) {
+		this(type, name, status, failure, tookNanos, action, 0);
+	}
+
+	ResourceResult(Type type, String name, Status status, Throwable failure, long tookNanos, PlannedAction.Action action,
+				   int retries) {
+		this.type = type;
+		this.name = name;
+		this.status = status;
+		this.failure = failure;
+		this.tookNanos = tookNanos;
+		this.action = action;
+		this.retries = retries;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return the cause of the failure, null if the resource was successfully provisioned
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	public long getTookNanos() {
+		return tookNanos;
+	}
+
+	/**
+	 * @return the action which was planned for this resource, null if no plan was computed
+	 */
+	public PlannedAction.Action getAction() {
+		return action;
+	}
+
+	/**
+	 * @return the number of requests sent again after a transient failure
+	 * @since 7.6
+	 */
+	public int getRetries() {
+		return retries;
+	}
+
+	@Override
+	public String toString() {
+		return type + " [" + name + "]: " + status + (action == null ? "" : " " + action) +
+				(retries == 0 ? "" : " after " + retries + " retries") + (failure == null ? "" : " (" + failure.getMessage() + ")");
+	}
+}
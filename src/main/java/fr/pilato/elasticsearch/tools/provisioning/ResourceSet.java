@@ -0,0 +1,324 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.provisioning;
+
+import fr.pilato.elasticsearch.tools.ResourceFormat;
+import fr.pilato.elasticsearch.tools.ResourceIndex;
+import fr.pilato.elasticsearch.tools.SettingsFinder.Defaults;
+import fr.pilato.elasticsearch.tools.SettingsReader;
+import fr.pilato.elasticsearch.tools.index.IndexFinder;
+import fr.pilato.elasticsearch.tools.index.IndexSettingsReader;
+import fr.pilato.elasticsearch.tools.listener.ProvisioningEvent;
+import fr.pilato.elasticsearch.tools.listener.ProvisioningListener;
+import fr.pilato.elasticsearch.tools.template.TemplateFinder;
+import fr.pilato.elasticsearch.tools.template.TemplateSettingsReader;
+import fr.pilato.elasticsearch.tools.util.Digests;
+import fr.pilato.elasticsearch.tools.variable.PlaceholderTemplate;
+import fr.pilato.elasticsearch.tools.variable.VariableSource;
+import org.apache.http.HttpEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * All the templates and indices found in a classpath dir, with their resolved content.
+ */
+public class ResourceSet {
+
+	private static final Logger logger = LoggerFactory.getLogger(ResourceSet.class);
+
+	private final String root;
+	private final Map<String, Source> templates = new LinkedHashMap<>();
+	private final Map<String, Source> settings = new LinkedHashMap<>();
+	private final Map<String, Source> updateSettings = new LinkedHashMap<>();
+	private volatile String digest;
+
+	private ResourceSet(String root) {
+		this.root = root;
+	}
+
+	/**
+	 * Scan the classpath and read all the templates and index settings
+	 * @param root dir within the classpath. If null, default classpath dir is used.
+	 * @return the resources found
+	 * @throws IOException if a resource can not be read
+	 * @throws URISyntaxException this should not happen
+	 */
+	public static ResourceSet load(String root) throws IOException, URISyntaxException {
+		return load(root, ProvisioningListener.NOOP);
+	}
+
+	/**
+	 * Scan the classpath and read all the templates and index settings
+	 * @param root dir within the classpath. If null, default classpath dir is used.
+	 * @param listener receives the timing of the scan, of each file read and of each variable substitution
+	 * @return the resources found
+	 * @throws IOException if a resource can not be read
+	 * @throws URISyntaxException this should not happen
+	 * @since 7.6
+	 */
+	public static ResourceSet load(String root, ProvisioningListener listener) throws IOException, URISyntaxException {
+		return load(root, listener, VariableSource.environment());
+	}
+
+	/**
+	 * Scan the classpath and read all the templates and index settings
+	 * @param root dir within the classpath. If null, default classpath dir is used.
+	 * @param listener receives the timing of the scan, of each file read and of each variable substitution
+	 * @param variables where to read the values of the placeholders found in the resources
+	 * @return the resources found
+	 * @throws IOException if a resource can not be read
+	 * @throws URISyntaxException this should not happen
+	 * @since 7.6
+	 */
+	public static ResourceSet load(String root, ProvisioningListener listener, VariableSource variables) throws IOException, URISyntaxException {
+		ResourceSet resources = new ResourceSet(root == null ? Defaults.ConfigDir : root);
+		logger.debug("Loading resources from classpath under [{}].", resources.root);
+
+		long start = System.nanoTime();
+		List<String> templates = TemplateFinder.findTemplates(resources.root);
+		listener.onEvent(new ProvisioningEvent(ProvisioningEvent.Phase.SCAN, resources.root + "/" + Defaults.TemplateDir,
+				null, templates.size(), -1, System.nanoTime() - start, null));
+		for (String template : templates) {
+			resources.templates.put(template, read(TemplateSettingsReader.getTemplateFile(resources.root, template), listener, variables));
+		}
+
+		start = System.nanoTime();
+		List<String> indices = IndexFinder.findIndexNames(resources.root);
+		listener.onEvent(new ProvisioningEvent(ProvisioningEvent.Phase.SCAN, resources.root,
+				null, indices.size(), -1, System.nanoTime() - start, null));
+		for (String index : indices) {
+			resources.settings.put(index, read(IndexSettingsReader.getSettingsFile(resources.root, index,
+					Defaults.IndexSettingsFileName), listener, variables));
+			resources.updateSettings.put(index, read(IndexSettingsReader.getSettingsFile(resources.root, index,
+					Defaults.UpdateIndexSettingsFileName), listener, variables));
+		}
+
+		warnConflicts(resources.root);
+		logger.debug("Found [{}] templates and [{}] indices under [{}].", resources.templates.size(),
+				resources.settings.size(), resources.root);
+		return resources;
+	}
+
+	private static void warnConflicts(String root) throws IOException, URISyntaxException {
+		ResourceIndex index = ResourceIndex.getInstance(ResourceSet.class.getClassLoader());
+		if (index.getManifest(root) != null) {
+			// Conflicts were resolved when building the manifest and we don't want to scan
+			return;
+		}
+		for (Map.Entry<String, List<String>> conflict : index.getConflicts(root + "/").entrySet()) {
+			logger.warn("[{}/{}] is defined in {}. Using the first one.", root, conflict.getKey(), conflict.getValue());
+		}
+	}
+
+	private static Source read(String file, ProvisioningListener listener, VariableSource variables) throws IOException {
+		long start = System.nanoTime();
+		ClassLoader classLoader = ResourceSet.class.getClassLoader();
+		ResourceIndex index = ResourceIndex.getInstance(classLoader);
+		String path = index.locate(file);
+		byte[] raw = path == null ? null : SettingsReader.readRawBytesFromClasspath(classLoader, path);
+		listener.onEvent(new ProvisioningEvent(ProvisioningEvent.Phase.READ, path == null ? file : path, null,
+				raw == null ? -1 : raw.length, -1, System.nanoTime() - start, null));
+		if (raw == null) {
+			return null;
+		}
+		ResourceFormat format = ResourceFormat.of(path);
+		if (format != null && format != ResourceFormat.JSON) {
+			// Binary and compressed files have no placeholders. They are sent as they are.
+			return new Source(format, raw);
+		}
+
+		start = System.nanoTime();
+		// Only files with placeholders are rendered, with the template parsed once per file. The result is sent as it is.
+		byte[] content = raw;
+		if (SettingsReader.hasPlaceholder(raw)) {
+			PlaceholderTemplate template = index.getPlaceholderTemplate(path);
+			if (template != null) {
+				content = template.render(variables).getBytes(StandardCharsets.UTF_8);
+			}
+		}
+		listener.onEvent(new ProvisioningEvent(ProvisioningEvent.Phase.SUBSTITUTION, file, null,
+				content.length, -1, System.nanoTime() - start, null));
+		return new Source(ResourceFormat.JSON, content);
+	}
+
+	public String getRoot() {
+		return root;
+	}
+
+	public List<String> getTemplateNames() {
+		return new ArrayList<>(templates.keySet());
+	}
+
+	/**
+	 * @param template template name
+	 * @return the template content
+	 * @throws UncheckedIOException if a binary or compressed file can not be decoded
+	 */
+	public String getTemplate(String template) {
+		return json(templates.get(template));
+	}
+
+	public List<String> getIndexNames() {
+		return new ArrayList<>(settings.keySet());
+	}
+
+	/**
+	 * @param index index name
+	 * @return the content of _settings.json or null if none
+	 * @throws UncheckedIOException if a binary or compressed file can not be decoded
+	 */
+	public String getSettings(String index) {
+		return json(settings.get(index));
+	}
+
+	/**
+	 * @param index index name
+	 * @return the content of _update_settings.json or null if none
+	 * @throws UncheckedIOException if a binary or compressed file can not be decoded
+	 */
+	public String getUpdateSettings(String index) {
+		return json(updateSettings.get(index));
+	}
+
+	/**
+	 * @param template template name
+	 * @return the template file as it is sent to elasticsearch
+	 */
+	Source getTemplateSource(String template) {
+		return templates.get(template);
+	}
+
+	/**
+	 * @param index index name
+	 * @return the _settings file as it is sent to elasticsearch, null if none
+	 */
+	Source getSettingsSource(String index) {
+		return settings.get(index);
+	}
+
+	/**
+	 * @param index index name
+	 * @return the _update_settings file as it is sent to elasticsearch, null if none
+	 */
+	Source getUpdateSettingsSource(String index) {
+		return updateSettings.get(index);
+	}
+
+	private static String json(Source source) {
+		try {
+			return source == null ? null : source.getJson();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Digest of the whole resource set: names and resolved contents of all the templates and indices.
+	 * Two instances with the same resources get the same digest. Binary and compressed files are not decoded.
+	 * @return the SHA-256 of the resources as an hex string
+	 * @since 7.6
+	 */
+	public String getDigest() {
+		if (digest == null) {
+			MessageDigest sha = Digests.sha256();
+			for (String template : new TreeSet<>(templates.keySet())) {
+				Digests.update(sha, "template");
+				Digests.update(sha, template);
+				update(sha, templates.get(template));
+			}
+			for (String index : new TreeSet<>(settings.keySet())) {
+				Digests.update(sha, "index");
+				Digests.update(sha, index);
+				update(sha, settings.get(index));
+				update(sha, updateSettings.get(index));
+			}
+			digest = Digests.hex(sha.digest());
+		}
+		return digest;
+	}
+
+	private static void update(MessageDigest sha, Source source) {
+		if (source == null) {
+			Digests.update(sha, (byte[]) null);
+			return;
+		}
+		if (source.format != ResourceFormat.JSON) {
+			Digests.update(sha, source.format.getExtension());
+		}
+		Digests.update(sha, source.content);
+	}
+
+	/**
+	 * A resource file: the content sent to elasticsearch, as it was read and with its variables replaced,
+	 * and its json text, used to plan and fingerprint. The json text is decoded the first time it is asked for.
+	 * Binary and compressed files are sent with their own content type.
+	 */
+	static final class Source {
+		private final ResourceFormat format;
+		private final byte[] content;
+		private volatile String json;
+
+		Source(ResourceFormat format, byte[] content) {
+			this.format = format;
+			this.content = content;
+		}
+
+		/**
+		 * @return the json text of the file
+		 * @throws IOException if a binary or compressed file can not be decoded
+		 */
+		String getJson() throws IOException {
+			if (json == null) {
+				json = format.toJson(content);
+			}
+			return json;
+		}
+
+		/**
+		 * @return true once the json text was decoded
+		 */
+		boolean isDecoded() {
+			return json != null;
+		}
+
+		ResourceFormat getFormat() {
+			return format;
+		}
+
+		/**
+		 * @return a new request body over the same bytes, which are not copied. Entities can not be sent twice
+		 * at the same time, so each request needs its own.
+		 */
+		HttpEntity entity() {
+			return format.entity(content);
+		}
+	}
+}
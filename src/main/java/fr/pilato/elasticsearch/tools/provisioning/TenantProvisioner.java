@@ -0,0 +1,360 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.provisioning;
+
+import fr.pilato.elasticsearch.tools.ResourceIndex;
+import fr.pilato.elasticsearch.tools.SettingsFinder.Defaults;
+import fr.pilato.elasticsearch.tools.cluster.ClusterHealth;
+import fr.pilato.elasticsearch.tools.index.IndexElasticsearchUpdater;
+import fr.pilato.elasticsearch.tools.index.IndexFinder;
+import fr.pilato.elasticsearch.tools.index.IndexSettingsReader;
+import fr.pilato.elasticsearch.tools.listener.ProvisioningEvent;
+import fr.pilato.elasticsearch.tools.listener.ProvisioningListener;
+import fr.pilato.elasticsearch.tools.rest.JsonEntities;
+import fr.pilato.elasticsearch.tools.rest.RequestExecutor;
+import fr.pilato.elasticsearch.tools.rest.RetryingRequestExecutor;
+import fr.pilato.elasticsearch.tools.util.Futures;
+import fr.pilato.elasticsearch.tools.variable.PlaceholderTemplate;
+import fr.pilato.elasticsearch.tools.variable.VariableSource;
+import org.apache.http.HttpEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Creates a copy of the indices found in a classpath dir for each tenant, like tenant42-orders and tenant42-events.
+ * <p>
+ * The settings files are compiled once. The name and the settings of each index are then rendered for each tenant
+ * with the {@link #TENANT} and {@link #INDEX} variables, then with the variable source of the options. Settings
+ * without any placeholder are encoded once and shared by all the tenants.
+ * <p>
+ * Index creations are pipelined: up to {@link ProvisioningOptions#getPipelineDepth()} requests are in flight and
+ * a new one is sent as soon as one completes. Tenants are read from the iterator only when there is room for their
+ * requests, so a long stream of tenants is never held in memory. Indices are created without checking first if they
+ * exist, and an index which already exists is left untouched. Once all the indices of a tenant exist, the tenant is
+ * recorded in the {@link ProgressStore} and is skipped by the next runs.
+ * @since 7.6
+ */
+public class TenantProvisioner {
+
+	private static final Logger logger = LoggerFactory.getLogger(TenantProvisioner.class);
+
+	/**
+	 * Variable holding the tenant id
+	 */
+	public static final String TENANT = "TENANT";
+
+	/**
+	 * Variable holding the name of the index dir in the classpath
+	 */
+	public static final String INDEX = "INDEX";
+
+	private final RequestExecutor client;
+	private final ProvisioningOptions options;
+	private final ProvisioningListener listener;
+	private final ProgressStore progress;
+	private final String root;
+	private final PlaceholderTemplate indexName;
+	private final Map<String, PlaceholderTemplate> settings = new LinkedHashMap<>();
+	private final Map<String, byte[]> sharedSettings = new HashMap<>();
+
+	/**
+	 * @param client elasticsearch request executor
+	 * @param root dir within the classpath. If null, default classpath dir is used.
+	 * @param options provisioning options. The pipeline depth, the tenant index name, the variable source,
+	 *                the compression, the adaptive concurrency and the listeners are used.
+	 * @param progress where to record the tenants done
+	 * @throws IOException if the classpath can not be read
+	 * @throws URISyntaxException this should not happen
+	 */
+	public TenantProvisioner(RequestExecutor client, String root, ProvisioningOptions options, ProgressStore progress)
+			throws IOException, URISyntaxException {
+		this.listener = options.getListener();
+		this.client = RetryingRequestExecutor.runScope(ProvisioningEngine.decorate(client, options));
+		this.options = options;
+		this.progress = progress;
+		this.root = root == null ? Defaults.ConfigDir : root;
+		this.indexName = PlaceholderTemplate.compile(options.getTenantIndexName());
+
+		ResourceIndex resources = ResourceIndex.getInstance(TenantProvisioner.class.getClassLoader());
+		for (String index : IndexFinder.findIndexNames(this.root)) {
+			PlaceholderTemplate template = resources.getPlaceholderTemplate(
+					IndexSettingsReader.getSettingsFile(this.root, index, Defaults.IndexSettingsFileName));
+			settings.put(index, template);
+			if (template != null && !template.hasVariables()) {
+				sharedSettings.put(index, template.getSource().getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		logger.debug("Found [{}] indices to create for each tenant under [{}].", settings.size(), this.root);
+	}
+
+	/**
+	 * @return the name of the index dirs copied for each tenant
+	 */
+	public List<String> getIndexNames() {
+		return new ArrayList<>(settings.keySet());
+	}
+
+	/**
+	 * @param tenant tenant id
+	 * @param index name of the index dir
+	 * @return the name of the index created for the tenant
+	 */
+	public String getIndexName(String tenant, String index) {
+		return indexName.render(variables(tenant, index));
+	}
+
+	/**
+	 * Create the indices of all the tenants without blocking
+	 * @param tenants tenant ids
+	 * @return a future which completes once all the tenants are done. Tenants which failed are reported
+	 * in the result. It only completes exceptionally if the tenants can not be read.
+	 */
+	public CompletableFuture<TenantProvisioningResult> provisionAsync(Stream<String> tenants) {
+		return provisionAsync(tenants.iterator());
+	}
+
+	/**
+	 * Create the indices of all the tenants without blocking
+	 * @param tenants tenant ids. The iterator is only read by one thread at a time.
+	 * @return a future which completes once all the tenants are done. Tenants which failed are reported
+	 * in the result. It only completes exceptionally if the tenants can not be read or if the cluster
+	 * did not reach the status set with {@link ProvisioningOptions#setWaitForStatus(String)}.
+	 */
+	public CompletableFuture<TenantProvisioningResult> provisionAsync(Iterator<String> tenants) {
+		if (options.getWaitForStatus() == null) {
+			return start(tenants);
+		}
+		return ClusterHealth.waitForAsync(client, options.getWaitForStatus(), options.getHealthTimeoutMillis())
+				.thenCompose(health -> start(tenants));
+	}
+
+	private CompletableFuture<TenantProvisioningResult> start(Iterator<String> tenants) {
+		logger.debug("provisioning tenants under [{}] with [{}] requests in flight", root, options.getPipelineDepth());
+		Run run = new Run(tenants);
+		run.pump();
+		return run.result;
+	}
+
+	private VariableSource variables(String tenant, String index) {
+		VariableSource own = name -> TENANT.equals(name) ? tenant : INDEX.equals(name) ? index : null;
+		return VariableSource.chain(own, options.getVariableSource());
+	}
+
+	private HttpEntity entity(String index, VariableSource variables) {
+		byte[] shared = sharedSettings.get(index);
+		if (shared != null) {
+			// A new entity for each request as they can not be sent twice at the same time
+			return JsonEntities.of(shared);
+		}
+		PlaceholderTemplate template = settings.get(index);
+		return template == null ? null : JsonEntities.of(template.render(variables));
+	}
+
+	private static final class Tenant {
+		private final String id;
+		private int remaining;
+		private List<ResourceResult> failures;
+
+		private Tenant(String id, int remaining) {
+			this.id = id;
+			this.remaining = remaining;
+		}
+	}
+
+	private static final class Task {
+		private final Tenant tenant;
+		private final String index;
+
+		private Task(Tenant tenant, String index) {
+			this.tenant = tenant;
+			this.index = index;
+		}
+	}
+
+	/**
+	 * State of a single run. Everything but the requests themselves happens under its lock.
+	 */
+	private final class Run {
+		private final Iterator<String> tenants;
+		private final Deque<Task> pending = new ArrayDeque<>();
+		private final Map<String, List<ResourceResult>> failures = new LinkedHashMap<>();
+		private final CompletableFuture<TenantProvisioningResult> result = new CompletableFuture<>();
+		private final long start = System.nanoTime();
+		private int inFlight;
+		private int provisioned;
+		private int skipped;
+		private boolean exhausted;
+		private boolean pumping;
+		private boolean repump;
+
+		private Run(Iterator<String> tenants) {
+			this.tenants = tenants;
+		}
+
+		/**
+		 * Send requests until the pipeline is full. Requests completing while we are sending
+		 * do not send themselves but let this loop go on, so the stack does not grow.
+		 */
+		private void pump() {
+			synchronized (this) {
+				if (pumping) {
+					repump = true;
+					return;
+				}
+				pumping = true;
+			}
+			while (true) {
+				Task task;
+				synchronized (this) {
+					try {
+						task = inFlight < options.getPipelineDepth() ? next() : null;
+					} catch (RuntimeException e) {
+						logger.warn("Could not read the tenants: {}", e.getMessage());
+						exhausted = true;
+						pending.clear();
+						result.completeExceptionally(e);
+						task = null;
+					}
+					if (task == null) {
+						if (repump) {
+							repump = false;
+							continue;
+						}
+						pumping = false;
+						if (exhausted && pending.isEmpty() && inFlight == 0) {
+							finish();
+						}
+						return;
+					}
+					inFlight++;
+				}
+				send(task);
+			}
+		}
+
+		private Task next() {
+			while (pending.isEmpty() && !exhausted) {
+				if (!tenants.hasNext()) {
+					exhausted = true;
+					break;
+				}
+				String id = tenants.next();
+				if (progress.isDone(id)) {
+					skipped++;
+					continue;
+				}
+				Tenant tenant = new Tenant(id, settings.size());
+				if (settings.isEmpty()) {
+					tenantDone(tenant);
+				}
+				for (String index : settings.keySet()) {
+					pending.add(new Task(tenant, index));
+				}
+			}
+			return pending.poll();
+		}
+
+		private void send(Task task) {
+			long start = System.nanoTime();
+			String name = task.index;
+			RequestExecutor resourceClient = RetryingRequestExecutor.resourceScope(client);
+			CompletableFuture<Boolean> created;
+			try {
+				VariableSource variables = variables(task.tenant.id, task.index);
+				name = indexName.render(variables);
+				created = IndexElasticsearchUpdater.createIndexIfAbsentAsync(resourceClient, name, entity(task.index, variables));
+			} catch (RuntimeException e) {
+				created = Futures.failedFuture(e);
+			}
+			String index = name;
+			created.whenComplete((r, e) -> done(task, index, r, e, start, RetryingRequestExecutor.retriesOf(resourceClient)));
+		}
+
+		private void done(Task task, String index, Boolean created, Throwable e, long start, int retries) {
+			Throwable failure = e == null ? null : Futures.unwrap(e);
+			ResourceResult resource = new ResourceResult(ResourceResult.Type.INDEX, index,
+					failure == null ? ResourceResult.Status.SUCCESS : ResourceResult.Status.FAILED, failure,
+					System.nanoTime() - start, failure == null ? (created ? PlannedAction.Action.CREATE : PlannedAction.Action.NOOP) : null,
+					retries);
+			listener.onEvent(new ProvisioningEvent(ProvisioningEvent.Phase.RESOURCE, resource.getType() + " [" + index + "]",
+					resource.getAction() == null ? null : resource.getAction().name(), -1, -1, resource.getTookNanos(), failure));
+			if (failure != null) {
+				logger.warn("Could not create index [{}] for tenant [{}]: {}", index, task.tenant.id, failure.getMessage());
+			}
+
+			synchronized (this) {
+				inFlight--;
+				Tenant tenant = task.tenant;
+				if (failure != null) {
+					if (tenant.failures == null) {
+						tenant.failures = new ArrayList<>();
+					}
+					tenant.failures.add(resource);
+				}
+				if (--tenant.remaining == 0) {
+					tenantDone(tenant);
+				}
+			}
+			pump();
+		}
+
+		private void tenantDone(Tenant tenant) {
+			if (tenant.failures != null) {
+				failures.put(tenant.id, tenant.failures);
+				return;
+			}
+			provisioned++;
+			try {
+				progress.markDone(tenant.id);
+			} catch (IOException e) {
+				// The indices exist: the next run will only find them again
+				logger.warn("Could not record that tenant [{}] is done: {}", tenant.id, e.getMessage());
+			}
+		}
+
+		private void finish() {
+			TenantProvisioningResult done = new TenantProvisioningResult(provisioned, skipped, failures, System.nanoTime() - start);
+			listener.onEvent(new ProvisioningEvent(ProvisioningEvent.Phase.RUN, root, null,
+					provisioned + failures.size(), -1, done.getTookNanos(), null));
+			logger.debug("provisioning of tenants under [{}] done: {}", root, done);
+			// The next run must find the tenants done by this one
+			progress.flush().whenComplete((v, e) -> {
+				if (e != null) {
+					logger.warn("Could not record the tenants done: {}", Futures.unwrap(e).getMessage());
+				}
+				result.complete(done);
+			});
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.provisioning;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of a {@link TenantProvisioner} run. Only the failures are kept, by tenant.
+ * @since 7.6
+ */
+public class TenantProvisioningResult {
+
+	private final int provisioned;
+	private final int skipped;
+	private final Map<String, List<ResourceResult>> failures;
+	private final long tookNanos;
+
+	TenantProvisioningResult(int provisioned, int skipped, Map<String, List<ResourceResult>> failures, long tookNanos) {
+		this.provisioned = provisioned;
+		this.skipped = skipped;
+		this.failures = Collections.unmodifiableMap(failures);
+		this.tookNanos = tookNanos;
+	}
+
+	/**
+	 * @return number of tenants whose indices were all provisioned by this run
+	 */
+	public int getProvisioned() {
+		return provisioned;
+	}
+
+	/**
+	 * @return number of tenants skipped because the progress store says they were done by a previous run
+	 */
+	public int getSkipped() {
+		return skipped;
+	}
+
+	/**
+	 * @return the indices which could not be created, by tenant
+	 */
+	public Map<String, List<ResourceResult>> getFailures() {
+		return failures;
+	}
+
+	public boolean isSuccessful() {
+		return failures.isEmpty();
+	}
+
+	public long getTookNanos() {
+		return tookNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "TenantProvisioningResult{" + provisioned + " provisioned, " + skipped + " skipped, " + failures.size() +
+				" failed, took " + tookNanos / 1_000_000 + "ms}";
+	}
+}
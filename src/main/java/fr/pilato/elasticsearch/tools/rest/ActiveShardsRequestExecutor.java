@@ -0,0 +1,126 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.rest;
+
+import fr.pilato.elasticsearch.tools.util.Futures;
+import fr.pilato.elasticsearch.tools.util.JsonUtil;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Adds {@code wait_for_active_shards} to the index creation requests, so elasticsearch only answers once enough
+ * shard copies of the new index are started. An index created while its shards did not start in time fails
+ * with the reason instead of being reported as provisioned.
+ * @since 7.6
+ */
+public class ActiveShardsRequestExecutor implements RequestExecutor {
+	private static final Logger logger = LoggerFactory.getLogger(ActiveShardsRequestExecutor.class);
+	static final String PARAMETER = "wait_for_active_shards";
+
+	private final RequestExecutor delegate;
+	private final Function<String, String> activeShards;
+
+	/**
+	 * @param delegate executor sending the requests
+	 * @param activeShards gives the wait_for_active_shards value of an index, or null to use the elasticsearch default
+	 */
+	public ActiveShardsRequestExecutor(RequestExecutor delegate, Function<String, String> activeShards) {
+		this.delegate = delegate;
+		this.activeShards = activeShards;
+	}
+
+	@Override
+	public CompletableFuture<Response> performRequestAsync(Request request) {
+		String index = createdIndex(request);
+		String value = index == null ? null : activeShards.apply(index);
+		if (value == null) {
+			return delegate.performRequestAsync(request);
+		}
+		return delegate.performRequestAsync(withActiveShards(request, value)).thenCompose(response -> {
+			try {
+				return CompletableFuture.completedFuture(check(response, index, value));
+			} catch (IOException e) {
+				return Futures.failedFuture(e);
+			}
+		});
+	}
+
+	@Override
+	public Response performRequest(Request request) throws IOException {
+		String index = createdIndex(request);
+		String value = index == null ? null : activeShards.apply(index);
+		if (value == null) {
+			return delegate.performRequest(request);
+		}
+		return check(delegate.performRequest(withActiveShards(request, value)), index, value);
+	}
+
+	/**
+	 * @param request request to send
+	 * @return the name of the index created by this request, null if it does not create an index
+	 */
+	static String createdIndex(Request request) {
+		if (!"PUT".equals(request.getMethod())) {
+			return null;
+		}
+		String endpoint = request.getEndpoint().startsWith("/") ? request.getEndpoint().substring(1) : request.getEndpoint();
+		if (endpoint.isEmpty() || endpoint.startsWith("_") || endpoint.contains("/")) {
+			return null;
+		}
+		return endpoint;
+	}
+
+	private static Request withActiveShards(Request request, String value) {
+		if (request.getParameters().containsKey(PARAMETER)) {
+			return request;
+		}
+		Request copy = new Request(request.getMethod(), request.getEndpoint());
+		copy.addParameters(request.getParameters());
+		copy.addParameter(PARAMETER, value);
+		copy.setOptions(request.getOptions());
+		copy.setEntity(request.getEntity());
+		return copy;
+	}
+
+	private static Response check(Response response, String index, String value) throws IOException {
+		if (response.getEntity() == null) {
+			return response;
+		}
+		Map<String, Object> body;
+		try (InputStream content = response.getEntity().getContent()) {
+			body = JsonUtil.asMap(content);
+		}
+		if (Boolean.FALSE.equals(body.get("shards_acknowledged"))) {
+			logger.warn("Index [{}] was created but [{}] shard copies were not started in time", index, value);
+			throw new IOException("Could not create index [" + index + "]: the index exists but [" + value +
+					"] shard copies were not started before the timeout. Check the cluster health and allocation.");
+		}
+		logger.trace("Index [{}] created with [{}] active shard copies", index, value);
+		return response;
+	}
+}
@@ -0,0 +1,329 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.rest;
+
+import fr.pilato.elasticsearch.tools.SettingsFinder.Defaults;
+import fr.pilato.elasticsearch.tools.util.Futures;
+import fr.pilato.elasticsearch.tools.util.JsonUtil;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of requests in flight and adapts the limit to the load of the cluster (AIMD):
+ * <ul>
+ *     <li>each successful request raises the limit by 1/limit, so about one more request per round-trip</li>
+ *     <li>a 429 or 503 response or too many master pending tasks halve the limit</li>
+ *     <li>when requests get much slower than the fastest of the last requests of the same kind, the limit is
+ *     lowered by 10%. Once the latency settles at a slower pace, it becomes the new baseline.</li>
+ * </ul>
+ * The limit is lowered at most once per round-trip: requests sent before a decrease do not lower it again.
+ * Master pending tasks are read with {@code GET _cluster/pending_tasks} when requests complete,
+ * at most once per sample interval. Requests over the limit wait in a queue. Responses are not retried.
+ * @since 7.6
+ */
+public class AdaptiveRequestExecutor implements RequestExecutor {
+	private static final Logger logger = LoggerFactory.getLogger(AdaptiveRequestExecutor.class);
+
+	private static final double BACKOFF_RATIO = 0.5;
+	private static final double SLOW_RATIO = 0.9;
+	private static final long SLOW_FACTOR = 4;
+	private static final long SLOW_SLACK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+	private static final double SMOOTHING = 0.2;
+	private static final int BASELINE_SAMPLES = 32;
+
+	private final RequestExecutor delegate;
+	private final int maxLimit;
+	private final int pendingTasksThreshold;
+	private final long sampleIntervalNanos;
+
+	private final Deque<Waiting> waiting = new ArrayDeque<>();
+	private final Map<String, Latency> latencies = new HashMap<>();
+	private double limit;
+	private int inFlight;
+	private long decreasedAt = System.nanoTime();
+	private boolean dispatching;
+	private boolean redispatch;
+	private boolean congested;
+	private boolean sampling;
+	private boolean samplingSupported = true;
+	private long sampledAt;
+
+	/**
+	 * @param delegate executor sending the requests
+	 * @param initialLimit number of requests sent at the same time to start with
+	 * @param maxLimit maximum number of requests sent at the same time
+	 */
+	public AdaptiveRequestExecutor(RequestExecutor delegate, int initialLimit, int maxLimit) {
+		this(delegate, initialLimit, maxLimit, Defaults.PendingTasksThreshold, Defaults.PendingTasksSampleMillis);
+	}
+
+	/**
+	 * @param delegate executor sending the requests
+	 * @param initialLimit number of requests sent at the same time to start with
+	 * @param maxLimit maximum number of requests sent at the same time
+	 * @param pendingTasksThreshold number of master pending tasks from which the limit is lowered. 0 to never read them.
+	 * @param sampleIntervalMillis minimum time between two reads of the master pending tasks
+	 */
+	public AdaptiveRequestExecutor(RequestExecutor delegate, int initialLimit, int maxLimit, int pendingTasksThreshold,
+								   long sampleIntervalMillis) {
+		if (initialLimit < 1 || maxLimit < initialLimit) {
+			throw new IllegalArgumentException("limits must be 1 <= initial [" + initialLimit + "] <= max [" + maxLimit + "]");
+		}
+		this.delegate = delegate;
+		this.limit = initialLimit;
+		this.maxLimit = maxLimit;
+		this.pendingTasksThreshold = pendingTasksThreshold;
+		this.sampleIntervalNanos = TimeUnit.MILLISECONDS.toNanos(sampleIntervalMillis);
+		this.sampledAt = System.nanoTime() - sampleIntervalNanos;
+	}
+
+	/**
+	 * @return the number of requests which can currently be sent at the same time
+	 */
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	/**
+	 * @return the number of requests sent and not completed yet
+	 */
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * @return the number of requests waiting for room under the limit
+	 */
+	public synchronized int getQueued() {
+		return waiting.size();
+	}
+
+	@Override
+	public CompletableFuture<Response> performRequestAsync(Request request) {
+		Waiting next = new Waiting(request);
+		synchronized (this) {
+			waiting.add(next);
+		}
+		dispatch();
+		return next.result;
+	}
+
+	/**
+	 * Send the waiting requests while there is room under the limit. Requests completing while we are sending
+	 * do not dispatch themselves but let this loop go on, so the stack does not grow.
+	 */
+	private void dispatch() {
+		synchronized (this) {
+			if (dispatching) {
+				redispatch = true;
+				return;
+			}
+			dispatching = true;
+		}
+		while (true) {
+			Waiting next;
+			synchronized (this) {
+				next = inFlight < (int) limit ? waiting.poll() : null;
+				if (next == null) {
+					if (redispatch) {
+						redispatch = false;
+						continue;
+					}
+					dispatching = false;
+					return;
+				}
+				inFlight++;
+			}
+			send(next);
+		}
+	}
+
+	private void send(Waiting next) {
+		long start = System.nanoTime();
+		CompletableFuture<Response> response;
+		try {
+			response = delegate.performRequestAsync(next.request);
+		} catch (RuntimeException e) {
+			response = Futures.failedFuture(e);
+		}
+		response.whenComplete((r, e) -> {
+			completed(next.request, start, e);
+			dispatch();
+			sample();
+			if (e == null) {
+				next.result.complete(r);
+			} else {
+				next.result.completeExceptionally(Futures.unwrap(e));
+			}
+		});
+	}
+
+	private synchronized void completed(Request request, long start, Throwable e) {
+		inFlight--;
+		long took = System.nanoTime() - start;
+		if (e != null) {
+			if (ResponseErrors.isOverloaded(e)) {
+				decrease(start, BACKOFF_RATIO, "[" + request.getMethod() + " " + request.getEndpoint() + "] was rejected");
+			}
+			return;
+		}
+
+		Latency latency = latencies.computeIfAbsent(kind(request), k -> new Latency());
+		if (latency.add(took)) {
+			decrease(start, SLOW_RATIO, "[" + request.getMethod() + " " + request.getEndpoint() + "] took " +
+					TimeUnit.NANOSECONDS.toMillis(took) + "ms");
+			return;
+		}
+		if (!congested && limit < maxLimit) {
+			limit = Math.min(maxLimit, limit + 1 / limit);
+		}
+	}
+
+	/**
+	 * Lower the limit unless it was already lowered since the request was sent
+	 */
+	private void decrease(long sentAt, double ratio, String reason) {
+		if (sentAt - decreasedAt < 0) {
+			return;
+		}
+		decreasedAt = System.nanoTime();
+		limit = Math.max(1, limit * ratio);
+		logger.debug("{}: lowering concurrency to [{}]", reason, (int) limit);
+	}
+
+	/**
+	 * Requests of the same kind take about the same time: same method, same endpoint with names replaced by *
+	 */
+	private static String kind(Request request) {
+		StringBuilder kind = new StringBuilder(request.getMethod());
+		for (String part : request.getEndpoint().split("/")) {
+			if (!part.isEmpty()) {
+				kind.append('/').append(part.startsWith("_") ? part : "*");
+			}
+		}
+		return kind.toString();
+	}
+
+	private void sample() {
+		long now = System.nanoTime();
+		synchronized (this) {
+			if (pendingTasksThreshold <= 0 || !samplingSupported || sampling || now - sampledAt < sampleIntervalNanos) {
+				return;
+			}
+			sampling = true;
+			sampledAt = now;
+		}
+		CompletableFuture<Response> response;
+		try {
+			response = delegate.performRequestAsync(new Request("GET", "/_cluster/pending_tasks"));
+		} catch (RuntimeException e) {
+			response = Futures.failedFuture(e);
+		}
+		response.whenComplete((r, e) -> {
+			int pendingTasks = -1;
+			if (e == null) {
+				try {
+					pendingTasks = pendingTasks(r);
+				} catch (IOException ioe) {
+					logger.debug("Could not read the master pending tasks: {}", ioe.getMessage());
+				}
+			} else {
+				logger.debug("Could not read the master pending tasks: {}", Futures.unwrap(e).getMessage());
+			}
+			synchronized (this) {
+				sampling = false;
+				if (e != null && ResponseErrors.status(e) >= 400 && !ResponseErrors.isOverloaded(e)) {
+					// Not allowed or not an elasticsearch cluster: only rely on the responses
+					samplingSupported = false;
+				}
+				if (pendingTasks >= 0) {
+					congested = pendingTasks >= pendingTasksThreshold;
+					if (congested) {
+						decrease(sampledAt, BACKOFF_RATIO, "[" + pendingTasks + "] master pending tasks");
+					}
+				}
+			}
+			dispatch();
+		});
+	}
+
+	private static int pendingTasks(Response response) throws IOException {
+		if (response.getEntity() == null) {
+			throw new IOException("Empty pending tasks response");
+		}
+		try (InputStream body = response.getEntity().getContent()) {
+			Object tasks = JsonUtil.asMap(body).get("tasks");
+			if (!(tasks instanceof Collection)) {
+				throw new IOException("Could not find the tasks in the pending tasks response");
+			}
+			return ((Collection<?>) tasks).size();
+		}
+	}
+
+	/**
+	 * Fastest and recent latency of a kind of requests
+	 */
+	private static final class Latency {
+		/**
+		 * Last latencies. The fastest of them is the baseline, so it follows the cluster when it gets durably slower.
+		 */
+		private final long[] samples = new long[BASELINE_SAMPLES];
+		private int size;
+		private int next;
+		private double recent;
+
+		/**
+		 * @return true if the recent requests are much slower than the fastest of the last ones
+		 */
+		private boolean add(long took) {
+			samples[next] = took;
+			next = (next + 1) % samples.length;
+			size = Math.min(size + 1, samples.length);
+			recent = size == 1 ? took : recent + SMOOTHING * (took - recent);
+
+			long fastest = Long.MAX_VALUE;
+			for (int i = 0; i < size; i++) {
+				fastest = Math.min(fastest, samples[i]);
+			}
+			return recent > fastest * SLOW_FACTOR && recent - fastest > SLOW_SLACK_NANOS;
+		}
+	}
+
+	private static final class Waiting {
+		private final Request request;
+		private final CompletableFuture<Response> result = new CompletableFuture<>();
+
+		private Waiting(Request request) {
+			this.request = request;
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package fr.pilato.elasticsearch.tools.rest;
+
+import fr.pilato.elasticsearch.tools.SettingsFinder.Defaults;
+import fr.pilato.elasticsearch.tools.util.Digests;
+import fr.pilato.elasticsearch.tools.util.LruCache;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Sends the request bodies bigger than a threshold gzip compressed, with a {@code Content-Encoding: gzip} header.
+ * Compressed bodies are cached by content, so a resource sent again is not compressed again. Asynchronous requests
+ * are hashed and compressed on a dedicated pool, not on the thread of the caller.
+ * @since 7.6
+ */
+public class CompressingRequestExecutor implements RequestExecutor {
+	private static final Logger logger = LoggerFactory.getLogger(CompressingRequestExecutor.class);
+	private static final String GZIP = "gzip";
+	private static final LruCache<String, byte[]> cache = new LruCache<>(Defaults.CompressedCacheSize);
+	private static final ExecutorService compressor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+		Thread thread = new Thread(r, "beyonder-compress");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final RequestExecutor delegate;
+	private final long threshold;
+
+	/**
+	 * @param delegate executor sending the requests
+	 * @param threshold size from which bodies are compressed, in bytes
+	 */
+	public CompressingRequestExecutor(RequestExecutor delegate, long threshold) {
+		this.delegate = delegate;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * @return the cache of compressed bodies shared by all the executors, with its hit, miss and eviction counters
+	 */
+	public static LruCache<?, byte[]> getCache() {
+		return cache;
+	}
+
+	@Override
+	public CompletableFuture<Response> performRequestAsync(Request request) {
+		if (!isCompressible(request.getEntity())) {
+			return delegate.performRequestAsync(request);
+		}
+		// The caller may be an I/O reactor thread, which must not hash and compress large bodies
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return compress(request);
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		}, compressor).thenCompose(delegate::performRequestAsync);
+	}
+
+	@Override
+	public Response performRequest(Request request) throws IOException {
+		return delegate.performRequest(compress(request));
+	}
+
+	private boolean isCompressible(HttpEntity entity) {
+		return entity != null && entity.getContentEncoding() == null && entity.getContentLength() >= threshold;
+	}
+
+	private Request compress(Request request) throws IOException {
+		HttpEntity entity = request.getEntity();
+		if (!isCompressible(entity)) {
+			return request;
+		}
+
+		byte[] content = EntityUtils.toByteArray(entity);
+		byte[] gzipped;
+		try {
+			gzipped = cache.get(Digests.hex(Digests.sha256().digest(content)), key -> gzip(content));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		logger.trace("Compressed body of [{} {}] from [{}] to [{}] bytes", request.getMethod(), request.getEndpoint(),
+				content.length, gzipped.length);
+
+		NByteArrayEntity body = new NByteArrayEntity(gzipped, entity.getContentType() == null ?
+				ContentType.APPLICATION_JSON : ContentType.parse(entity.getContentType().getValue()));
+		body.setContentEncoding(GZIP);
+
+		Request copy = new Request(request.getMethod(), request.getEndpoint());
+		copy.addParameters(request.getParameters());
+		copy.setOptions(request.getOptions());
+		copy.setEntity(body);
+		return copy;
+	}
+
+	/**
+	 * @param content content to compress
+	 * @return the content gzip compressed
+	 */
+	static byte[] gzip(byte[] content) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 4 + 64);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(content);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.rest;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.nio.entity.NStringEntity;
+
+/**
+ * JSON request bodies
+ * @since 7.6
+ */
+public class JsonEntities {
+
+	/**
+	 * @param json JSON content. Can be null.
+	 * @return the entity, like {@link org.elasticsearch.client.Request#setJsonEntity(String)} does, or null
+	 */
+	public static HttpEntity of(String json) {
+		return json == null ? null : new NStringEntity(json, ContentType.APPLICATION_JSON);
+	}
+
+	/**
+	 * @param json UTF-8 JSON content. Can be null. It is sent as is, without any copy.
+	 * @return the entity or null
+	 */
+	public static HttpEntity of(byte[] json) {
+		return json == null ? null : new NByteArrayEntity(json, ContentType.APPLICATION_JSON);
+	}
+}
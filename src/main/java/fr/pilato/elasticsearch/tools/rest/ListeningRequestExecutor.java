@@ -0,0 +1,77 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.rest;
+
+import fr.pilato.elasticsearch.tools.listener.ProvisioningEvent;
+import fr.pilato.elasticsearch.tools.listener.ProvisioningListener;
+import fr.pilato.elasticsearch.tools.util.Futures;
+import org.apache.http.HttpEntity;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends a {@link ProvisioningEvent.Phase#HTTP} event with the timing, payload size and status
+ * of each request sent by another executor.
+ */
+public class ListeningRequestExecutor implements RequestExecutor {
+
+	private final RequestExecutor delegate;
+	private final ProvisioningListener listener;
+
+	public ListeningRequestExecutor(RequestExecutor delegate, ProvisioningListener listener) {
+		this.delegate = delegate;
+		this.listener = listener;
+	}
+
+	@Override
+	public CompletableFuture<Response> performRequestAsync(Request request) {
+		long start = System.nanoTime();
+		return delegate.performRequestAsync(request).whenComplete((response, e) ->
+				notify(request, response, e == null ? null : Futures.unwrap(e), start));
+	}
+
+	@Override
+	public Response performRequest(Request request) throws IOException {
+		long start = System.nanoTime();
+		Response response;
+		try {
+			response = delegate.performRequest(request);
+		} catch (IOException | RuntimeException e) {
+			notify(request, null, e, start);
+			throw e;
+		}
+		notify(request, response, null, start);
+		return response;
+	}
+
+	private void notify(Request request, Response response, Throwable failure, long start) {
+		int status = response != null ? response.getStatusLine().getStatusCode() : ResponseErrors.status(failure);
+		listener.onEvent(new ProvisioningEvent(ProvisioningEvent.Phase.HTTP, request.getEndpoint(), request.getMethod(),
+				size(request), status, System.nanoTime() - start, failure));
+	}
+
+	private static long size(Request request) {
+		HttpEntity entity = request.getEntity();
+		return entity == null ? 0 : entity.getContentLength();
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.rest;
+
+import fr.pilato.elasticsearch.tools.util.Futures;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Executes the REST requests sent by the updaters. It can be decorated to add behavior to every
+ * call made by Beyonder.
+ */
+public interface RequestExecutor {
+
+	/**
+	 * Create an executor which sends requests with a RestClient
+	 * @param client Elasticsearch client
+	 * @return the executor
+	 */
+	static RequestExecutor of(RestClient client) {
+		return new RestClientRequestExecutor(client);
+	}
+
+	/**
+	 * Send a request without blocking
+	 * @param request request to send
+	 * @return a future which completes with the response, or exceptionally with a
+	 * {@link org.elasticsearch.client.ResponseException} when elasticsearch returns an error
+	 */
+	CompletableFuture<Response> performRequestAsync(Request request);
+
+	/**
+	 * Send a request and wait for the response
+	 * @param request request to send
+	 * @return the response
+	 * @throws IOException if the request failed
+	 */
+	default Response performRequest(Request request) throws IOException {
+		try {
+			return performRequestAsync(request).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for [" + request.getMethod() + " " + request.getEndpoint() + "]");
+		} catch (ExecutionException e) {
+			Throwable cause = Futures.unwrap(e);
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.rest;
+
+import fr.pilato.elasticsearch.tools.util.Futures;
+import fr.pilato.elasticsearch.tools.util.JsonUtil;
+import org.apache.http.HttpEntity;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Helpers to understand the errors returned by elasticsearch
+ */
+public class ResponseErrors {
+
+	/**
+	 * @param e failure of a request
+	 * @return the http status code or -1 if the failure does not come from an elasticsearch response
+	 */
+	public static int status(Throwable e) {
+		Throwable cause = Futures.unwrap(e);
+		if (cause instanceof ResponseException) {
+			return ((ResponseException) cause).getResponse().getStatusLine().getStatusCode();
+		}
+		return -1;
+	}
+
+	/**
+	 * @param e failure of a request
+	 * @return the type of the elasticsearch error, like resource_already_exists_exception, or null if unknown
+	 * @since 7.6
+	 */
+	public static String type(Throwable e) {
+		if (status(e) < 0) {
+			return null;
+		}
+		Object type = error(((ResponseException) Futures.unwrap(e)).getResponse()).get("type");
+		return type == null ? null : type.toString();
+	}
+
+	/**
+	 * Check if a request was rejected because the cluster is overloaded
+	 * @param e failure of a request
+	 * @return true for 429 Too Many Requests and 503 Service Unavailable responses
+	 * @since 7.6
+	 */
+	public static boolean isOverloaded(Throwable e) {
+		int status = status(e);
+		return status == 429 || status == 503;
+	}
+
+	/**
+	 * Check if a create request failed because the index or template already exists
+	 * @param e failure of a request
+	 * @return true if the resource already exists
+	 */
+	public static boolean isAlreadyExists(Throwable e) {
+		if (status(e) != 400) {
+			return false;
+		}
+		Map<String, Object> error = error(((ResponseException) Futures.unwrap(e)).getResponse());
+		Object type = error.get("type");
+		if ("resource_already_exists_exception".equals(type)) {
+			return true;
+		}
+		// Templates created with create=true
+		Object reason = error.get("reason");
+		return "illegal_argument_exception".equals(type) && reason != null && reason.toString().endsWith("already exists");
+	}
+
+	/**
+	 * Check if a create request failed because one of its earlier tries created the resource. Creations are not
+	 * idempotent: a try which timed out may have been applied anyway, and its retry then finds the resource.
+	 * @param client executor which sent the request
+	 * @param retries retries done by the executor before the request was sent
+	 * @param e failure of the request
+	 * @return true if the resource already exists and the request has been retried
+	 * @see RetryingRequestExecutor#retriesOf(RequestExecutor)
+	 * @since 7.6
+	 */
+	public static boolean isCreatedByRetry(RequestExecutor client, int retries, Throwable e) {
+		return isAlreadyExists(e) && RetryingRequestExecutor.retriesOf(client) > retries;
+	}
+
+	/**
+	 * Check if a delete request failed because one of its earlier tries removed the resource. Like creations,
+	 * a try which timed out may have been applied anyway, and its retry then does not find the resource.
+	 * @param client executor which sent the request
+	 * @param retries retries done by the executor before the request was sent
+	 * @param e failure of the request
+	 * @return true if the resource does not exist and the request has been retried
+	 * @see RetryingRequestExecutor#retriesOf(RequestExecutor)
+	 * @since 7.6
+	 */
+	public static boolean isRemovedByRetry(RequestExecutor client, int retries, Throwable e) {
+		return status(e) == 404 && RetryingRequestExecutor.retriesOf(client) > retries;
+	}
+
+	/**
+	 * @return the "error" object of an error response or an empty map if it can not be read
+	 */
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> error(Response response) {
+		HttpEntity entity = response.getEntity();
+		if (entity == null) {
+			return Collections.emptyMap();
+		}
+		try {
+			Object error = JsonUtil.asMap(EntityUtils.toString(entity)).get("error");
+			if (error instanceof Map) {
+				return (Map<String, Object>) error;
+			}
+		} catch (IOException e) {
+			// Not a json error
+		}
+		return Collections.emptyMap();
+	}
+}
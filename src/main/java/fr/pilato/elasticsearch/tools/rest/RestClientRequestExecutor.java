@@ -0,0 +1,74 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.rest;
+
+import org.elasticsearch.client.Cancellable;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends requests with the elasticsearch low level RestClient. Asynchronous calls run on the
+ * RestClient I/O reactor threads.
+ */
+public class RestClientRequestExecutor implements RequestExecutor {
+
+	private final RestClient client;
+
+	public RestClientRequestExecutor(RestClient client) {
+		assert client != null;
+		this.client = client;
+	}
+
+	@Override
+	public CompletableFuture<Response> performRequestAsync(Request request) {
+		CompletableFuture<Response> future = new CompletableFuture<>();
+		Cancellable cancellable = client.performRequestAsync(request, new ResponseListener() {
+			@Override
+			public void onSuccess(Response response) {
+				future.complete(response);
+			}
+
+			@Override
+			public void onFailure(Exception exception) {
+				future.completeExceptionally(exception);
+			}
+		});
+		future.whenComplete((response, e) -> {
+			if (future.isCancelled()) {
+				cancellable.cancel();
+			}
+		});
+		return future;
+	}
+
+	@Override
+	public Response performRequest(Request request) throws IOException {
+		return client.performRequest(request);
+	}
+
+	public RestClient getClient() {
+		return client;
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.rest;
+
+import fr.pilato.elasticsearch.tools.SettingsFinder.Defaults;
+import fr.pilato.elasticsearch.tools.util.Futures;
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Which failed requests are sent again, how many times and how long to wait between two tries.
+ * <p>
+ * Transient failures are retried: connection errors, 429, 502, 503 and 504 responses, and the errors
+ * elasticsearch returns while the master is busy or being elected. Other failures, like a 400 for a
+ * mapping which can not be parsed or a 409 conflict, are fatal.
+ * <p>
+ * The wait before a retry doubles each time, up to a maximum, and a random part of it is removed so
+ * many instances started at the same time do not retry all together.
+ * @since 7.6
+ */
+public class RetryPolicy {
+
+	private static final Set<String> RETRYABLE_TYPES = new HashSet<>(Arrays.asList(
+			"process_cluster_event_timeout_exception",
+			"master_not_discovered_exception",
+			"not_master_exception",
+			"failed_to_commit_cluster_state_exception",
+			"node_disconnected_exception",
+			"node_closed_exception",
+			"es_rejected_execution_exception",
+			"circuit_breaking_exception"
+	));
+
+	private int maxRetries = Defaults.MaxRetries;
+	private long initialBackoffMillis = Defaults.RetryInitialBackoffMillis;
+	private long maxBackoffMillis = Defaults.RetryMaxBackoffMillis;
+	private long resourceTimeoutMillis = Defaults.RetryResourceTimeoutMillis;
+	private long timeoutMillis = Defaults.RetryTimeoutMillis;
+
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+	/**
+	 * @param maxRetries maximum number of times a request is sent again
+	 * @return this
+	 */
+	public RetryPolicy setMaxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+		return this;
+	}
+
+	public long getInitialBackoffMillis() {
+		return initialBackoffMillis;
+	}
+
+	/**
+	 * @param initialBackoffMillis wait before the first retry. It doubles with each retry.
+	 * @return this
+	 */
+	public RetryPolicy setInitialBackoffMillis(long initialBackoffMillis) {
+		this.initialBackoffMillis = initialBackoffMillis;
+		return this;
+	}
+
+	public long getMaxBackoffMillis() {
+		return maxBackoffMillis;
+	}
+
+	/**
+	 * @param maxBackoffMillis maximum wait between two retries
+	 * @return this
+	 */
+	public RetryPolicy setMaxBackoffMillis(long maxBackoffMillis) {
+		this.maxBackoffMillis = maxBackoffMillis;
+		return this;
+	}
+
+	public long getResourceTimeoutMillis() {
+		return resourceTimeoutMillis;
+	}
+
+	/**
+	 * @param resourceTimeoutMillis time, from its first request, after which the requests of a resource are
+	 *                              not retried anymore. 0 for no limit.
+	 * @return this
+	 */
+	public RetryPolicy setResourceTimeoutMillis(long resourceTimeoutMillis) {
+		this.resourceTimeoutMillis = resourceTimeoutMillis;
+		return this;
+	}
+
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	/**
+	 * @param timeoutMillis time, from the start of a provisioning run, after which no request is retried anymore.
+	 *                      0 for no limit.
+	 * @return this
+	 */
+	public RetryPolicy setTimeoutMillis(long timeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+		return this;
+	}
+
+	/**
+	 * @param e failure of a request
+	 * @return true if sending the same request again may succeed
+	 */
+	public boolean isRetryable(Throwable e) {
+		Throwable cause = Futures.unwrap(e);
+		int status = ResponseErrors.status(cause);
+		if (status > 0) {
+			return status == 429 || status == 502 || status == 503 || status == 504 ||
+					RETRYABLE_TYPES.contains(ResponseErrors.type(cause));
+		}
+		return cause instanceof ConnectException ||
+				cause instanceof ConnectTimeoutException ||
+				cause instanceof SocketTimeoutException ||
+				cause instanceof SocketException ||
+				cause instanceof ConnectionClosedException ||
+				cause instanceof NoHttpResponseException ||
+				cause instanceof UnknownHostException;
+	}
+
+	/**
+	 * @param retry number of retries already done for the request, starting at 0
+	 * @return the time to wait before the next retry: between half and all of the exponential backoff
+	 */
+	public long backoffMillis(int retry) {
+		long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(retry, 30));
+		if (backoff <= 1) {
+			return Math.max(backoff, 0);
+		}
+		return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+	}
+
+	@Override
+	public String toString() {
+		return "RetryPolicy{" + maxRetries + " retries, backoff " + initialBackoffMillis + "ms to " + maxBackoffMillis +
+				"ms, timeout " + resourceTimeoutMillis + "ms per resource and " + timeoutMillis + "ms per run}";
+	}
+}
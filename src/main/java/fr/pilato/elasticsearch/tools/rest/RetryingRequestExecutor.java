@@ -0,0 +1,195 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.rest;
+
+import fr.pilato.elasticsearch.tools.util.Futures;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends again the requests which failed with a transient error, as told by a {@link RetryPolicy}.
+ * Waits between two tries do not block any thread.
+ * <p>
+ * Deadlines are given by scopes: {@link #forRun()} stops retrying once the run timeout of the policy is reached
+ * and {@link #forResource()} once the resource timeout is reached, counted from the first request of the resource.
+ * A scope also stops retrying when its parent does. Each scope counts its retries.
+ * @since 7.6
+ */
+public class RetryingRequestExecutor implements RequestExecutor {
+	private static final Logger logger = LoggerFactory.getLogger(RetryingRequestExecutor.class);
+	private static final long NO_DEADLINE = Long.MAX_VALUE;
+	private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "beyonder-retry");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final RequestExecutor delegate;
+	private final RetryPolicy policy;
+	private final RetryingRequestExecutor parent;
+	private final long timeoutMillis;
+	private final AtomicLong deadline = new AtomicLong(NO_DEADLINE);
+	private final AtomicInteger retries = new AtomicInteger();
+
+	/**
+	 * @param delegate executor sending the requests
+	 * @param policy which failures to retry and how
+	 */
+	public RetryingRequestExecutor(RequestExecutor delegate, RetryPolicy policy) {
+		this(delegate, policy, null, 0);
+	}
+
+	private RetryingRequestExecutor(RequestExecutor delegate, RetryPolicy policy, RetryingRequestExecutor parent,
+									long timeoutMillis) {
+		this.delegate = delegate;
+		this.policy = policy;
+		this.parent = parent;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * @return an executor which stops retrying once the run timeout of the policy is reached, counted from now
+	 */
+	public RetryingRequestExecutor forRun() {
+		RetryingRequestExecutor run = new RetryingRequestExecutor(delegate, policy, this, policy.getTimeoutMillis());
+		run.start();
+		return run;
+	}
+
+	/**
+	 * @return an executor which stops retrying once the resource timeout of the policy is reached,
+	 * counted from its first request
+	 */
+	public RetryingRequestExecutor forResource() {
+		return new RetryingRequestExecutor(delegate, policy, this, policy.getResourceTimeoutMillis());
+	}
+
+	/**
+	 * @param executor any executor
+	 * @return a run scope if the executor retries requests, the executor itself otherwise
+	 * @see #forRun()
+	 */
+	public static RequestExecutor runScope(RequestExecutor executor) {
+		return executor instanceof RetryingRequestExecutor ? ((RetryingRequestExecutor) executor).forRun() : executor;
+	}
+
+	/**
+	 * @param executor any executor
+	 * @return a resource scope if the executor retries requests, the executor itself otherwise
+	 * @see #forResource()
+	 */
+	public static RequestExecutor resourceScope(RequestExecutor executor) {
+		return executor instanceof RetryingRequestExecutor ? ((RetryingRequestExecutor) executor).forResource() : executor;
+	}
+
+	/**
+	 * @param executor any executor
+	 * @return the number of retries done by the executor, 0 if it does not retry requests
+	 */
+	public static int retriesOf(RequestExecutor executor) {
+		return executor instanceof RetryingRequestExecutor ? ((RetryingRequestExecutor) executor).getRetries() : 0;
+	}
+
+	/**
+	 * @return the number of retries done by this executor and by the executors created from it
+	 */
+	public int getRetries() {
+		return retries.get();
+	}
+
+	private void start() {
+		if (timeoutMillis > 0) {
+			deadline.compareAndSet(NO_DEADLINE, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+		}
+	}
+
+	/**
+	 * @return true if a retry sent at this time would be too late for this scope or any of its parents
+	 */
+	private boolean isExpired(long at) {
+		for (RetryingRequestExecutor scope = this; scope != null; scope = scope.parent) {
+			long limit = scope.deadline.get();
+			if (limit != NO_DEADLINE && at - limit > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void retried() {
+		for (RetryingRequestExecutor scope = this; scope != null; scope = scope.parent) {
+			scope.retries.incrementAndGet();
+		}
+	}
+
+	@Override
+	public CompletableFuture<Response> performRequestAsync(Request request) {
+		start();
+		CompletableFuture<Response> result = new CompletableFuture<>();
+		send(request, 0, result);
+		return result;
+	}
+
+	private void send(Request request, int retry, CompletableFuture<Response> result) {
+		CompletableFuture<Response> response;
+		try {
+			response = delegate.performRequestAsync(request);
+		} catch (RuntimeException e) {
+			response = Futures.failedFuture(e);
+		}
+		response.whenComplete((r, e) -> {
+			if (e == null) {
+				result.complete(r);
+				return;
+			}
+			Throwable failure = Futures.unwrap(e);
+			if (!policy.isRetryable(failure)) {
+				result.completeExceptionally(failure);
+				return;
+			}
+			if (retry >= policy.getMaxRetries()) {
+				logger.warn("Giving up [{} {}] after [{}] retries: {}", request.getMethod(), request.getEndpoint(),
+						retry, failure.getMessage());
+				result.completeExceptionally(failure);
+				return;
+			}
+			long backoff = policy.backoffMillis(retry);
+			if (isExpired(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff))) {
+				logger.warn("Giving up [{} {}] after [{}] retries as the deadline is reached: {}", request.getMethod(),
+						request.getEndpoint(), retry, failure.getMessage());
+				result.completeExceptionally(failure);
+				return;
+			}
+			logger.debug("Retrying [{} {}] in [{}]ms: {}", request.getMethod(), request.getEndpoint(), backoff,
+					failure.getMessage());
+			retried();
+			scheduler.schedule(() -> send(request, retry + 1, result), backoff, TimeUnit.MILLISECONDS);
+		});
+	}
+}
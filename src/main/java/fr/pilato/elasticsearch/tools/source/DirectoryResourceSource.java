@@ -0,0 +1,72 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.source;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Exploded directories: {@code file:/app/classes/elasticsearch/}
+ * @since 7.6
+ */
+public class DirectoryResourceSource implements ResourceSource {
+
+	@Override
+	public boolean supports(URL url) {
+		return url.getProtocol().equals("file");
+	}
+
+	@Override
+	public String scan(URL url, Consumer<String> visitor) throws IOException, URISyntaxException {
+		walk(Paths.get(url.toURI()), visitor);
+		return url.toExternalForm();
+	}
+
+	/**
+	 * Visit all the regular files and directories under a directory
+	 * @param dir directory to walk
+	 * @param visitor receives the path of each file relative to the directory, with "/" as separator,
+	 *        and of each directory with a trailing "/"
+	 * @throws IOException if the directory can not be walked
+	 */
+	static void walk(Path dir, Consumer<String> visitor) throws IOException {
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.filter(file -> !file.equals(dir)).forEach(file -> {
+				StringBuilder path = new StringBuilder();
+				for (Path name : dir.relativize(file)) {
+					if (path.length() > 0) {
+						path.append('/');
+					}
+					path.append(name.toString());
+				}
+				if (Files.isDirectory(file)) {
+					path.append('/');
+				}
+				visitor.accept(path.toString());
+			});
+		}
+	}
+}
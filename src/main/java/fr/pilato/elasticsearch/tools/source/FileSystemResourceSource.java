@@ -0,0 +1,63 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.source;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Paths;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+/**
+ * Any URL scheme backed by an installed NIO {@link FileSystemProvider}, like {@code jrt:} for the Java runtime image
+ * @since 7.6
+ */
+public class FileSystemResourceSource implements ResourceSource {
+
+	@Override
+	public boolean supports(URL url) {
+		for (FileSystemProvider provider : FileSystemProvider.installedProviders()) {
+			if (provider.getScheme().equalsIgnoreCase(url.getProtocol())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String scan(URL url, Consumer<String> visitor) throws IOException, URISyntaxException {
+		URI uri = url.toURI();
+		try {
+			DirectoryResourceSource.walk(Paths.get(uri), visitor);
+		} catch (FileSystemNotFoundException e) {
+			// The file system has to be opened first, and closed once we are done
+			try (FileSystem fileSystem = FileSystems.newFileSystem(uri, Collections.emptyMap())) {
+				DirectoryResourceSource.walk(fileSystem.provider().getPath(uri), visitor);
+			}
+		}
+		return url.toExternalForm();
+	}
+}
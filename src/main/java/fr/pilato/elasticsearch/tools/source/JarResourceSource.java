@@ -0,0 +1,58 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.source;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.Enumeration;
+import java.util.function.Consumer;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Plain jars on disk: {@code jar:file:/app/lib/app.jar!/elasticsearch/}.
+ * The whole central directory is read once, so the whole jar is visited.
+ * @since 7.6
+ */
+public class JarResourceSource implements ResourceSource {
+
+	static final String SEPARATOR = "!/";
+
+	@Override
+	public boolean supports(URL url) {
+		return url.getProtocol().equals("jar") && url.getPath().startsWith("file:")
+				&& url.getPath().indexOf(SEPARATOR) == url.getPath().lastIndexOf(SEPARATOR);
+	}
+
+	@Override
+	public String scan(URL url, Consumer<String> visitor) throws IOException, URISyntaxException {
+		String path = url.getPath();
+		String jarUrl = path.substring(0, path.indexOf(SEPARATOR));
+		try (JarFile jar = new JarFile(Paths.get(new URL(jarUrl).toURI()).toFile())) {
+			Enumeration<JarEntry> entries = jar.entries();
+			while (entries.hasMoreElements()) {
+				visitor.accept(entries.nextElement().getName());
+			}
+		}
+		return "jar:" + jarUrl + SEPARATOR;
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.source;
+
+import org.apache.commons.io.input.BoundedInputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Jars within jars, like the ones of Spring Boot executable jars:
+ * {@code jar:file:/app.jar!/BOOT-INF/lib/model.jar!/elasticsearch/} or {@code jar:file:/app.jar!/BOOT-INF/classes!/elasticsearch/}.
+ * <p>
+ * The central directory of the outer jar is read once. Nested jars are stored without compression, so the central
+ * directory of the nested jar is read in place within the outer jar: no entry is inflated and nothing is extracted.
+ * A compressed nested jar is streamed instead, without being copied.
+ * @since 7.6
+ */
+public class NestedJarResourceSource implements ResourceSource {
+
+	@Override
+	public boolean supports(URL url) {
+		return url.getProtocol().equals("jar") && url.getPath().startsWith("file:")
+				&& url.getPath().indexOf(JarResourceSource.SEPARATOR) != url.getPath().lastIndexOf(JarResourceSource.SEPARATOR);
+	}
+
+	@Override
+	public String scan(URL url, Consumer<String> visitor) throws IOException, URISyntaxException {
+		String path = url.getPath();
+		// The last segment is the directory within the innermost container: it is not needed to find the container
+		String base = path.substring(0, path.lastIndexOf(JarResourceSource.SEPARATOR) + JarResourceSource.SEPARATOR.length());
+		String[] segments = base.split(JarResourceSource.SEPARATOR);
+
+		// Each segment is either a nested jar or a directory of the outer jar, like BOOT-INF/classes
+		List<String> names = new ArrayList<>();
+		String prefix = "";
+		for (int i = 1; i < segments.length; i++) {
+			names.add(prefix + segments[i]);
+			prefix = prefix + segments[i] + "/";
+		}
+		String directory = prefix;
+
+		File file = Paths.get(new URL(segments[0]).toURI()).toFile();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			Map<String, ZipDirectory.Entry> candidates = new HashMap<>();
+			List<String> children = new ArrayList<>();
+			ZipDirectory.entries(channel, 0, channel.size(), entry -> {
+				if (names.contains(entry.getName())) {
+					candidates.put(entry.getName(), entry);
+				} else if (entry.getName().startsWith(directory) && entry.getName().length() > directory.length()) {
+					children.add(entry.getName().substring(directory.length()));
+				}
+			});
+
+			for (int i = 0; i < names.size(); i++) {
+				ZipDirectory.Entry entry = candidates.get(names.get(i));
+				if (entry != null) {
+					if (i != names.size() - 1) {
+						throw new IOException("Could not read more than one level of nested jars in [" + url + "]");
+					}
+					if (entry.getMethod() == ZipEntry.STORED) {
+						long start = ZipDirectory.contentPosition(channel, entry);
+						ZipDirectory.entries(channel, start, entry.getCompressedSize(), nested -> visitor.accept(nested.getName()));
+					} else {
+						scanCompressed(channel, entry, visitor);
+					}
+					return "jar:" + base;
+				}
+			}
+			children.forEach(visitor);
+		}
+		return "jar:" + base;
+	}
+
+	private static void scanCompressed(FileChannel channel, ZipDirectory.Entry entry, Consumer<String> visitor) throws IOException {
+		channel.position(ZipDirectory.contentPosition(channel, entry));
+		Inflater inflater = new Inflater(true);
+		BoundedInputStream content = new BoundedInputStream(Channels.newInputStream(channel), entry.getCompressedSize());
+		// The channel is closed by the caller
+		content.setPropagateClose(false);
+		try (ZipInputStream nested = new ZipInputStream(new InflaterInputStream(content, inflater))) {
+			ZipEntry next;
+			while ((next = nested.getNextEntry()) != null) {
+				visitor.accept(next.getName());
+			}
+		} finally {
+			inflater.end();
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.source;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.function.Consumer;
+
+/**
+ * Lists the files behind a classpath directory URL.
+ * <p>
+ * Implementations can be added with the {@link ServiceLoader} mechanism. They are tried before the default ones.
+ * @since 7.6
+ */
+public interface ResourceSource {
+
+	/**
+	 * @param url URL of a classpath directory, as returned by {@link ClassLoader#getResource(String)}
+	 * @return true if this source can list the files behind this URL
+	 */
+	boolean supports(URL url);
+
+	/**
+	 * Visit all the files under a classpath directory, recursively.
+	 * @param url URL of a classpath directory. It ends with "/".
+	 * @param visitor receives the path of each file, relative to the returned base, with "/" as separator.
+	 *        Directories the source knows of are visited too, with a trailing "/", so empty ones are not lost.
+	 * @return the URL the visited paths are relative to. Either the given URL or, when it costs the same
+	 *         to read everything, the root of the archive holding it. It ends with "/".
+	 * @throws IOException if the files can not be listed
+	 * @throws URISyntaxException if the URL can not be converted to a path
+	 */
+	String scan(URL url, Consumer<String> visitor) throws IOException, URISyntaxException;
+
+	/**
+	 * @return the sources registered with the {@link ServiceLoader} followed by the default ones
+	 */
+	static List<ResourceSource> defaults() {
+		List<ResourceSource> sources = new ArrayList<>();
+		for (ResourceSource source : ServiceLoader.load(ResourceSource.class, ResourceSource.class.getClassLoader())) {
+			sources.add(source);
+		}
+		sources.add(new DirectoryResourceSource());
+		sources.add(new NestedJarResourceSource());
+		sources.add(new JarResourceSource());
+		sources.add(new FileSystemResourceSource());
+		sources.add(new UrlResourceSource());
+		return sources;
+	}
+}
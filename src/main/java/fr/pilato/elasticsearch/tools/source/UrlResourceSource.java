@@ -0,0 +1,80 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.source;
+
+import fr.pilato.elasticsearch.tools.ResourceIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Last resort for other URL schemes, like {@code vfs:}. Relies on the {@link java.net.URLStreamHandler}
+ * returning the names of the children, one per line, when a directory URL is opened.
+ * Names of files beyonder can read are considered as files, the others as directories.
+ * @since 7.6
+ */
+public class UrlResourceSource implements ResourceSource {
+	private static final Logger logger = LoggerFactory.getLogger(UrlResourceSource.class);
+
+	private static final int MAX_DEPTH = 8;
+
+	@Override
+	public boolean supports(URL url) {
+		return true;
+	}
+
+	@Override
+	public String scan(URL url, Consumer<String> visitor) throws IOException {
+		visit(url, "", visitor, 0);
+		return url.toExternalForm();
+	}
+
+	private void visit(URL dir, String path, Consumer<String> visitor, int depth) throws IOException {
+		List<String> children = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(dir.openStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.trim().isEmpty()) {
+					children.add(line.trim());
+				}
+			}
+		}
+
+		for (String child : children) {
+			if (ResourceIndex.isRelevant(child)) {
+				visitor.accept(path + child);
+			} else if (depth < MAX_DEPTH) {
+				try {
+					visit(new URL(dir, child + "/"), path + child + "/", visitor, depth + 1);
+				} catch (IOException e) {
+					logger.trace("ignoring [{}]: {}", child, e.getMessage());
+				}
+			}
+		}
+	}
+}
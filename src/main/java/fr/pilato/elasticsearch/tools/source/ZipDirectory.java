@@ -0,0 +1,216 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.source;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Reads the central directory of a zip file, or of a zip stored without compression within another one,
+ * straight from the file. Only the names, compression methods, sizes and offsets are read: no entry is inflated.
+ * Zip64 archives are supported, as well as archives with a prefix like a launch script.
+ */
+final class ZipDirectory {
+
+	private static final int LOCAL_HEADER = 0x04034b50;
+	private static final int CENTRAL_HEADER = 0x02014b50;
+	private static final int END_HEADER = 0x06054b50;
+	private static final int ZIP64_END_HEADER = 0x06064b50;
+	private static final int ZIP64_LOCATOR_HEADER = 0x07064b50;
+	private static final int ZIP64_EXTRA = 0x0001;
+
+	private static final int END_SIZE = 22;
+	private static final int ZIP64_END_SIZE = 56;
+	private static final int ZIP64_LOCATOR_SIZE = 20;
+	private static final int CENTRAL_SIZE = 46;
+	private static final int LOCAL_SIZE = 30;
+	private static final int MAX_COMMENT = 0xFFFF;
+	private static final long MAGIC_32 = 0xFFFFFFFFL;
+	private static final int MAGIC_16 = 0xFFFF;
+
+	private ZipDirectory() {
+	}
+
+	/**
+	 * An entry of the central directory
+	 */
+	static final class Entry {
+		private final String name;
+		private final int method;
+		private final long compressedSize;
+		private final long localHeader;
+
+		private Entry(String name, int method, long compressedSize, long localHeader) {
+			this.name = name;
+			this.method = method;
+			this.compressedSize = compressedSize;
+			this.localHeader = localHeader;
+		}
+
+		String getName() {
+			return name;
+		}
+
+		boolean isDirectory() {
+			return name.endsWith("/");
+		}
+
+		/**
+		 * @return the compression method, {@link java.util.zip.ZipEntry#STORED} or {@link java.util.zip.ZipEntry#DEFLATED}
+		 */
+		int getMethod() {
+			return method;
+		}
+
+		long getCompressedSize() {
+			return compressedSize;
+		}
+	}
+
+	/**
+	 * Visit all the entries of a zip
+	 * @param channel file holding the zip
+	 * @param start position of the zip in the file
+	 * @param length length of the zip
+	 * @param visitor called for each entry, directories included
+	 * @throws IOException if the zip can not be read
+	 */
+	static void entries(FileChannel channel, long start, long length, Consumer<Entry> visitor) throws IOException {
+		int tail = (int) Math.min(length, END_SIZE + MAX_COMMENT);
+		ByteBuffer buffer = read(channel, start + length - tail, tail);
+		int end = -1;
+		for (int i = tail - END_SIZE; i >= 0; i--) {
+			if (buffer.getInt(i) == END_HEADER && (buffer.getShort(i + 20) & MAGIC_16) == tail - i - END_SIZE) {
+				end = i;
+				break;
+			}
+		}
+		if (end < 0) {
+			throw new IOException("Could not find the end of central directory record");
+		}
+		long endPosition = start + length - tail + end;
+		long count = buffer.getShort(end + 10) & MAGIC_16;
+		long size = buffer.getInt(end + 12) & MAGIC_32;
+		long offset = buffer.getInt(end + 16) & MAGIC_32;
+
+		long directoryEnd = endPosition;
+		if ((count == MAGIC_16 || size == MAGIC_32 || offset == MAGIC_32) && endPosition - start >= ZIP64_LOCATOR_SIZE) {
+			ByteBuffer locator = read(channel, endPosition - ZIP64_LOCATOR_SIZE, ZIP64_LOCATOR_SIZE);
+			if (locator.getInt(0) == ZIP64_LOCATOR_HEADER) {
+				directoryEnd = start + locator.getLong(8);
+				if (directoryEnd < start || directoryEnd + ZIP64_END_SIZE > endPosition
+						|| read(channel, directoryEnd, 4).getInt(0) != ZIP64_END_HEADER) {
+					// The recorded offset does not take a prefix into account: the record is usually just before the locator
+					directoryEnd = endPosition - ZIP64_LOCATOR_SIZE - ZIP64_END_SIZE;
+				}
+				ByteBuffer zip64 = read(channel, directoryEnd, ZIP64_END_SIZE);
+				if (zip64.getInt(0) != ZIP64_END_HEADER) {
+					throw new IOException("Could not find the zip64 end of central directory record");
+				}
+				count = zip64.getLong(32);
+				size = zip64.getLong(40);
+				offset = zip64.getLong(48);
+			}
+		}
+
+		// Offsets are relative to the beginning of the zip, unless something was prepended to it
+		long directory = directoryEnd - size;
+		long shift = directory - start - offset;
+		ByteBuffer entries = read(channel, directory, size);
+		int position = 0;
+		for (long i = 0; i < count; i++) {
+			if (entries.getInt(position) != CENTRAL_HEADER) {
+				throw new IOException("Invalid central directory entry at [" + (directory + position) + "]");
+			}
+			int method = entries.getShort(position + 10) & MAGIC_16;
+			long compressedSize = entries.getInt(position + 20) & MAGIC_32;
+			long uncompressedSize = entries.getInt(position + 24) & MAGIC_32;
+			int nameLength = entries.getShort(position + 28) & MAGIC_16;
+			int extraLength = entries.getShort(position + 30) & MAGIC_16;
+			int commentLength = entries.getShort(position + 32) & MAGIC_16;
+			long localHeader = entries.getInt(position + 42) & MAGIC_32;
+
+			byte[] name = new byte[nameLength];
+			entries.position(position + CENTRAL_SIZE);
+			entries.get(name);
+
+			// Values which do not fit are in the zip64 extra field, in this order
+			int extra = position + CENTRAL_SIZE + nameLength;
+			int extraEnd = extra + extraLength;
+			while (extra + 4 <= extraEnd) {
+				int id = entries.getShort(extra) & MAGIC_16;
+				int dataSize = entries.getShort(extra + 2) & MAGIC_16;
+				if (id == ZIP64_EXTRA) {
+					int field = extra + 4;
+					if (uncompressedSize == MAGIC_32) {
+						field += 8;
+					}
+					if (compressedSize == MAGIC_32) {
+						compressedSize = entries.getLong(field);
+						field += 8;
+					}
+					if (localHeader == MAGIC_32) {
+						localHeader = entries.getLong(field);
+					}
+					break;
+				}
+				extra += 4 + dataSize;
+			}
+
+			visitor.accept(new Entry(new String(name, StandardCharsets.UTF_8), method, compressedSize, start + shift + localHeader));
+			position = extraEnd + commentLength;
+		}
+	}
+
+	/**
+	 * @param channel file holding the zip
+	 * @param entry entry of the zip
+	 * @return the position of the content of the entry in the file
+	 * @throws IOException if the local header of the entry can not be read
+	 */
+	static long contentPosition(FileChannel channel, Entry entry) throws IOException {
+		ByteBuffer header = read(channel, entry.localHeader, LOCAL_SIZE);
+		if (header.getInt(0) != LOCAL_HEADER) {
+			throw new IOException("Invalid local header for [" + entry.name + "] at [" + entry.localHeader + "]");
+		}
+		return entry.localHeader + LOCAL_SIZE + (header.getShort(26) & MAGIC_16) + (header.getShort(28) & MAGIC_16);
+	}
+
+	private static ByteBuffer read(FileChannel channel, long position, long size) throws IOException {
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Central directory of [" + size + "] bytes is too large");
+		}
+		if (position < 0 || position + size > channel.size()) {
+			throw new IOException("Could not read [" + size + "] bytes at [" + position + "]");
+		}
+		ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of file at [" + (position + buffer.position()) + "]");
+			}
+		}
+		buffer.clear();
+		return buffer;
+	}
+}
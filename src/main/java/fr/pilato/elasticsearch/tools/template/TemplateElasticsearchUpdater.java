@@ -19,16 +19,26 @@
 
 package fr.pilato.elasticsearch.tools.template;
 
+import fr.pilato.elasticsearch.tools.SettingsFinder.Defaults;
+import fr.pilato.elasticsearch.tools.cluster.ClusterMetadata;
+import fr.pilato.elasticsearch.tools.rest.JsonEntities;
+import fr.pilato.elasticsearch.tools.rest.RequestExecutor;
+import fr.pilato.elasticsearch.tools.rest.ResponseErrors;
+import fr.pilato.elasticsearch.tools.rest.RetryingRequestExecutor;
+import fr.pilato.elasticsearch.tools.util.Futures;
+import org.apache.http.HttpEntity;
 import org.elasticsearch.action.support.master.AcknowledgedResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.Request;
 import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Manage elasticsearch templates
@@ -155,8 +165,8 @@ public class TemplateElasticsearchUpdater {
      * @throws Exception if something goes wrong
 	 */
 	public static void createTemplate(RestClient client, String root, String template, boolean force) throws Exception {
-		String json = TemplateSettingsReader.readTemplate(root, template);
-		createTemplateWithJson(client, template, json, force);
+		HttpEntity json = TemplateSettingsReader.readTemplateEntity(root, template);
+		createTemplateWithEntity(RequestExecutor.of(client), null, template, json, force);
 	}
 
 	/**
@@ -167,8 +177,7 @@ public class TemplateElasticsearchUpdater {
      * @throws Exception if something goes wrong
 	 */
 	public static void createTemplate(RestClient client, String template, boolean force) throws Exception {
-		String json = TemplateSettingsReader.readTemplate(template);
-		createTemplateWithJson(client, template, json, force);
+		createTemplate(client, Defaults.ConfigDir, template, force);
 	}
 
 	/**
@@ -180,18 +189,137 @@ public class TemplateElasticsearchUpdater {
      * @throws Exception if something goes wrong
 	 */
 	public static void createTemplateWithJson(RestClient client, String template, String json, boolean force) throws Exception {
-		if (isTemplateExist(client, template)) {
+		createTemplateWithJson(RequestExecutor.of(client), template, json, force);
+	}
+
+	/**
+	 * Create a new template in Elasticsearch
+	 * @param client Elasticsearch request executor
+	 * @param template Template name
+	 * @param json JSon content for the template
+	 * @param force set it to true if you want to force cleaning template before adding it
+     * @throws Exception if something goes wrong
+	 */
+	public static void createTemplateWithJson(RequestExecutor client, String template, String json, boolean force) throws Exception {
+		createTemplateWithJson(client, null, template, json, force);
+	}
+
+	/**
+	 * Create a new template in Elasticsearch
+	 * @param client Elasticsearch request executor
+	 * @param metadata Cluster metadata used to check if the template exists. If null, elasticsearch is asked.
+	 * @param template Template name
+	 * @param json JSon content for the template
+	 * @param force set it to true if you want to force cleaning template before adding it
+	 * @throws Exception if something goes wrong
+	 */
+	public static void createTemplateWithJson(RequestExecutor client, ClusterMetadata metadata, String template, String json, boolean force) throws Exception {
+		createTemplateWithEntity(client, metadata, template, JsonEntities.of(json), force);
+	}
+
+	/**
+	 * Create a new template in Elasticsearch. The content is sent as it is, so it can be smile, cbor or compressed json.
+	 * @param client Elasticsearch request executor
+	 * @param metadata Cluster metadata used to check if the template exists. If null, elasticsearch is asked.
+	 * @param template Template name
+	 * @param json Content for the template
+	 * @param force set it to true if you want to force cleaning template before adding it
+	 * @throws Exception if something goes wrong
+	 * @since 7.6
+	 */
+	public static void createTemplateWithEntity(RequestExecutor client, ClusterMetadata metadata, String template, HttpEntity json, boolean force) throws Exception {
+		boolean exists = metadata != null ? metadata.isTemplateExist(template) : isTemplateExist(client, template);
+		if (exists) {
 			if (force) {
 				logger.debug("Template [{}] already exists. Force is set. Removing it.", template);
 				removeTemplate(client, template);
+				if (metadata != null) {
+					metadata.templateRemoved(template);
+				}
+				exists = false;
 			} else {
 				logger.debug("Template [{}] already exists.", template);
 			}
 		}
 
-		if (!isTemplateExist(client, template)) {
+		if (!exists) {
 			logger.debug("Template [{}] doesn't exist. Creating it.", template);
-			createTemplateWithJsonInElasticsearch(client, template, json);
+			int retries = RetryingRequestExecutor.retriesOf(client);
+			try {
+				createTemplateWithJsonInElasticsearch(client, template, json);
+			} catch (ResponseException e) {
+				if (!ResponseErrors.isCreatedByRetry(client, retries, e)) {
+					throw e;
+				}
+				logger.debug("Template [{}] has been created by a request which was retried.", template);
+			}
+			if (metadata != null) {
+				metadata.templateCreated(template);
+			}
+		}
+	}
+
+	/**
+	 * Replace an existing template in Elasticsearch. The template is overwritten in place, it is not removed first.
+	 * @param client Elasticsearch request executor
+	 * @param template Template name
+	 * @param json JSon content for the template
+	 * @throws Exception if something goes wrong
+	 * @since 7.6
+	 */
+	public static void updateTemplateWithJson(RequestExecutor client, String template, String json) throws Exception {
+		updateTemplateWithEntity(client, template, JsonEntities.of(json));
+	}
+
+	/**
+	 * Replace an existing template in Elasticsearch. The template is overwritten in place, it is not removed first.
+	 * @param client Elasticsearch request executor
+	 * @param template Template name
+	 * @param json Content for the template
+	 * @throws Exception if something goes wrong
+	 * @since 7.6
+	 */
+	public static void updateTemplateWithEntity(RequestExecutor client, String template, HttpEntity json) throws Exception {
+		logger.debug("Template [{}] differs from its definition. Updating it.", template);
+		createTemplateWithJsonInElasticsearch(client, template, json);
+	}
+
+	/**
+	 * Create a new template in Elasticsearch without checking first if it exists. If the template
+	 * already exists, it is left untouched.
+	 * @param client Elasticsearch request executor
+	 * @param template Template name
+	 * @param json JSon content for the template
+	 * @return true if the template has been created, false if it already existed
+	 * @throws Exception if something goes wrong
+	 * @since 7.6
+	 */
+	public static boolean createTemplateIfAbsent(RequestExecutor client, String template, String json) throws Exception {
+		return createTemplateIfAbsent(client, template, JsonEntities.of(json));
+	}
+
+	/**
+	 * Create a new template in Elasticsearch without checking first if it exists. If the template
+	 * already exists, it is left untouched.
+	 * @param client Elasticsearch request executor
+	 * @param template Template name
+	 * @param json Content for the template
+	 * @return true if the template has been created, false if it already existed
+	 * @throws Exception if something goes wrong
+	 * @since 7.6
+	 */
+	public static boolean createTemplateIfAbsent(RequestExecutor client, String template, HttpEntity json) throws Exception {
+		logger.trace("createTemplateIfAbsent([{}])", template);
+		try {
+			client.performRequest(createTemplateIfAbsentRequest(template, json));
+			logger.trace("/createTemplateIfAbsent([{}])", template);
+			return true;
+		} catch (ResponseException e) {
+			if (ResponseErrors.isAlreadyExists(e)) {
+				logger.debug("Template [{}] already exists.", template);
+				return false;
+			}
+			throw e;
 		}
 	}
 
@@ -202,15 +330,13 @@ public class TemplateElasticsearchUpdater {
 	 * @param json JSon content for the template
      * @throws Exception if something goes wrong
 	 */
-	private static void createTemplateWithJsonInElasticsearch(RestClient client, String template, String json) throws Exception {
+	private static void createTemplateWithJsonInElasticsearch(RequestExecutor client, String template, HttpEntity json) throws Exception {
 		logger.trace("createTemplate([{}])", template);
 
 		assert client != null;
 		assert template != null;
 
-		Request request = new Request("PUT", "/_template/" + template);
-		request.setJsonEntity(json);
-		Response response = client.performRequest(request);
+		Response response = client.performRequest(createTemplateRequest(template, json));
 
 		if (response.getStatusLine().getStatusCode() != 200) {
 			logger.warn("Could not create template [{}]", template);
@@ -220,6 +346,18 @@ public class TemplateElasticsearchUpdater {
 		logger.trace("/createTemplate([{}])", template);
 	}
 
+	private static Request createTemplateRequest(String template, HttpEntity json) {
+		Request request = new Request("PUT", "/_template/" + template);
+		request.setEntity(json);
+		return request;
+	}
+
+	private static Request createTemplateIfAbsentRequest(String template, HttpEntity json) {
+		Request request = createTemplateRequest(template, json);
+		request.addParameter("create", "true");
+		return request;
+	}
+
 	/**
 	 * Check if a template exists
      * @param client Elasticsearch client
@@ -228,6 +366,17 @@ public class TemplateElasticsearchUpdater {
      * @throws IOException if something goes wrong
 	 */
 	public static boolean isTemplateExist(RestClient client, String template) throws IOException {
+		return isTemplateExist(RequestExecutor.of(client), template);
+	}
+
+	/**
+	 * Check if a template exists
+     * @param client Elasticsearch request executor
+	 * @param template template name
+     * @return true if the template exists
+     * @throws IOException if something goes wrong
+	 */
+	public static boolean isTemplateExist(RequestExecutor client, String template) throws IOException {
 		Response response = client.performRequest(new Request("HEAD", "/_template/" + template));
 		return response.getStatusLine().getStatusCode() == 200;
 	}
@@ -239,9 +388,238 @@ public class TemplateElasticsearchUpdater {
      * @throws Exception if something goes wrong
 	 */
 	public static void removeTemplate(RestClient client, String template) throws Exception {
+		removeTemplate(RequestExecutor.of(client), template);
+	}
+
+	/**
+	 * Remove a template
+     * @param client Elasticsearch request executor
+	 * @param template template name
+     * @throws Exception if something goes wrong
+	 */
+	public static void removeTemplate(RequestExecutor client, String template) throws Exception {
 		logger.trace("removeTemplate({})", template);
-		client.performRequest(new Request("DELETE", "/_template/" + template));
+		int retries = RetryingRequestExecutor.retriesOf(client);
+		try {
+			client.performRequest(new Request("DELETE", "/_template/" + template));
+		} catch (ResponseException e) {
+			if (!ResponseErrors.isRemovedByRetry(client, retries, e)) {
+				throw e;
+			}
+			logger.debug("Template [{}] has been removed by a request which was retried.", template);
+		}
 		logger.trace("/removeTemplate({})", template);
 	}
 
+	/**
+	 * Create a template in Elasticsearch without blocking.
+	 * @param client Elasticsearch client
+	 * @param root dir within the classpath
+	 * @param template Template name
+	 * @param force set it to true if you want to force cleaning template before adding it
+	 * @return a future which completes when the template has been created or already exists
+	 */
+	public static CompletableFuture<Void> createTemplateAsync(RestClient client, String root, String template, boolean force) {
+		HttpEntity json = TemplateSettingsReader.readTemplateEntity(root, template);
+		return createTemplateWithEntityAsync(RequestExecutor.of(client), null, template, json, force);
+	}
+
+	/**
+	 * Create a new template in Elasticsearch without blocking
+	 * @param client Elasticsearch request executor
+	 * @param template Template name
+	 * @param json JSon content for the template
+	 * @param force set it to true if you want to force cleaning template before adding it
+	 * @return a future which completes when the template has been created or already exists
+	 */
+	public static CompletableFuture<Void> createTemplateWithJsonAsync(RequestExecutor client, String template, String json, boolean force) {
+		return createTemplateWithJsonAsync(client, null, template, json, force);
+	}
+
+	/**
+	 * Create a new template in Elasticsearch without blocking
+	 * @param client Elasticsearch request executor
+	 * @param metadata Cluster metadata used to check if the template exists. If null, elasticsearch is asked.
+	 * @param template Template name
+	 * @param json JSon content for the template
+	 * @param force set it to true if you want to force cleaning template before adding it
+	 * @return a future which completes when the template has been created or already exists
+	 */
+	public static CompletableFuture<Void> createTemplateWithJsonAsync(RequestExecutor client, ClusterMetadata metadata,
+																	  String template, String json, boolean force) {
+		return createTemplateWithEntityAsync(client, metadata, template, JsonEntities.of(json), force);
+	}
+
+	/**
+	 * Create a new template in Elasticsearch without blocking. The content is sent as it is, so it can be smile, cbor or compressed json.
+	 * @param client Elasticsearch request executor
+	 * @param metadata Cluster metadata used to check if the template exists. If null, elasticsearch is asked.
+	 * @param template Template name
+	 * @param json Content for the template
+	 * @param force set it to true if you want to force cleaning template before adding it
+	 * @return a future which completes when the template has been created or already exists
+	 * @since 7.6
+	 */
+	public static CompletableFuture<Void> createTemplateWithEntityAsync(RequestExecutor client, ClusterMetadata metadata,
+																		 String template, HttpEntity json, boolean force) {
+		CompletableFuture<Boolean> exists = metadata != null ?
+				CompletableFuture.completedFuture(metadata.isTemplateExist(template)) : isTemplateExistAsync(client, template);
+		return exists.thenCompose(templateExists -> {
+			CompletableFuture<Void> ready = CompletableFuture.completedFuture(null);
+			if (templateExists) {
+				if (!force) {
+					logger.debug("Template [{}] already exists.", template);
+					return ready;
+				}
+				logger.debug("Template [{}] already exists. Force is set. Removing it.", template);
+				ready = removeTemplateAsync(client, template).thenRun(() -> {
+					if (metadata != null) {
+						metadata.templateRemoved(template);
+					}
+				});
+			} else {
+				logger.debug("Template [{}] doesn't exist. Creating it.", template);
+			}
+			return ready
+					.thenCompose(removed -> createTemplateWithJsonInElasticsearchAsync(client, template, json, RetryingRequestExecutor.retriesOf(client)))
+					.thenRun(() -> {
+						if (metadata != null) {
+							metadata.templateCreated(template);
+						}
+					});
+		});
+	}
+
+	/**
+	 * Replace an existing template in Elasticsearch without blocking
+	 * @param client Elasticsearch request executor
+	 * @param template Template name
+	 * @param json JSon content for the template
+	 * @return a future which completes when the template has been updated
+	 * @since 7.6
+	 */
+	public static CompletableFuture<Void> updateTemplateWithJsonAsync(RequestExecutor client, String template, String json) {
+		return updateTemplateWithEntityAsync(client, template, JsonEntities.of(json));
+	}
+
+	/**
+	 * Replace an existing template in Elasticsearch without blocking
+	 * @param client Elasticsearch request executor
+	 * @param template Template name
+	 * @param json Content for the template
+	 * @return a future which completes when the template has been updated
+	 * @since 7.6
+	 */
+	public static CompletableFuture<Void> updateTemplateWithEntityAsync(RequestExecutor client, String template, HttpEntity json) {
+		logger.debug("Template [{}] differs from its definition. Updating it.", template);
+		return createTemplateWithJsonInElasticsearchAsync(client, template, json);
+	}
+
+	/**
+	 * Create a new template in Elasticsearch without checking first if it exists and without blocking.
+	 * If the template already exists, it is left untouched.
+	 * @param client Elasticsearch request executor
+	 * @param template Template name
+	 * @param json JSon content for the template
+	 * @return a future which completes with true if the template has been created, false if it already existed
+	 * @since 7.6
+	 */
+	public static CompletableFuture<Boolean> createTemplateIfAbsentAsync(RequestExecutor client, String template, String json) {
+		return createTemplateIfAbsentAsync(client, template, JsonEntities.of(json));
+	}
+
+	/**
+	 * Create a new template in Elasticsearch without checking first if it exists and without blocking.
+	 * If the template already exists, it is left untouched.
+	 * @param client Elasticsearch request executor
+	 * @param template Template name
+	 * @param json Content for the template
+	 * @return a future which completes with true if the template has been created, false if it already existed
+	 * @since 7.6
+	 */
+	public static CompletableFuture<Boolean> createTemplateIfAbsentAsync(RequestExecutor client, String template, HttpEntity json) {
+		logger.trace("createTemplateIfAbsentAsync([{}])", template);
+		return client.performRequestAsync(createTemplateIfAbsentRequest(template, json)).handle((r, e) -> {
+			if (e == null) {
+				return CompletableFuture.completedFuture(true);
+			}
+			if (ResponseErrors.isAlreadyExists(e)) {
+				logger.debug("Template [{}] already exists.", template);
+				return CompletableFuture.completedFuture(false);
+			}
+			return Futures.<Boolean>failedFuture(Futures.unwrap(e));
+		}).thenCompose(f -> f);
+	}
+
+	/**
+	 * Create a template. A failure because one of the earlier tries created the template is a success.
+	 */
+	private static CompletableFuture<Void> createTemplateWithJsonInElasticsearchAsync(RequestExecutor client, String template,
+																					  HttpEntity json, int retries) {
+		return createTemplateWithJsonInElasticsearchAsync(client, template, json).handle((r, e) -> {
+			if (e == null) {
+				return CompletableFuture.<Void>completedFuture(null);
+			}
+			if (ResponseErrors.isCreatedByRetry(client, retries, e)) {
+				logger.debug("Template [{}] has been created by a request which was retried.", template);
+				return CompletableFuture.<Void>completedFuture(null);
+			}
+			return Futures.<Void>failedFuture(Futures.unwrap(e));
+		}).thenCompose(f -> f);
+	}
+
+	private static CompletableFuture<Void> createTemplateWithJsonInElasticsearchAsync(RequestExecutor client, String template, HttpEntity json) {
+		logger.trace("createTemplateAsync([{}])", template);
+		return client.performRequestAsync(createTemplateRequest(template, json)).thenCompose(response -> {
+			if (response.getStatusLine().getStatusCode() != 200) {
+				logger.warn("Could not create template [{}]", template);
+				return Futures.failedFuture(new Exception("Could not create template ["+template+"]."));
+			}
+			logger.trace("/createTemplateAsync([{}])", template);
+			return CompletableFuture.completedFuture(null);
+		});
+	}
+
+	/**
+	 * Check if a template exists without blocking
+	 * @param client Elasticsearch client
+	 * @param template template name
+	 * @return a future which completes with true if the template exists
+	 */
+	public static CompletableFuture<Boolean> isTemplateExistAsync(RestClient client, String template) {
+		return isTemplateExistAsync(RequestExecutor.of(client), template);
+	}
+
+	/**
+	 * Check if a template exists without blocking
+	 * @param client Elasticsearch request executor
+	 * @param template template name
+	 * @return a future which completes with true if the template exists
+	 */
+	public static CompletableFuture<Boolean> isTemplateExistAsync(RequestExecutor client, String template) {
+		return client.performRequestAsync(new Request("HEAD", "/_template/" + template))
+				.thenApply(response -> response.getStatusLine().getStatusCode() == 200);
+	}
+
+	/**
+	 * Remove a template without blocking
+	 * @param client Elasticsearch request executor
+	 * @param template template name
+	 * @return a future which completes when the template has been removed
+	 */
+	public static CompletableFuture<Void> removeTemplateAsync(RequestExecutor client, String template) {
+		logger.trace("removeTemplateAsync({})", template);
+		int retries = RetryingRequestExecutor.retriesOf(client);
+		return client.performRequestAsync(new Request("DELETE", "/_template/" + template)).handle((response, e) -> {
+			if (e != null) {
+				if (ResponseErrors.isRemovedByRetry(client, retries, e)) {
+					logger.debug("Template [{}] has been removed by a request which was retried.", template);
+					return CompletableFuture.<Void>completedFuture(null);
+				}
+				return Futures.<Void>failedFuture(Futures.unwrap(e));
+			}
+			return CompletableFuture.<Void>completedFuture(null);
+		}).thenCompose(f -> f);
+	}
+
 }
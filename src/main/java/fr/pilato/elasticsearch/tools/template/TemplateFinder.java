@@ -19,7 +19,9 @@
 
 package fr.pilato.elasticsearch.tools.template;
 
-import fr.pilato.elasticsearch.tools.ResourceList;
+import fr.pilato.elasticsearch.tools.ResourceFormat;
+import fr.pilato.elasticsearch.tools.ResourceIndex;
+import fr.pilato.elasticsearch.tools.ResourceManifest;
 import fr.pilato.elasticsearch.tools.SettingsFinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,17 +55,37 @@ public class TemplateFinder extends SettingsFinder {
         if (root == null) {
             return findTemplates();
         }
+        return findTemplates(TemplateFinder.class.getClassLoader(), root);
+    }
 
+    /**
+     * Find all templates in a classpath dir of a class loader
+     * @param classLoader class loader to read resources from
+     * @param root dir within the classpath
+     * @return a list of templates
+     * @throws IOException if connection with elasticsearch is failing
+     * @throws URISyntaxException this should not happen
+     * @since 7.6
+     */
+    public static List<String> findTemplates(ClassLoader classLoader, String root) throws IOException, URISyntaxException {
         logger.debug("Looking for templates in classpath under [{}].", root);
 
+        ResourceManifest manifest = ResourceIndex.getInstance(classLoader).getManifest(root);
+        if (manifest != null) {
+            logger.debug("Using manifest for [{}].", root);
+            return manifest.getTemplates();
+        }
+
         final List<String> templateNames = new ArrayList<>();
-        String[] resources = ResourceList.getResources(root + "/" + Defaults.TemplateDir + "/"); // "es/_template/"
+        String[] resources = ResourceIndex.getInstance(classLoader).list(root + "/" + Defaults.TemplateDir + "/"); // "es/_template/"
         for (String resource : resources) {
             if (!resource.isEmpty()) {
                 String withoutIndex = resource.substring(resource.indexOf("/")+1);
-                String template = withoutIndex.substring(0, withoutIndex.indexOf(Defaults.JsonFileExtension));
-                logger.trace(" - found [{}].", template);
-                templateNames.add(template);
+                String template = ResourceFormat.strip(withoutIndex);
+                if (!templateNames.contains(template)) {
+                    logger.trace(" - found [{}].", template);
+                    templateNames.add(template);
+                }
             }
         }
 
@@ -21,6 +21,7 @@ package fr.pilato.elasticsearch.tools.template;
 
 import fr.pilato.elasticsearch.tools.SettingsFinder.Defaults;
 import fr.pilato.elasticsearch.tools.SettingsReader;
+import org.apache.http.HttpEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,8 +46,29 @@ public class TemplateSettingsReader extends SettingsReader {
 		if (root == null) {
 			return readTemplate(template);
 		}
-		String settingsFile = root + "/" + Defaults.TemplateDir + "/" + template + Defaults.JsonFileExtension;
-		return readFileFromClasspath(settingsFile);
+		return readFileFromClasspath(getTemplateFile(root, template));
+	}
+
+	/**
+	 * Read a template as a request body, without decoding it when there is no variable to replace
+	 * @param root dir within the classpath. If null, default classpath dir is used.
+	 * @param template template name (.json will be appended)
+	 * @return The template content or null if the file does not exist
+	 * @since 7.6
+	 */
+	public static HttpEntity readTemplateEntity(String root, String template) {
+		return readEntityFromClasspath(getTemplateFile(root == null ? Defaults.ConfigDir : root, template));
+	}
+
+	/**
+	 * Path of a template file in the classpath
+	 * @param root dir within the classpath
+	 * @param template template name (.json will be appended)
+	 * @return the path of the file
+	 * @since 7.6
+	 */
+	public static String getTemplateFile(String root, String template) {
+		return root + "/" + Defaults.TemplateDir + "/" + template + Defaults.JsonFileExtension;
 	}
 
 	/**
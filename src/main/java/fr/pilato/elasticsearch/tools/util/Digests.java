@@ -0,0 +1,81 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 helpers used to fingerprint resources
+ */
+public class Digests {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	/**
+	 * @return a new SHA-256 message digest
+	 */
+	public static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every JVM must support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Add a string to a digest. Strings are separated so "ab" + "c" and "a" + "bc" differ.
+	 * @param digest digest to update
+	 * @param value value to add. Can be null.
+	 */
+	public static void update(MessageDigest digest, String value) {
+		if (value != null) {
+			digest.update(value.getBytes(StandardCharsets.UTF_8));
+		}
+		digest.update((byte) 0);
+	}
+
+	/**
+	 * Add bytes to a digest. Like strings, they are separated from the next value.
+	 * @param digest digest to update
+	 * @param value value to add. Can be null.
+	 */
+	public static void update(MessageDigest digest, byte[] value) {
+		if (value != null) {
+			digest.update(value);
+		}
+		digest.update((byte) 0);
+	}
+
+	/**
+	 * @param bytes bytes to encode
+	 * @return the bytes as a lowercase hex string
+	 */
+	public static String hex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+		}
+		return new String(chars);
+	}
+}
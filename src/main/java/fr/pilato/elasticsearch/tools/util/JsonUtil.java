@@ -0,0 +1,69 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Minimal JSON helpers used to read resources and Elasticsearch responses
+ */
+public class JsonUtil {
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Parse a JSON object
+	 * @param json JSON content
+	 * @return the content as a map. An empty map if json is null
+	 * @throws IOException if the content is not a valid JSON object
+	 */
+	public static Map<String, Object> asMap(String json) throws IOException {
+		if (json == null) {
+			return new LinkedHashMap<>();
+		}
+		return mapper.readValue(json, new TypeReference<Map<String, Object>>(){});
+	}
+
+	/**
+	 * Parse a JSON object
+	 * @param stream JSON content
+	 * @return the content as a map
+	 * @throws IOException if the content is not a valid JSON object
+	 */
+	public static Map<String, Object> asMap(InputStream stream) throws IOException {
+		return mapper.readValue(stream, new TypeReference<Map<String, Object>>(){});
+	}
+
+	/**
+	 * Serialize an object as JSON
+	 * @param object object to serialize
+	 * @return the JSON content
+	 * @throws IOException if the object can not be serialized
+	 */
+	public static String asJson(Object object) throws IOException {
+		return mapper.writeValueAsString(object);
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package fr.pilato.elasticsearch.tools.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * A size bounded cache evicting the least recently used entry first, which counts its hits, misses and evictions
+ * @param <K> key type
+ * @param <V> value type
+ * @since 7.6
+ */
+public class LruCache<K, V> {
+
+	private final int maxSize;
+	private final Map<K, V> entries;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * @param maxSize maximum number of entries. 0 disables the cache.
+	 */
+	public LruCache(int maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("cache size must not be negative but was [" + maxSize + "]");
+		}
+		this.maxSize = maxSize;
+		this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				if (size() > LruCache.this.maxSize) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Get a value, computing it on a miss. The value is computed outside of the cache lock, so two callers
+	 * missing the same key at the same time may both compute it.
+	 * @param key key
+	 * @param loader computes the value of a missing key. Null values are not cached.
+	 * @return the value
+	 */
+	public V get(K key, Function<K, V> loader) {
+		synchronized (entries) {
+			V value = entries.get(key);
+			if (value != null) {
+				hits.incrementAndGet();
+				return value;
+			}
+		}
+		misses.incrementAndGet();
+		V value = loader.apply(key);
+		if (value != null && maxSize > 0) {
+			synchronized (entries) {
+				entries.put(key, value);
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Remove all the entries. Counters are kept.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	@Override
+	public String toString() {
+		return "LruCache{" + size() + "/" + maxSize + " entries, " + hits + " hits, " + misses + " misses, " +
+				evictions + " evictions}";
+	}
+}
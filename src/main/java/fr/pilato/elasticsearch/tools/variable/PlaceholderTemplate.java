@@ -0,0 +1,187 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package fr.pilato.elasticsearch.tools.variable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A resource content parsed once into literal segments and ${VARIABLE} references, so it can be
+ * rendered many times without scanning the text again.
+ * <p>
+ * The syntax is the one of commons-text StringSubstitutor defaults: ${name:-default} gives a default
+ * value, $${name} is an escaped placeholder, undefined variables without default are left as they are
+ * and values containing placeholders are resolved recursively.
+ * @since 7.6
+ */
+public final class PlaceholderTemplate {
+
+	private static final String PREFIX = "${";
+	private static final char SUFFIX = '}';
+	private static final char ESCAPE = '$';
+	private static final String DEFAULT_DELIMITER = ":-";
+
+	/**
+	 * Either a String for a literal or a {@link Variable}
+	 */
+	private final Object[] segments;
+	private final String source;
+	private final int literalLength;
+
+	private PlaceholderTemplate(Object[] segments, String source, int literalLength) {
+		this.segments = segments;
+		this.source = source;
+		this.literalLength = literalLength;
+	}
+
+	/**
+	 * @param content content to parse. Can be null.
+	 * @return the compiled template, null if content is null
+	 */
+	public static PlaceholderTemplate compile(String content) {
+		if (content == null) {
+			return null;
+		}
+		if (content.indexOf(PREFIX) < 0) {
+			return literal(content);
+		}
+		List<Object> segments = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		int literalLength = 0;
+		int pos = 0;
+		while (pos < content.length()) {
+			int start = content.indexOf(PREFIX, pos);
+			if (start < 0) {
+				literal.append(content, pos, content.length());
+				break;
+			}
+			if (start > pos && content.charAt(start - 1) == ESCAPE) {
+				// $${name} is kept as ${name}
+				literal.append(content, pos, start - 1).append(PREFIX);
+				pos = start + PREFIX.length();
+				continue;
+			}
+			int end = content.indexOf(SUFFIX, start + PREFIX.length());
+			if (end < 0) {
+				literal.append(content, pos, content.length());
+				break;
+			}
+			literal.append(content, pos, start);
+			if (literal.length() > 0) {
+				segments.add(literal.toString());
+				literalLength += literal.length();
+				literal.setLength(0);
+			}
+			segments.add(new Variable(content.substring(start + PREFIX.length(), end), content.substring(start, end + 1)));
+			pos = end + 1;
+		}
+		if (literal.length() > 0) {
+			segments.add(literal.toString());
+			literalLength += literal.length();
+		}
+		return new PlaceholderTemplate(segments.toArray(), content, literalLength);
+	}
+
+	/**
+	 * @param content content to keep as is, even if it has placeholders. Can be null.
+	 * @return a template rendering the content, null if content is null
+	 */
+	public static PlaceholderTemplate literal(String content) {
+		if (content == null) {
+			return null;
+		}
+		return new PlaceholderTemplate(content.isEmpty() ? new Object[0] : new Object[]{ content }, content, content.length());
+	}
+
+	/**
+	 * @return true if the content has at least one placeholder to resolve
+	 */
+	public boolean hasVariables() {
+		return segments.length > 1 || (segments.length == 1 && segments[0] instanceof Variable);
+	}
+
+	/**
+	 * @return the content this template was compiled from
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * @param variables where to read the variable values from
+	 * @return the content with the variables replaced
+	 * @throws IllegalStateException if a variable refers to itself, directly or not
+	 */
+	public String render(VariableSource variables) {
+		if (!hasVariables()) {
+			return segments.length == 0 ? "" : (String) segments[0];
+		}
+		StringBuilder builder = new StringBuilder(literalLength + 16 * segments.length);
+		render(builder, variables, new ArrayDeque<>());
+		return builder.toString();
+	}
+
+	private void render(StringBuilder builder, VariableSource variables, Deque<String> resolving) {
+		for (Object segment : segments) {
+			if (segment instanceof Variable) {
+				((Variable) segment).render(builder, variables, resolving);
+			} else {
+				builder.append((String) segment);
+			}
+		}
+	}
+
+	private static final class Variable {
+		private final String name;
+		private final String defaultValue;
+		private final String placeholder;
+
+		private Variable(String expression, String placeholder) {
+			int delimiter = expression.indexOf(DEFAULT_DELIMITER);
+			this.name = delimiter < 0 ? expression : expression.substring(0, delimiter);
+			this.defaultValue = delimiter < 0 ? null : expression.substring(delimiter + DEFAULT_DELIMITER.length());
+			this.placeholder = placeholder;
+		}
+
+		private void render(StringBuilder builder, VariableSource variables, Deque<String> resolving) {
+			if (resolving.contains(name)) {
+				List<String> cycle = new ArrayList<>(resolving);
+				Collections.reverse(cycle);
+				throw new IllegalStateException("Infinite loop in property interpolation of " +
+						String.join("->", cycle) + "->" + name);
+			}
+			String value = variables.get(name);
+			if (value == null) {
+				value = defaultValue;
+			}
+			if (value == null) {
+				builder.append(placeholder);
+			} else if (value.contains(PREFIX)) {
+				resolving.push(name);
+				compile(value).render(builder, variables, resolving);
+				resolving.pop();
+			} else {
+				builder.append(value);
+			}
+		}
+	}
+}
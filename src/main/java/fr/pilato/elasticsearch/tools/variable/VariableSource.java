@@ -0,0 +1,157 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package fr.pilato.elasticsearch.tools.variable;
+
+import java.util.Map;
+
+/**
+ * Where the values of the ${VARIABLE} placeholders found in the resources come from
+ * @since 7.6
+ */
+@FunctionalInterface
+public interface VariableSource {
+
+	/**
+	 * Version of a source whose values may change at any time. Contents resolved with it are never cached.
+	 */
+	long UNVERSIONED = -1;
+
+	/**
+	 * @param name variable name
+	 * @return the variable value, null if it is not defined
+	 */
+	String get(String name);
+
+	/**
+	 * Contents resolved with a source are cached until its version changes.
+	 * @return the version of the values, {@link #UNVERSIONED} if unknown
+	 */
+	default long getVersion() {
+		return UNVERSIONED;
+	}
+
+	/**
+	 * Contents are cached per id and version, so two sources with the same id and version must hold the same values.
+	 * @return a stable id of the source, null to cache per source instance
+	 */
+	default String getId() {
+		return null;
+	}
+
+	/**
+	 * @return the environment variables. This is the default source.
+	 */
+	static VariableSource environment() {
+		return EnvironmentVariableSource.INSTANCE;
+	}
+
+	/**
+	 * @return the java system properties
+	 */
+	static VariableSource systemProperties() {
+		return System::getProperty;
+	}
+
+	/**
+	 * @param variables values given by the caller. The map is not copied.
+	 * @return a source reading the map. Contents resolved with it are not cached.
+	 */
+	static VariableSource of(Map<String, String> variables) {
+		return variables::get;
+	}
+
+	/**
+	 * @param variables values given by the caller. The map is not copied.
+	 * @param version version of the values. Change it when the map changes.
+	 * @return a source reading the map. Contents resolved with it are cached for this instance only:
+	 * reuse it, or use {@link #of(String, Map, long)}.
+	 */
+	static VariableSource of(Map<String, String> variables, long version) {
+		return of(null, variables, version);
+	}
+
+	/**
+	 * @param id stable id of the values, for example the name of the tenant they belong to. Can be null.
+	 * @param variables values given by the caller. The map is not copied.
+	 * @param version version of the values. Change it when the map changes.
+	 * @return a source reading the map. Contents resolved with it are shared with all the sources
+	 * having the same id and version.
+	 */
+	static VariableSource of(String id, Map<String, String> variables, long version) {
+		return new VariableSource() {
+			@Override
+			public String get(String name) {
+				return variables.get(name);
+			}
+
+			@Override
+			public long getVersion() {
+				return version;
+			}
+
+			@Override
+			public String getId() {
+				return id;
+			}
+		};
+	}
+
+	/**
+	 * @param sources sources to ask, in order
+	 * @return a source returning the first value defined in the sources
+	 */
+	static VariableSource chain(VariableSource... sources) {
+		return new VariableSource() {
+			@Override
+			public String get(String name) {
+				for (VariableSource source : sources) {
+					String value = source.get(name);
+					if (value != null) {
+						return value;
+					}
+				}
+				return null;
+			}
+
+			@Override
+			public long getVersion() {
+				long version = 0;
+				for (VariableSource source : sources) {
+					if (source.getVersion() == UNVERSIONED) {
+						return UNVERSIONED;
+					}
+					version = 31 * version + source.getVersion();
+				}
+				return version == UNVERSIONED ? 0 : version;
+			}
+
+			@Override
+			public String getId() {
+				StringBuilder id = new StringBuilder();
+				for (VariableSource source : sources) {
+					if (source.getId() == null) {
+						return null;
+					}
+					id.append(id.length() == 0 ? "" : ",").append(source.getId());
+				}
+				return id.toString();
+			}
+		};
+	}
+}
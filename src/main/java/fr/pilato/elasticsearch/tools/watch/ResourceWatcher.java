@@ -0,0 +1,277 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.watch;
+
+import fr.pilato.elasticsearch.tools.ResourceFormat;
+import fr.pilato.elasticsearch.tools.ResourceIndex;
+import fr.pilato.elasticsearch.tools.SettingsFinder.Defaults;
+import fr.pilato.elasticsearch.tools.SettingsReader;
+import fr.pilato.elasticsearch.tools.index.IndexElasticsearchUpdater;
+import fr.pilato.elasticsearch.tools.listener.ProvisioningEvent;
+import fr.pilato.elasticsearch.tools.listener.ProvisioningListener;
+import fr.pilato.elasticsearch.tools.rest.RequestExecutor;
+import fr.pilato.elasticsearch.tools.rest.RetryingRequestExecutor;
+import fr.pilato.elasticsearch.tools.template.TemplateElasticsearchUpdater;
+import fr.pilato.elasticsearch.tools.variable.VariableSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Watches a directory holding templates and indices, laid out like the classpath dir, and applies the changed
+ * files to the cluster without a restart.
+ * <p>
+ * Changes are debounced: files are applied once nothing changed for the debounce time. Then only the changed
+ * resources are applied:
+ * <ul>
+ *     <li>{@code _template/<name>.json}: the template is updated</li>
+ *     <li>{@code <index>/_settings.json}: the index is created if it does not exist. Existing indices are untouched.</li>
+ *     <li>{@code <index>/_update_settings.json}: the index settings are updated</li>
+ * </ul>
+ * Files in the other {@link ResourceFormat}s, like {@code _settings.smile}, are handled the same way.
+ * Deleted files are ignored. Each resource applied is reported to the listener as a
+ * {@link ProvisioningEvent.Phase#RESOURCE} event.
+ * @since 7.6
+ */
+public class ResourceWatcher implements Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(ResourceWatcher.class);
+
+	private final RequestExecutor client;
+	private final Path dir;
+	private final long debounceMillis;
+	private final ProvisioningListener listener;
+	private final VariableSource variables;
+	private final Map<WatchKey, Path> keys = new HashMap<>();
+	private WatchService watchService;
+	private Thread thread;
+
+	/**
+	 * @param client Elasticsearch request executor
+	 * @param dir directory holding the templates and index folders
+	 * @param debounceMillis time without any change to wait for before applying changes
+	 * @param listener receives an event for each resource applied
+	 */
+	public ResourceWatcher(RequestExecutor client, Path dir, long debounceMillis, ProvisioningListener listener) {
+		this(client, dir, debounceMillis, listener, VariableSource.environment());
+	}
+
+	/**
+	 * @param client Elasticsearch request executor
+	 * @param dir directory holding the templates and index folders
+	 * @param debounceMillis time without any change to wait for before applying changes
+	 * @param listener receives an event for each resource applied
+	 * @param variables where to read the values of the placeholders found in the files
+	 */
+	public ResourceWatcher(RequestExecutor client, Path dir, long debounceMillis, ProvisioningListener listener,
+						   VariableSource variables) {
+		this.client = client;
+		this.dir = dir;
+		this.debounceMillis = debounceMillis;
+		this.listener = listener;
+		this.variables = variables;
+	}
+
+	/**
+	 * Start watching in a background thread. Files already in the directory are not applied.
+	 * @throws IOException if the directory can not be watched
+	 */
+	public synchronized void start() throws IOException {
+		if (thread != null) {
+			throw new IllegalStateException("watcher already started");
+		}
+		logger.info("Watching [{}] for changes.", dir);
+		watchService = dir.getFileSystem().newWatchService();
+		register(dir);
+		thread = new Thread(this::watch, "beyonder-watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop watching. Pending changes which were not applied yet are lost.
+	 * @throws IOException if the watch service can not be closed
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (watchService != null) {
+			watchService.close();
+		}
+		if (thread != null) {
+			thread.interrupt();
+		}
+	}
+
+	/**
+	 * Register a directory and its subdirectories
+	 * @param start directory to register
+	 * @return the files found in these directories
+	 */
+	private List<Path> register(Path start) throws IOException {
+		List<Path> dirs;
+		try (Stream<Path> paths = Files.walk(start)) {
+			dirs = paths.filter(Files::isDirectory).collect(Collectors.toList());
+		}
+		for (Path path : dirs) {
+			keys.put(path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), path);
+		}
+		// Listed once registered, so a file created in the meantime is either listed or notified
+		try (Stream<Path> paths = Files.walk(start)) {
+			return paths.filter(Files::isRegularFile).collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Register a directory which appeared while watching
+	 * @param start directory to register
+	 * @return the files found in these directories, empty if the directory was removed in the meantime
+	 */
+	List<Path> registerNew(Path start) {
+		try {
+			return register(start);
+		} catch (IOException | UncheckedIOException e) {
+			// Its removal is notified like any other change
+			logger.debug("Could not watch [{}]. It was probably removed: {}", start, e.getMessage());
+			return Collections.emptyList();
+		}
+	}
+
+	private void watch() {
+		Set<Path> pending = new LinkedHashSet<>();
+		try {
+			while (true) {
+				WatchKey key = pending.isEmpty() ? watchService.take() : watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+				if (key == null) {
+					// Nothing changed during the debounce time
+					apply(pending);
+					pending.clear();
+					continue;
+				}
+
+				Path parent = keys.get(key);
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						logger.warn("Too many changes in [{}]. Applying all the files.", dir);
+						pending.addAll(registerNew(dir));
+						continue;
+					}
+					Path path = parent.resolve((Path) event.context());
+					if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+						// Files may have been created before the new directory is registered
+						pending.addAll(registerNew(path));
+					} else {
+						pending.add(path);
+					}
+				}
+				if (!key.reset()) {
+					keys.remove(key);
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			logger.debug("Stopped watching [{}].", dir);
+		}
+	}
+
+	/**
+	 * Apply the resources whose files changed
+	 * @param files changed files
+	 */
+	void apply(Collection<Path> files) {
+		boolean changed = false;
+		for (Path file : files) {
+			Path relative = dir.relativize(file);
+			if (relative.getNameCount() != 2 || !Files.isRegularFile(file)) {
+				logger.trace("ignoring [{}]", relative);
+				continue;
+			}
+			String parent = relative.getName(0).toString();
+			String name = relative.getName(1).toString();
+			ResourceFormat format = ResourceFormat.of(name);
+			// _settings.smile is handled as _settings.json
+			String jsonName = format == null ? name : ResourceFormat.strip(name) + Defaults.JsonFileExtension;
+
+			long start = System.nanoTime();
+			String resource = null;
+			String action = null;
+			Throwable failure = null;
+			// Each file gets its own retry deadline
+			RequestExecutor client = RetryingRequestExecutor.resourceScope(this.client);
+			try {
+				if (parent.equals(Defaults.TemplateDir) && format != null) {
+					resource = ResourceFormat.strip(name);
+					action = "UPDATE_TEMPLATE";
+					TemplateElasticsearchUpdater.updateTemplateWithJson(client, resource, read(file));
+				} else if (jsonName.equals(Defaults.IndexSettingsFileName)) {
+					resource = parent;
+					action = "CREATE_INDEX";
+					IndexElasticsearchUpdater.createIndexIfAbsent(client, resource, read(file));
+				} else if (jsonName.equals(Defaults.UpdateIndexSettingsFileName)) {
+					resource = parent;
+					action = "UPDATE_SETTINGS";
+					IndexElasticsearchUpdater.updateIndexWithSettings(client, resource, read(file));
+				} else {
+					logger.trace("ignoring [{}]", relative);
+					continue;
+				}
+				logger.info("Applied [{}] to [{}].", relative, resource);
+				changed = true;
+			} catch (Exception e) {
+				logger.warn("Could not apply [{}]: {}", relative, e.getMessage());
+				failure = e;
+			}
+			listener.onEvent(new ProvisioningEvent(ProvisioningEvent.Phase.RESOURCE, resource, action, -1, -1,
+					System.nanoTime() - start, failure));
+		}
+
+		if (changed) {
+			// The directory may also be in the classpath
+			ResourceIndex.invalidateAll();
+		}
+	}
+
+	private String read(Path file) throws IOException {
+		ResourceFormat format = ResourceFormat.of(file.getFileName().toString());
+		if (format != ResourceFormat.JSON) {
+			return format.toJson(Files.readAllBytes(file));
+		}
+		return SettingsReader.substitute(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), variables);
+	}
+}
@@ -21,6 +21,10 @@ package fr.pilato.elasticsearch.tools;
 
 import fr.pilato.elasticsearch.tools.alias.AliasElasticsearchUpdater;
 import fr.pilato.elasticsearch.tools.index.IndexElasticsearchUpdater;
+import fr.pilato.elasticsearch.tools.provisioning.ProvisioningOptions;
+import fr.pilato.elasticsearch.tools.provisioning.ProvisioningResult;
+import fr.pilato.elasticsearch.tools.rest.RequestExecutor;
+import fr.pilato.elasticsearch.tools.template.TemplateElasticsearchUpdater;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpEntity;
 import org.elasticsearch.client.Request;
@@ -43,6 +47,7 @@ import static fr.pilato.elasticsearch.tools.index.IndexElasticsearchUpdater.isIn
 import static fr.pilato.elasticsearch.tools.template.TemplateElasticsearchUpdater.isTemplateExist;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assume.assumeNoException;
@@ -143,6 +148,45 @@ public class BeyonderRestIT extends AbstractBeyonderTest {
         assertThat(newMapping, is(not(oldMapping)));
     }
 
+    @Test
+    public void testTemplateBeforeMatchingIndex() throws Exception {
+        ProvisioningResult result = ElasticsearchBeyonder.start(client, "models/template-and-index",
+                new ProvisioningOptions().setParallelism(2));
+        assertThat(result.isSuccessful(), is(true));
+        assertThat(result.getResults(), hasSize(3));
+
+        // The index must have been created with the template settings
+        Map<String, Object> settings = asMap(client.performRequest(new Request("GET", "/twitter/_settings?flat_settings=true")));
+        Map<String, Object> indexSettings = (Map<String, Object>) ((Map<String, Object>) settings.get("twitter")).get("settings");
+        assertThat(indexSettings.get("index.number_of_shards"), is("1"));
+        assertThat(indexSettings.get("index.number_of_replicas"), is("0"));
+    }
+
+    @Test
+    public void testStartAsync() throws Exception {
+        ProvisioningResult result = ElasticsearchBeyonder.startAsync(client, "models/template-and-index").get();
+        assertThat(result.isSuccessful(), is(true));
+        assertThat(IndexElasticsearchUpdater.isIndexExistAsync(client, "twitter").get(), is(true));
+        assertThat(TemplateElasticsearchUpdater.isTemplateExistAsync(client, "twitter_template").get(), is(true));
+    }
+
+    @Test
+    public void testOptimisticCreate() throws Exception {
+        RequestExecutor executor = RequestExecutor.of(client);
+        String settings = "{\"settings\":{\"number_of_shards\":1}}";
+        assertThat(IndexElasticsearchUpdater.createIndexIfAbsent(executor, "twitter", settings), is(true));
+        assertThat(IndexElasticsearchUpdater.createIndexIfAbsent(executor, "twitter", settings), is(false));
+        assertThat(IndexElasticsearchUpdater.createIndexIfAbsentAsync(executor, "twitter", settings).get(), is(false));
+
+        String template = "{\"index_patterns\":[\"twitter*\"]}";
+        assertThat(TemplateElasticsearchUpdater.createTemplateIfAbsent(executor, "twitter_template", template), is(true));
+        assertThat(TemplateElasticsearchUpdater.createTemplateIfAbsentAsync(executor, "twitter_template", template).get(), is(false));
+
+        ProvisioningResult result = ElasticsearchBeyonder.start(client, "models/template-and-index",
+                new ProvisioningOptions().setOptimistic(true).setPlan(false));
+        assertThat(result.isSuccessful(), is(true));
+    }
+
     private String getMapping(String indexName) throws IOException {
         HttpEntity response = client.performRequest(new Request("GET", indexName + "/_mapping")).getEntity();
         ByteArrayOutputStream out = new ByteArrayOutputStream(Math.toIntExact(response.getContentLength()));
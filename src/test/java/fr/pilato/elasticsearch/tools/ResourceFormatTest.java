@@ -0,0 +1,101 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package fr.pilato.elasticsearch.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.pilato.elasticsearch.tools.index.IndexFinder;
+import fr.pilato.elasticsearch.tools.template.TemplateFinder;
+import org.apache.http.HttpEntity;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ResourceFormatTest {
+
+    private static final String SETTINGS = "{\"settings\":{\"number_of_shards\":1},\"mappings\":{\"properties\":{\"message\":{\"type\":\"text\"}}}}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFormats() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        for (ResourceFormat format : ResourceFormat.values()) {
+            assertThat(ResourceFormat.of("_settings" + format.getExtension()), is(format));
+            assertThat(ResourceFormat.strip("twitter" + format.getExtension()), is("twitter"));
+            assertThat(mapper.readTree(format.toJson(format.fromJson(SETTINGS))), is(mapper.readTree(SETTINGS)));
+        }
+        assertThat(ResourceFormat.of("README.md"), nullValue());
+        assertThat(ResourceFormat.SMILE.getContentType().getMimeType(), is("application/smile"));
+        assertThat(ResourceFormat.CBOR.getContentType().getMimeType(), is("application/cbor"));
+    }
+
+    @Test
+    public void testConvertedResources() throws IOException, URISyntaxException {
+        File dir = folder.newFolder();
+        Path root = dir.toPath().resolve("es");
+        write(root.resolve("_template/twitter_template.json"), "{\"index_patterns\":[\"twitter*\"]}");
+        write(root.resolve("twitter/_settings.json"), SETTINGS);
+        write(root.resolve("twitter/_update_settings.json"), "{\"number_of_replicas\":\"${REPLICAS:-0}\"}");
+        write(root.resolve("person/_settings.json"), SETTINGS);
+
+        List<Path> converted = ResourceConverter.convert(root, ResourceFormat.SMILE, 0);
+        assertThat(converted, hasSize(3));
+        assertThat(ResourceConverter.convert(root.resolve("person"), ResourceFormat.CBOR, 0), hasSize(0));
+        assertThat(Files.exists(root.resolve("twitter/_settings.smile")), is(true));
+        // Placeholders are only resolved in json files
+        assertThat(Files.exists(root.resolve("twitter/_update_settings.json")), is(true));
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{ dir.toURI().toURL() }, null)) {
+            assertThat(TemplateFinder.findTemplates(classLoader, "es"), contains("twitter_template"));
+            assertThat(IndexFinder.findIndexNames(classLoader, "es"), contains("person", "twitter"));
+
+            HttpEntity entity = SettingsReader.readEntityFromClasspath(classLoader, "es/twitter/_settings.json");
+            assertThat(entity.getContentType().getValue(), is("application/smile"));
+            assertThat(entity.getContentLength(), is(Files.size(root.resolve("twitter/_settings.smile"))));
+            assertThat(SettingsReader.readFileFromClasspath(classLoader, "es/twitter/_settings.json"),
+                    containsString("\"number_of_shards\":1"));
+            assertThat(SettingsReader.readFileFromClasspath(classLoader, "es/twitter/_update_settings.json"),
+                    is("{\"number_of_replicas\":\"0\"}"));
+            assertThat(SettingsReader.readEntityFromClasspath(classLoader, "es/twitter/_missing.json"), nullValue());
+        }
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
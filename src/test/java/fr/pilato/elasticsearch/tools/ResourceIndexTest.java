@@ -0,0 +1,242 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools;
+
+import fr.pilato.elasticsearch.tools.index.IndexFinder;
+import fr.pilato.elasticsearch.tools.util.LruCache;
+import fr.pilato.elasticsearch.tools.variable.VariableSource;
+import org.apache.http.util.EntityUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.emptyArray;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ResourceIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSameAsResourceList() throws IOException, URISyntaxException {
+        ResourceIndex index = new ResourceIndex(ResourceIndexTest.class.getClassLoader());
+        assertThat(index.list("models/template-and-index/"),
+                arrayContaining(ResourceList.getResources("models/template-and-index/")));
+        assertThat(index.list("models/template-and-index/_template/"),
+                arrayContaining(ResourceList.getResources("models/template-and-index/_template/")));
+    }
+
+    @Test
+    public void testDirectory() throws IOException, URISyntaxException {
+        File dir = folder.newFolder();
+        write(dir.toPath(), "es/twitter/_settings.json");
+        write(dir.toPath(), "es/_template/twitter_template.json");
+        write(dir.toPath(), "es/README.md");
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{ dir.toURI().toURL() }, null)) {
+            ResourceIndex index = new ResourceIndex(classLoader);
+            assertThat(index.list("es/"), arrayContaining("_template", "twitter"));
+            assertThat(index.list("es/_template/"), arrayContaining("twitter_template.json"));
+            assertThat(index.list("es/twitter/"), arrayContaining("_settings.json"));
+            assertThat(index.list("doesnotexist/"), emptyArray());
+
+            // Served from memory until invalidated
+            write(dir.toPath(), "es/person/_settings.json");
+            assertThat(index.list("es/"), arrayContaining("_template", "twitter"));
+            index.invalidate();
+            assertThat(index.list("es/"), arrayContaining("_template", "person", "twitter"));
+        }
+    }
+
+    @Test
+    public void testDirectoriesWithoutResources() throws IOException, URISyntaxException {
+        File dir = folder.newFolder();
+        write(dir.toPath(), "es/twitter/_settings.json");
+        write(dir.toPath(), "es/docs/README.md");
+        Files.createDirectories(dir.toPath().resolve("es/empty"));
+        File jar = folder.newFile("resources.jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar.toPath()))) {
+            out.putNextEntry(new JarEntry("es/"));
+            out.putNextEntry(new JarEntry("es/person/"));
+        }
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{ dir.toURI().toURL(), jar.toURI().toURL() }, null)) {
+            // Folders are indices even without any json file, like with ResourceList
+            ResourceIndex index = new ResourceIndex(classLoader);
+            assertThat(index.list("es/"), arrayContaining("docs", "empty", "person", "twitter"));
+            assertThat(index.list("es/docs/"), emptyArray());
+            assertThat(index.getConflicts("es/").isEmpty(), is(true));
+            assertThat(IndexFinder.findIndexNames(classLoader, "es"), contains("docs", "empty", "person", "twitter"));
+        }
+    }
+
+    @Test
+    public void testJar() throws IOException, URISyntaxException {
+        File jar = folder.newFile("resources.jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar.toPath()))) {
+            out.putNextEntry(new JarEntry("es/"));
+            out.putNextEntry(new JarEntry("es/_template/"));
+            out.putNextEntry(new JarEntry("es/_template/twitter_template.json"));
+            out.write("{}".getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new JarEntry("es/twitter/"));
+            out.putNextEntry(new JarEntry("es/twitter/_settings.json"));
+            out.write("{}".getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new JarEntry("com/example/Foo.class"));
+        }
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{ jar.toURI().toURL() }, null)) {
+            ResourceIndex index = new ResourceIndex(classLoader);
+            assertThat(index.list("es/"), arrayContaining("_template", "twitter"));
+            assertThat(index.list("es/_template/"), arrayContaining("twitter_template.json"));
+            assertThat(index.list("com/"), emptyArray());
+        }
+    }
+
+    @Test
+    public void testMultipleLocations() throws IOException, URISyntaxException {
+        File dir = folder.newFolder();
+        write(dir.toPath(), "es/twitter/_settings.json");
+        write(dir.toPath(), "es/_template/twitter_template.json");
+        File jar = folder.newFile("domain.jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar.toPath()))) {
+            out.putNextEntry(new JarEntry("es/"));
+            out.putNextEntry(new JarEntry("es/person/_settings.json"));
+            out.write("{}".getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new JarEntry("es/twitter/_settings.json"));
+            out.write("{}".getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{ dir.toURI().toURL(), jar.toURI().toURL() }, null)) {
+            ResourceIndex index = new ResourceIndex(classLoader);
+            assertThat(index.list("es/"), arrayContaining("_template", "person", "twitter"));
+            assertThat(index.list("es/_template/"), arrayContaining("twitter_template.json"));
+
+            Map<String, List<String>> conflicts = index.getConflicts("es/");
+            assertThat(conflicts.keySet(), contains("twitter/_settings.json"));
+            assertThat(conflicts.get("twitter/_settings.json"), contains(
+                    new File(dir, "es").toURI().toURL().toExternalForm(),
+                    "jar:" + jar.toURI().toURL() + "!/es/"));
+        }
+    }
+
+    @Test
+    public void testResolvedCache() {
+        ResourceIndex index = new ResourceIndex(ResourceIndexTest.class.getClassLoader());
+        String file = "models/variablereplacement/twitter/_settings.json";
+        Map<String, String> values = new HashMap<>();
+        values.put("numberOfReplicas", "1");
+        VariableSource variables = VariableSource.of(values, 1);
+
+        assertThat(index.getResolved(file, variables), containsString("\"number_of_replicas\" : \"1\""));
+        assertThat(index.getResolved(file, variables), containsString("\"number_of_replicas\" : \"1\""));
+        assertThat(index.getResolvedCache().getMisses(), is(1L));
+        assertThat(index.getResolvedCache().getHits(), is(1L));
+
+        // Same version: the cached content is used
+        values.put("numberOfReplicas", "2");
+        assertThat(index.getResolved(file, variables), containsString("\"number_of_replicas\" : \"1\""));
+        assertThat(index.getResolved(file, VariableSource.of(values, 2)), containsString("\"number_of_replicas\" : \"2\""));
+        assertThat(index.getResolved(file, VariableSource.of(values)), containsString("\"number_of_replicas\" : \"2\""));
+        assertThat(index.getResolvedCache().getMisses(), is(2L));
+        assertThat(index.getResolvedCache().getHits(), is(2L));
+        assertThat(index.getResolved("models/variablereplacement/missing.json", variables), nullValue());
+        // The file was parsed once, the missing one was not read at all
+        assertThat(index.getTemplateCache().getMisses(), is(1L));
+        assertThat(index.getTemplateCache().size(), is(1));
+    }
+
+    @Test
+    public void testResolvedCacheWithSourceId() {
+        ResourceIndex index = new ResourceIndex(ResourceIndexTest.class.getClassLoader());
+        String file = "models/variablereplacement/twitter/_settings.json";
+        Map<String, String> values = new HashMap<>();
+        values.put("numberOfReplicas", "1");
+
+        // A new source each time, like a caller rebuilding it for each request
+        assertThat(index.getResolved(file, VariableSource.of("tenant1", values, 1)), containsString("\"number_of_replicas\" : \"1\""));
+        assertThat(index.getResolved(file, VariableSource.of("tenant1", new HashMap<>(values), 1)), containsString("\"number_of_replicas\" : \"1\""));
+        assertThat(index.getResolvedCache().getMisses(), is(1L));
+        assertThat(index.getResolvedCache().getHits(), is(1L));
+
+        // Other ids and sources without id do not share the entry
+        assertThat(index.getResolved(file, VariableSource.of("tenant2", values, 1)), containsString("\"number_of_replicas\" : \"1\""));
+        assertThat(index.getResolved(file, VariableSource.of(values, 1)), containsString("\"number_of_replicas\" : \"1\""));
+        assertThat(index.getResolvedCache().getMisses(), is(3L));
+        assertThat(index.getResolvedCache().getHits(), is(1L));
+    }
+
+    @Test
+    public void testEntityCache() throws IOException {
+        File dir = folder.newFolder();
+        write(dir.toPath(), "es/twitter/_settings.json");
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{ dir.toURI().toURL() }, null)) {
+            ResourceIndex index = new ResourceIndex(classLoader);
+            // Without placeholders, the body does not depend on the source
+            assertThat(EntityUtils.toString(index.getEntity("es/twitter/_settings.json", VariableSource.environment())), is("{}"));
+            assertThat(EntityUtils.toString(index.getEntity("es/twitter/_settings.json", VariableSource.of(new HashMap<>()))), is("{}"));
+            assertThat(index.getResolved("es/twitter/_settings.json", VariableSource.systemProperties()), is("{}"));
+            assertThat(index.getResolvedCache().getMisses(), is(1L));
+            assertThat(index.getResolvedCache().getHits(), is(2L));
+            assertThat(index.getEntity("es/twitter/_missing.json", VariableSource.environment()), nullValue());
+        }
+    }
+
+    @Test
+    public void testLruCache() {
+        LruCache<String, String> cache = new LruCache<>(2);
+        cache.get("a", String::toUpperCase);
+        cache.get("b", String::toUpperCase);
+        cache.get("a", String::toUpperCase);
+        cache.get("c", String::toUpperCase);
+        // b was the least recently used
+        assertThat(cache.get("b", k -> "evicted"), is("evicted"));
+        assertThat(cache.getHits(), is(1L));
+        assertThat(cache.getMisses(), is(4L));
+        assertThat(cache.getEvictions(), is(2L));
+        assertThat(cache.size(), is(2));
+    }
+
+    private static void write(Path dir, String file) throws IOException {
+        Path path = dir.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.write(path, "{}".getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools;
+
+import fr.pilato.elasticsearch.tools.index.IndexFinder;
+import fr.pilato.elasticsearch.tools.template.TemplateFinder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ResourceManifestTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testBuild() throws IOException, URISyntaxException {
+        ResourceManifest manifest = ResourceManifest.build(resources().resolve("models/template-and-index"));
+        assertThat(manifest.getTemplates(), contains("twitter_template"));
+        assertThat(manifest.getIndexNames(), contains("twitter"));
+        assertThat(manifest.getFiles("twitter"), contains("_update_settings.json"));
+        assertThat(manifest.getHash("twitter/_update_settings.json").length(), is(64));
+        assertThat(manifest.getHash("twitter/_settings.json"), nullValue());
+    }
+
+    @Test
+    public void testBuildKeepsDirectories() throws IOException {
+        Path dir = folder.newFolder().toPath();
+        Files.createDirectories(dir.resolve("twitter"));
+        Files.write(dir.resolve("twitter/_settings.json"), "{}".getBytes(StandardCharsets.UTF_8));
+        Files.createDirectories(dir.resolve("docs"));
+        Files.write(dir.resolve("docs/README.md"), "# docs".getBytes(StandardCharsets.UTF_8));
+        Files.createDirectories(dir.resolve("empty"));
+
+        ResourceManifest manifest = ResourceManifest.build(dir);
+        assertThat(manifest.getIndexNames(), contains("docs", "empty", "twitter"));
+        assertThat(manifest.getFiles("empty").isEmpty(), is(true));
+        assertThat(manifest.getFiles("twitter"), contains("_settings.json"));
+        assertThat(manifest.getHash("empty/"), nullValue());
+
+        // Written and read back
+        StringWriter writer = new StringWriter();
+        manifest.write(writer);
+        ResourceManifest read = ResourceManifest.read(new ByteArrayInputStream(writer.toString().getBytes(StandardCharsets.UTF_8)));
+        assertThat(read.getIndexNames(), contains("docs", "empty", "twitter"));
+    }
+
+    @Test
+    public void testFindersUseManifest() throws IOException, URISyntaxException {
+        // Only the manifest is in the classpath: finding resources must not need to scan
+        File output = folder.newFolder();
+        ResourceManifest.main(new String[]{ resources().toString(), output.toString(), "models/update-settings/step1" });
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{ output.toURI().toURL() }, null)) {
+            assertThat(ResourceIndex.getInstance(classLoader).getManifest("models/update-settings/step1"), notNullValue());
+            assertThat(IndexFinder.findIndexNames(classLoader, "models/update-settings/step1"), contains("twitter"));
+            assertThat(TemplateFinder.findTemplates(classLoader, "models/update-settings/step1").isEmpty(), is(true));
+            assertThat(ResourceIndex.getInstance(classLoader).getManifest("models/update-settings/step2"), nullValue());
+        }
+    }
+
+    private static Path resources() throws URISyntaxException {
+        return Paths.get(ResourceManifestTest.class.getClassLoader().getResource("models").toURI()).getParent();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package fr.pilato.elasticsearch.tools;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.nio.entity.NFileEntity;
+import org.apache.http.util.EntityUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class SettingsReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSubstituteWithoutPlaceholder() {
+        byte[] content = "{\"number_of_shards\":1}".getBytes(StandardCharsets.UTF_8);
+        assertThat(SettingsReader.substitute(content), sameInstance(content));
+        assertThat(SettingsReader.hasPlaceholder("{\"a\":\"${FOO:-bar}\"}".getBytes(StandardCharsets.UTF_8)), is(true));
+        assertThat(new String(SettingsReader.substitute("{\"a\":\"${FOO_DOES_NOT_EXIST:-bar}\"}".getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8), is("{\"a\":\"bar\"}"));
+    }
+
+    @Test
+    public void testReadEntity() throws IOException {
+        File dir = folder.newFolder();
+        char[] padding = new char[(int) SettingsFinder.Defaults.MappedFileThreshold];
+        Arrays.fill(padding, ' ');
+        Files.write(new File(dir, "large.json").toPath(), ("{" + new String(padding) + "}").getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(dir, "placeholder.json").toPath(), ("{\"a\":\"${FOO_DOES_NOT_EXIST:-bar}\"" + new String(padding) + "}").getBytes(StandardCharsets.UTF_8));
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{ dir.toURI().toURL() }, null)) {
+            assertThat(SettingsReader.readEntityFromClasspath(classLoader, "large.json"), instanceOf(NFileEntity.class));
+            HttpEntity entity = SettingsReader.readEntityFromClasspath(classLoader, "placeholder.json");
+            assertThat(entity, not(instanceOf(NFileEntity.class)));
+            assertThat(EntityUtils.toString(entity).startsWith("{\"a\":\"bar\""), is(true));
+            assertThat(SettingsReader.readEntityFromClasspath(classLoader, "missing.json"), nullValue());
+        }
+    }
+
+    @Test
+    public void testHasPlaceholderInLargeFile() throws IOException {
+        File file = folder.newFile("large.json");
+        byte[] content = new byte[200 * 1024];
+        Arrays.fill(content, (byte) ' ');
+        Files.write(file.toPath(), content);
+        assertThat(SettingsReader.hasPlaceholder(file.toPath()), is(false));
+
+        // Across two reads
+        content[64 * 1024 - 1] = '$';
+        content[64 * 1024] = '{';
+        Files.write(file.toPath(), content);
+        assertThat(SettingsReader.hasPlaceholder(file.toPath()), is(true));
+    }
+}
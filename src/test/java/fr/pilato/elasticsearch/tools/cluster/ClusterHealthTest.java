@@ -0,0 +1,148 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.cluster;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import fr.pilato.elasticsearch.tools.provisioning.ProvisioningEngine;
+import fr.pilato.elasticsearch.tools.provisioning.ProvisioningOptions;
+import fr.pilato.elasticsearch.tools.provisioning.ResourceSet;
+import fr.pilato.elasticsearch.tools.rest.RequestExecutor;
+import fr.pilato.elasticsearch.tools.util.Futures;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+public class ClusterHealthTest {
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private volatile String status = "green";
+    private HttpServer server;
+    private RestClient client;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        client = RestClient.builder(new HttpHost("localhost", server.getAddress().getPort())).build();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        client.close();
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI());
+        if (!exchange.getRequestURI().getPath().equals(ClusterHealth.ENDPOINT)) {
+            send(exchange, 200, "{\"acknowledged\":true}");
+            return;
+        }
+        // Like elasticsearch, answers 408 when the status was not reached before the timeout
+        boolean timedOut = !exchange.getRequestURI().getQuery().contains("wait_for_status=" + status);
+        send(exchange, timedOut ? 408 : 200, "{\"cluster_name\":\"test\",\"status\":\"" + status + "\"," +
+                "\"timed_out\":" + timedOut + ",\"number_of_nodes\":1,\"active_shards\":5," +
+                "\"initializing_shards\":1,\"unassigned_shards\":4}");
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    public void testStatusReached() throws Exception {
+        ClusterHealth health = ClusterHealth.waitFor(RequestExecutor.of(client), "green", 1000);
+
+        assertThat(health.getStatus(), is("green"));
+        assertThat(health.isTimedOut(), is(false));
+        assertThat(health.getUnassignedShards(), is(4));
+        assertThat(requests, contains("GET /_cluster/health?timeout=1000ms&wait_for_status=green"));
+    }
+
+    @Test
+    public void testStatusNotReached() throws Exception {
+        status = "yellow";
+        try {
+            ClusterHealth.waitFor(RequestExecutor.of(client), "green", 1000);
+            fail("The cluster is not green");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), containsString("did not reach [green] status within [1000ms]"));
+            assertThat(e.getMessage(), containsString("Cluster is [yellow] with [1] nodes, [5] active, [1] initializing and [4] unassigned shards."));
+        }
+
+        try {
+            ClusterHealth.waitForAsync(RequestExecutor.of(client), "green", 1000).get(10, TimeUnit.SECONDS);
+            fail("The cluster is not green");
+        } catch (ExecutionException e) {
+            assertThat(Futures.unwrap(e), instanceOf(IOException.class));
+            assertThat(Futures.unwrap(e).getMessage(), containsString("Cluster is [yellow]"));
+        }
+    }
+
+    @Test
+    public void testProvisioningWaitsForStatus() throws Exception {
+        status = "red";
+        ProvisioningOptions options = new ProvisioningOptions()
+                .setOptimistic(true)
+                .setClusterMetadata(false)
+                .setWaitForStatus("yellow")
+                .setHealthTimeoutMillis(100);
+        try {
+            new ProvisioningEngine(client, options).provisionAsync(ResourceSet.load("models/template-and-index"))
+                    .get(10, TimeUnit.SECONDS);
+            fail("The cluster is red");
+        } catch (ExecutionException e) {
+            assertThat(Futures.unwrap(e).getMessage(), containsString("did not reach [yellow] status"));
+        }
+        // Nothing was sent after the health check
+        assertThat(requests, contains("GET /_cluster/health?timeout=100ms&wait_for_status=yellow"));
+
+        status = "yellow";
+        requests.clear();
+        assertThat(new ProvisioningEngine(client, options).provision(ResourceSet.load("models/template-and-index"))
+                .isSuccessful(), is(true));
+        assertThat(requests.get(0), is("GET /_cluster/health?timeout=100ms&wait_for_status=yellow"));
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.cluster;
+
+import fr.pilato.elasticsearch.tools.util.JsonUtil;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ClusterMetadataTest {
+
+    @Test
+    public void testParse() throws Exception {
+        ClusterMetadata metadata = ClusterMetadata.parse(JsonUtil.asMap("{\"metadata\":{" +
+                "\"templates\":{\"twitter_template\":{\"index_patterns\":[\"twitter*\"]}}," +
+                "\"indices\":{\"twitter\":{\"state\":\"open\",\"aliases\":[\"tweets\"]},\"person\":{\"state\":\"close\"}}}}"));
+
+        assertThat(metadata.isTemplateExist("twitter_template"), is(true));
+        assertThat(metadata.isTemplateExist("foo"), is(false));
+        assertThat(metadata.isIndexExist("twitter"), is(true));
+        assertThat(metadata.isIndexExist("person"), is(true));
+        assertThat(metadata.isIndexExist("tweets"), is(true));
+        assertThat(metadata.isAliasExist("tweets"), is(true));
+        assertThat(metadata.isIndexExist("foo"), is(false));
+
+        metadata.indexCreated("foo");
+        metadata.indexRemoved("twitter");
+        assertThat(metadata.isIndexExist("foo"), is(true));
+        assertThat(metadata.isIndexExist("twitter"), is(false));
+    }
+
+    @Test
+    public void testParseEmptyCluster() throws Exception {
+        ClusterMetadata metadata = ClusterMetadata.parse(JsonUtil.asMap("{}"));
+        assertThat(metadata.isIndexExist("twitter"), is(false));
+        assertThat(metadata.isTemplateExist("twitter_template"), is(false));
+    }
+}
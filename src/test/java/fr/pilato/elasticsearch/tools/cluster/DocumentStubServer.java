@@ -0,0 +1,182 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.cluster;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import fr.pilato.elasticsearch.tools.util.JsonUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stand-in for elasticsearch which only knows how to index, get and delete documents
+ * with op_type=create and if_seq_no/if_primary_term support. Any other PUT is stored like a document.
+ */
+public class DocumentStubServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final Map<String, Map<String, Object>> documents = new HashMap<>();
+    private final Map<String, Long> seqNos = new HashMap<>();
+    private long seqNo = 0;
+    private int lostResponses = 0;
+
+    public DocumentStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public synchronized void put(String path, Map<String, Object> source) {
+        documents.put(path, source);
+        seqNos.put(path, ++seqNo);
+    }
+
+    public synchronized Map<String, Object> get(String path) {
+        return documents.get(path);
+    }
+
+    /**
+     * Apply the next document writes but answer them with a 504, like when the response is lost
+     * @param count number of writes
+     */
+    public synchronized void loseResponses(int count) {
+        lostResponses = count;
+    }
+
+    private synchronized void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        Map<String, String> params = params(exchange.getRequestURI().getQuery());
+        Map<String, Object> existing = documents.get(path);
+
+        switch (exchange.getRequestMethod()) {
+            case "GET":
+                if (existing == null) {
+                    send(exchange, 404, "{\"found\":false}");
+                } else {
+                    Map<String, Object> response = version(path);
+                    response.put("found", true);
+                    response.put("_source", existing);
+                    send(exchange, 200, JsonUtil.asJson(response));
+                }
+                break;
+            case "PUT":
+                if (!matches(path, existing, params)) {
+                    conflict(exchange);
+                    break;
+                }
+                try (InputStream body = exchange.getRequestBody()) {
+                    byte[] bytes = readAll(body);
+                    // An index can be created without any body
+                    put(path, bytes.length == 0 ? new HashMap<>() : JsonUtil.asMap(new ByteArrayInputStream(bytes)));
+                }
+                if (path.contains("/_doc/") && lostResponses > 0) {
+                    lostResponses--;
+                    send(exchange, 504, "{\"error\":{\"type\":\"timeout\"},\"status\":504}");
+                } else if (path.contains("/_doc/")) {
+                    send(exchange, existing == null ? 201 : 200, JsonUtil.asJson(version(path)));
+                } else {
+                    // Like the index, template and settings APIs
+                    send(exchange, 200, "{\"acknowledged\":true}");
+                }
+                break;
+            case "DELETE":
+                if (existing == null) {
+                    send(exchange, 404, "{\"result\":\"not_found\"}");
+                } else if (!matches(path, existing, params)) {
+                    conflict(exchange);
+                } else {
+                    documents.remove(path);
+                    send(exchange, 200, "{\"result\":\"deleted\"}");
+                }
+                break;
+            default:
+                send(exchange, 405, "{}");
+        }
+    }
+
+    private boolean matches(String path, Map<String, Object> existing, Map<String, String> params) {
+        if ("create".equals(params.get("op_type"))) {
+            return existing == null;
+        }
+        if (params.containsKey("if_seq_no")) {
+            return existing != null && seqNos.get(path).equals(Long.valueOf(params.get("if_seq_no")));
+        }
+        return true;
+    }
+
+    private Map<String, Object> version(String path) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("_seq_no", seqNos.get(path));
+        response.put("_primary_term", 1);
+        return response;
+    }
+
+    private void conflict(HttpExchange exchange) throws IOException {
+        send(exchange, 409, "{\"error\":{\"type\":\"version_conflict_engine_exception\"},\"status\":409}");
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static Map<String, String> params(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                String[] keyValue = param.split("=", 2);
+                params.put(keyValue[0], keyValue.length > 1 ? keyValue[1] : "");
+            }
+        }
+        return params;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
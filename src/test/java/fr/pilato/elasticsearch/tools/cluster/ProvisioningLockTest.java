@@ -0,0 +1,201 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.cluster;
+
+import fr.pilato.elasticsearch.tools.rest.RequestExecutor;
+import fr.pilato.elasticsearch.tools.rest.RetryPolicy;
+import fr.pilato.elasticsearch.tools.rest.RetryingRequestExecutor;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ProvisioningLockTest {
+
+    private static final String LOCK_PATH = "/beyonder-system/_doc/lock";
+
+    private DocumentStubServer server;
+    private RestClient client;
+    private RequestExecutor executor;
+
+    @Before
+    public void startServer() throws IOException {
+        server = new DocumentStubServer();
+        client = RestClient.builder(new HttpHost("localhost", server.getPort())).build();
+        executor = RequestExecutor.of(client);
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    private ProvisioningLock lock(String owner, long ttlMillis, long timeoutMillis) {
+        return new ProvisioningLock(executor, "beyonder-system", ttlMillis, timeoutMillis, owner);
+    }
+
+    @Test
+    public void testWaitForHolderWithSameDigest() throws Exception {
+        ProvisioningLock.Lease lease = lock("a", 30_000, 10_000).acquire("digest");
+        assertThat(lease, notNullValue());
+        assertThat(server.get(LOCK_PATH).get("owner"), is("a"));
+
+        CompletableFuture<ProvisioningLock.Lease> waiting = lock("b", 30_000, 10_000).acquireAsync("digest");
+        Thread.sleep(300);
+        assertThat(waiting.isDone(), is(false));
+
+        lease.release(true);
+        assertThat(server.get(LOCK_PATH).get("status"), is(ProvisioningLock.DONE));
+        assertThat(waiting.get(10, TimeUnit.SECONDS), nullValue());
+    }
+
+    @Test
+    public void testWaitAsync() throws Exception {
+        ProvisioningLock.Lease lease = lock("a", 30_000, 10_000).acquireAsync("digest1").get(10, TimeUnit.SECONDS);
+
+        List<CompletableFuture<ProvisioningLock.Lease>> waiting = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            // Released as soon as it is acquired, like a run which succeeded
+            waiting.add(lock("b" + i, 30_000, 10_000).acquireAsync("digest2").thenCompose(next -> next == null ?
+                    CompletableFuture.completedFuture(null) : next.releaseAsync(true).thenApply(v -> next)));
+        }
+        Thread.sleep(300);
+        // No thread is waiting for each of them
+        long threads = Thread.getAllStackTraces().keySet().stream().filter(t -> t.getName().equals("beyonder-lock")).count();
+        assertThat(threads <= 1, is(true));
+
+        lease.releaseAsync(false).get(10, TimeUnit.SECONDS);
+        int acquired = 0;
+        for (CompletableFuture<ProvisioningLock.Lease> future : waiting) {
+            if (future.get(30, TimeUnit.SECONDS) != null) {
+                acquired++;
+            }
+        }
+        // The first one provisions, the others see its digest
+        assertThat(acquired, is(1));
+        assertThat(server.get(LOCK_PATH).get("digest"), is("digest2"));
+    }
+
+    @Test
+    public void testNewDigestAfterDone() throws Exception {
+        lock("a", 30_000, 10_000).acquire("digest1").release(true);
+
+        ProvisioningLock.Lease lease = lock("b", 30_000, 10_000).acquire("digest2");
+        assertThat(lease, notNullValue());
+        assertThat(server.get(LOCK_PATH).get("owner"), is("b"));
+        lease.release(true);
+    }
+
+    @Test
+    public void testSameDigestAfterDoneExpired() throws Exception {
+        // Long enough for the second instance to see the published digest on a slow machine
+        lock("a", 1_000, 10_000).acquire("digest").release(true);
+        assertThat(lock("b", 1_000, 10_000).acquire("digest"), nullValue());
+
+        // A later start with the same resources is not part of the same rollout
+        Thread.sleep(1_100);
+        ProvisioningLock.Lease lease = lock("c", 1_000, 10_000).acquireAsync("digest").get(10, TimeUnit.SECONDS);
+        assertThat(lease, notNullValue());
+        assertThat(server.get(LOCK_PATH).get("owner"), is("c"));
+        lease.release(true);
+    }
+
+    @Test
+    public void testFailureLetsOthersTry() throws Exception {
+        lock("a", 30_000, 10_000).acquire("digest").release(false);
+        assertThat(server.get(LOCK_PATH), nullValue());
+
+        ProvisioningLock.Lease lease = lock("b", 30_000, 10_000).acquire("digest");
+        assertThat(lease, notNullValue());
+        lease.release(true);
+    }
+
+    @Test
+    public void testTakeOverExpiredLease() throws Exception {
+        // A holder which died without releasing the lock
+        Map<String, Object> abandoned = new HashMap<>();
+        abandoned.put("owner", "dead");
+        abandoned.put("status", ProvisioningLock.RUNNING);
+        abandoned.put("digest", "digest");
+        abandoned.put("expires_at", System.currentTimeMillis() - 1);
+        server.put(LOCK_PATH, abandoned);
+
+        ProvisioningLock.Lease lease = lock("b", 30_000, 10_000).acquire("digest");
+        assertThat(lease, notNullValue());
+        assertThat(server.get(LOCK_PATH).get("owner"), is("b"));
+        lease.release(true);
+    }
+
+    @Test
+    public void testHeartbeat() throws Exception {
+        ProvisioningLock.Lease lease = lock("a", 300, 10_000).acquire("digest");
+        long expiresAt = ((Number) server.get(LOCK_PATH).get("expires_at")).longValue();
+        Thread.sleep(500);
+        assertThat(((Number) server.get(LOCK_PATH).get("expires_at")).longValue() > expiresAt, is(true));
+        assertThat(lease.isHeld(), is(true));
+        lease.release(true);
+        assertThat(lease.isHeld(), is(false));
+    }
+
+    @Test
+    public void testRetriedWriteWhoseResponseWasLost() throws Exception {
+        RequestExecutor retrying = new RetryingRequestExecutor(executor, new RetryPolicy().setInitialBackoffMillis(1));
+
+        // The lease is created but the answer is lost. The retry conflicts with the lease of this instance.
+        server.loseResponses(1);
+        ProvisioningLock.Lease lease = new ProvisioningLock(retrying, "beyonder-system", 300, 2_000, "a").acquire("digest");
+        assertThat(lease, notNullValue());
+        assertThat(server.get(LOCK_PATH).get("owner"), is("a"));
+
+        // Same for a renewal: the lease is still held
+        server.loseResponses(1);
+        Thread.sleep(500);
+        assertThat(lease.isHeld(), is(true));
+
+        server.loseResponses(1);
+        lease.release(true);
+        assertThat(server.get(LOCK_PATH).get("status"), is(ProvisioningLock.DONE));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTimeout() throws Exception {
+        ProvisioningLock.Lease lease = lock("a", 30_000, 10_000).acquire("digest");
+        try {
+            lock("b", 30_000, 300).acquire("digest");
+        } finally {
+            lease.release(true);
+        }
+    }
+}
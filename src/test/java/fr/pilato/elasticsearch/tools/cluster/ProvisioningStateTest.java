@@ -0,0 +1,65 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.cluster;
+
+import fr.pilato.elasticsearch.tools.rest.RequestExecutor;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ProvisioningStateTest {
+
+    private DocumentStubServer server;
+    private RestClient client;
+
+    @Before
+    public void startServer() throws IOException {
+        server = new DocumentStubServer();
+        client = RestClient.builder(new HttpHost("localhost", server.getPort())).build();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void testRecordAndMatch() throws Exception {
+        ProvisioningState state = new ProvisioningState(RequestExecutor.of(client), "beyonder-system");
+        assertThat(state.isApplied("digest1"), is(false));
+
+        state.record("digest1");
+        assertThat(server.get("/beyonder-system/_doc/state").get("version"), is(ProvisioningState.libraryVersion()));
+        assertThat(state.isApplied("digest1"), is(true));
+        assertThat(state.isApplied("digest2"), is(false));
+
+        state.recordAsync("digest2").get();
+        assertThat(state.isAppliedAsync("digest1").get(), is(false));
+        assertThat(state.isAppliedAsync("digest2").get(), is(true));
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.listener;
+
+import fr.pilato.elasticsearch.tools.provisioning.ResourceSet;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+
+public class SummaryReportListenerTest {
+
+    @Test
+    public void testResourceSetEvents() throws Exception {
+        List<ProvisioningEvent> events = new ArrayList<>();
+        ResourceSet.load("models/template-and-index", events::add);
+
+        List<ProvisioningEvent.Phase> phases = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (ProvisioningEvent event : events) {
+            phases.add(event.getPhase());
+            names.add(event.getName());
+        }
+        assertThat(phases, hasItem(ProvisioningEvent.Phase.SCAN));
+        assertThat(phases, hasItem(ProvisioningEvent.Phase.READ));
+        assertThat(phases, hasItem(ProvisioningEvent.Phase.SUBSTITUTION));
+        assertThat(names, hasItem("models/template-and-index/_template/twitter_template.json"));
+        assertThat(names, hasItem("models/template-and-index/twitter/_update_settings.json"));
+    }
+
+    @Test
+    public void testReport() {
+        SummaryReportListener listener = new SummaryReportListener(1);
+        listener.onEvent(new ProvisioningEvent(ProvisioningEvent.Phase.HTTP, "/twitter", "PUT", 120, 200, 3_000_000, null));
+        listener.onEvent(new ProvisioningEvent(ProvisioningEvent.Phase.HTTP, "/twitter", "HEAD", 0, 404, 1_000_000, null));
+        listener.onEvent(new ProvisioningEvent(ProvisioningEvent.Phase.RESOURCE, "INDEX [twitter]", "CREATE", -1, -1, 5_000_000, null));
+        listener.onEvent(new ProvisioningEvent(ProvisioningEvent.Phase.RESOURCE, "INDEX [foo]", "NOOP", -1, -1, 1_000_000, null));
+        listener.onEvent(new ProvisioningEvent(ProvisioningEvent.Phase.RUN, "elasticsearch", null, 2, -1, 7_000_000, null));
+
+        String report = listener.getReport();
+        assertThat(report, containsString("2 resources in 7ms"));
+        assertThat(report, containsString("HTTP              2 calls, total     4ms, max     3ms"));
+        assertThat(report, containsString("http status: 200=1, 404=1"));
+        assertThat(report, containsString("INDEX [twitter] CREATE: 5ms"));
+        assertThat(report.contains("INDEX [foo]"), is(false));
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.provisioning;
+
+import fr.pilato.elasticsearch.tools.util.JsonUtil;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+public class FingerprintsTest {
+
+    @Test
+    public void testStableFingerprint() throws Exception {
+        String fingerprint = Fingerprints.of("{\"settings\":{\"number_of_shards\":1},\"mappings\":{\"properties\":{}}}");
+        assertThat(Fingerprints.of("{ \"mappings\" : { \"properties\" : { } },\n \"settings\" : { \"number_of_shards\" : 1 } }"), is(fingerprint));
+        assertThat(Fingerprints.of("{\"settings\":{\"number_of_shards\":2},\"mappings\":{\"properties\":{}}}"), not(fingerprint));
+        assertThat(fingerprint.length(), is(64));
+    }
+
+    @Test
+    public void testStamp() throws Exception {
+        Map<String, Object> stamped = JsonUtil.asMap(Fingerprints.stamp(
+                "{\"mappings\":{\"_meta\":{\"owner\":\"me\"},\"properties\":{}}}", "abc"));
+        assertThat(Fingerprints.read(stamped), is("abc"));
+        assertThat(((Map<?, ?>) ((Map<?, ?>) stamped.get("mappings")).get("_meta")).get("owner"), is("me"));
+
+        // Settings only
+        stamped = JsonUtil.asMap(Fingerprints.stamp("{\"index\":{\"number_of_shards\":1}}", "abc"));
+        assertThat(stamped, hasKey("settings"));
+        assertThat(stamped, not(hasKey("index")));
+        assertThat(Fingerprints.read(stamped), is("abc"));
+
+        // No settings
+        assertThat(Fingerprints.read(JsonUtil.asMap(Fingerprints.stamp(null, "abc"))), is("abc"));
+    }
+}
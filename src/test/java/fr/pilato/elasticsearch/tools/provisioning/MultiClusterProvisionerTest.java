@@ -0,0 +1,91 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package fr.pilato.elasticsearch.tools.provisioning;
+
+import fr.pilato.elasticsearch.tools.cluster.DocumentStubServer;
+import fr.pilato.elasticsearch.tools.rest.RequestExecutor;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.ServerSocket;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+
+public class MultiClusterProvisionerTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void stopScheduler() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testFanOut() throws Exception {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+
+        try (DocumentStubServer fast = new DocumentStubServer();
+             DocumentStubServer slow = new DocumentStubServer();
+             RestClient fastClient = RestClient.builder(new HttpHost("localhost", fast.getPort())).build();
+             RestClient slowClient = RestClient.builder(new HttpHost("localhost", slow.getPort())).build();
+             RestClient unreachableClient = RestClient.builder(new HttpHost("localhost", closedPort)).build()) {
+            RequestExecutor slowExecutor = RequestExecutor.of(slowClient);
+            Map<String, RequestExecutor> clusters = new LinkedHashMap<>();
+            clusters.put("slow", request -> {
+                CompletableFuture<Void> delay = new CompletableFuture<>();
+                scheduler.schedule(() -> delay.complete(null), 200, TimeUnit.MILLISECONDS);
+                return delay.thenCompose(ignored -> slowExecutor.performRequestAsync(request));
+            });
+            clusters.put("unreachable", RequestExecutor.of(unreachableClient));
+            clusters.put("fast", RequestExecutor.of(fastClient));
+
+            ResourceSet resources = ResourceSet.load("models/template-and-index");
+            MultiClusterResult result = new MultiClusterProvisioner(clusters, new ProvisioningOptions().setOptimistic(true))
+                    .provisionAsync(resources).get(30, TimeUnit.SECONDS);
+
+            ClusterResult slowResult = result.getResults().get(0);
+            ClusterResult unreachableResult = result.getResults().get(1);
+            ClusterResult fastResult = result.getResults().get(2);
+            assertThat(result.getFailures(), contains(unreachableResult));
+            assertThat(slowResult.getCluster(), is("slow"));
+            assertThat(slowResult.isSuccessful(), is(true));
+            assertThat(fastResult.isSuccessful(), is(true));
+            assertThat(fastResult.getResult().getResults().size(), is(3));
+            assertThat(fast.get("/_template/twitter_template"), notNullValue());
+            assertThat(slow.get("/_template/twitter_template"), notNullValue());
+            // The fast cluster did not wait for the slow one
+            assertThat(fastResult.getTookNanos(), lessThan(slowResult.getTookNanos()));
+        }
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.provisioning;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+import fr.pilato.elasticsearch.tools.ResourceFormat;
+import fr.pilato.elasticsearch.tools.SettingsReader;
+import fr.pilato.elasticsearch.tools.cluster.DocumentStubServer;
+import fr.pilato.elasticsearch.tools.rest.RequestExecutor;
+import fr.pilato.elasticsearch.tools.rest.RetryPolicy;
+import fr.pilato.elasticsearch.tools.util.Futures;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+
+public class ProvisioningEngineTest {
+
+    @Test
+    public void testGraph() throws Exception {
+        ResourceSet resources = ResourceSet.load("models/template-and-index");
+        List<ProvisioningNode> nodes = new ProvisioningEngine((RequestExecutor) null, new ProvisioningOptions()).buildGraph(resources, null, null);
+
+        assertThat(nodes, hasSize(3));
+        ProvisioningNode template = nodes.get(0);
+        ProvisioningNode index = nodes.get(1);
+        ProvisioningNode settings = nodes.get(2);
+
+        assertThat(template.getType(), is(ResourceResult.Type.TEMPLATE));
+        assertThat(template.isReady(), is(true));
+        assertThat(template.getDependents(), contains(index));
+
+        assertThat(index.getType(), is(ResourceResult.Type.INDEX));
+        assertThat(index.isReady(), is(false));
+        assertThat(index.getDependents(), contains(settings));
+
+        assertThat(settings.getType(), is(ResourceResult.Type.INDEX_SETTINGS));
+        assertThat(settings.isReady(), is(false));
+    }
+
+    @Test
+    public void testRetries() throws Exception {
+        try (DocumentStubServer stub = new DocumentStubServer();
+             RestClient client = RestClient.builder(new HttpHost("localhost", stub.getPort())).build()) {
+            RequestExecutor executor = RequestExecutor.of(client);
+            Set<String> failed = ConcurrentHashMap.newKeySet();
+            // The first request sent to each endpoint fails
+            RequestExecutor flaky = request -> failed.add(request.getMethod() + " " + request.getEndpoint()) ?
+                    Futures.failedFuture(new ConnectException("Connection refused")) : executor.performRequestAsync(request);
+
+            ProvisioningResult result = new ProvisioningEngine(flaky, new ProvisioningOptions()
+                    .setOptimistic(true)
+                    .setClusterMetadata(false)
+                    .setRetryPolicy(new RetryPolicy().setInitialBackoffMillis(1)))
+                    .provisionAsync(ResourceSet.load("models/template-and-index")).get(30, TimeUnit.SECONDS);
+
+            assertThat(result.isSuccessful(), is(true));
+            assertThat(result.getRetries(), is(3));
+            for (ResourceResult resource : result.getResults()) {
+                assertThat(resource.getRetries(), is(1));
+            }
+            assertThat(stub.get("/twitter"), notNullValue());
+        }
+    }
+
+    @Test
+    public void testStateMarkerOptions() throws Exception {
+        try (DocumentStubServer stub = new DocumentStubServer();
+             RestClient client = RestClient.builder(new HttpHost("localhost", stub.getPort())).build()) {
+            ResourceSet resources = ResourceSet.load("models/template-and-index");
+            ProvisioningOptions options = new ProvisioningOptions()
+                    .setOptimistic(true)
+                    .setClusterMetadata(false)
+                    .setStateMarker(true);
+
+            assertThat(new ProvisioningEngine(client, options).provision(resources).getResults(), hasSize(3));
+            assertThat(new ProvisioningEngine(client, options).provision(resources).getResults(), hasSize(0));
+            // Not in a dot-prefixed index, which elasticsearch reserves
+            assertThat(stub.get("/beyonder-system/_doc/state"), notNullValue());
+
+            // Not the same run as the recorded one
+            options.setChangeDetection(ChangeDetection.FINGERPRINT);
+            assertThat(new ProvisioningEngine(client, options).provision(resources).getResults(), hasSize(3));
+            assertThat(new ProvisioningEngine(client, options).provision(resources).getResults(), hasSize(0));
+
+            // Force always provisions
+            options.setForce(true);
+            assertThat(new ProvisioningEngine(client, options).provision(resources).getResults(), hasSize(3));
+            assertThat(new ProvisioningEngine(client, options).provision(resources).getResults(), hasSize(3));
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testError() throws Exception {
+        RequestExecutor broken = request -> {
+            throw new NoClassDefFoundError("org/apache/http/HttpEntity");
+        };
+
+        ProvisioningResult result = new ProvisioningEngine(broken, new ProvisioningOptions()
+                .setOptimistic(true)
+                .setClusterMetadata(false))
+                .provision(ResourceSet.load("models/template-and-index"));
+
+        assertThat(result.isSuccessful(), is(false));
+        assertThat(result.getResults().get(0).getStatus(), is(ResourceResult.Status.FAILED));
+        assertThat(result.getResults().get(0).getFailure(), instanceOf(NoClassDefFoundError.class));
+        assertThat(result.getResults().get(1).getStatus(), is(ResourceResult.Status.SKIPPED));
+    }
+
+    @Test
+    public void testBinaryResources() throws Exception {
+        Map<String, String> contentTypes = new ConcurrentHashMap<>();
+        Map<String, byte[]> bodies = new ConcurrentHashMap<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            String request = exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath();
+            Headers headers = exchange.getRequestHeaders();
+            contentTypes.put(request, headers.getFirst("Content-Type") + ";" + headers.getFirst("Content-Encoding"));
+            bodies.put(request, IOUtils.toByteArray(exchange.getRequestBody()));
+            byte[] bytes = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        try (RestClient client = RestClient.builder(new HttpHost("localhost", server.getAddress().getPort())).build()) {
+            ResourceSet resources = ResourceSet.load("models/binary");
+            // Nothing is decoded until the json text is needed
+            resources.getDigest();
+            assertThat(resources.getTemplateSource("binary_template").isDecoded(), is(false));
+            assertThat(resources.getSettingsSource("binary").isDecoded(), is(false));
+            // Plans still read the json text
+            assertThat(resources.getTemplate("binary_template"), containsString("\"binary*\""));
+            ProvisioningOptions options = new ProvisioningOptions()
+                    .setOptimistic(true)
+                    .setClusterMetadata(false);
+
+            assertThat(new ProvisioningEngine(client, options).provision(resources).isSuccessful(), is(true));
+            assertThat(contentTypes.get("PUT /_template/binary_template"), is("application/smile;null"));
+            assertThat(bodies.get("PUT /_template/binary_template"),
+                    is(SettingsReader.readRawBytesFromClasspath(getClass().getClassLoader(), "models/binary/_template/binary_template.smile")));
+            assertThat(contentTypes.get("PUT /binary"), is("application/json; charset=UTF-8;gzip"));
+            assertThat(bodies.get("PUT /binary"),
+                    is(SettingsReader.readRawBytesFromClasspath(getClass().getClassLoader(), "models/binary/binary/_settings.json.gz")));
+
+            contentTypes.clear();
+            options.setChangeDetection(ChangeDetection.FINGERPRINT);
+            assertThat(new ProvisioningEngine(client, options).provisionAsync(resources).get(30, TimeUnit.SECONDS).isSuccessful(), is(true));
+            // The fingerprint is added without losing the format
+            assertThat(contentTypes.get("PUT /_template/binary_template"), is("application/smile;null"));
+            assertThat(ResourceFormat.SMILE.toJson(bodies.get("PUT /_template/binary_template")), containsString(Fingerprints.META_KEY));
+            assertThat(contentTypes.get("PUT /binary"), is("application/json; charset=UTF-8;gzip"));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testRetriedCreation() throws Exception {
+        Set<String> created = ConcurrentHashMap.newKeySet();
+        List<String> requests = new CopyOnWriteArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            String request = exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath();
+            requests.add(request);
+            IOUtils.toByteArray(exchange.getRequestBody());
+            int status = 200;
+            String body = "{}";
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                status = created.contains(exchange.getRequestURI().getPath()) ? 200 : 404;
+            } else if (request.equals("PUT /twitter")) {
+                if (created.add(exchange.getRequestURI().getPath())) {
+                    // The creation is applied but the answer comes too late
+                    status = 504;
+                } else {
+                    status = 400;
+                    body = "{\"error\":{\"type\":\"resource_already_exists_exception\"},\"status\":400}";
+                }
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(status, -1);
+            } else {
+                exchange.sendResponseHeaders(status, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        try (RestClient client = RestClient.builder(new HttpHost("localhost", server.getAddress().getPort())).build()) {
+            ResourceSet resources = ResourceSet.load("models/template-and-index");
+            ProvisioningOptions options = new ProvisioningOptions()
+                    .setPlan(false)
+                    .setClusterMetadata(false)
+                    .setRetryPolicy(new RetryPolicy().setInitialBackoffMillis(1));
+
+            ProvisioningResult result = new ProvisioningEngine(client, options).provision(resources);
+            assertThat(result.isSuccessful(), is(true));
+            assertThat(result.getRetries(), is(1));
+            assertThat(requests.stream().filter("PUT /twitter"::equals).count(), is(2L));
+            // Without a plan or fingerprints, the substituted bytes are sent without being decoded to text
+            assertThat(resources.getUpdateSettingsSource("twitter").isDecoded(), is(false));
+
+            created.clear();
+            requests.clear();
+            result = new ProvisioningEngine(client, options).provisionAsync(resources).get(30, TimeUnit.SECONDS);
+            assertThat(result.isSuccessful(), is(true));
+            assertThat(result.getRetries(), is(1));
+            assertThat(requests.stream().filter("PUT /twitter"::equals).count(), is(2L));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testRetriedRemoval() throws Exception {
+        Set<String> existing = ConcurrentHashMap.newKeySet();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            IOUtils.toByteArray(exchange.getRequestBody());
+            int status = 200;
+            switch (exchange.getRequestMethod()) {
+                case "HEAD":
+                    status = existing.contains(path) ? 200 : 404;
+                    break;
+                case "DELETE":
+                    // The removal is applied but the answer comes too late
+                    status = existing.remove(path) ? 504 : 404;
+                    break;
+                default:
+                    existing.add(path);
+            }
+            byte[] bytes = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(status, -1);
+            } else {
+                exchange.sendResponseHeaders(status, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        try (RestClient client = RestClient.builder(new HttpHost("localhost", server.getAddress().getPort())).build()) {
+            ResourceSet resources = ResourceSet.load("models/template-and-index");
+            ProvisioningOptions options = new ProvisioningOptions()
+                    .setForce(true)
+                    .setClusterMetadata(false)
+                    .setRetryPolicy(new RetryPolicy().setInitialBackoffMillis(1));
+
+            existing.add("/twitter");
+            existing.add("/_template/twitter_template");
+            ProvisioningResult result = new ProvisioningEngine(client, options).provision(resources);
+            assertThat(result.isSuccessful(), is(true));
+            assertThat(result.getRetries(), is(2));
+
+            result = new ProvisioningEngine(client, options).provisionAsync(resources).get(30, TimeUnit.SECONDS);
+            assertThat(result.isSuccessful(), is(true));
+            assertThat(result.getRetries(), is(2));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testAdaptiveConcurrency() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        ExecutorService handlers = Executors.newCachedThreadPool();
+        server.setExecutor(handlers);
+        server.createContext("/", exchange -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                IOUtils.toByteArray(exchange.getRequestBody());
+                Thread.sleep(50);
+                byte[] bytes = "{}".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        server.start();
+        try (RestClient client = RestClient.builder(new HttpHost("localhost", server.getAddress().getPort())).build()) {
+            ResourceSet resources = ResourceSet.load("models/many-indices");
+            ProvisioningOptions options = new ProvisioningOptions()
+                    .setParallelism(1)
+                    .setAdaptiveConcurrency(true)
+                    .setMaxConcurrency(8)
+                    .setPendingTasksThreshold(0)
+                    .setOptimistic(true)
+                    .setClusterMetadata(false);
+
+            // The limit starts at the parallelism and grows with each response
+            assertThat(new ProvisioningEngine(client, options).provision(resources).getResults(), hasSize(12));
+            assertThat(maxInFlight.get(), greaterThan(1));
+
+            maxInFlight.set(0);
+            assertThat(new ProvisioningEngine(client, options).provisionAsync(resources).get(30, TimeUnit.SECONDS).getResults(), hasSize(12));
+            assertThat(maxInFlight.get(), greaterThan(1));
+        } finally {
+            server.stop(0);
+            handlers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPermits() {
+        ProvisioningEngine.Permits permits = new ProvisioningEngine.Permits(2);
+        List<CompletableFuture<Void>> started = new ArrayList<>();
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(permits.submit(() -> {
+                CompletableFuture<Void> action = new CompletableFuture<>();
+                started.add(action);
+                return action;
+            }));
+        }
+        assertThat(started, hasSize(2));
+
+        started.get(0).complete(null);
+        assertThat(results.get(0).isDone(), is(true));
+        assertThat(started, hasSize(3));
+
+        started.get(1).completeExceptionally(new ConnectException("Connection refused"));
+        assertThat(results.get(1).isCompletedExceptionally(), is(true));
+        assertThat(started, hasSize(4));
+
+        // Actions completing right away do not hold a permit
+        for (int i = 0; i < 1000; i++) {
+            permits.submit(() -> CompletableFuture.completedFuture(null));
+        }
+        started.get(2).complete(null);
+        started.get(3).complete(null);
+        assertThat(started, hasSize(5));
+    }
+
+    @Test
+    public void testSimpleMatch() {
+        assertThat(ProvisioningEngine.simpleMatch("twitter", "twitter"), is(true));
+        assertThat(ProvisioningEngine.simpleMatch("twitter", "twitter2"), is(false));
+        assertThat(ProvisioningEngine.simpleMatch("twit*", "twitter"), is(true));
+        assertThat(ProvisioningEngine.simpleMatch("*ter", "twitter"), is(true));
+        assertThat(ProvisioningEngine.simpleMatch("*wit*", "twitter"), is(true));
+        assertThat(ProvisioningEngine.simpleMatch("tw*er*", "twitter-2020"), is(true));
+        assertThat(ProvisioningEngine.simpleMatch("twee*", "twitter"), is(false));
+    }
+}
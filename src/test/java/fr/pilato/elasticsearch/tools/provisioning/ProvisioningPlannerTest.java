@@ -0,0 +1,144 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.provisioning;
+
+import com.sun.net.httpserver.HttpServer;
+import fr.pilato.elasticsearch.tools.util.JsonUtil;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+public class ProvisioningPlannerTest {
+
+    @Test
+    public void testTemplateUpToDate() throws Exception {
+        Object live = JsonUtil.asMap("{\"order\":0,\"index_patterns\":[\"twitter*\"]," +
+                "\"settings\":{\"index\":{\"number_of_shards\":\"1\"}},\"mappings\":{\"properties\":{\"message\":{\"type\":\"text\"}}},\"aliases\":{}}");
+
+        assertThat(ProvisioningPlanner.isUpToDate(live, "{\"template\":\"twitter*\",\"settings\":{\"number_of_shards\":1}," +
+                "\"mappings\":{\"properties\":{\"message\":{\"type\":\"text\"}}}}", ResourceResult.Type.TEMPLATE, false), is(true));
+        assertThat(ProvisioningPlanner.isUpToDate(live, "{\"index_patterns\":[\"twitter*\"],\"settings\":{\"number_of_shards\":2}}",
+                ResourceResult.Type.TEMPLATE, false), is(false));
+        assertThat(ProvisioningPlanner.isUpToDate(live, "{\"index_patterns\":[\"twitter*\"]," +
+                "\"mappings\":{\"properties\":{\"message\":{\"type\":\"keyword\"}}}}", ResourceResult.Type.TEMPLATE, false), is(false));
+        assertThat(ProvisioningPlanner.isUpToDate(null, "{\"index_patterns\":[\"twitter*\"]}", ResourceResult.Type.TEMPLATE, false), is(false));
+    }
+
+    @Test
+    public void testIndexUpToDate() throws Exception {
+        Object live = JsonUtil.asMap("{\"aliases\":{\"alias1\":{}},\"mappings\":{\"properties\":{\"message\":{\"type\":\"text\"}}}," +
+                "\"settings\":{\"index\":{\"number_of_shards\":\"1\",\"number_of_replicas\":\"1\",\"uuid\":\"abc\"}}}");
+
+        assertThat(ProvisioningPlanner.isUpToDate(live, null, ResourceResult.Type.INDEX, false), is(true));
+        assertThat(ProvisioningPlanner.isUpToDate(live, "{\"settings\":{\"index.number_of_shards\":1},\"aliases\":{\"alias1\":{}}}",
+                ResourceResult.Type.INDEX, false), is(true));
+        assertThat(ProvisioningPlanner.isUpToDate(live, "{\"settings\":{\"number_of_shards\":2}}", ResourceResult.Type.INDEX, false), is(false));
+        assertThat(ProvisioningPlanner.isUpToDate(live, "{\"aliases\":{\"alias2\":{}}}", ResourceResult.Type.INDEX, false), is(false));
+    }
+
+    @Test
+    public void testSettingsOnlyIndexUpToDate() throws Exception {
+        Object live = JsonUtil.asMap("{\"aliases\":{},\"mappings\":{}," +
+                "\"settings\":{\"index\":{\"number_of_shards\":\"3\",\"number_of_replicas\":\"2\",\"uuid\":\"abc\"}}}");
+        String twitter = ResourceSet.load("models/shards/client").getSettings("twitter");
+
+        assertThat(ProvisioningPlanner.isUpToDate(live, twitter, ResourceResult.Type.INDEX, false), is(true));
+        assertThat(ProvisioningPlanner.isUpToDate(live, "{\"number_of_shards\":3}", ResourceResult.Type.INDEX, false), is(true));
+        assertThat(ProvisioningPlanner.isUpToDate(live, "{\"index.number_of_replicas\":2}", ResourceResult.Type.INDEX, false), is(true));
+        assertThat(ProvisioningPlanner.isUpToDate(live, "{\"index\":{\"number_of_shards\":1}}", ResourceResult.Type.INDEX, false), is(false));
+    }
+
+    @Test
+    public void testSettingsUpToDate() throws Exception {
+        Object live = JsonUtil.asMap("{\"settings\":{\"index\":{\"number_of_replicas\":\"0\"}}," +
+                "\"defaults\":{\"index\":{\"refresh_interval\":\"1s\"}}}");
+
+        assertThat(ProvisioningPlanner.isUpToDate(live, "{\"number_of_replicas\":0}", ResourceResult.Type.INDEX_SETTINGS, false), is(true));
+        assertThat(ProvisioningPlanner.isUpToDate(live, "{\"index\":{\"refresh_interval\":\"1s\"}}", ResourceResult.Type.INDEX_SETTINGS, false), is(true));
+        assertThat(ProvisioningPlanner.isUpToDate(live, "{\"number_of_replicas\":1}", ResourceResult.Type.INDEX_SETTINGS, false), is(false));
+    }
+
+    @Test
+    public void testFingerprintUpToDate() throws Exception {
+        String json = "{\"settings\":{\"number_of_shards\":1},\"mappings\":{\"properties\":{\"message\":{\"type\":\"text\"}}}}";
+        Object live = JsonUtil.asMap(Fingerprints.stamp(json, Fingerprints.of(json)));
+
+        assertThat(ProvisioningPlanner.isUpToDate(live, json, ResourceResult.Type.INDEX, true), is(true));
+        assertThat(ProvisioningPlanner.isUpToDate(live, "{\"settings\":{\"number_of_shards\":2}}", ResourceResult.Type.INDEX, true), is(false));
+        assertThat(ProvisioningPlanner.isUpToDate(JsonUtil.asMap("{\"mappings\":{}}"), json, ResourceResult.Type.INDEX, true), is(false));
+    }
+
+    @Test
+    public void testForceRecreates() throws Exception {
+        assertThat(new ProvisioningOptions().isPlan(), is(true));
+        assertThat(new ProvisioningOptions().setForce(true).isPlan(), is(false));
+        assertThat(new ProvisioningOptions().setForce(true).setPlan(true).isPlan(), is(true));
+
+        List<String> requests = new CopyOnWriteArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath());
+            byte[] bytes = ("{\"metadata\":{\"templates\":{\"twitter_template\":{}}," +
+                    "\"indices\":{\"twitter\":{\"state\":\"open\"}}}}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        try (RestClient client = RestClient.builder(new HttpHost("localhost", server.getAddress().getPort())).build()) {
+            ProvisioningPlan plan = new ProvisioningEngine(client, new ProvisioningOptions().setForce(true))
+                    .plan(ResourceSet.load("models/template-and-index"));
+
+            // Like before planning existed, force removes and creates again without comparing anything
+            assertThat(plan.get(ResourceResult.Type.TEMPLATE, "twitter_template").getAction(), is(PlannedAction.Action.UPDATE));
+            assertThat(plan.get(ResourceResult.Type.INDEX, "twitter").getAction(), is(PlannedAction.Action.UPDATE));
+            assertThat(plan.get(ResourceResult.Type.INDEX_SETTINGS, "twitter").getAction(), is(PlannedAction.Action.UPDATE));
+            assertThat(requests, contains("GET /_cluster/state/metadata"));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testChunks() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            names.add("index-" + String.format("%04d", i));
+        }
+        List<String> chunks = ProvisioningPlanner.chunks(names);
+        assertThat(chunks, hasSize(2));
+        assertThat(chunks.get(0).length() <= 2000, is(true));
+        assertThat(String.join(",", chunks), is(String.join(",", names)));
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.provisioning;
+
+import fr.pilato.elasticsearch.tools.cluster.DocumentStubServer;
+import fr.pilato.elasticsearch.tools.rest.RequestExecutor;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RestClient;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TenantProvisionerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPipeline() throws Exception {
+        try (DocumentStubServer stub = new DocumentStubServer();
+             RestClient client = RestClient.builder(new HttpHost("localhost", stub.getPort())).build()) {
+            RequestExecutor executor = RequestExecutor.of(client);
+            AtomicInteger inFlight = new AtomicInteger();
+            AtomicInteger maxInFlight = new AtomicInteger();
+            RequestExecutor counting = request -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                return executor.performRequestAsync(request).whenComplete((r, e) -> inFlight.decrementAndGet());
+            };
+
+            TenantProvisioner provisioner = new TenantProvisioner(counting, "models/tenants",
+                    new ProvisioningOptions().setPipelineDepth(3), ProgressStore.inMemory());
+            assertThat(provisioner.getIndexNames(), containsInAnyOrder("orders", "events"));
+            assertThat(provisioner.getIndexName("tenant42", "orders"), is("tenant42-orders"));
+
+            TenantProvisioningResult result = provisioner.provisionAsync(tenants(50)).get(30, TimeUnit.SECONDS);
+            assertThat(result.isSuccessful(), is(true));
+            assertThat(result.getProvisioned(), is(50));
+            assertThat(maxInFlight.get(), lessThanOrEqualTo(3));
+            for (int i = 0; i < 50; i++) {
+                assertThat(stub.get("/tenant" + i + "-events"), notNullValue());
+                assertThat(meta(stub.get("/tenant" + i + "-orders")).get("tenant"), is("tenant" + i));
+            }
+        }
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("progress");
+        try (DocumentStubServer stub = new DocumentStubServer();
+             RestClient client = RestClient.builder(new HttpHost("localhost", stub.getPort())).build()) {
+            RequestExecutor executor = RequestExecutor.of(client);
+            List<String> sent = new ArrayList<>();
+            AtomicBoolean failing = new AtomicBoolean(true);
+            RequestExecutor recording = request -> {
+                synchronized (sent) {
+                    sent.add(request.getEndpoint());
+                }
+                if (failing.get() && request.getEndpoint().equals("/tenant3-orders")) {
+                    return executor.performRequestAsync(new Request("POST", "/unknown"));
+                }
+                return executor.performRequestAsync(request);
+            };
+
+            TenantProvisioningResult result = new TenantProvisioner(recording, "models/tenants", new ProvisioningOptions(),
+                    ProgressStore.file(file)).provisionAsync(tenants(5)).get(30, TimeUnit.SECONDS);
+            assertThat(result.getProvisioned(), is(4));
+            assertThat(result.getFailures().keySet(), containsInAnyOrder("tenant3"));
+            assertThat(result.getFailures().get("tenant3").get(0).getName(), is("tenant3-orders"));
+            assertThat(stub.get("/tenant3-orders"), nullValue());
+
+            // Started again with a new store on the same file: only the tenant which failed is provisioned
+            sent.clear();
+            failing.set(false);
+            result = new TenantProvisioner(recording, "models/tenants", new ProvisioningOptions(),
+                    ProgressStore.file(file)).provisionAsync(tenants(5)).get(30, TimeUnit.SECONDS);
+            assertThat(result.isSuccessful(), is(true));
+            assertThat(result.getProvisioned(), is(1));
+            assertThat(result.getSkipped(), is(4));
+            assertThat(sent, containsInAnyOrder("/tenant3-orders", "/tenant3-events"));
+            assertThat(stub.get("/tenant3-orders"), notNullValue());
+        }
+    }
+
+    @Test
+    public void testFileProgressStore() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("progress");
+        ProgressStore progress = ProgressStore.file(file);
+        for (int i = 0; i < 100; i++) {
+            progress.markDone("tenant" + i);
+        }
+        progress.markDone("tenant0");
+        assertThat(progress.isDone("tenant99"), is(true));
+        progress.flush().get(10, TimeUnit.SECONDS);
+        assertThat(Files.readAllLines(file), hasSize(100));
+
+        // Still usable once flushed
+        progress.markDone("tenant100");
+        progress.flush().get(10, TimeUnit.SECONDS);
+        assertThat(Files.readAllLines(file), hasSize(101));
+        assertThat(ProgressStore.file(file).isDone("tenant100"), is(true));
+    }
+
+    private static Stream<String> tenants(int count) {
+        return IntStream.range(0, count).mapToObj(i -> "tenant" + i);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> meta(Map<String, Object> settings) {
+        return (Map<String, Object>) ((Map<String, Object>) settings.get("mappings")).get("_meta");
+    }
+}
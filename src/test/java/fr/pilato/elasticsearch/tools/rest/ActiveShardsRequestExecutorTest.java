@@ -0,0 +1,118 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.rest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import fr.pilato.elasticsearch.tools.provisioning.ProvisioningEngine;
+import fr.pilato.elasticsearch.tools.provisioning.ProvisioningOptions;
+import fr.pilato.elasticsearch.tools.util.Futures;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RestClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
+
+public class ActiveShardsRequestExecutorTest {
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private volatile boolean shardsAcknowledged = true;
+    private HttpServer server;
+    private RestClient client;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        client = RestClient.builder(new HttpHost("localhost", server.getAddress().getPort())).build();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        client.close();
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI());
+        byte[] bytes = ("{\"acknowledged\":true,\"shards_acknowledged\":" + shardsAcknowledged + "}")
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    public void testCreatedIndex() {
+        assertThat(ActiveShardsRequestExecutor.createdIndex(new Request("PUT", "/twitter")), is("twitter"));
+        assertThat(ActiveShardsRequestExecutor.createdIndex(new Request("GET", "/twitter")), nullValue());
+        assertThat(ActiveShardsRequestExecutor.createdIndex(new Request("PUT", "/twitter/_settings")), nullValue());
+        assertThat(ActiveShardsRequestExecutor.createdIndex(new Request("PUT", "/_template/twitter")), nullValue());
+    }
+
+    @Test
+    public void testPerIndexValue() throws Exception {
+        RequestExecutor executor = ProvisioningEngine.decorate(RequestExecutor.of(client), new ProvisioningOptions()
+                .setWaitForActiveShards("1")
+                .setWaitForActiveShards("twitter", "all"));
+
+        executor.performRequest(new Request("PUT", "/twitter"));
+        executor.performRequest(new Request("PUT", "/person"));
+        executor.performRequest(new Request("PUT", "/twitter/_settings"));
+
+        assertThat(requests, contains("PUT /twitter?wait_for_active_shards=all", "PUT /person?wait_for_active_shards=1",
+                "PUT /twitter/_settings"));
+    }
+
+    @Test
+    public void testShardsNotStarted() throws Exception {
+        shardsAcknowledged = false;
+        RequestExecutor executor = new ActiveShardsRequestExecutor(RequestExecutor.of(client), index -> "2");
+        try {
+            executor.performRequestAsync(new Request("PUT", "/twitter")).get(10, TimeUnit.SECONDS);
+            fail("The shards were not started");
+        } catch (ExecutionException e) {
+            assertThat(Futures.unwrap(e), instanceOf(IOException.class));
+            assertThat(Futures.unwrap(e).getMessage(),
+                    containsString("Could not create index [twitter]: the index exists but [2] shard copies were not started"));
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.rest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class AdaptiveRequestExecutorTest {
+
+    private final ExecutorService threads = Executors.newFixedThreadPool(32);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile boolean overloaded = false;
+    private volatile int pendingTasks = 0;
+    private HttpServer server;
+    private RestClient client;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(threads);
+        server.start();
+        client = RestClient.builder(new HttpHost("localhost", server.getAddress().getPort())).build();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        client.close();
+        server.stop(0);
+        threads.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        if (exchange.getRequestURI().getPath().equals("/_cluster/pending_tasks")) {
+            StringBuilder tasks = new StringBuilder("{\"tasks\":[");
+            for (int i = 0; i < pendingTasks; i++) {
+                tasks.append(i == 0 ? "" : ",").append("{\"insert_order\":").append(i).append("}");
+            }
+            send(exchange, 200, tasks.append("]}").toString());
+            return;
+        }
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        inFlight.decrementAndGet();
+        if (overloaded) {
+            send(exchange, 429, "{\"error\":{\"type\":\"es_rejected_execution_exception\"},\"status\":429}");
+        } else {
+            send(exchange, 200, "{\"acknowledged\":true}");
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void run(AdaptiveRequestExecutor executor, int requests) throws Exception {
+        List<CompletableFuture<Response>> futures = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            futures.add(executor.performRequestAsync(new Request("PUT", "/index" + i)));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).handle((r, e) -> null).get(30, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testIncreaseThenBackOff() throws Exception {
+        AdaptiveRequestExecutor executor = new AdaptiveRequestExecutor(RequestExecutor.of(client), 2, 8, 0, 0);
+
+        run(executor, 100);
+        assertThat(executor.getLimit(), greaterThan(2));
+        assertThat(maxInFlight.get(), lessThanOrEqualTo(8));
+        assertThat(executor.getInFlight(), is(0));
+        assertThat(executor.getQueued(), is(0));
+
+        int limit = executor.getLimit();
+        overloaded = true;
+        run(executor, 20);
+        assertThat(executor.getLimit(), lessThan(limit));
+    }
+
+    @Test
+    public void testPendingTasks() throws Exception {
+        AdaptiveRequestExecutor executor = new AdaptiveRequestExecutor(RequestExecutor.of(client), 8, 8, 10, 0);
+        pendingTasks = 20;
+
+        run(executor, 30);
+        assertThat(executor.getLimit(), lessThan(8));
+    }
+
+    @Test
+    public void testLatencyRisesThenSettles() throws Exception {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        AtomicLong delayMillis = new AtomicLong(1);
+        RequestExecutor cluster = request -> {
+            CompletableFuture<Response> response = new CompletableFuture<>();
+            timer.schedule(() -> response.complete(null), delayMillis.get(), TimeUnit.MILLISECONDS);
+            return response;
+        };
+        try {
+            AdaptiveRequestExecutor executor = new AdaptiveRequestExecutor(cluster, 2, 8, 0, 0);
+            run(executor, 200);
+            assertThat(executor.getLimit(), is(8));
+
+            // The cluster gets much slower: the limit is lowered
+            delayMillis.set(80);
+            run(executor, 40);
+            int lowered = executor.getLimit();
+            assertThat(lowered, lessThan(8));
+
+            // Then keeps this pace: it becomes the baseline and the limit grows again
+            run(executor, 120);
+            assertThat(executor.getLimit(), greaterThan(lowered));
+        } finally {
+            timer.shutdownNow();
+        }
+    }
+}
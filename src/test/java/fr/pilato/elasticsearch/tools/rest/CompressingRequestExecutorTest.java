@@ -0,0 +1,106 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package fr.pilato.elasticsearch.tools.rest;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class CompressingRequestExecutorTest {
+
+    @Test
+    public void testCompression() throws IOException {
+        List<Request> sent = new ArrayList<>();
+        RequestExecutor executor = new CompressingRequestExecutor(request -> {
+            sent.add(request);
+            return CompletableFuture.completedFuture((Response) null);
+        }, 1024);
+
+        StringBuilder json = new StringBuilder("{\"properties\":{");
+        for (int i = 0; i < 500; i++) {
+            json.append("\"field").append(i).append("\":{\"type\":\"keyword\"},");
+        }
+        json.append("\"last\":{\"type\":\"text\"}}}");
+
+        Request small = new Request("PUT", "/twitter");
+        small.setJsonEntity("{}");
+        executor.performRequest(small);
+        assertThat(sent.get(0), sameInstance(small));
+
+        long hits = CompressingRequestExecutor.getCache().getHits();
+        for (int i = 0; i < 2; i++) {
+            Request large = new Request("PUT", "/twitter/_mapping");
+            large.addParameter("timeout", "1m");
+            large.setJsonEntity(json.toString());
+            executor.performRequest(large);
+        }
+        assertThat(CompressingRequestExecutor.getCache().getHits(), is(hits + 1));
+
+        Request compressed = sent.get(2);
+        assertThat(compressed.getEndpoint(), is("/twitter/_mapping"));
+        assertThat(compressed.getParameters().get("timeout"), is("1m"));
+        HttpEntity entity = compressed.getEntity();
+        assertThat(entity.getContentEncoding().getValue(), is("gzip"));
+        assertThat(entity.getContentType().getValue(), is("application/json; charset=UTF-8"));
+        assertThat(entity.getContentLength(), lessThan((long) json.length()));
+        try (GZIPInputStream in = new GZIPInputStream(entity.getContent())) {
+            assertThat(IOUtils.toString(in, StandardCharsets.UTF_8), is(json.toString()));
+        }
+
+        Request noBody = new Request("GET", "/_cluster/health");
+        executor.performRequest(noBody);
+        assertThat(sent.get(3).getEntity(), nullValue());
+    }
+
+    @Test
+    public void testAsyncCompressionOnPool() throws Exception {
+        List<String> threads = new ArrayList<>();
+        RequestExecutor executor = new CompressingRequestExecutor(request -> {
+            threads.add(Thread.currentThread().getName());
+            return CompletableFuture.completedFuture((Response) null);
+        }, 16);
+
+        Request small = new Request("PUT", "/twitter");
+        small.setJsonEntity("{}");
+        executor.performRequestAsync(small).get(10, TimeUnit.SECONDS);
+        Request large = new Request("PUT", "/twitter/_mapping");
+        large.setJsonEntity("{\"properties\":{\"message\":{\"type\":\"text\"}}}");
+        executor.performRequestAsync(large).get(10, TimeUnit.SECONDS);
+
+        // Small bodies are sent right away, the other ones once compressed by the pool
+        assertThat(threads, contains(Thread.currentThread().getName(), "beyonder-compress"));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.rest;
+
+import fr.pilato.elasticsearch.tools.cluster.DocumentStubServer;
+import fr.pilato.elasticsearch.tools.util.Futures;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.fail;
+
+public class RetryingRequestExecutorTest {
+
+    private static RequestExecutor failing(AtomicInteger calls, int failures, IOException failure) {
+        return request -> calls.incrementAndGet() <= failures ?
+                Futures.failedFuture(failure) : CompletableFuture.completedFuture((Response) null);
+    }
+
+    private static Throwable failure(RequestExecutor executor) throws Exception {
+        return failure(executor, new Request("PUT", "/twitter"));
+    }
+
+    private static Throwable failure(RequestExecutor executor, Request request) throws Exception {
+        try {
+            executor.performRequestAsync(request).get(10, TimeUnit.SECONDS);
+            fail("the request should have failed");
+            return null;
+        } catch (ExecutionException e) {
+            return Futures.unwrap(e);
+        }
+    }
+
+    @Test
+    public void testRetries() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        RetryingRequestExecutor executor = new RetryingRequestExecutor(failing(calls, 2, new ConnectException("refused")),
+                new RetryPolicy().setInitialBackoffMillis(1));
+        RetryingRequestExecutor run = executor.forRun();
+        RetryingRequestExecutor resource = run.forResource();
+
+        resource.performRequestAsync(new Request("PUT", "/twitter")).get(10, TimeUnit.SECONDS);
+        assertThat(calls.get(), is(3));
+        assertThat(resource.getRetries(), is(2));
+        assertThat(run.getRetries(), is(2));
+        assertThat(RetryingRequestExecutor.retriesOf(run.forResource()), is(0));
+    }
+
+    @Test
+    public void testFatal() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        RetryingRequestExecutor executor = new RetryingRequestExecutor(failing(calls, 1, new IOException("boom")),
+                new RetryPolicy().setInitialBackoffMillis(1));
+        assertThat(failure(executor).getMessage(), is("boom"));
+        assertThat(calls.get(), is(1));
+        assertThat(executor.getRetries(), is(0));
+    }
+
+    @Test
+    public void testMaxRetries() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        RetryingRequestExecutor executor = new RetryingRequestExecutor(failing(calls, 100, new ConnectException("refused")),
+                new RetryPolicy().setInitialBackoffMillis(1).setMaxRetries(3));
+        assertThat(failure(executor), instanceOf(ConnectException.class));
+        assertThat(calls.get(), is(4));
+    }
+
+    @Test
+    public void testDeadline() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        RetryPolicy policy = new RetryPolicy().setInitialBackoffMillis(200).setResourceTimeoutMillis(50);
+        RetryingRequestExecutor executor = new RetryingRequestExecutor(failing(calls, 100, new ConnectException("refused")), policy);
+        assertThat(failure(executor.forResource()), instanceOf(ConnectException.class));
+        assertThat(calls.get(), is(1));
+
+        // The run deadline applies to all its resources
+        calls.set(0);
+        policy.setResourceTimeoutMillis(0).setTimeoutMillis(50);
+        assertThat(failure(executor.forRun().forResource()), instanceOf(ConnectException.class));
+        assertThat(calls.get(), is(1));
+    }
+
+    @Test
+    public void testBackoff() {
+        RetryPolicy policy = new RetryPolicy().setInitialBackoffMillis(100).setMaxBackoffMillis(1000);
+        for (int retry = 0; retry < 40; retry++) {
+            long expected = Math.min(1000, 100L << Math.min(retry, 30));
+            long backoff = policy.backoffMillis(retry);
+            assertThat(backoff, greaterThanOrEqualTo(expected / 2));
+            assertThat(backoff, lessThanOrEqualTo(expected));
+        }
+    }
+
+    @Test
+    public void testClassification() throws Exception {
+        RetryPolicy policy = new RetryPolicy();
+        assertThat(policy.isRetryable(new ConnectException("refused")), is(true));
+        assertThat(policy.isRetryable(new IOException("boom")), is(false));
+
+        try (DocumentStubServer stub = new DocumentStubServer();
+             RestClient client = RestClient.builder(new HttpHost("localhost", stub.getPort())).build()) {
+            // The stub answers 405 to a POST
+            Throwable e = failure(RequestExecutor.of(client), new Request("POST", "/twitter"));
+            assertThat(e, instanceOf(ResponseException.class));
+            assertThat(policy.isRetryable(e), is(false));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.source;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+
+public class ResourceSourceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDirectory() throws IOException, URISyntaxException {
+        File dir = folder.newFolder();
+        write(new File(dir, "es/twitter/_settings.json"));
+        write(new File(dir, "es/_template/twitter.json"));
+        URL url = new File(dir, "es").toURI().toURL();
+
+        List<String> files = new ArrayList<>();
+        DirectoryResourceSource source = new DirectoryResourceSource();
+        assertThat(source.supports(url), is(true));
+        assertThat(source.scan(url, files::add), is(url.toExternalForm()));
+        assertThat(files, containsInAnyOrder("twitter/", "twitter/_settings.json", "_template/", "_template/twitter.json"));
+
+        // Opening a file: directory lists its children, like other URL handlers do
+        files.clear();
+        new UrlResourceSource().scan(url, files::add);
+        assertThat(files, containsInAnyOrder("twitter/_settings.json", "_template/twitter.json"));
+    }
+
+    @Test
+    public void testJar() throws IOException, URISyntaxException {
+        File jar = folder.newFile("app.jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar.toPath()))) {
+            put(out, "es/twitter/_settings.json", "{}".getBytes(StandardCharsets.UTF_8));
+        }
+        String base = "jar:" + jar.toURI().toURL() + "!/";
+        URL url = new URL(base + "es/");
+
+        List<String> files = new ArrayList<>();
+        JarResourceSource source = new JarResourceSource();
+        assertThat(source.supports(url), is(true));
+        assertThat(new NestedJarResourceSource().supports(url), is(false));
+        assertThat(source.scan(url, files::add), is(base));
+        assertThat(files, containsInAnyOrder("es/twitter/_settings.json"));
+    }
+
+    @Test
+    public void testNestedJar() throws IOException, URISyntaxException {
+        ByteArrayOutputStream nested = new ByteArrayOutputStream();
+        try (JarOutputStream out = new JarOutputStream(nested)) {
+            put(out, "es/twitter/_settings.json", "{}".getBytes(StandardCharsets.UTF_8));
+        }
+        File jar = folder.newFile("app.jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar.toPath()))) {
+            put(out, "BOOT-INF/classes/es/_template/twitter.json", "{}".getBytes(StandardCharsets.UTF_8));
+            put(out, "BOOT-INF/lib/model.jar", nested.toByteArray());
+        }
+        String app = "jar:" + jar.toURI().toURL() + "!/";
+        NestedJarResourceSource source = new NestedJarResourceSource();
+
+        URL lib = new URL(app + "BOOT-INF/lib/model.jar!/es/");
+        List<String> files = new ArrayList<>();
+        assertThat(source.supports(lib), is(true));
+        assertThat(new JarResourceSource().supports(lib), is(false));
+        assertThat(source.scan(lib, files::add), is(app + "BOOT-INF/lib/model.jar!/"));
+        assertThat(files, containsInAnyOrder("es/twitter/_settings.json"));
+
+        URL classes = new URL(app + "BOOT-INF/classes!/es/");
+        files.clear();
+        assertThat(source.scan(classes, files::add), is(app + "BOOT-INF/classes!/"));
+        assertThat(files, containsInAnyOrder("es/_template/twitter.json"));
+    }
+
+    @Test
+    public void testStoredNestedJar() throws IOException, URISyntaxException {
+        ByteArrayOutputStream nested = new ByteArrayOutputStream();
+        try (JarOutputStream out = new JarOutputStream(nested)) {
+            put(out, "es/twitter/_settings.json", "{}".getBytes(StandardCharsets.UTF_8));
+            put(out, "es/twitter/_update_settings.json", "{}".getBytes(StandardCharsets.UTF_8));
+        }
+        ByteArrayOutputStream app = new ByteArrayOutputStream();
+        // Like fully executable jars which start with a launch script
+        app.write("#!/bin/bash\nexec java -jar \"$0\" \"$@\"\n".getBytes(StandardCharsets.UTF_8));
+        try (JarOutputStream out = new JarOutputStream(app)) {
+            put(out, "BOOT-INF/classes/es/_template/twitter.json", "{}".getBytes(StandardCharsets.UTF_8));
+            // Like Spring Boot, nested jars are stored without compression
+            ZipEntry entry = new ZipEntry("BOOT-INF/lib/model.jar");
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(nested.size());
+            CRC32 crc = new CRC32();
+            crc.update(nested.toByteArray());
+            entry.setCrc(crc.getValue());
+            out.putNextEntry(entry);
+            out.write(nested.toByteArray());
+        }
+        File jar = folder.newFile("app.jar");
+        Files.write(jar.toPath(), app.toByteArray());
+
+        URL lib = new URL("jar:" + jar.toURI().toURL() + "!/BOOT-INF/lib/model.jar!/es/");
+        List<String> files = new ArrayList<>();
+        new NestedJarResourceSource().scan(lib, files::add);
+        assertThat(files, containsInAnyOrder("es/twitter/_settings.json", "es/twitter/_update_settings.json"));
+    }
+
+    @Test
+    public void testJrt() throws IOException, URISyntaxException {
+        URL url = new URL("jrt:/java.base/java/lang/");
+        List<String> files = new ArrayList<>();
+        FileSystemResourceSource source = new FileSystemResourceSource();
+        assertThat(source.supports(url), is(true));
+        source.scan(url, files::add);
+        assertThat(files, hasItem("Object.class"));
+    }
+
+    private static void write(File file) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), "{}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void put(JarOutputStream out, String name, byte[] content) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(content);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package fr.pilato.elasticsearch.tools.variable;
+
+import org.apache.commons.text.StringSubstitutor;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class PlaceholderTemplateTest {
+
+    @Test
+    public void testSameAsStringSubstitutor() {
+        Map<String, String> variables = new HashMap<>();
+        variables.put("SHARDS", "3");
+        variables.put("NAME", "twitter");
+        variables.put("ALIAS", "${NAME}_alias");
+        variables.put("DEEP", "${ALIAS}-${UNDEFINED:-${SHARDS}}");
+
+        String[] contents = {
+                "",
+                "{\"number_of_shards\":1}",
+                "{\"number_of_shards\":${SHARDS}}",
+                "{\"number_of_shards\":${UNDEFINED}}",
+                "{\"number_of_shards\":${UNDEFINED:-2}}",
+                "{\"number_of_shards\":${SHARDS:-2}}",
+                "{\"aliases\":{\"${ALIAS}\":{}}}",
+                "${DEEP}",
+                "$${SHARDS} and $$${SHARDS}",
+                "${SHARDS}${NAME}$",
+                "unclosed ${SHARDS",
+                "${UNDEFINED:-}",
+                "${}",
+        };
+        for (String content : contents) {
+            assertThat(content, PlaceholderTemplate.compile(content).render(VariableSource.of(variables)),
+                    is(StringSubstitutor.replace(content, variables)));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCycle() {
+        Map<String, String> variables = new HashMap<>();
+        variables.put("A", "${B}");
+        variables.put("B", "${A}");
+        PlaceholderTemplate.compile("${A}").render(VariableSource.of(variables));
+    }
+
+    @Test
+    public void testSources() {
+        Map<String, String> variables = new HashMap<>();
+        variables.put("java.version", "overridden");
+        PlaceholderTemplate template = PlaceholderTemplate.compile("${java.version}");
+        assertThat(template.hasVariables(), is(true));
+        assertThat(template.render(VariableSource.systemProperties()), is(System.getProperty("java.version")));
+        assertThat(template.render(VariableSource.chain(VariableSource.of(variables), VariableSource.systemProperties())),
+                is("overridden"));
+
+        String content = "{\"number_of_shards\":1}";
+        assertThat(PlaceholderTemplate.compile(content).hasVariables(), is(false));
+        assertThat(PlaceholderTemplate.compile(content).render(VariableSource.environment()), sameInstance(content));
+        assertThat(PlaceholderTemplate.compile(null), nullValue());
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package fr.pilato.elasticsearch.tools.watch;
+
+import fr.pilato.elasticsearch.tools.cluster.DocumentStubServer;
+import fr.pilato.elasticsearch.tools.listener.ProvisioningEvent;
+import fr.pilato.elasticsearch.tools.rest.RequestExecutor;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ResourceWatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DocumentStubServer server;
+    private RestClient client;
+
+    @Before
+    public void startServer() throws IOException {
+        server = new DocumentStubServer();
+        client = RestClient.builder(new HttpHost("localhost", server.getPort())).build();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void testApplyChanges() throws Exception {
+        Path dir = folder.newFolder().toPath();
+        write(dir.resolve("twitter/_settings.json"), "{\"settings\":{\"number_of_shards\":1}}");
+        List<ProvisioningEvent> events = new CopyOnWriteArrayList<>();
+
+        try (ResourceWatcher watcher = new ResourceWatcher(RequestExecutor.of(client), dir, 100, events::add)) {
+            watcher.start();
+            write(dir.resolve("_template/twitter_template.json"), "{\"index_patterns\":[\"twitter*\"]}");
+            write(dir.resolve("twitter/_update_settings.json"), "{\"index\":{\"number_of_replicas\":1}}");
+            write(dir.resolve("person/_settings.json"), "{\"settings\":{\"number_of_shards\":2}}");
+            write(dir.resolve("person/notes.txt"), "ignored");
+
+            Map<String, Object> template = waitFor("/_template/twitter_template");
+            assertThat(template.get("index_patterns"), notNullValue());
+            assertThat(waitFor("/twitter/_settings"), notNullValue());
+            assertThat(waitFor("/person"), notNullValue());
+            // Events are sent once the responses are read, after the stub stored the resources
+            for (int i = 0; i < 100 && events.size() < 3; i++) {
+                Thread.sleep(100);
+            }
+        }
+        // Files which were already there are not applied
+        assertThat(server.get("/twitter"), nullValue());
+        assertThat(events, hasSize(3));
+        for (ProvisioningEvent event : events) {
+            assertThat(event.getPhase(), is(ProvisioningEvent.Phase.RESOURCE));
+            assertThat(event.getFailure(), nullValue());
+        }
+    }
+
+    @Test
+    public void testDirectoryRemovedBeforeRegistration() throws Exception {
+        Path dir = folder.newFolder().toPath();
+        List<ProvisioningEvent> events = new CopyOnWriteArrayList<>();
+
+        try (ResourceWatcher watcher = new ResourceWatcher(RequestExecutor.of(client), dir, 100, events::add)) {
+            watcher.start();
+            // Like a directory deleted right after it was created
+            assertThat(watcher.registerNew(dir.resolve("removed")), hasSize(0));
+
+            // The watcher goes on
+            write(dir.resolve("person/_settings.json"), "{\"settings\":{\"number_of_shards\":2}}");
+            assertThat(waitFor("/person"), notNullValue());
+        }
+    }
+
+    private Map<String, Object> waitFor(String path) throws InterruptedException {
+        for (int i = 0; i < 100 && server.get(path) == null; i++) {
+            Thread.sleep(100);
+        }
+        return server.get(path);
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}